@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010 IBM Corporation and others.
+ * Copyright (c) 2010, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,6 +10,10 @@
  *******************************************************************************/
 package org.eclipse.pde.api.tools.apiusescan.tests;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+
 import junit.framework.TestCase;
 
 import org.eclipse.core.resources.IProject;
@@ -21,7 +25,11 @@ import org.eclipse.pde.api.tools.internal.provisional.model.IApiBaseline;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiComponent;
 import org.eclipse.pde.api.tools.internal.search.IReferenceCollection;
 import org.eclipse.pde.api.tools.internal.search.IReferenceDescriptor;
+import org.eclipse.pde.api.tools.internal.search.UseScanIndex;
 import org.eclipse.pde.api.tools.internal.search.UseScanManager;
+import org.eclipse.pde.api.tools.internal.search.UseScanParser;
+import org.eclipse.pde.api.tools.internal.search.UseScanReferenceVisitor;
+import org.eclipse.pde.api.tools.internal.search.UseScanReferences;
 import org.eclipse.pde.api.tools.model.tests.TestSuiteHelper;
 
 public class ReferenceCountTests extends TestCase {
@@ -126,4 +134,57 @@ public class ReferenceCountTests extends TestCase {
 		assertFalse("References for org.eclipse.equinox.app.IApplication should have been purged from the cache",
 				useScanRefs.hasReferencesTo("org.eclipse.equinox.app.IApplication"));
 	}
+	
+	/**
+	 * Tests that the references read from a use scan index are the ones parsed from the XML reports
+	 * 
+	 * @throws Exception
+	 */
+	public void testIndexMatchesReports() throws Exception {
+		String location = ExternalDependencyTestUtils.setupReport("PDEApiUseScanReport", true);
+		if (location == null) {
+			fail("Could not setup the report : PDEApiUseScanReport.zip");
+		}
+		String[] ids = new String[] {"org.eclipse.equinox.app", "org.eclipse.equinox.p2.operations"};
+		UseScanIndex index = UseScanIndex.getIndex(location, new NullProgressMonitor());
+		for (int i = 0; i < ids.length; i++) {
+			IApiComponent apiComponent = TestSuiteHelper.createTestingApiComponent(ids[i], ids[i], new ApiDescription(null));
+			UseScanReferences parsed = new UseScanReferences();
+			new UseScanParser().parse(location, new NullProgressMonitor(), new UseScanReferenceVisitor(apiComponent, null, parsed));
+			UseScanReferences indexed = new UseScanReferences();
+			index.collect(ids[i], null, indexed);
+			IReferenceDescriptor[] expected = parsed.getAllExternalDependencies();
+			assertTrue("No references found for " + ids[i], expected.length > 0);
+			assertEquals("Wrong number of indexed references for " + ids[i], expected.length, indexed.getAllExternalDependencies().length);
+			for (int j = 0; j < expected.length; j++) {
+				String type = UseScanIndex.getRootTypeName(expected[j].getReferencedMember());
+				assertTrue("Missing indexed reference " + expected[j], Arrays.asList(indexed.getExternalDependenciesTo(new String[] {type})).contains(expected[j]));
+			}
+		}
+		// the index is reused while the reports do not change
+		assertTrue("The index should be up to date", index.isUpToDate(0));
+	}
+
+	/**
+	 * Tests that an index is no longer up to date once reports are added to its use scan
+	 * 
+	 * @throws Exception
+	 */
+	public void testIndexOutdatedByNewReports() throws Exception {
+		String location = ExternalDependencyTestUtils.setupReport("PDEApiUseScanReport", true);
+		if (location == null) {
+			fail("Could not setup the report : PDEApiUseScanReport.zip");
+		}
+		UseScanIndex index = UseScanIndex.getIndex(location, new NullProgressMonitor());
+		assertTrue("The index should be up to date", index.isUpToDate(0));
+		File component = new File(location, "org.example.added (1.0.0)");
+		assertTrue("Could not create the component directory", component.mkdirs());
+		FileOutputStream stream = new FileOutputStream(new File(component, "type_references.xml"));
+		try {
+			stream.write("<references/>".getBytes("UTF-8"));
+		} finally {
+			stream.close();
+		}
+		assertFalse("The index should be out of date once reports are added", index.isUpToDate(0));
+	}
 }
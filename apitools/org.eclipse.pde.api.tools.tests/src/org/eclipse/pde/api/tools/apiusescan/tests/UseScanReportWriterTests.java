@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.apiusescan.tests;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IComponentDescriptor;
+import org.eclipse.pde.api.tools.internal.search.IReferenceDescriptor;
+import org.eclipse.pde.api.tools.internal.search.UseScanParser;
+import org.eclipse.pde.api.tools.internal.search.UseScanVisitor;
+import org.eclipse.pde.api.tools.internal.search.XmlReferenceDescriptorWriter;
+import org.eclipse.pde.api.tools.internal.util.Util;
+import org.eclipse.pde.api.tools.model.tests.TestSuiteHelper;
+
+/**
+ * Tests that use scan reports written by the {@link XmlReferenceDescriptorWriter} parse
+ * back to the references that were written
+ */
+public class UseScanReportWriterTests extends TestCase {
+
+	private File fOutput = TestSuiteHelper.getUserDirectoryPath().append("use-scan-writer-tests").toFile();
+
+	/**
+	 * Collects every reference of a parsed report
+	 */
+	class ReferenceCollector extends UseScanVisitor {
+		List<IReferenceDescriptor> references = new ArrayList<IReferenceDescriptor>();
+
+		public boolean visitComponent(IComponentDescriptor target) {
+			return true;
+		}
+
+		public boolean visitReferencingComponent(IComponentDescriptor component) {
+			return true;
+		}
+
+		public void visitReference(IReferenceDescriptor reference) {
+			references.add(reference);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	protected void tearDown() throws Exception {
+		Util.delete(fOutput);
+		super.tearDown();
+	}
+
+	/**
+	 * Tests that a report streamed out for new files and a report merged into existing files
+	 * parse back to the same references as the report they were written from, which was
+	 * written through a document
+	 *
+	 * @throws Exception
+	 */
+	public void testStreamedReportRoundTrip() throws Exception {
+		String location = ExternalDependencyTestUtils.setupReport("PDEApiUseScanReport", true);
+		if (location == null) {
+			fail("Could not setup the report : PDEApiUseScanReport.zip");
+		}
+		List<IReferenceDescriptor> original = parse(location);
+		assertFalse("The report should have references", original.isEmpty());
+		IReferenceDescriptor[] references = original.toArray(new IReferenceDescriptor[original.size()]);
+
+		// every file is new: all of the references are streamed
+		File streamed = new File(fOutput, "streamed");
+		XmlReferenceDescriptorWriter writer = new XmlReferenceDescriptorWriter(streamed.getAbsolutePath());
+		writer.addReferences(references);
+		writer.flush();
+		assertEquals("The streamed report should have the same references", describe(original), describe(parse(streamed.getAbsolutePath())));
+
+		// the second half is merged into the files streamed with the first half
+		File merged = new File(fOutput, "merged");
+		writer = new XmlReferenceDescriptorWriter(merged.getAbsolutePath());
+		int half = references.length / 2;
+		List<IReferenceDescriptor> first = original.subList(0, half);
+		List<IReferenceDescriptor> second = original.subList(half, references.length);
+		writer.writeReferences(first.toArray(new IReferenceDescriptor[first.size()]));
+		writer.writeReferences(second.toArray(new IReferenceDescriptor[second.size()]));
+		assertEquals("The merged report should have the same references", describe(original), describe(parse(merged.getAbsolutePath())));
+	}
+
+	/**
+	 * Parses the report at the given location
+	 * @param location
+	 * @return the references of the report
+	 * @throws Exception
+	 */
+	List<IReferenceDescriptor> parse(String location) throws Exception {
+		ReferenceCollector collector = new ReferenceCollector();
+		new UseScanParser().parse(location, new NullProgressMonitor(), collector);
+		return collector.references;
+	}
+
+	/**
+	 * Returns a sorted description of every attribute of the given references
+	 * @param references
+	 * @return the sorted descriptions
+	 */
+	List<String> describe(List<IReferenceDescriptor> references) {
+		List<String> descriptions = new ArrayList<String>(references.size());
+		for (IReferenceDescriptor ref : references) {
+			StringBuffer buffer = new StringBuffer();
+			buffer.append(ref.getComponent().getId()).append(' ').append(ref.getComponent().getVersion());
+			buffer.append(" -> ").append(ref.getReferencedComponent().getId()).append(' ').append(ref.getReferencedComponent().getVersion());
+			buffer.append(' ').append(ref.getMember()).append(" -> ").append(ref.getReferencedMember());
+			buffer.append(" line=").append(ref.getLineNumber());
+			buffer.append(" kind=").append(ref.getReferenceKind());
+			buffer.append(" flags=").append(ref.getReferenceFlags());
+			buffer.append(" visibility=").append(ref.getVisibility());
+			String[] messages = ref.getProblemMessages();
+			if (messages != null) {
+				for (int i = 0; i < messages.length; i++) {
+					buffer.append(" message=").append(messages[i]);
+				}
+			}
+			descriptions.add(buffer.toString());
+		}
+		Collections.sort(descriptions);
+		return descriptions;
+	}
+}
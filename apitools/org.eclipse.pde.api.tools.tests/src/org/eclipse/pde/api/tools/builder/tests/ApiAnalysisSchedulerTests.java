@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.builder.tests;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.pde.api.tools.internal.builder.ApiAnalysisScheduler;
+import org.eclipse.pde.api.tools.internal.builder.ApiAnalysisScheduler.Analysis;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiBaseline;
+import org.eclipse.pde.api.tools.model.tests.TestSuiteHelper;
+
+/**
+ * Tests the order and the independence of the analyses run by the {@link ApiAnalysisScheduler}
+ */
+public class ApiAnalysisSchedulerTests extends TestCase {
+
+	private File fBundles = null;
+	private IApiBaseline fBaseline = null;
+	private Analysis a, b, c, d;
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	protected void setUp() throws Exception {
+		super.setUp();
+		fBundles = TestSuiteHelper.getUserDirectoryPath().append("scheduler-bundles").toFile();
+		// a requires b that requires c, d requires nothing
+		createBundle("a", "b");
+		createBundle("b", "c");
+		createBundle("c", null);
+		createBundle("d", null);
+		fBaseline = TestSuiteHelper.createBaseline("scheduler", fBundles);
+		a = createAnalysis("a", new String[0]);
+		b = createAnalysis("b", new String[0]);
+		c = createAnalysis("c", new String[0]);
+		d = createAnalysis("d", new String[0]);
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	protected void tearDown() throws Exception {
+		if (fBaseline != null) {
+			fBaseline.dispose();
+		}
+		TestSuiteHelper.delete(fBundles);
+		super.tearDown();
+	}
+
+	/**
+	 * Tests that analyses of components requiring one another, directly or through other
+	 * components, are not independent
+	 */
+	public void testIndependence() {
+		assertFalse("a requires b", a.isIndependentOf(b));
+		assertFalse("a requires b", b.isIndependentOf(a));
+		assertFalse("a requires c through b", a.isIndependentOf(c));
+		assertFalse("a requires c through b", c.isIndependentOf(a));
+		assertFalse("b requires c", b.isIndependentOf(c));
+		assertTrue("a does not require d", a.isIndependentOf(d));
+		assertTrue("d does not require c", d.isIndependentOf(c));
+	}
+
+	/**
+	 * Tests that projects on the build path of a project are not independent of it
+	 * even when its component does not require theirs
+	 */
+	public void testBuildPathIndependence() throws Exception {
+		Analysis dOnC = createAnalysis("d", new String[] {"c"});
+		assertFalse("c is on the build path of d", dOnC.isIndependentOf(c));
+		assertFalse("c is on the build path of d", c.isIndependentOf(dOnC));
+		assertTrue("b is not on the build path of d", dOnC.isIndependentOf(b));
+	}
+
+	/**
+	 * Tests that released analyses run in the order they were scheduled in, skipping the
+	 * analyses that depend on a running one without holding back the ones after them
+	 */
+	public void testSelectionOrder() {
+		List<Analysis> ready = Arrays.asList(new Analysis[] {a, b, d, c});
+		List<Analysis> running = new ArrayList<Analysis>();
+		assertSame("The first released analysis should run first", a, ApiAnalysisScheduler.selectAnalysis(ready, running));
+		running.add(c);
+		assertSame("a and b depend on c, d should run", d, ApiAnalysisScheduler.selectAnalysis(ready, running));
+		running.clear();
+		running.add(d);
+		assertSame("a is independent of d", a, ApiAnalysisScheduler.selectAnalysis(ready, running));
+		running.clear();
+		running.add(a);
+		assertNull("b and c are required by a", ApiAnalysisScheduler.selectAnalysis(Arrays.asList(new Analysis[] {b, c}), running));
+		assertNull("No analysis should be selected when none is released", ApiAnalysisScheduler.selectAnalysis(Collections.EMPTY_LIST, running));
+	}
+
+	private Analysis createAnalysis(String name, String[] required) {
+		IProject[] projects = new IProject[required.length];
+		for (int i = 0; i < required.length; i++) {
+			projects[i] = getProject(required[i]);
+		}
+		return new Analysis(getProject(name), null, fBaseline.getApiComponent(name), null, projects);
+	}
+
+	private IProject getProject(String name) {
+		return ResourcesPlugin.getWorkspace().getRoot().getProject(name);
+	}
+
+	private void createBundle(String name, String required) throws IOException {
+		File metaInf = new File(new File(fBundles, name), "META-INF");
+		metaInf.mkdirs();
+		Writer writer = new OutputStreamWriter(new FileOutputStream(new File(metaInf, "MANIFEST.MF")), "UTF-8");
+		try {
+			writer.write("Manifest-Version: 1.0\n");
+			writer.write("Bundle-ManifestVersion: 2\n");
+			writer.write("Bundle-Name: " + name + "\n");
+			writer.write("Bundle-SymbolicName: " + name + "\n");
+			writer.write("Bundle-Version: 1.0.0\n");
+			if (required != null) {
+				writer.write("Require-Bundle: " + required + "\n");
+			}
+		}
+		finally {
+			writer.close();
+		}
+	}
+}
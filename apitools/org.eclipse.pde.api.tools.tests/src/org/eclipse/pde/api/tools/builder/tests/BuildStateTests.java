@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.builder.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.pde.api.tools.internal.builder.BuildState;
+import org.eclipse.pde.api.tools.internal.comparator.Delta;
+import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
+import org.eclipse.pde.api.tools.internal.provisional.comparator.IDelta;
+
+/**
+ * Tests reading and writing the API tools build state
+ */
+public class BuildStateTests extends TestCase {
+
+	/**
+	 * Tests that a build state reads back the deltas it was written with
+	 *
+	 * @throws Exception
+	 */
+	public void testRoundTrip() throws Exception {
+		BuildState state = createState();
+		BuildState read = read(write(state));
+		assertNotNull("The build state should be read", read);
+		assertEquals("Wrong build path CRC", state.getBuildPathCRC(), read.getBuildPathCRC());
+		assertEquals("Wrong breaking changes", describe(state.getBreakingChanges()), describe(read.getBreakingChanges()));
+		assertEquals("Wrong compatible changes", describe(state.getCompatibleChanges()), describe(read.getCompatibleChanges()));
+	}
+
+	/**
+	 * Tests that the delta sections of a read build state are only decoded when the deltas
+	 * of their type are needed: a corrupt section does not prevent the state from being read,
+	 * it only drops the deltas of its type once decoded
+	 *
+	 * @throws Exception
+	 */
+	public void testLazySectionDecoding() throws Exception {
+		byte[] bytes = write(createState());
+		corrupt(bytes, "p.B#bar");
+		BuildState read = read(bytes);
+		assertNotNull("The build state should be read despite the corrupt section", read);
+		assertTrue("The undecoded sections should hold breaking changes", read.hasBreakingChanges());
+		assertTrue("The undecoded sections should hold compatible changes", read.hasCompatibleChanges());
+		List<String> expected = new ArrayList<String>();
+		expected.add(describe(createDelta("p.A", "p.A#foo", IDelta.REMOVED)));
+		assertEquals("Only the breaking change of the intact section should be decoded", expected, describe(read.getBreakingChanges()));
+	}
+
+	/**
+	 * Tests that the sections that were not decoded are written back as they were read, and
+	 * that only the sections of the changed types are encoded again
+	 *
+	 * @throws Exception
+	 */
+	public void testUnchangedSectionsCopied() throws Exception {
+		byte[] bytes = write(createState());
+		assertTrue("An untouched build state should be written back as it was read", Arrays.equals(bytes, write(read(bytes))));
+
+		// a corrupt section that is never decoded is copied as it is
+		corrupt(bytes, "p.B#bar");
+		BuildState read = read(bytes);
+		read.addBreakingChange(createDelta("p.A", "p.A#baz", IDelta.REMOVED));
+		byte[] written = write(read);
+		assertTrue("The undecoded section should be copied", indexOf(written, "p.B#baX".getBytes("UTF-8")) != -1);
+		List<String> expected = new ArrayList<String>();
+		expected.add(describe(createDelta("p.A", "p.A#baz", IDelta.REMOVED)));
+		expected.add(describe(createDelta("p.A", "p.A#foo", IDelta.REMOVED)));
+		Collections.sort(expected);
+		assertEquals("Wrong breaking changes", expected, describe(read(written).getBreakingChanges()));
+	}
+
+	/**
+	 * Tests that a build state written with another version or with a corrupt header is not
+	 * read, which requires a full build
+	 *
+	 * @throws Exception
+	 */
+	public void testMismatchRequiresFullBuild() throws Exception {
+		byte[] bytes = write(createState());
+		int versionOffset = 2 + ApiPlugin.PLUGIN_ID.length() + 2 + "STATE".length();
+
+		byte[] version = (byte[]) bytes.clone();
+		version[versionOffset + 3]++;
+		assertNull("A build state of another version should not be read", read(version));
+
+		// skip the version, the header length and the header CRC
+		byte[] header = (byte[]) bytes.clone();
+		header[versionOffset + 4 + 4 + 8 + 1]++;
+		assertNull("A build state with a corrupt header should not be read", read(header));
+
+		byte[] kind = (byte[]) bytes.clone();
+		kind[2 + ApiPlugin.PLUGIN_ID.length() + 2]++;
+		try {
+			read(kind);
+			fail("A file that is not a build state should not be read");
+		}
+		catch (IOException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * @return a build state with a breaking and a compatible change for two types
+	 */
+	private BuildState createState() {
+		BuildState state = new BuildState();
+		state.setBuildPathCRC(42L);
+		state.addBreakingChange(createDelta("p.A", "p.A#foo", IDelta.REMOVED));
+		state.addCompatibleChange(createDelta("p.A", "p.A#fooAdded", IDelta.ADDED));
+		state.addBreakingChange(createDelta("p.B", "p.B#bar", IDelta.REMOVED));
+		state.addCompatibleChange(createDelta("p.B", "p.B#barAdded", IDelta.ADDED));
+		return state;
+	}
+
+	private IDelta createDelta(String typeName, String key, int kind) {
+		return new Delta(null, IDelta.CLASS_ELEMENT_TYPE, kind, IDelta.METHOD, typeName, key, key);
+	}
+
+	private byte[] write(BuildState state) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		BuildState.write(state, out);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private BuildState read(byte[] bytes) throws IOException {
+		return BuildState.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+	}
+
+	/**
+	 * Changes the last character of the given key in the delta section that holds it
+	 * @param bytes
+	 * @param key
+	 * @throws IOException
+	 */
+	private void corrupt(byte[] bytes, String key) throws IOException {
+		int index = indexOf(bytes, key.getBytes("UTF-8"));
+		assertTrue("Missing key " + key, index != -1);
+		bytes[index + key.length() - 1] = 'X';
+	}
+
+	private int indexOf(byte[] bytes, byte[] pattern) {
+		loop: for (int i = 0; i <= bytes.length - pattern.length; i++) {
+			for (int j = 0; j < pattern.length; j++) {
+				if (bytes[i + j] != pattern[j]) {
+					continue loop;
+				}
+			}
+			return i;
+		}
+		return -1;
+	}
+
+	private String describe(IDelta delta) {
+		return delta.getTypeName() + ' ' + delta.getKey() + ' ' + delta.getKind() + ' ' + delta.getFlags() + ' ' + delta.getElementType();
+	}
+
+	private List<String> describe(IDelta[] deltas) {
+		List<String> descriptions = new ArrayList<String>(deltas.length);
+		for (int i = 0; i < deltas.length; i++) {
+			descriptions.add(describe(deltas[i]));
+		}
+		Collections.sort(descriptions);
+		return descriptions;
+	}
+}
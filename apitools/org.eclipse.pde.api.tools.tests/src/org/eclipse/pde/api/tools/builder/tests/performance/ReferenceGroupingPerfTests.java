@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.builder.tests.performance;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.pde.api.tools.internal.builder.Reference;
+import org.eclipse.pde.api.tools.internal.builder.ReferenceResolver;
+import org.eclipse.pde.api.tools.internal.provisional.builder.IReference;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiType;
+import org.eclipse.pde.api.tools.model.tests.TestSuiteHelper;
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.PerformanceTestCase;
+
+/**
+ * Measures grouping references by the member they reference, as done by the
+ * {@link ReferenceResolver} before resolving them. The string keys the resolver
+ * used to build for every reference are measured as well for comparison.
+ * <p>
+ * The heap used once the references are grouped is recorded along with the time
+ * so that the garbage created by each approach can be compared.
+ * </p>
+ *
+ * @since 1.0.500
+ */
+public class ReferenceGroupingPerfTests extends PerformanceTestCase {
+
+	private static final int REFERENCE_COUNT = 500000;
+	private static final int TYPE_COUNT = 500;
+	private static final int MEMBER_COUNT = 20;
+
+	private List<IReference> fReferences;
+
+	/**
+	 * @return the tests for this class
+	 */
+	public static Test suite() {
+		return new TestSuite(ReferenceGroupingPerfTests.class);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.test.performance.PerformanceTestCase#setUp()
+	 */
+	protected void setUp() throws Exception {
+		super.setUp();
+		IApiType origin = TestSuiteHelper.createTestingApiType("baseline", "component.a", "a.A", "La/A;", null, 0, null);
+		fReferences = new ArrayList<IReference>(REFERENCE_COUNT);
+		for (int i = 0; i < REFERENCE_COUNT; i++) {
+			// new strings for every reference, as references extracted from different class files do not share names
+			String type = new String("p.Type" + (i % TYPE_COUNT));
+			String member = new String("member" + (i % MEMBER_COUNT));
+			switch (i % 3) {
+				case 0:
+					fReferences.add(Reference.typeReference(origin, type, IReference.REF_PARAMETER));
+					break;
+				case 1:
+					fReferences.add(Reference.fieldReference(origin, type, member, IReference.REF_GETFIELD));
+					break;
+				default:
+					fReferences.add(Reference.methodReference(origin, type, member, new String("(I)V"), IReference.REF_VIRTUALMETHOD));
+			}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.test.performance.PerformanceTestCase#tearDown()
+	 */
+	protected void tearDown() throws Exception {
+		fReferences = null;
+		super.tearDown();
+	}
+
+	/**
+	 * Groups the references using {@link ReferenceResolver#groupReferences(List, List)}
+	 *
+	 * @throws Exception
+	 */
+	public void testGroupReferences() throws Exception {
+		tagAsSummary("Group references by signature key", new Dimension[] {Dimension.ELAPSED_PROCESS, Dimension.USED_JAVA_HEAP});
+		int groups = 0;
+		// WARM-UP
+		for (int i = 0; i < 3; i++) {
+			groups = ReferenceResolver.groupReferences(fReferences, new ArrayList<IReference>()).size();
+		}
+		// TEST
+		for (int i = 0; i < 10; i++) {
+			System.gc();
+			startMeasuring();
+			Map<?, ?> map = ReferenceResolver.groupReferences(fReferences, new ArrayList<IReference>());
+			stopMeasuring();
+			assertEquals("Wrong number of groups", groups, map.size());
+		}
+		commitMeasurements();
+		assertPerformance();
+		// the member name is determined by the type name, there is one type, field and method group per type
+		assertEquals("Wrong number of groups", 3 * TYPE_COUNT, groups);
+	}
+
+	/**
+	 * Groups the references using a string key built for every reference, the way
+	 * references were grouped before {@link ReferenceResolver#groupReferences(List, List)}
+	 *
+	 * @throws Exception
+	 */
+	public void testGroupReferencesStringKeys() throws Exception {
+		tagAsSummary("Group references by string key", new Dimension[] {Dimension.ELAPSED_PROCESS, Dimension.USED_JAVA_HEAP});
+		int groups = 0;
+		// WARM-UP
+		for (int i = 0; i < 3; i++) {
+			groups = groupByStringKeys(fReferences).size();
+		}
+		// TEST
+		for (int i = 0; i < 10; i++) {
+			System.gc();
+			startMeasuring();
+			Map<String, List<IReference>> map = groupByStringKeys(fReferences);
+			stopMeasuring();
+			assertEquals("Wrong number of groups", groups, map.size());
+		}
+		commitMeasurements();
+		assertPerformance();
+		assertEquals("Both approaches should find the same groups", ReferenceResolver.groupReferences(fReferences, new ArrayList<IReference>()).size(), groups);
+	}
+
+	private Map<String, List<IReference>> groupByStringKeys(List<IReference> references) throws CoreException {
+		Map<String, List<IReference>> map = new HashMap<String, List<IReference>>(references.size());
+		for (Iterator<IReference> iter = references.iterator(); iter.hasNext();) {
+			IReference ref = iter.next();
+			StringBuffer buffer = new StringBuffer();
+			buffer.append(ref.getMember().getApiComponent().getSymbolicName());
+			buffer.append("#");
+			buffer.append(ref.getReferencedTypeName());
+			switch (ref.getReferenceType()) {
+				case IReference.T_FIELD_REFERENCE:
+					buffer.append("#");
+					buffer.append(ref.getReferencedMemberName());
+					break;
+				case IReference.T_METHOD_REFERENCE:
+					buffer.append("#");
+					buffer.append(ref.getReferencedMemberName());
+					buffer.append("#");
+					buffer.append(ref.getReferencedSignature());
+					break;
+			}
+			String key = buffer.toString();
+			List<IReference> refs = map.get(key);
+			if (refs == null) {
+				refs = new ArrayList<IReference>(20);
+				map.put(key, refs);
+			}
+			refs.add(ref);
+		}
+		return map;
+	}
+}
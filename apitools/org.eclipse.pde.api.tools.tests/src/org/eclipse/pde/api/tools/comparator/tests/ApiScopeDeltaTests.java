@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009 IBM Corporation and others.
+ * Copyright (c) 2009, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,6 +10,10 @@
  *******************************************************************************/
 package org.eclipse.pde.api.tools.comparator.tests;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import junit.framework.Test;
 import junit.framework.TestSuite;
 
@@ -243,5 +247,45 @@ public class ApiScopeDeltaTests extends DeltaTestSetup {
 			// expected as scope is null
 		}
 	}
-}
+	/**
+	 * Tests that comparing the components of a scope concurrently gives the same deltas
+	 * as comparing them one after the other
+	 */
+	public void test8() throws Exception {
+		int count = 6;
+		for (int i = 0; i < count; i++) {
+			deployRenamedBundle("test2", BEFORE, BUNDLE_NAME + i);
+			deployRenamedBundle("test2", AFTER, BUNDLE_NAME + i);
+		}
+		IApiBaseline before = getBeforeState();
+		IApiBaseline after = getAfterState();
+		IApiComponent[] apiComponents = after.getApiComponents();
+		ApiScope scope = new ApiScope();
+		for (int i = 0, max = apiComponents.length; i < max; i++) {
+			scope.addElement(apiComponents[i]);
+		}
+		assertTrue("Missing components", scope.getApiElements().length >= count);
+		IDelta serial = ApiComparator.compare(scope, before, VisibilityModifiers.API, true, false, 1, null);
+		IDelta parallel = ApiComparator.compare(scope, before, VisibilityModifiers.API, true, false, 4, null);
+		assertNotNull("No serial delta", serial);
+		assertNotNull("No parallel delta", parallel);
+		List<String> serialDeltas = describe(serial);
+		assertEquals("Wrong size", count, serialDeltas.size());
+		assertEquals("The parallel comparison should give the same deltas", serialDeltas, describe(parallel));
+	}
 
+	/**
+	 * Returns a sorted description of the leaf deltas of the given delta
+	 * @param delta
+	 * @return the sorted descriptions
+	 */
+	private List<String> describe(IDelta delta) {
+		IDelta[] leaves = collectLeaves(delta);
+		List<String> descriptions = new ArrayList<String>(leaves.length);
+		for (int i = 0; i < leaves.length; i++) {
+			descriptions.add(leaves[i].getComponentVersionId() + ' ' + leaves[i].getKey() + ' ' + leaves[i].getKind() + ' ' + leaves[i].getFlags() + ' ' + leaves[i].getElementType());
+		}
+		Collections.sort(descriptions);
+		return descriptions;
+	}
+}
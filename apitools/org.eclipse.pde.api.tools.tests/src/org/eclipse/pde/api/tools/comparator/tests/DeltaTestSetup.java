@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2009 IBM Corporation and others.
+ * Copyright (c) 2007, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,6 +11,9 @@
 package org.eclipse.pde.api.tools.comparator.tests;
 
 import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
@@ -25,6 +28,7 @@ import org.eclipse.pde.api.tools.internal.builder.BuilderMessages;
 import org.eclipse.pde.api.tools.internal.provisional.comparator.ApiComparator;
 import org.eclipse.pde.api.tools.internal.provisional.comparator.IDelta;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiBaseline;
+import org.eclipse.pde.api.tools.internal.util.Util;
 import org.eclipse.pde.api.tools.model.tests.TestSuiteHelper;
 
 public abstract class DeltaTestSetup extends TestCase {
@@ -170,6 +174,27 @@ public abstract class DeltaTestSetup extends TestCase {
 		copyResources(testName, name, destinationPath.toOSString());
 	}
 
+	/**
+	 * Deploys the given test under the given bundle name, changing the symbolic name in the
+	 * manifest of the deployed bundle so the same test can be deployed as several bundles
+	 * 
+	 * @param testName the given test name
+	 * @param name the given state name
+	 * @param bundleName the given bundle name
+	 * @throws IOException
+	 */
+	protected void deployRenamedBundle(String testName, String name, String bundleName) throws IOException {
+		deployBundle(testName, name, bundleName);
+		File manifest = WORKSPACE_ROOT.append(name).append(bundleName).append("META-INF").append("MANIFEST.MF").toFile();
+		String contents = Util.getFileContentAsString(manifest);
+		Writer writer = new FileWriter(manifest);
+		try {
+			writer.write(contents.replace("Bundle-SymbolicName: " + BUNDLE_NAME, "Bundle-SymbolicName: " + bundleName));
+		} finally {
+			writer.close();
+		}
+	}
+
 	protected void deployBundles(String testName) {
 		deployBundle(testName, BEFORE);
 		deployBundle(testName, AFTER);
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 IBM Corporation and others.
+ * Copyright (c) 2008, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,8 +10,10 @@
  *******************************************************************************/
 package org.eclipse.pde.api.tools.model.tests;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 
+import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
@@ -43,6 +45,15 @@ import org.eclipse.pde.api.tools.tests.util.FileUtils;
  */
 public class ApiFilterStoreTests extends AbstractApiTest {
 	
+	/**
+	 * Exposes the matching of problems of the {@link FilterStore}
+	 */
+	static class MatchingFilterStore extends FilterStore {
+		boolean matches(IApiProblem filterProblem, IApiProblem problem) {
+			return problemsMatch(filterProblem, problem);
+		}
+	}
+	
 	private static final IPath SRC_LOC = TestSuiteHelper.getPluginDirectoryPath().append("test-source");
 	private static final IPath XML_LOC = TestSuiteHelper.getPluginDirectoryPath().append("test-xml");
 	private static final IPath PLUGIN_LOC = TestSuiteHelper.getPluginDirectoryPath().append("test-plugins");
@@ -256,4 +267,80 @@ public class ApiFilterStoreTests extends AbstractApiTest {
 			fail(e.getMessage());
 		}
 	}
+	
+	/**
+	 * Tests that a filter applies again once the resource it is defined on is created again
+	 */
+	public void testFilterOfRecreatedResource() throws Exception {
+		IApiComponent component = getProjectApiComponent(TESTING_PLUGIN_PROJECT_NAME);
+		assertNotNull("the testing project api component must exist", component);
+		IProject project = getTestingJavaProject(TESTING_PLUGIN_PROJECT_NAME).getProject();
+		IFile file = project.getFile(new Path("src/x/y/z/C4.java"));
+		assertTrue("the resource src/x/y/z/C4.java must exist", file.exists());
+		IApiProblem problem = ApiProblemFactory.newApiProblem(file.getProjectRelativePath().toPortableString(), null, null, null, null, -1, -1, -1, IApiProblem.CATEGORY_USAGE, 0, RestrictionModifiers.NO_IMPLEMENT, IApiProblem.NO_FLAGS);
+		IApiFilterStore store = component.getFilterStore();
+		store.addFiltersFor(new IApiProblem[] {problem});
+		assertTrue("src/x/y/z/C4.java should have a filter", store.isFiltered(problem));
+		
+		String contents = FileUtils.readFromFile(file.getLocation().toOSString());
+		file.delete(true, new NullProgressMonitor());
+		assertFalse("the problem of a missing resource should not be filtered", store.isFiltered(problem));
+		file.create(new ByteArrayInputStream(contents.getBytes()), true, new NullProgressMonitor());
+		assertTrue("the filter should apply to the created resource", store.isFiltered(problem));
+		store.removeFilters(new IApiProblemFilter[] {ApiProblemFactory.newProblemFilter(component.getSymbolicName(), problem, null)});
+	}
+	
+	/**
+	 * Tests that problems the filter store matches have the same key in the index of the filters,
+	 * whether the message arguments are simple or qualified names
+	 */
+	public void testMatchingProblemsHaveSameKey() {
+		MatchingFilterStore store = new MatchingFilterStore();
+		String[][] matching = new String[][] {
+				{"C4", "C4"},
+				{"C4", "x.y.z.C4"},
+				{"x.y.z.C4", "C4"},
+				{"x.y.z.C4", "x.y.z.C4"},
+		};
+		for (int i = 0; i < matching.length; i++) {
+			IApiProblem filter = newProblem("x.y.z.C4", new String[] {matching[i][0], "m()"}, RestrictionModifiers.NO_IMPLEMENT);
+			IApiProblem problem = newProblem("x.y.z.C4", new String[] {matching[i][1], "m()"}, RestrictionModifiers.NO_IMPLEMENT);
+			assertTrue("the problems should match: " + matching[i][0] + " " + matching[i][1], store.matches(filter, problem));
+			assertEquals("the problems should have the same key: " + matching[i][0] + " " + matching[i][1], ApiFilterStore.getKey(filter), ApiFilterStore.getKey(problem));
+		}
+		IApiProblem filter = newProblem(null, new String[0], RestrictionModifiers.NO_IMPLEMENT);
+		IApiProblem problem = newProblem(null, new String[0], RestrictionModifiers.NO_IMPLEMENT);
+		assertTrue("problems without type name should match", store.matches(filter, problem));
+		assertEquals("problems without type name should have the same key", ApiFilterStore.getKey(filter), ApiFilterStore.getKey(problem));
+	}
+	
+	/**
+	 * Tests that problems the filter store does not match have different keys in the index of
+	 * the filters, except for qualified names that only differ by their qualification
+	 */
+	public void testDifferentProblemsHaveDifferentKeys() {
+		MatchingFilterStore store = new MatchingFilterStore();
+		IApiProblem filter = newProblem("x.y.z.C4", new String[] {"C4", "m()"}, RestrictionModifiers.NO_IMPLEMENT);
+		IApiProblem[] problems = new IApiProblem[] {
+				newProblem("x.y.z.C4", new String[] {"C5", "m()"}, RestrictionModifiers.NO_IMPLEMENT),
+				newProblem("x.y.z.C4", new String[] {"x.y.z.C5", "m()"}, RestrictionModifiers.NO_IMPLEMENT),
+				newProblem("x.y.z.C4", new String[] {"C4"}, RestrictionModifiers.NO_IMPLEMENT),
+				newProblem("x.y.z.C5", new String[] {"C4", "m()"}, RestrictionModifiers.NO_IMPLEMENT),
+				newProblem(null, new String[] {"C4", "m()"}, RestrictionModifiers.NO_IMPLEMENT),
+				newProblem("x.y.z.C4", new String[] {"C4", "m()"}, RestrictionModifiers.NO_EXTEND),
+		};
+		for (int i = 0; i < problems.length; i++) {
+			assertFalse("the problems should not match: " + problems[i], store.matches(filter, problems[i]));
+			assertTrue("the problems should have different keys: " + problems[i], ApiFilterStore.getKey(filter) != ApiFilterStore.getKey(problems[i]));
+		}
+		// qualified names are only compared once the key matched
+		filter = newProblem("x.y.z.C4", new String[] {"a.C4"}, RestrictionModifiers.NO_IMPLEMENT);
+		IApiProblem problem = newProblem("x.y.z.C4", new String[] {"b.C4"}, RestrictionModifiers.NO_IMPLEMENT);
+		assertFalse("qualified names with different qualifications should not match", store.matches(filter, problem));
+		assertEquals("qualified names with the same simple name should have the same key", ApiFilterStore.getKey(filter), ApiFilterStore.getKey(problem));
+	}
+	
+	private IApiProblem newProblem(String typeName, String[] arguments, int kind) {
+		return ApiProblemFactory.newApiProblem("src/x/y/z/C4.java", typeName, arguments, null, null, -1, -1, -1, IApiProblem.CATEGORY_USAGE, IElementDescriptor.TYPE, kind, IApiProblem.NO_FLAGS);
+	}
 }
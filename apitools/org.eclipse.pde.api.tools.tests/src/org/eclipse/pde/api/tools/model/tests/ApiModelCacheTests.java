@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009 IBM Corporation and others.
+ * Copyright (c) 2009, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,6 +13,7 @@ package org.eclipse.pde.api.tools.model.tests;
 import junit.framework.TestCase;
 
 import org.eclipse.pde.api.tools.internal.model.ApiModelCache;
+import org.eclipse.pde.api.tools.internal.model.ApiModelCache.Statistics;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiElement;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiType;
 
@@ -161,4 +162,58 @@ public class ApiModelCacheTests extends TestCase {
 		assertTrue("The type 'a.b.c.testee1' should have been removed from the cache", ApiModelCache.getCache().removeElementInfo(element));
 		assertTrue("The cache should be empty", ApiModelCache.getCache().isEmpty());
 	}
+	
+	/**
+	 * Tests that lookups are counted as hits and misses per component
+	 * 
+	 * @throws Exception
+	 */
+	public void testStatistics() throws Exception {
+		ApiModelCache cache = ApiModelCache.getCache();
+		cache.resetStatistics();
+		cacheType("a.b.c.stats1");
+		cacheType("a.b.c.stats1$inner");
+		assertNotNull("a.b.c.stats1 should be cached", cache.getElementInfo(TEST_BASELINE_ID, TEST_COMP_ID, "a.b.c.stats1", IApiElement.TYPE));
+		assertNotNull("a.b.c.stats1$inner should be cached", cache.getElementInfo(TEST_BASELINE_ID, TEST_COMP_ID, "a.b.c.stats1$inner", IApiElement.TYPE));
+		assertNull("a.b.c.stats2 should not be cached", cache.getElementInfo(TEST_BASELINE_ID, TEST_COMP_ID, "a.b.c.stats2", IApiElement.TYPE));
+		Statistics stats = cache.getStatistics(TEST_BASELINE_ID, TEST_COMP_ID);
+		assertEquals("Wrong number of hits", 2, stats.getHits());
+		assertEquals("Wrong number of misses", 1, stats.getMisses());
+		assertEquals("Wrong number of evictions", 0, stats.getEvictions());
+		assertEquals("The baseline statistics should include the component", 2, cache.getStatistics(TEST_BASELINE_ID, null).getHits());
+		assertEquals("Wrong components", TEST_COMP_ID, cache.getStatisticsComponents(TEST_BASELINE_ID)[0]);
+		cache.resetStatistics();
+		assertEquals("The statistics should have been reset", 0, cache.getStatistics(TEST_BASELINE_ID, TEST_COMP_ID).getHits());
+	}
+	
+	/**
+	 * Tests that the least recently used types are evicted once the cache is over its size
+	 * 
+	 * @throws Exception
+	 */
+	public void testSizeEviction() throws Exception {
+		ApiModelCache cache = ApiModelCache.getCache();
+		long max = cache.getMaxTypeCacheSize();
+		cache.resetStatistics();
+		try {
+			cacheType("a.b.c.evict0");
+			long size = cache.getTypeCacheSize();
+			assertTrue("The cached type should have a size", size > 0);
+			// room for three types of the same size
+			cache.setMaxTypeCacheSize(size * 3);
+			cacheType("a.b.c.evict1");
+			cacheType("a.b.c.evict2");
+			// touch the first type so that the second one is the least recently used
+			assertNotNull("a.b.c.evict0 should be cached", cache.getElementInfo(TEST_BASELINE_ID, TEST_COMP_ID, "a.b.c.evict0", IApiElement.TYPE));
+			cacheType("a.b.c.evict3");
+			assertTrue("The cache should be within its limit", cache.getTypeCacheSize() <= size * 3);
+			assertNull("a.b.c.evict1 should have been evicted", cache.getElementInfo(TEST_BASELINE_ID, TEST_COMP_ID, "a.b.c.evict1", IApiElement.TYPE));
+			assertNotNull("a.b.c.evict0 should still be cached", cache.getElementInfo(TEST_BASELINE_ID, TEST_COMP_ID, "a.b.c.evict0", IApiElement.TYPE));
+			assertNotNull("a.b.c.evict3 should be cached", cache.getElementInfo(TEST_BASELINE_ID, TEST_COMP_ID, "a.b.c.evict3", IApiElement.TYPE));
+			assertEquals("Wrong number of evictions", 1, cache.getStatistics(TEST_BASELINE_ID, TEST_COMP_ID).getEvictions());
+		}
+		finally {
+			cache.setMaxTypeCacheSize(max);
+		}
+	}
 }
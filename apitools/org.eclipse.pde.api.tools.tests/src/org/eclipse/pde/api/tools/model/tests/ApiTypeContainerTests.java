@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2008 IBM Corporation and others.
+ * Copyright (c) 2007, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,12 +11,21 @@
 package org.eclipse.pde.api.tools.model.tests;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 import junit.framework.Test;
 import junit.framework.TestCase;
@@ -24,11 +33,19 @@ import junit.framework.TestSuite;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.pde.api.tools.internal.model.AbstractApiTypeRoot;
+import org.eclipse.pde.api.tools.internal.model.ApiType;
 import org.eclipse.pde.api.tools.internal.model.ArchiveApiTypeContainer;
+import org.eclipse.pde.api.tools.internal.model.ArchiveHandlePool;
 import org.eclipse.pde.api.tools.internal.model.DirectoryApiTypeContainer;
+import org.eclipse.pde.api.tools.internal.model.NestedArchiveApiTypeContainer;
+import org.eclipse.pde.api.tools.internal.model.TypeStructureBuilder;
+import org.eclipse.pde.api.tools.internal.model.TypeStructureCache;
+import org.eclipse.pde.api.tools.internal.model.TypeStructureCache.ArchiveStructures;
 import org.eclipse.pde.api.tools.internal.provisional.model.ApiTypeContainerVisitor;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeContainer;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeRoot;
+import org.eclipse.pde.api.tools.internal.util.Util;
 
 /**
  * Tests the class file containers
@@ -236,4 +253,260 @@ public class ApiTypeContainerTests extends TestCase {
 		assertEquals("Visited wrong number of packages", expectedPkgOrder.size(), visit.size());
 		assertEquals("Visit order incorrect", expectedPkgOrder, visit);		
 	}
+	
+	/**
+	 * Tests that reading several class files from the same archive shares one pooled handle
+	 * 
+	 * @throws Exception
+	 */
+	public void testArchiveHandlePoolSharing() throws Exception {
+		IApiTypeContainer container = buildArchiveContainer();
+		ArchiveHandlePool pool = ArchiveHandlePool.getPool();
+		container.close();
+		pool.resetCounters();
+		IApiTypeRoot root = container.findTypeRoot("a.ClassA");
+		assertNotNull("Missing type a.ClassA", root);
+		assertNotNull("Missing contents for a.ClassA", ((AbstractApiTypeRoot) root).getContents());
+		root = container.findTypeRoot("a.b.c.ClassC");
+		assertNotNull("Missing type a.b.c.ClassC", root);
+		assertNotNull("Missing contents for a.b.c.ClassC", ((AbstractApiTypeRoot) root).getContents());
+		assertTrue("The archive should have been opened at most once", pool.getMissCount() <= 1);
+		assertTrue("Later reads should have used the pooled handle", pool.getHitCount() >= 1);
+		container.close();
+	}
+	
+	/**
+	 * Tests that acquired handles are reference counted and idle handles are evicted
+	 * once the pool is over its limit
+	 * 
+	 * @throws Exception
+	 */
+	public void testArchiveHandlePoolEviction() throws Exception {
+		IPath path = TestSuiteHelper.getPluginDirectoryPath();
+		String sample = path.append("test-jars").append("sample.jar").toOSString();
+		String other = path.append("test-plugins").append("component.a_1.0.0.jar").toOSString();
+		assertTrue("Missing jar file", new File(other).exists());
+		ArchiveHandlePool pool = ArchiveHandlePool.getPool();
+		int max = pool.getMaxOpenHandles();
+		pool.closeAll();
+		try {
+			pool.setMaxOpenHandles(1);
+			ZipFile first = pool.acquire(sample);
+			ZipFile second = pool.acquire(sample);
+			assertSame("The same handle should be shared", first, second);
+			ZipFile third = pool.acquire(other);
+			assertEquals("Handles in use must not be evicted", 2, pool.getOpenHandleCount());
+			pool.release(first);
+			pool.release(second);
+			assertEquals("The idle handle should have been evicted", 1, pool.getOpenHandleCount());
+			assertNotNull("The handle in use must stay open", third.getEntry("META-INF/MANIFEST.MF"));
+			pool.release(third);
+		}
+		finally {
+			pool.setMaxOpenHandles(max);
+			pool.closeAll();
+		}
+	}
+	
+	/**
+	 * Tests that a handle closed while in use stays open for all of its users after its
+	 * archive is opened again, and is closed on its own last release
+	 * 
+	 * @throws Exception
+	 */
+	public void testArchiveHandlePoolCloseInUse() throws Exception {
+		IPath path = TestSuiteHelper.getPluginDirectoryPath();
+		String sample = path.append("test-jars").append("sample.jar").toOSString();
+		ArchiveHandlePool pool = ArchiveHandlePool.getPool();
+		pool.closeAll();
+		try {
+			pool.resetCounters();
+			ZipFile first = pool.acquire(sample);
+			ZipFile second = pool.acquire(sample);
+			pool.close(sample);
+			ZipFile reopened = pool.acquire(sample);
+			assertNotSame("The closed handle should not be shared", first, reopened);
+			assertEquals("Wrong number of archives opened", 2, pool.getMissCount());
+			assertEquals("Wrong number of shared handles", 1, pool.getHitCount());
+			pool.release(first);
+			assertNotNull("The detached handle must stay open while in use", second.getEntry("a/ClassA.class"));
+			pool.release(second);
+			try {
+				second.getEntry("a/ClassA.class");
+				fail("The detached handle should be closed on its last release");
+			}
+			catch(IllegalStateException e) {
+				//expected
+			}
+			assertNotNull("The reopened handle must stay open", reopened.getEntry("a/ClassA.class"));
+			pool.release(reopened);
+		}
+		finally {
+			pool.closeAll();
+		}
+	}
+	
+	/**
+	 * Tests that type structures read back from the type structure cache are the ones
+	 * built from the class files
+	 * 
+	 * @throws Exception
+	 */
+	public void testArchiveTypeStructureCache() throws Exception {
+		IPath path = TestSuiteHelper.getPluginDirectoryPath();
+		String sample = path.append("test-jars").append("sample.jar").toOSString();
+		IApiTypeContainer container = buildArchiveContainer();
+		String[] names = new String[] {"a.ClassA", "a.ClassB", "a.ClassB$InsideB", "a.b.c.ClassC", "a.b.c.InterfaceC"};
+		TypeStructureCache cache = TypeStructureCache.getCache();
+		ArchiveStructures structures = cache.getStructures(sample);
+		assertNotNull("The structures of the archive should be cached", structures);
+		Map<String, String> expected = new HashMap<String, String>();
+		for (int i = 0; i < names.length; i++) {
+			IApiTypeRoot root = container.findTypeRoot(names[i]);
+			assertNotNull("Missing type " + names[i], root);
+			ApiType type = (ApiType) TypeStructureBuilder.buildTypeStructure(((AbstractApiTypeRoot) root).getContents(), null, root);
+			expected.put(names[i], type.toString());
+			structures.record(root.getName(), type);
+		}
+		// forget the recorded structures so that they are read from disk
+		cache.save();
+		structures = cache.getStructures(sample);
+		for (int i = 0; i < names.length; i++) {
+			IApiTypeRoot root = container.findTypeRoot(names[i]);
+			ApiType type = structures.read(root.getName(), null, root);
+			assertNotNull("The structure of " + names[i] + " should be cached", type);
+			assertEquals("Wrong cached structure for " + names[i], expected.get(names[i]), type.toString());
+			assertEquals("Wrong simple name for " + names[i], root.getStructure().getSimpleName(), type.getSimpleName());
+			assertEquals("Wrong member type flag for " + names[i], root.getStructure().isMemberType(), type.isMemberType());
+		}
+		container.close();
+	}
+	
+	/**
+	 * Tests reading the class files of archives nested in an archive, stored with
+	 * and without compression, without extracting them
+	 * 
+	 * @throws Exception
+	 */
+	public void testNestedArchiveVisitClassFiles() throws Exception {
+		IPath path = TestSuiteHelper.getPluginDirectoryPath();
+		File sample = path.append("test-jars").append("sample.jar").toFile();
+		File outer = File.createTempFile("nested", ".jar");
+		try {
+			FileInputStream input = new FileInputStream(sample);
+			byte[] bytes = null;
+			try {
+				bytes = Util.getInputStreamAsByteArray(input, -1);
+			}
+			finally {
+				input.close();
+			}
+			ZipOutputStream stream = new ZipOutputStream(new FileOutputStream(outer));
+			try {
+				addEntry(stream, "lib/stored.jar", bytes, ZipEntry.STORED);
+				addEntry(stream, "lib/deflated.jar", bytes, ZipEntry.DEFLATED);
+			}
+			finally {
+				stream.close();
+			}
+			String[] names = new String[] {"lib/stored.jar", "lib/deflated.jar"};
+			for (int i = 0; i < names.length; i++) {
+				IApiTypeContainer container = new NestedArchiveApiTypeContainer(null, outer.getAbsolutePath(), names[i]);
+				doTestPackageNames(container);
+				doTestVisitClassFiles(container);
+				IApiTypeRoot root = container.findTypeRoot("a.b.c.ClassC");
+				assertNotNull("Missing type a.b.c.ClassC", root);
+				assertNotNull("Missing contents for a.b.c.ClassC", ((AbstractApiTypeRoot) root).getContents());
+				container.close();
+				// the class files can still be read once the container is closed
+				assertNotNull("Missing contents for a.b.c.ClassC", ((AbstractApiTypeRoot) root).getContents());
+				assertNull("Unexpected type", container.findTypeRoot("a.b.c.Missing"));
+				container.close();
+			}
+		}
+		finally {
+			ArchiveHandlePool.getPool().close(outer.getAbsolutePath());
+			outer.delete();
+		}
+	}
+	
+	/**
+	 * Tests reading the class files of a folder of an archive, such as a folder on the
+	 * <code>Bundle-ClassPath</code> of a jar'd bundle, without extracting it
+	 * 
+	 * @throws Exception
+	 */
+	public void testArchiveFolderVisitClassFiles() throws Exception {
+		IPath path = TestSuiteHelper.getPluginDirectoryPath();
+		File sample = path.append("test-jars").append("sample.jar").toFile();
+		File outer = File.createTempFile("folder", ".jar");
+		try {
+			ZipOutputStream stream = new ZipOutputStream(new FileOutputStream(outer));
+			try {
+				ZipFile zip = new ZipFile(sample);
+				try {
+					for (Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements();) {
+						ZipEntry entry = entries.nextElement();
+						if (!entry.isDirectory()) {
+							InputStream input = zip.getInputStream(entry);
+							byte[] bytes = null;
+							try {
+								bytes = Util.getInputStreamAsByteArray(input, -1);
+							}
+							finally {
+								input.close();
+							}
+							addEntry(stream, "bin/" + entry.getName(), bytes, ZipEntry.DEFLATED);
+							// a folder whose name starts with the name of the folder read
+							addEntry(stream, "binary/" + entry.getName(), bytes, ZipEntry.DEFLATED);
+						}
+					}
+				}
+				finally {
+					zip.close();
+				}
+			}
+			finally {
+				stream.close();
+			}
+			IApiTypeContainer container = new ArchiveApiTypeContainer(null, outer.getAbsolutePath(), "bin");
+			assertEquals("Wrong container type", IApiTypeContainer.DIRECTORY, container.getContainerType());
+			doTestPackageNames(container);
+			doTestVisitClassFiles(container);
+			IApiTypeRoot root = container.findTypeRoot("a.b.c.ClassC");
+			assertNotNull("Missing type a.b.c.ClassC", root);
+			assertNotNull("Missing contents for a.b.c.ClassC", ((AbstractApiTypeRoot) root).getContents());
+			assertNull("Types outside of the folder should not be found", container.findTypeRoot("bin.a.b.c.ClassC"));
+			assertNull("Types outside of the folder should not be found", container.findTypeRoot("binary.a.b.c.ClassC"));
+			container.close();
+		}
+		finally {
+			ArchiveHandlePool.getPool().close(outer.getAbsolutePath());
+			outer.delete();
+		}
+	}
+	
+	/**
+	 * Adds an entry with the given contents to a zip stream
+	 * 
+	 * @param stream the stream
+	 * @param name the name of the entry
+	 * @param bytes the contents of the entry
+	 * @param method the compression method of the entry
+	 * @throws IOException
+	 */
+	private void addEntry(ZipOutputStream stream, String name, byte[] bytes, int method) throws IOException {
+		ZipEntry entry = new ZipEntry(name);
+		entry.setMethod(method);
+		if (method == ZipEntry.STORED) {
+			CRC32 crc = new CRC32();
+			crc.update(bytes);
+			entry.setCrc(crc.getValue());
+			entry.setSize(bytes.length);
+			entry.setCompressedSize(bytes.length);
+		}
+		stream.putNextEntry(entry);
+		stream.write(bytes);
+		stream.closeEntry();
+	}
 }
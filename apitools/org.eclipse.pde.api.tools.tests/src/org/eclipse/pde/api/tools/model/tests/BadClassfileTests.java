@@ -146,6 +146,7 @@ public class BadClassfileTests extends TestCase {
 			public void reportNotSearched(IApiElement[] elements) {}
 			public void reportMetadata(IMetadata data) {}
 			public void reportCounts() {}
+			public void reportElementDone(IApiElement element) {}
 		};
 		engine.search(baseline, requestor, reporter, null);
 	}
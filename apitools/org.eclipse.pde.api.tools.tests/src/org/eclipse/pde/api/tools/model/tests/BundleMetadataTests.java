@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.model.tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.pde.api.tools.internal.model.ArchiveHandlePool;
+import org.eclipse.pde.api.tools.internal.model.BundleComponent;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiBaseline;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiComponent;
+import org.eclipse.pde.api.tools.internal.util.Util;
+import org.eclipse.pde.internal.core.PDEStateHelper;
+
+/**
+ * Tests that the metadata a {@link BundleComponent} reads from its bundle in a single pass
+ * is the same as the manifest and <code>.api_description</code> read on their own
+ *
+ * @since 1.0.500
+ */
+public class BundleMetadataTests extends TestCase {
+
+	/**
+	 * A bundle component that exposes the manifest it read and the previous read of its
+	 * <code>.api_description</code>
+	 */
+	static class MetadataComponent extends BundleComponent {
+		MetadataComponent(IApiBaseline baseline, String location) throws CoreException {
+			super(baseline, location, 0);
+		}
+		Map readManifest() throws CoreException {
+			return getManifest();
+		}
+		String readApiDescription() throws IOException {
+			return loadApiDescription(new File(getLocation()));
+		}
+	}
+
+	public static Test suite() {
+		return new TestSuite(BundleMetadataTests.class);
+	}
+
+	public BundleMetadataTests() {
+		super();
+	}
+
+	public BundleMetadataTests(String name) {
+		super(name);
+	}
+
+	/**
+	 * Tests a jar'd bundle with an <code>.api_description</code>
+	 *
+	 * @throws Exception
+	 */
+	public void testArchiveWithApiDescription() throws Exception {
+		doTestMetadata(getBundle("test-plugins-with-desc", "component.a_1.0.0.jar"), true);
+	}
+
+	/**
+	 * Tests a jar'd bundle without an <code>.api_description</code>
+	 *
+	 * @throws Exception
+	 */
+	public void testArchiveWithoutApiDescription() throws Exception {
+		doTestMetadata(getBundle("test-plugins", "component.b_1.0.0.jar"), false);
+	}
+
+	/**
+	 * Tests a jar'd bundle with a <code>Bundle-ClassPath</code>
+	 *
+	 * @throws Exception
+	 */
+	public void testArchiveWithClasspath() throws Exception {
+		doTestMetadata(getBundle("test-nested-jars", "component.a_1.0.0.jar"), false);
+	}
+
+	/**
+	 * Tests a bundle in a directory with an <code>.api_description</code>
+	 *
+	 * @throws Exception
+	 */
+	public void testDirectoryWithApiDescription() throws Exception {
+		File jar = getBundle("test-plugins-with-desc", "component.a_1.0.0.jar");
+		File dir = new File(TestSuiteHelper.getUserDirectoryPath().toFile(), "bundle-metadata-tests");
+		try {
+			Util.unzip(jar.getAbsolutePath(), dir.getAbsolutePath());
+			doTestMetadata(dir, true);
+		} finally {
+			TestSuiteHelper.delete(dir);
+		}
+	}
+
+	/**
+	 * Tests that the manifest and the presence of the <code>.api_description</code> read by the
+	 * component are the same as when read on their own
+	 *
+	 * @param bundle the bundle, a jar or a directory
+	 * @param hasApiDescription whether the bundle has an <code>.api_description</code>
+	 * @throws Exception
+	 */
+	private void doTestMetadata(File bundle, boolean hasApiDescription) throws Exception {
+		IApiBaseline baseline = TestSuiteHelper.newApiBaseline("test", TestSuiteHelper.getEEDescriptionFile());
+		try {
+			MetadataComponent component = new MetadataComponent(baseline, bundle.getAbsolutePath());
+			Map expected = PDEStateHelper.loadManifest(bundle);
+			assertNotNull("Missing manifest", expected);
+			assertEquals("Wrong manifest", expected, component.readManifest());
+
+			String xml = component.readApiDescription();
+			assertEquals("Wrong .api_description presence", hasApiDescription, xml != null);
+			baseline.addApiComponents(new IApiComponent[] { component });
+			assertEquals("Wrong .api_description presence", xml != null, component.hasApiDescription());
+		} finally {
+			baseline.dispose();
+			if (bundle.isFile()) {
+				ArchiveHandlePool.getPool().close(bundle.getAbsolutePath());
+			}
+		}
+	}
+
+	private File getBundle(String directory, String name) {
+		IPath path = TestSuiteHelper.getPluginDirectoryPath().append(directory).append(name);
+		File file = path.toFile();
+		assertTrue("Missing bundle " + name, file.exists());
+		return file;
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2011 IBM Corporation and others.
+ * Copyright (c) 2009, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -86,6 +86,15 @@ public class TestCompositeSearchReporter implements IApiSearchReporter {
 		}
 	}
 	
+	/* (non-Javadoc)
+	 * @see org.eclipse.pde.api.tools.internal.provisional.search.IApiSearchReporter#reportElementDone(org.eclipse.pde.api.tools.internal.provisional.model.IApiElement)
+	 */
+	public void reportElementDone(IApiElement element) {
+		for (int i = 0; i < this.reporters.size(); i++) {
+			this.reporters.get(i).reportElementDone(element);
+		}
+	}
+	
 	/* (non-Javadoc)
 	 * @see org.eclipse.pde.api.tools.internal.provisional.search.IApiSearchReporter#reportMetadata(org.eclipse.pde.api.tools.internal.provisional.search.IMetadata)
 	 */
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2011 IBM Corporation and others.
+ * Copyright (c) 2009, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,13 +14,18 @@ import java.io.File;
 import java.io.FileFilter;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.TreeMap;
 
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.pde.api.tools.internal.provisional.builder.IReference;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiBaseline;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiComponent;
 import org.eclipse.pde.api.tools.internal.provisional.search.ApiSearchEngine;
 import org.eclipse.pde.api.tools.internal.provisional.search.IApiSearchReporter;
 import org.eclipse.pde.api.tools.internal.provisional.search.IApiSearchRequestor;
+import org.eclipse.pde.api.tools.internal.search.UseSearchRequestor;
 import org.eclipse.pde.api.tools.internal.search.XmlSearchReporter;
+import org.eclipse.pde.api.tools.internal.util.Util;
 import org.eclipse.pde.api.tools.model.tests.TestSuiteHelper;
 
 /**
@@ -183,6 +188,66 @@ public class UseSearchTests extends SearchTest {
 		}
 	}
 	
+	/**
+	 * Tests that searching the components of the scope on several threads reports exactly
+	 * the same references as searching them on the calling thread
+	 */
+	public void testParallelSearchSameAsSerial() throws Exception {
+		IApiBaseline baseline = getTestBaseline();
+		IPath serial = XML_PATH.append("serial");
+		IPath parallel = XML_PATH.append("parallel");
+		new ApiSearchEngine().search(baseline, getUseSearchRequestor(baseline), new XmlSearchReporter(serial.toOSString(), false), null);
+		ApiSearchEngine engine = new ApiSearchEngine();
+		engine.setThreadCount(3);
+		engine.search(baseline, getUseSearchRequestor(baseline), new XmlSearchReporter(parallel.toOSString(), false), null);
+		TreeMap<String, String> serialfiles = new TreeMap<String, String>();
+		collectReportFiles(serial.toFile(), "", serialfiles);
+		TreeMap<String, String> parallelfiles = new TreeMap<String, String>();
+		collectReportFiles(parallel.toFile(), "", parallelfiles);
+		assertFalse("The serial search should report references", serialfiles.isEmpty());
+		assertEquals("The parallel search should write the same report files", serialfiles.keySet(), parallelfiles.keySet());
+		for (String name : serialfiles.keySet()) {
+			assertEquals("The parallel search should report the same references in ["+name+"]", serialfiles.get(name), parallelfiles.get(name));
+		}
+	}
+
+	/**
+	 * Returns a new use search requestor for API and internal references to and from all 
+	 * of the components of the given baseline
+	 * @param baseline
+	 * @return a new requestor
+	 */
+	UseSearchRequestor getUseSearchRequestor(IApiBaseline baseline) {
+		IApiComponent[] components = baseline.getApiComponents();
+		HashSet<String> ids = new HashSet<String>();
+		for (int i = 0; i < components.length; i++) {
+			ids.add(components[i].getSymbolicName());
+		}
+		return new UseSearchRequestor(ids, components, IApiSearchRequestor.INCLUDE_API | IApiSearchRequestor.INCLUDE_INTERNAL);
+	}
+
+	/**
+	 * Collects the contents of the report files under the given directory by relative path
+	 * @param dir
+	 * @param prefix
+	 * @param files
+	 */
+	void collectReportFiles(File dir, String prefix, TreeMap<String, String> files) {
+		File[] children = dir.listFiles();
+		if(children == null) {
+			return;
+		}
+		for (int i = 0; i < children.length; i++) {
+			String name = prefix + '/' + children[i].getName();
+			if(children[i].isDirectory()) {
+				collectReportFiles(children[i], name, files);
+			}
+			else {
+				files.put(name, Util.getFileContentAsString(children[i]));
+			}
+		}
+	}
+
 	String getProjectId(String project, String version) {
 		StringBuffer buffer = new StringBuffer();
 		buffer.append(project).append(" ").append('(').append(version).append(')');
@@ -14,6 +14,7 @@ import junit.framework.Test;
 import junit.framework.TestSuite;
 
 import org.eclipse.pde.api.tools.builder.tests.performance.PerformanceTest;
+import org.eclipse.pde.api.tools.builder.tests.performance.ReferenceGroupingPerfTests;
 
 
 /**
@@ -35,5 +36,6 @@ public class ApiToolsPerformanceTestSuite extends TestSuite {
 	 */
 	public ApiToolsPerformanceTestSuite() {
 		addTest(PerformanceTest.suite());
+		addTest(ReferenceGroupingPerfTests.suite());
 	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2012 IBM Corporation and others.
+ * Copyright (c) 2007, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,6 +14,7 @@ import junit.framework.Test;
 import junit.framework.TestSuite;
 
 import org.eclipse.pde.api.tools.anttasks.tests.ApiToolsAntTasksTestSuite;
+import org.eclipse.pde.api.tools.builder.tests.ApiAnalysisSchedulerTests;
 import org.eclipse.pde.api.tools.builder.tests.ApiBuilderTest;
 import org.eclipse.pde.api.tools.model.tests.ApiFilterStoreTests;
 import org.eclipse.pde.api.tools.model.tests.FilterStoreTests;
@@ -21,6 +22,7 @@ import org.eclipse.pde.api.tools.problems.tests.ApiProblemTests;
 import org.eclipse.pde.api.tools.util.tests.ApiBaselineManagerTests;
 import org.eclipse.pde.api.tools.util.tests.ApiDescriptionProcessorTests;
 import org.eclipse.pde.api.tools.util.tests.PreferencesTests;
+import org.eclipse.pde.api.tools.util.tests.ProjectApiDescriptionStoreTests;
 import org.eclipse.pde.api.tools.util.tests.ProjectCreationTests;
 
 
@@ -48,9 +50,11 @@ public class ApiToolsPluginTestSuite extends TestSuite {
 		addTest(new TestSuite(ApiDescriptionProcessorTests.class));
 		addTest(new TestSuite(PreferencesTests.class));
 		addTest(new TestSuite(ApiBaselineManagerTests.class));
+		addTest(new TestSuite(ProjectApiDescriptionStoreTests.class));
 		addTest(new TestSuite(ApiFilterStoreTests.class));
 		addTest(new TestSuite(FilterStoreTests.class));
 		addTest(new TestSuite(ApiProblemTests.class));
+		addTest(new TestSuite(ApiAnalysisSchedulerTests.class));
 		addTest(ApiBuilderTest.suite());
 		addTest(ApiToolsAntTasksTestSuite.suite());
 		//addTest(ExternalDependencyTestSuite.suite());
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2012 IBM Corporation and others.
+ * Copyright (c) 2007, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,6 +14,7 @@ package org.eclipse.pde.api.tools.tests;
 import junit.framework.Test;
 import junit.framework.TestSuite;
 
+import org.eclipse.pde.api.tools.builder.tests.BuildStateTests;
 import org.eclipse.pde.api.tools.builder.tests.OSGiLessAnalysisTests;
 import org.eclipse.pde.api.tools.comparator.tests.AllDeltaTests;
 import org.eclipse.pde.api.tools.model.tests.ApiBaselineTests;
@@ -21,6 +22,7 @@ import org.eclipse.pde.api.tools.model.tests.ApiDescriptionTests;
 import org.eclipse.pde.api.tools.model.tests.ApiModelCacheTests;
 import org.eclipse.pde.api.tools.model.tests.ApiTypeContainerTests;
 import org.eclipse.pde.api.tools.model.tests.BadClassfileTests;
+import org.eclipse.pde.api.tools.model.tests.BundleMetadataTests;
 import org.eclipse.pde.api.tools.model.tests.CRCTests;
 import org.eclipse.pde.api.tools.model.tests.ClassFileScannerTests;
 import org.eclipse.pde.api.tools.model.tests.ComponentManifestTests;
@@ -66,6 +68,7 @@ public class ApiToolsTestSuite extends TestSuite {
 		addTest(new TestSuite(HeadlessApiBaselineManagerTests.class));
 		addTest(new TestSuite(TagScannerTests.class));
 		addTest(new TestSuite(ComponentManifestTests.class));
+		addTest(new TestSuite(BundleMetadataTests.class));
 		addTest(new TestSuite(UtilTests.class));
 		addTest(new TestSuite(SignaturesTests.class));
 		addTest(new TestSuite(ApiBaselineTests.class));
@@ -82,6 +85,7 @@ public class ApiToolsTestSuite extends TestSuite {
 		addTest(new TestSuite(ApiModelCacheTests.class));
 		addTest(new TestSuite(BadClassfileTests.class));
 		addTest(new TestSuite(CRCTests.class));
+		addTest(new TestSuite(BuildStateTests.class));
 		addTest(new AllDeltaTests());
 	}	
 }
@@ -0,0 +1,223 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.util.tests;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.jar.JarFile;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.pde.api.tools.internal.ApiDescriptionManager;
+import org.eclipse.pde.api.tools.internal.ProjectApiDescription;
+import org.eclipse.pde.api.tools.internal.ProjectApiDescriptionStore;
+import org.eclipse.pde.api.tools.internal.model.ProjectComponent;
+import org.eclipse.pde.api.tools.internal.provisional.ApiDescriptionVisitor;
+import org.eclipse.pde.api.tools.internal.provisional.Factory;
+import org.eclipse.pde.api.tools.internal.provisional.IApiAnnotations;
+import org.eclipse.pde.api.tools.internal.provisional.RestrictionModifiers;
+import org.eclipse.pde.api.tools.internal.provisional.VisibilityModifiers;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IReferenceTypeDescriptor;
+import org.eclipse.pde.api.tools.tests.AbstractApiTest;
+import org.eclipse.pde.api.tools.tests.util.ProjectUtils;
+
+/**
+ * Tests saving a {@link ProjectApiDescription} to its binary store and restoring it
+ *
+ * @since 1.0.500
+ */
+public class ProjectApiDescriptionStoreTests extends AbstractApiTest {
+
+	private static final String PROJECT_NAME = "ApiDescriptionStoreTests";
+	private static final String[] PACKAGES = new String[] {"p1", "p2", "p3"};
+
+	private File fFile;
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	@Override
+	protected void setUp() throws Exception {
+		createProject(PROJECT_NAME, PACKAGES);
+		IJavaProject project = getTestingJavaProject(PROJECT_NAME);
+		IPackageFragmentRoot root = project.getPackageFragmentRoot(project.getProject().getFolder(ProjectUtils.SRC_FOLDER));
+		for (int i = 0; i < PACKAGES.length; i++) {
+			String source = "package " + PACKAGES[i] + ";\n"
+					+ "/**\n * @noextend\n */\n"
+					+ "public class A {\n"
+					+ "\t/**\n\t * @noreference\n\t */\n\tpublic int f;\n"
+					+ "\t/**\n\t * @noreference\n\t */\n\tpublic void m() {}\n"
+					+ "}\n";
+			root.getPackageFragment(PACKAGES[i]).createCompilationUnit("A.java", source, true, new NullProgressMonitor());
+			ProjectUtils.addExportedPackage(project.getProject(), PACKAGES[i], false, null);
+		}
+		waitForAutoBuild();
+		fFile = File.createTempFile("store", ".bin");
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	@Override
+	protected void tearDown() throws Exception {
+		fFile.delete();
+		new File(fFile.getPath() + ".copy").delete();
+		deleteProject(PROJECT_NAME);
+	}
+
+	/**
+	 * Tests that a description restored from its store has the annotations of the saved description
+	 *
+	 * @throws Exception
+	 */
+	public void testRoundTrip() throws Exception {
+		ProjectApiDescription description = getPopulatedDescription();
+		description.save(fFile);
+		for (int i = 0; i < PACKAGES.length; i++) {
+			assertFalse("No package should change once saved", description.isPackageChanged(PACKAGES[i]));
+		}
+
+		ProjectApiDescription restored = restore(fFile);
+		for (int i = 0; i < PACKAGES.length; i++) {
+			assertAnnotations(restored, PACKAGES[i]);
+		}
+		assertEquals("Wrong XML of the restored description", description.getXML(), restored.getXML());
+	}
+
+	/**
+	 * Tests that only the index is read when the store is opened and that a package is read the
+	 * first time it is looked up
+	 *
+	 * @throws Exception
+	 */
+	public void testLazyPackageLoading() throws Exception {
+		getPopulatedDescription().save(fFile);
+		ProjectApiDescriptionStore store = ProjectApiDescriptionStore.open(fFile);
+		ProjectApiDescription restored = restore(store);
+		assertUnread(store, PACKAGES);
+
+		assertAnnotations(restored, "p2");
+		assertUnread(store, new String[] {"p1", "p3"});
+		assertFalse("A package looked up should not change", restored.isPackageChanged("p2"));
+
+		restored.getXML();
+		assertUnread(store, new String[0]);
+	}
+
+	/**
+	 * Tests that saving a restored description copies the sections of the packages that did not
+	 * change, whether they were read or not, and encodes the changed packages again
+	 *
+	 * @throws Exception
+	 */
+	public void testUnchangedSectionsCopied() throws Exception {
+		getPopulatedDescription().save(fFile);
+		ProjectApiDescriptionStore store = ProjectApiDescriptionStore.open(fFile);
+		ProjectApiDescription restored = restore(store);
+		assertAnnotations(restored, "p1");
+		IReferenceTypeDescriptor type = Factory.typeDescriptor("p2.A");
+		restored.setRestrictions(type.getMethod("m", "()V"), RestrictionModifiers.NO_RESTRICTIONS);
+		assertTrue("The package of the changed method should change", restored.isPackageChanged("p2"));
+		assertUnread(store, new String[] {"p3"});
+
+		File copy = new File(fFile.getPath() + ".copy");
+		restored.save(copy);
+		ProjectApiDescriptionStore saved = ProjectApiDescriptionStore.open(copy);
+		assertTrue("The section of a package that was read should be copied", Arrays.equals(store.readSection("p1"), saved.readSection("p1")));
+		assertTrue("The section of a package that was not read should be copied", Arrays.equals(store.readSection("p3"), saved.readSection("p3")));
+		assertFalse("The section of a changed package should be encoded again", Arrays.equals(store.readSection("p2"), saved.readSection("p2")));
+
+		IApiAnnotations annotations = restore(copy).resolveAnnotations(type.getMethod("m", "()V"));
+		assertNotNull("Missing annotations of the changed method", annotations);
+		assertTrue("The changed method should not be restricted", RestrictionModifiers.isUnrestricted(annotations.getRestrictions()));
+	}
+
+	/**
+	 * Tests that a description whose store can no longer be read is cleaned and populated again
+	 *
+	 * @throws Exception
+	 */
+	public void testRestoreFailure() throws Exception {
+		getPopulatedDescription().save(fFile);
+		ProjectApiDescriptionStore store = ProjectApiDescriptionStore.open(fFile);
+		ProjectApiDescription restored = restore(store);
+		assertTrue("The store should be deleted", fFile.delete());
+
+		restored.resolveAnnotations(Factory.packageDescriptor("p1"));
+		for (int i = 0; i < PACKAGES.length; i++) {
+			assertTrue("Every package should change", restored.isPackageChanged(PACKAGES[i]));
+			assertAnnotations(restored, PACKAGES[i]);
+		}
+		assertUnread(store, new String[] {"p2", "p3"});
+	}
+
+	/**
+	 * Returns the description of the testing project with a node for every package and type
+	 *
+	 * @return the description
+	 */
+	private ProjectApiDescription getPopulatedDescription() throws CoreException {
+		ProjectComponent component = (ProjectComponent) getWorkspaceBaseline().getApiComponent(PROJECT_NAME);
+		assertNotNull("Missing component of the testing project", component);
+		ProjectApiDescription description = (ProjectApiDescription) ApiDescriptionManager.getManager().getApiDescription(component, component.getBundleDescription());
+		description.accept(new ApiDescriptionVisitor() {}, null);
+		for (int i = 0; i < PACKAGES.length; i++) {
+			assertAnnotations(description, PACKAGES[i]);
+		}
+		return description;
+	}
+
+	private ProjectApiDescription restore(File file) throws Exception {
+		return restore(ProjectApiDescriptionStore.open(file));
+	}
+
+	/**
+	 * Restores a description of the testing project from the given store, as the
+	 * {@link ApiDescriptionManager} does
+	 */
+	private ProjectApiDescription restore(ProjectApiDescriptionStore store) {
+		assertNotNull("The store should be readable", store);
+		IJavaProject project = getTestingJavaProject(PROJECT_NAME);
+		ProjectApiDescription description = new ProjectApiDescription(project);
+		description.setEmbeddedVersion(store.getVersion());
+		description.fPackageTimeStamp = store.getPackageTimeStamp();
+		description.fManifestFile = project.getProject().getFile(JarFile.MANIFEST_NAME);
+		description.setStore(store);
+		return description;
+	}
+
+	private void assertUnread(ProjectApiDescriptionStore store, String[] packages) {
+		String[] unread = store.getUnreadPackages();
+		Arrays.sort(unread);
+		assertEquals("Wrong unread packages", Arrays.asList(packages), Arrays.asList(unread));
+	}
+
+	/**
+	 * Asserts the annotations of the given package and of the members of its type
+	 */
+	private void assertAnnotations(ProjectApiDescription description, String name) {
+		IApiAnnotations annotations = description.resolveAnnotations(Factory.packageDescriptor(name));
+		assertNotNull("Missing annotations of package " + name, annotations);
+		assertEquals("Wrong visibility of package " + name, VisibilityModifiers.API, annotations.getVisibility());
+		IReferenceTypeDescriptor type = Factory.typeDescriptor(name + ".A");
+		annotations = description.resolveAnnotations(type);
+		assertNotNull("Missing annotations of type " + type, annotations);
+		assertEquals("Wrong restrictions of type " + type, RestrictionModifiers.NO_EXTEND, annotations.getRestrictions());
+		annotations = description.resolveAnnotations(type.getField("f"));
+		assertNotNull("Missing annotations of field " + type + ".f", annotations);
+		assertEquals("Wrong restrictions of field " + type + ".f", RestrictionModifiers.NO_REFERENCE, annotations.getRestrictions());
+		annotations = description.resolveAnnotations(type.getMethod("m", "()V"));
+		assertNotNull("Missing annotations of method " + type + ".m", annotations);
+		assertEquals("Wrong restrictions of method " + type + ".m", RestrictionModifiers.NO_REFERENCE, annotations.getRestrictions());
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2010 IBM Corporation and others.
+ * Copyright (c) 2008, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -151,6 +151,11 @@ public final class ApiDescriptionManager implements ISaveParticipant {
 		}
 		if (delete) {
 			File file = API_DESCRIPTIONS_CONTAINER_PATH.append(project.getElementName())
+				.append(ProjectApiDescriptionStore.FILE_NAME).toFile();
+			if (file.exists()) {
+				file.delete();
+			}
+			file = API_DESCRIPTIONS_CONTAINER_PATH.append(project.getElementName())
 				.append(IApiCoreConstants.API_DESCRIPTION_XML_NAME).toFile();
 			if (file.exists()) {
 				file.delete();
@@ -245,9 +250,16 @@ public final class ApiDescriptionManager implements ISaveParticipant {
 			if (desc.isModified()) {
 				File dir = API_DESCRIPTIONS_CONTAINER_PATH.append(project.getElementName()).toFile();
 				dir.mkdirs();
-				String xml = desc.getXML();
+				File xml = new File(dir,  IApiCoreConstants.API_DESCRIPTION_XML_NAME);
 				try {
-					Util.saveFile(new File(dir,  IApiCoreConstants.API_DESCRIPTION_XML_NAME), xml);
+					desc.save(new File(dir, ProjectApiDescriptionStore.FILE_NAME));
+					if (ApiPlugin.DEBUG_API_DESCRIPTION) {
+						// export the description as XML to ease debugging, it is never read back
+						Util.saveFile(xml, desc.getXML());
+					} else if (xml.exists()) {
+						// the description was saved by a previous version
+						xml.delete();
+					}
 				} catch (IOException e) {
 					abort(MessageFormat.format(ScannerMessages.ApiDescriptionManager_0, new String[]{project.getElementName()}), e);
 				}
@@ -257,7 +269,8 @@ public final class ApiDescriptionManager implements ISaveParticipant {
 	
 	/**
 	 * Restores the API description from its saved file, if any and returns
-	 * true if successful.
+	 * true if successful. Only the index of the saved packages is read, the
+	 * description reads the packages the first time they are looked up.
 	 * 
 	 * @param project
 	 * @param description
@@ -265,8 +278,41 @@ public final class ApiDescriptionManager implements ISaveParticipant {
 	 * @throws CoreException 
 	 */
 	private boolean restoreDescription(IJavaProject project, ProjectApiDescription description) throws CoreException {
-		File file = API_DESCRIPTIONS_CONTAINER_PATH.append(project.getElementName()).
-			append(IApiCoreConstants.API_DESCRIPTION_XML_NAME).toFile();
+		File dir = API_DESCRIPTIONS_CONTAINER_PATH.append(project.getElementName()).toFile();
+		File file = new File(dir, ProjectApiDescriptionStore.FILE_NAME);
+		if (file.exists()) {
+			ProjectApiDescriptionStore store = null;
+			try {
+				store = ProjectApiDescriptionStore.open(file);
+			} catch (IOException e) {
+				abort(MessageFormat.format(ScannerMessages.ApiDescriptionManager_1,
+						new String[]{project.getElementName()}), e);
+			}
+			if (store != null) {
+				description.setEmbeddedVersion(store.getVersion());
+				if (IApiXmlConstants.API_DESCRIPTION_CURRENT_VERSION.equals(store.getVersion())) {
+					description.fPackageTimeStamp = store.getPackageTimeStamp();
+					description.fManifestFile = project.getProject().getFile(JarFile.MANIFEST_NAME);
+					description.setStore(store);
+					return true;
+				}
+				return false;
+			}
+		}
+		return restoreXMLDescription(project, description, new File(dir, IApiCoreConstants.API_DESCRIPTION_XML_NAME));
+	}
+
+	/**
+	 * Restores the API description from the XML file saved by a previous version, if any
+	 * and returns true if successful.
+	 * 
+	 * @param project
+	 * @param description
+	 * @param file the XML file
+	 * @return whether the restore succeeded
+	 * @throws CoreException 
+	 */
+	private boolean restoreXMLDescription(IJavaProject project, ProjectApiDescription description, File file) throws CoreException {
 		if (file.exists()) {
 			BufferedInputStream stream = null;
 			try {
@@ -283,6 +329,8 @@ public final class ApiDescriptionManager implements ISaveParticipant {
 					description.fPackageTimeStamp = timestamp;
 					description.fManifestFile = project.getProject().getFile(JarFile.MANIFEST_NAME);
 					restoreChildren(description, root, null, description.fPackageMap);
+					// write the description in the binary format the next time the workspace is saved
+					description.modified();
 					return true;
 				}
 			} catch (IOException e) {
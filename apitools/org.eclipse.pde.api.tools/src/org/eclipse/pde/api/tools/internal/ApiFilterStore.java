@@ -13,6 +13,7 @@ package org.eclipse.pde.api.tools.internal;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -65,9 +66,121 @@ import org.w3c.dom.Element;
 public class ApiFilterStore extends FilterStore implements IResourceChangeListener {
 	
 	/**
-	 * Map used to collect unused {@link IApiProblemFilter}s
+	 * Marker of the paths of existing resources without filters in {@link #fIndexesByPath}
 	 */
-	private HashMap fUnusedFilters = null;
+	private static final Object NO_INDEX = new Object();
+
+	/**
+	 * The filters of a resource, indexed by the id, type name and message arguments
+	 * of their problem so that the filters matching a problem are found with a single
+	 * hash lookup.
+	 * <p>
+	 * While the usage of filters is recorded, the index also records which filters have not been
+	 * used since {@link #recordFilterUsage()} was called, as a set of positions in {@link #filters}.
+	 * </p>
+	 */
+	class FilterIndex {
+		IApiProblemFilter[] filters;
+		/**
+		 * Map of the keys of the problems of the filters to the positions of the filters
+		 * <pre>
+		 * HashMap&lt;Long, int[]&gt;
+		 * </pre>
+		 */
+		HashMap positions;
+		/**
+		 * Positions of the filters not used since the recording started or <code>null</code>
+		 * if the usage of filters is not being recorded
+		 */
+		BitSet unused = null;
+
+		/**
+		 * Indexes the given filters. If usage is being recorded, the filters that were unused in the
+		 * given previous index of the resource remain unused, the others are considered used.
+		 * 
+		 * @param filters the filters of the resource
+		 * @param previous the previous index of the resource or <code>null</code>
+		 */
+		FilterIndex(IApiProblemFilter[] filters, FilterIndex previous) {
+			this.filters = filters;
+			positions = new HashMap(filters.length * 2);
+			if (fRecordingUsage) {
+				unused = new BitSet(filters.length);
+			}
+			for (int i = 0; i < filters.length; i++) {
+				Long key = new Long(getKey(filters[i].getUnderlyingProblem()));
+				int[] indexes = (int[]) positions.get(key);
+				if (indexes == null) {
+					indexes = new int[] {i};
+				} else {
+					int[] grown = new int[indexes.length + 1];
+					System.arraycopy(indexes, 0, grown, 0, indexes.length);
+					grown[indexes.length] = i;
+					indexes = grown;
+				}
+				positions.put(key, indexes);
+				if (unused != null && previous != null && previous.unused != null) {
+					int position = previous.indexOf(filters[i]);
+					if (position != -1 && previous.unused.get(position)) {
+						unused.set(i);
+					}
+				}
+			}
+		}
+
+		/**
+		 * @param problem the problem reported by the builder
+		 * @return the position of the filter matching the given problem or <code>-1</code>
+		 */
+		int find(IApiProblem problem) {
+			int[] indexes = (int[]) positions.get(new Long(getKey(problem)));
+			if (indexes != null) {
+				for (int i = 0; i < indexes.length; i++) {
+					if (problemsMatch(filters[indexes[i]].getUnderlyingProblem(), problem)) {
+						return indexes[i];
+					}
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * @param filter a filter
+		 * @return the position of the given filter in this index or <code>-1</code>
+		 */
+		int indexOf(IApiProblemFilter filter) {
+			int[] indexes = (int[]) positions.get(new Long(getKey(filter.getUnderlyingProblem())));
+			if (indexes != null) {
+				for (int i = 0; i < indexes.length; i++) {
+					if (filters[indexes[i]].equals(filter)) {
+						return indexes[i];
+					}
+				}
+			}
+			return -1;
+		}
+	}
+
+	/**
+	 * Map of resources to the index of their filters, the indexes are created
+	 * the first time the filters of a resource are matched
+	 * <pre>
+	 * HashMap&lt;IResource, FilterIndex&gt;
+	 * </pre>
+	 */
+	private HashMap fIndexes = new HashMap();
+
+	/**
+	 * Map of the resource paths of the problems matched so far to the index of the
+	 * filters of the resource or {@link #NO_INDEX}, saves looking up the resource
+	 * of every problem
+	 */
+	private HashMap fIndexesByPath = new HashMap();
+
+	/**
+	 * Whether the usage of filters is being recorded
+	 */
+	private boolean fRecordingUsage = false;
 	
 	/**
 	 * The backing {@link IJavaProject}
@@ -209,7 +322,10 @@ public class ApiFilterStore extends FilterStore implements IResourceChangeListen
 					pTypeNames.put(typeName, pfilters);
 				}
 			}
-			fNeedsSaving |= pfilters.add(filters[i]);
+			if (pfilters.add(filters[i])) {
+				fNeedsSaving = true;
+				filtersChanged(resource);
+			}
 		}
 		persistApiFilters();
 	}
@@ -244,6 +360,14 @@ public class ApiFilterStore extends FilterStore implements IResourceChangeListen
 		if(pTypeNames == null) {
 			return FilterStore.NO_FILTERS;
 		}
+		return collectFilters(pTypeNames);
+	}
+
+	/**
+	 * @param pTypeNames the map of type names to the sets of filters of a resource
+	 * @return all filters of the resource
+	 */
+	private IApiProblemFilter[] collectFilters(Map pTypeNames) {
 		List allFilters = new ArrayList();
 		for (Iterator iterator = pTypeNames.values().iterator(); iterator.hasNext(); ) {
 			Set values = (Set) iterator.next();
@@ -251,6 +375,102 @@ public class ApiFilterStore extends FilterStore implements IResourceChangeListen
 		}
 		return (IApiProblemFilter[]) allFilters.toArray(new IApiProblemFilter[allFilters.size()]);
 	}
+
+	/**
+	 * Returns the index of the filters of the given resource, creating it if needed
+	 * 
+	 * @param resource the resource
+	 * @return the index or <code>null</code> if the resource has no filters
+	 */
+	private FilterIndex getFilterIndex(IResource resource) {
+		FilterIndex index = (FilterIndex) fIndexes.get(resource);
+		if (index == null) {
+			Map pTypeNames = (Map) fFilterMap.get(resource);
+			if (pTypeNames == null) {
+				return null;
+			}
+			index = new FilterIndex(collectFilters(pTypeNames), null);
+			fIndexes.put(resource, index);
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the index of the filters of the resource with the given project relative path
+	 * 
+	 * @param resourcePath the path of the resource
+	 * @return the index or <code>null</code> if the resource does not exist or has no filters
+	 */
+	private FilterIndex getFilterIndex(String resourcePath) {
+		Object index = fIndexesByPath.get(resourcePath);
+		if (index == null) {
+			IResource resource = fProject.getProject().findMember(new Path(resourcePath));
+			if (resource == null) {
+				if(ApiPlugin.DEBUG_FILTER_STORE) {
+					System.out.println("no resource exists: ["+resourcePath+"]"); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+				// not remembered, the resource may be created again and its filters apply then
+				return null;
+			}
+			index = getFilterIndex(resource);
+			if (index == null) {
+				index = NO_INDEX;
+			}
+			fIndexesByPath.put(resourcePath, index);
+		}
+		return index == NO_INDEX ? null : (FilterIndex) index;
+	}
+
+	/**
+	 * Updates the index of the given resource after its filters changed
+	 * 
+	 * @param resource the resource
+	 */
+	private void filtersChanged(IResource resource) {
+		fIndexesByPath.clear();
+		FilterIndex index = (FilterIndex) fIndexes.remove(resource);
+		if (index != null) {
+			Map pTypeNames = (Map) fFilterMap.get(resource);
+			if (pTypeNames != null) {
+				fIndexes.put(resource, new FilterIndex(collectFilters(pTypeNames), index));
+			}
+		}
+	}
+
+	/**
+	 * Discards the indexes of all resources
+	 */
+	private void clearIndexes() {
+		fIndexes.clear();
+		fIndexesByPath.clear();
+	}
+
+	/**
+	 * Returns the key a problem is indexed with, computed from its id, its type name and
+	 * the simple names of its message arguments. Problems that {@link #problemsMatch(IApiProblem, IApiProblem)}
+	 * have the same key.
+	 * 
+	 * @param problem the problem
+	 * @return the key of the problem
+	 */
+	public static long getKey(IApiProblem problem) {
+		String typeName = problem.getTypeName();
+		int hash = typeName == null ? 0 : typeName.hashCode();
+		String[] arguments = problem.getMessageArguments();
+		if (arguments != null) {
+			hash = 31 * hash + arguments.length;
+			for (int i = 0; i < arguments.length; i++) {
+				// filters may have the simple name of an argument the problem has the qualified name of
+				String argument = arguments[i];
+				int argumentHash = 0;
+				for (int j = argument.lastIndexOf('.') + 1, max = argument.length(); j < max; j++) {
+					argumentHash = 31 * argumentHash + argument.charAt(j);
+				}
+				hash = 31 * hash + argumentHash;
+			}
+		}
+		return ((long) problem.getId() << 32) | (hash & 0xFFFFFFFFL);
+	}
 	
 	/* (non-Javadoc)
 	 * @see org.eclipse.pde.api.tools.internal.provisional.IApiFilterStore#isFiltered(org.eclipse.pde.api.tools.internal.provisional.IApiProblem)
@@ -261,30 +481,22 @@ public class ApiFilterStore extends FilterStore implements IResourceChangeListen
 		if (resourcePath == null) {
 			return false;
 		}
-		IResource resource = fProject.getProject().findMember(new Path(resourcePath));
-		if(resource == null) {
+		FilterIndex index = getFilterIndex(resourcePath);
+		if(index == null) {
 			if(ApiPlugin.DEBUG_FILTER_STORE) {
-				System.out.println("no resource exists: ["+resourcePath+"]"); //$NON-NLS-1$ //$NON-NLS-2$
+				System.out.println("no filters defined for ["+resourcePath+"] return not filtered"); //$NON-NLS-1$ //$NON-NLS-2$
 			}
 			return false;
 		}
-		IApiProblemFilter[] filters = this.getFilters(resource);
-		if(filters == null) {
+		int position = index.find(problem);
+		if(position != -1) {
 			if(ApiPlugin.DEBUG_FILTER_STORE) {
-				System.out.println("no filters defined for ["+resourcePath+"] return not filtered"); //$NON-NLS-1$ //$NON-NLS-2$
+				System.out.println("recording filter used: ["+index.filters[position].toString()+"]"); //$NON-NLS-1$ //$NON-NLS-2$
 			}
-			return false;
-		}
-		IApiProblemFilter filter = null;
-		for(int i = 0, max = filters.length; i < max; i++) {
-			filter = filters[i];
-			if(problemsMatch(filter.getUnderlyingProblem(), problem)) {
-				if(ApiPlugin.DEBUG_FILTER_STORE) {
-					System.out.println("recording filter used: ["+filter.toString()+"]"); //$NON-NLS-1$ //$NON-NLS-2$
-				}
-				recordFilterUsed(resource, filter);
-				return true;
+			if (index.unused != null) {
+				index.unused.clear(position);
 			}
+			return true;
 		}
 		if(ApiPlugin.DEBUG_FILTER_STORE) {
 			System.out.println("no filter defined for problem: ["+problem.toString()+"]"); //$NON-NLS-1$ //$NON-NLS-2$
@@ -300,10 +512,7 @@ public class ApiFilterStore extends FilterStore implements IResourceChangeListen
 		//https://bugs.eclipse.org/bugs/show_bug.cgi?id=299319
 		persistApiFilters();
 		clearFilters();
-		if(fUnusedFilters != null) {
-			fUnusedFilters.clear();
-			fUnusedFilters = null;
-		}
+		fRecordingUsage = false;
  		ResourcesPlugin.getWorkspace().removeResourceChangeListener(this);
 	}
 
@@ -364,6 +573,7 @@ public class ApiFilterStore extends FilterStore implements IResourceChangeListen
 						success &= fFilterMap.remove(resource) != null;
 					}
 				}
+				filtersChanged(resource);
 			} else {
 				success &= false;
 			}
@@ -582,7 +792,10 @@ public class ApiFilterStore extends FilterStore implements IResourceChangeListen
 					pTypeNames.put(typeName, filters);
 				}
 			}
-			fNeedsSaving |= filters.add(filter);
+			if (filters.add(filter)) {
+				fNeedsSaving = true;
+				filtersChanged(resource);
+			}
 		}
 	}
 	
@@ -625,35 +838,11 @@ public class ApiFilterStore extends FilterStore implements IResourceChangeListen
 	 */
 	public synchronized void recordFilterUsage() {
 		initializeApiFilters();
-		fUnusedFilters = new HashMap();
-		IResource resource = null;
-		Map types = null;
-		Set values = null;
+		fRecordingUsage = true;
 		for(Iterator iter = fFilterMap.keySet().iterator(); iter.hasNext();) {
-			resource = (IResource) iter.next();
-			types = (Map) fFilterMap.get(resource);
-			values = new HashSet();
-			fUnusedFilters.put(resource, values);
-			for(Iterator iter2 = types.keySet().iterator(); iter2.hasNext();) {
-				values.addAll((Set) types.get(iter2.next()));
-			}
-		}
-	}
-	
-	/**
-	 * records that the following filter has been used
-	 * @param resource
-	 * @param filter
-	 */
-	private void recordFilterUsed(IResource resource, IApiProblemFilter filter) {
-		if(fUnusedFilters != null) {
-			Set unused = (Set) fUnusedFilters.get(resource);
-			if(unused != null) {
-				unused.remove(filter);
-				if(unused.isEmpty()) {
-					fUnusedFilters.remove(resource);
-				}
-			}
+			FilterIndex index = getFilterIndex((IResource) iter.next());
+			index.unused = new BitSet(index.filters.length);
+			index.unused.set(0, index.filters.length);
 		}
 	}
 	
@@ -666,22 +855,22 @@ public class ApiFilterStore extends FilterStore implements IResourceChangeListen
 	 * @see {@link IApiProblem#getCategory()}
 	 * @return the listing of currently unused filters or an empty list, never <code>null</code>
 	 */
-	public IApiProblemFilter[] getUnusedFilters(IResource resource, String typeName, int[] categories) {
-		if(fUnusedFilters != null) {
+	public synchronized IApiProblemFilter[] getUnusedFilters(IResource resource, String typeName, int[] categories) {
+		if(fRecordingUsage) {
 			Set unused = new HashSet();
-			Set set = null;
+			FilterIndex index = null;
 			if(resource != null) {
 				// add any unused filters for the resource
-				set = (Set) fUnusedFilters.get(resource);
-				if (set != null) {
-					collectFilterFor(set, typeName, unused, categories);
+				index = (FilterIndex) fIndexes.get(resource);
+				if (index != null) {
+					collectFilterFor(index, typeName, unused, categories);
 				}
 				if(Util.isManifest(resource.getProjectRelativePath())) {
 					//we need to add any filters that are cached for resources
 					//that no longer exist - deleted types
 					//deleted types are only ever passed in with the manifest associated with them
 					IResource res = null;
-					for (Iterator iter = fUnusedFilters.keySet().iterator(); iter.hasNext();) {
+					for (Iterator iter = fIndexes.keySet().iterator(); iter.hasNext();) {
 						res = (IResource) iter.next();
 						if(res.exists()) {
 							continue;
@@ -689,16 +878,16 @@ public class ApiFilterStore extends FilterStore implements IResourceChangeListen
 						if(!res.getProject().equals(resource.getProject())) {
 							continue;
 						}
-						set = (Set)fUnusedFilters.get(res);
-						collectFilterFor(set, typeName, unused, categories);
+						index = (FilterIndex) fIndexes.get(res);
+						collectFilterFor(index, typeName, unused, categories);
 					}
 				}
 			}
 			else {
-				for(Iterator iter = fUnusedFilters.keySet().iterator(); iter.hasNext();) {
-					set = (Set) fUnusedFilters.get(iter.next());
-					if(set != null) {
-						unused.addAll(set);
+				for(Iterator iter = fIndexes.values().iterator(); iter.hasNext();) {
+					index = (FilterIndex) iter.next();
+					for (int i = index.unused.nextSetBit(0); i >= 0; i = index.unused.nextSetBit(i + 1)) {
+						unused.add(index.filters[i]);
 					}
 				}
 			}
@@ -712,19 +901,19 @@ public class ApiFilterStore extends FilterStore implements IResourceChangeListen
 	}
 	
 	/**
-	 * Collects the complete set of problem filters from the given set whose
+	 * Collects the complete set of unused problem filters from the given index whose
 	 * underlying problem categories do not match any from the given array and whose
 	 * type name matches the underlying problem type name.
 	 *   
-	 * @param filters
+	 * @param index
 	 * @param typename
 	 * @param collector
 	 * @param categories
 	 */
-	private void collectFilterFor(Set filters, String typename, Set collector, int[] categories) {
-		ApiProblemFilter filter = null;
-		for (Iterator iter = filters.iterator(); iter.hasNext();) {
-			filter = (ApiProblemFilter) iter.next();
+	private void collectFilterFor(FilterIndex index, String typename, Set collector, int[] categories) {
+		IApiProblemFilter filter = null;
+		for (int i = index.unused.nextSetBit(0); i >= 0; i = index.unused.nextSetBit(i + 1)) {
+			filter = index.filters[i];
 			IApiProblem underlyingProblem = filter.getUnderlyingProblem();
 			if (underlyingProblem != null) {
 				if(matchesCategory(underlyingProblem, categories)) {
@@ -793,6 +982,7 @@ public class ApiFilterStore extends FilterStore implements IResourceChangeListen
 				}
 				if(fFilterMap != null) {
 					fFilterMap.clear();
+					clearIndexes();
 					needsbuild = fProject.getProject().isAccessible();
 				}
 			}
@@ -833,5 +1023,6 @@ public class ApiFilterStore extends FilterStore implements IResourceChangeListen
 			fFilterMap.clear();
 			fFilterMap = null; 
 		}
+		clearIndexes();
 	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 IBM Corporation and others.
+ * Copyright (c) 2008, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,6 +10,8 @@
  *******************************************************************************/
 package org.eclipse.pde.api.tools.internal;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -86,6 +88,22 @@ public class ProjectApiDescription extends ApiDescription {
 	 * the java model elements (effectively building the cache).
 	 */
 	private boolean fInSynch = false;
+
+	/**
+	 * The store this description was restored from, or <code>null</code>. Packages
+	 * are read from the store the first time they are looked up.
+	 */
+	private ProjectApiDescriptionStore fStore = null;
+
+	/**
+	 * Names of the packages that changed since this description was restored or saved
+	 */
+	private Set fChangedPackages = new HashSet();
+
+	/**
+	 * Whether all packages changed since this description was restored or saved
+	 */
+	private boolean fAllPackagesChanged = false;
 			
 	/**
 	 * A node for a package.
@@ -114,6 +132,7 @@ public class ProjectApiDescription extends ApiDescription {
 			for (int i = 0; i < fFragments.length; i++) {
 				if (!fFragments[i].exists()) {
 					modified();
+					packageChanged(((IPackageDescriptor) element).getName());
 					return null;
 				}
 			}
@@ -244,6 +263,7 @@ public class ProjectApiDescription extends ApiDescription {
 									System.out.println(buffer.toString());
 								}
 								modified();
+								packageChanged(((IReferenceTypeDescriptor) element).getPackage().getName());
 								children.clear();
 								restrictions = RestrictionModifiers.NO_RESTRICTIONS;
 								fTimeStamp = resource.getModificationStamp();
@@ -281,6 +301,7 @@ public class ProjectApiDescription extends ApiDescription {
 							}
 							// element has been removed
 							modified();
+							packageChanged(((IReferenceTypeDescriptor) element).getPackage().getName());
 							parent.children.remove(element);
 							return null;
 						}
@@ -351,6 +372,7 @@ public class ProjectApiDescription extends ApiDescription {
 	public synchronized void accept(ApiDescriptionVisitor visitor, IProgressMonitor monitor) {
 		boolean completeVisit = true;
 		if (fInSynch) {
+			restoreAllPackages();
 			super.accept(visitor, monitor);
 		} else {
 			try {
@@ -423,6 +445,103 @@ public class ProjectApiDescription extends ApiDescription {
 		visitor.endVisitElement(node.element, annotations);
 	}
 	
+	/* (non-Javadoc)
+	 * @see org.eclipse.pde.api.tools.internal.ApiDescription#findNode(org.eclipse.pde.api.tools.internal.provisional.descriptors.IElementDescriptor, boolean)
+	 */
+	protected ManifestNode findNode(IElementDescriptor element, boolean write) {
+		if (fStore != null || write) {
+			IElementDescriptor root = element;
+			while (root.getParent() != null) {
+				root = root.getParent();
+			}
+			if (root.getElementType() == IElementDescriptor.PACKAGE) {
+				String name = ((IPackageDescriptor) root).getName();
+				restorePackage(name);
+				if (write) {
+					packageChanged(name);
+				}
+			}
+		}
+		return super.findNode(element, write);
+	}
+
+	/**
+	 * Sets the store this description was restored from
+	 * 
+	 * @param store the store
+	 */
+	public synchronized void setStore(ProjectApiDescriptionStore store) {
+		fStore = store;
+	}
+
+	/**
+	 * Reads the given package from the store this description was restored from,
+	 * if it has not been read yet. If the package cannot be restored the description
+	 * is cleaned, so that it is populated again and no package of the store is kept.
+	 * 
+	 * @param name the name of the package
+	 */
+	private synchronized void restorePackage(String name) {
+		if (fStore == null) {
+			return;
+		}
+		try {
+			fStore.restorePackage(this, name);
+		} catch (CoreException e) {
+			ApiPlugin.log(e.getStatus());
+			clean();
+		} catch (IOException e) {
+			ApiPlugin.log(e);
+			clean();
+		}
+	}
+
+	/**
+	 * Reads all packages that have not been read yet from the store this description
+	 * was restored from.
+	 */
+	synchronized void restoreAllPackages() {
+		if (fStore != null) {
+			String[] names = fStore.getUnreadPackages();
+			for (int i = 0; i < names.length; i++) {
+				restorePackage(names[i]);
+			}
+		}
+	}
+
+	/**
+	 * Notes that the given package changed and must be written again when this description is saved
+	 * 
+	 * @param name the name of the package
+	 */
+	synchronized void packageChanged(String name) {
+		fChangedPackages.add(name);
+	}
+
+	/**
+	 * Returns whether the given package changed since this description was restored or saved
+	 * 
+	 * @param name the name of the package
+	 * @return whether the package changed
+	 */
+	public synchronized boolean isPackageChanged(String name) {
+		return fAllPackagesChanged || fChangedPackages.contains(name);
+	}
+
+	/**
+	 * Saves this description to the given file. Only the packages that changed are encoded,
+	 * the other packages are copied from the store this description was restored from.
+	 * 
+	 * @param file the file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public synchronized void save(File file) throws IOException {
+		fStore = ProjectApiDescriptionStore.save(this, fStore, file);
+		fChangedPackages.clear();
+		fAllPackagesChanged = false;
+		saved();
+	}
+
 	/* (non-Javadoc)
 	 * @see org.eclipse.pde.api.tools.internal.ApiDescription#isInsertOnResolve(org.eclipse.pde.api.tools.internal.provisional.descriptors.IElementDescriptor)
 	 */
@@ -583,6 +702,8 @@ public class ProjectApiDescription extends ApiDescription {
 			try {
 				modified();
 				fRefreshingInProgress = true;
+				restoreAllPackages();
+				fAllPackagesChanged = true;
 				// set all existing packages to PRIVATE (could clear
 				// the map, but it would be less efficient)
 				Iterator iterator = fPackageMap.values().iterator();
@@ -678,6 +799,7 @@ public class ProjectApiDescription extends ApiDescription {
 	 * @throws CoreException
 	 */
 	public synchronized String getXML() throws CoreException {
+		restoreAllPackages();
 		Document document = Util.newDocument();	
 		Element component = document.createElement(IApiXmlConstants.ELEMENT_COMPONENT);
 		component.setAttribute(IApiXmlConstants.ATTR_ID, getJavaProject().getElementName());
@@ -711,6 +833,8 @@ public class ProjectApiDescription extends ApiDescription {
 		fPackageMap.clear();
 		fPackageTimeStamp = -1L;
 		fInSynch = false;
+		fStore = null;
+		fAllPackagesChanged = true;
 		modified();
 	}
 	
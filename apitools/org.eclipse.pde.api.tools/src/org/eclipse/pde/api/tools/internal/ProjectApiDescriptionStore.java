@@ -0,0 +1,456 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.pde.api.tools.internal.ApiDescription.ManifestNode;
+import org.eclipse.pde.api.tools.internal.ProjectApiDescription.PackageNode;
+import org.eclipse.pde.api.tools.internal.ProjectApiDescription.TypeNode;
+import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
+import org.eclipse.pde.api.tools.internal.provisional.Factory;
+import org.eclipse.pde.api.tools.internal.provisional.RestrictionModifiers;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IElementDescriptor;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IFieldDescriptor;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IMethodDescriptor;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IPackageDescriptor;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IReferenceTypeDescriptor;
+import org.eclipse.pde.api.tools.internal.provisional.scanner.ScannerMessages;
+
+/**
+ * The saved state of a {@link ProjectApiDescription}.
+ * <p>
+ * The state is a binary file holding a section for every package of the description,
+ * preceded by an index of the sections. Opening the store only reads the index, the nodes
+ * of a package are read from its section the first time the package is looked up in the
+ * description. When the description is saved, the packages that changed since the store
+ * was written are encoded again and the sections of the other packages are copied over.
+ * </p>
+ * <p>
+ * The file starts with a magic number, the version of the format and the length of the index.
+ * The index holds the version of the description, the time stamp of its packages and the name,
+ * offset and length of every section. Offsets are relative to the end of the index. A section
+ * holds what {@link ProjectApiDescription#getXML()} would write for its package.
+ * </p>
+ *
+ * @since 1.0.500
+ */
+public final class ProjectApiDescriptionStore {
+
+	/**
+	 * Name of the file of the store in the state location of a project
+	 */
+	static final String FILE_NAME = ".api_description.bin"; //$NON-NLS-1$
+
+	private static final int MAGIC = 0x41504944;
+	private static final int FORMAT_VERSION = 1;
+
+	/**
+	 * Length of the header preceding the index: the magic number, the version of the format
+	 * and the length of the index
+	 */
+	private static final int HEADER_SIZE = 12;
+
+	/**
+	 * Kinds of the nodes in a section
+	 */
+	private static final byte TYPE = 1;
+	private static final byte FIELD = 2;
+	private static final byte METHOD = 3;
+
+	private File fFile;
+
+	/**
+	 * Offset of the first section in the file
+	 */
+	private long fDataStart;
+
+	private String fVersion;
+
+	private long fPackageTimeStamp;
+
+	/**
+	 * Map of package names to the offset and length of their section
+	 */
+	private Map fSections;
+
+	/**
+	 * Names of the packages whose section has not been read yet
+	 */
+	private Set fUnread;
+
+	private ProjectApiDescriptionStore(File file, long dataStart, String version, long timestamp, Map sections, Set unread) {
+		fFile = file;
+		fDataStart = dataStart;
+		fVersion = version;
+		fPackageTimeStamp = timestamp;
+		fSections = sections;
+		fUnread = unread;
+	}
+
+	/**
+	 * Opens the store in the given file and reads its index
+	 *
+	 * @param file the file of the store
+	 * @return the store or <code>null</code> if the file was written in another format
+	 * @throws IOException if the file cannot be read
+	 */
+	public static ProjectApiDescriptionStore open(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+				return null;
+			}
+			byte[] bytes = new byte[in.readInt()];
+			in.readFully(bytes);
+			DataInputStream index = new DataInputStream(new ByteArrayInputStream(bytes));
+			String version = index.readUTF();
+			long timestamp = index.readLong();
+			int count = index.readInt();
+			Map sections = new HashMap(count * 2);
+			for (int i = 0; i < count; i++) {
+				String name = index.readUTF();
+				sections.put(name, new int[] {index.readInt(), index.readInt()});
+			}
+			return new ProjectApiDescriptionStore(file, HEADER_SIZE + bytes.length, version, timestamp, sections, new HashSet(sections.keySet()));
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * @return the version of the saved description
+	 */
+	public String getVersion() {
+		return fVersion;
+	}
+
+	/**
+	 * @return the time stamp of the packages of the saved description
+	 */
+	public long getPackageTimeStamp() {
+		return fPackageTimeStamp;
+	}
+
+	/**
+	 * @return the names of the packages whose section has not been read yet
+	 */
+	public String[] getUnreadPackages() {
+		return (String[]) fUnread.toArray(new String[fUnread.size()]);
+	}
+
+	/**
+	 * Reads the section of the given package into the given description, if it has not
+	 * been read yet. A section is only read once, whether it can be restored or not.
+	 *
+	 * @param description the description the store was opened for
+	 * @param name the name of the package
+	 * @throws IOException if the file of the store cannot be read
+	 * @throws CoreException if the package cannot be restored
+	 */
+	void restorePackage(ProjectApiDescription description, String name) throws IOException, CoreException {
+		if (!fUnread.remove(name)) {
+			return;
+		}
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(readSection(name)));
+		int vis = in.readInt();
+		int res = in.readInt();
+		IPackageFragment[] fragments = new IPackageFragment[in.readInt()];
+		if (fragments.length == 0) {
+			abort(ScannerMessages.ApiDescriptionManager_2 + name, null);
+		}
+		for (int i = 0; i < fragments.length; i++) {
+			String handle = in.readUTF();
+			IJavaElement je = JavaCore.create(handle);
+			if (je == null || je.getElementType() != IJavaElement.PACKAGE_FRAGMENT) {
+				abort(ScannerMessages.ApiDescriptionManager_2 + handle, null);
+			}
+			fragments[i] = (IPackageFragment) je;
+		}
+		IElementDescriptor elementDesc = Factory.packageDescriptor(name);
+		PackageNode node = description.newPackageNode(fragments, null, elementDesc, vis, res);
+		restoreChildren(description, in, node);
+		description.fPackageMap.put(elementDesc, node);
+	}
+
+	private void restoreChildren(ProjectApiDescription description, DataInputStream in, ManifestNode parentNode) throws IOException, CoreException {
+		int count = in.readInt();
+		for (int i = 0; i < count; i++) {
+			ManifestNode node = null;
+			IElementDescriptor elementDesc = null;
+			byte kind = in.readByte();
+			switch (kind) {
+				case TYPE: {
+					String handle = in.readUTF();
+					int vis = in.readInt();
+					int res = in.readInt();
+					long timestamp = in.readLong();
+					IJavaElement je = JavaCore.create(handle);
+					if (je == null || je.getElementType() != IJavaElement.TYPE) {
+						abort(ScannerMessages.ApiDescriptionManager_3 + handle, null);
+					}
+					IType type = (IType) je;
+					elementDesc = Factory.typeDescriptor(type.getFullyQualifiedName('$'));
+					TypeNode tn = description.newTypeNode(type, parentNode, elementDesc, vis, res);
+					tn.fTimeStamp = timestamp;
+					restoreChildren(description, in, tn);
+					node = tn;
+					break;
+				}
+				case FIELD: {
+					String name = in.readUTF();
+					int vis = in.readInt();
+					int res = in.readInt();
+					if (parentNode.element instanceof IReferenceTypeDescriptor) {
+						elementDesc = ((IReferenceTypeDescriptor) parentNode.element).getField(name);
+						node = description.newNode(parentNode, elementDesc, vis, res);
+					}
+					break;
+				}
+				case METHOD: {
+					String name = in.readUTF();
+					String sig = in.readUTF();
+					int vis = in.readInt();
+					int res = in.readInt();
+					if (parentNode.element instanceof IReferenceTypeDescriptor) {
+						elementDesc = ((IReferenceTypeDescriptor) parentNode.element).getMethod(name, sig);
+						node = description.newNode(parentNode, elementDesc, vis, res);
+					}
+					break;
+				}
+			}
+			if (node == null) {
+				abort(ScannerMessages.ApiDescriptionManager_4, null);
+			}
+			parentNode.children.put(elementDesc, node);
+		}
+	}
+
+	/**
+	 * Returns the encoded section of the given package as it is stored in the file
+	 *
+	 * @param name the name of the package
+	 * @return the section or <code>null</code> if the store has no section for the package
+	 * @throws IOException if the file of the store cannot be read
+	 */
+	public byte[] readSection(String name) throws IOException {
+		if (!fSections.containsKey(name)) {
+			return null;
+		}
+		RandomAccessFile file = new RandomAccessFile(fFile, "r"); //$NON-NLS-1$
+		try {
+			return readSection(file, name);
+		} finally {
+			file.close();
+		}
+	}
+
+	private byte[] readSection(RandomAccessFile file, String name) throws IOException {
+		int[] section = (int[]) fSections.get(name);
+		byte[] bytes = new byte[section[1]];
+		file.seek(fDataStart + section[0]);
+		file.readFully(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Saves the given description to the given file. The packages of the description that did not
+	 * change since it was restored from the given store are copied from the store.
+	 *
+	 * @param description the description to save
+	 * @param previous the store the description was restored from or <code>null</code>
+	 * @param file the file to write
+	 * @return the store of the saved description
+	 * @throws IOException if the file cannot be written
+	 */
+	static ProjectApiDescriptionStore save(ProjectApiDescription description, ProjectApiDescriptionStore previous, File file) throws IOException {
+		List names = new ArrayList(description.fPackageMap.size());
+		List sections = new ArrayList(description.fPackageMap.size());
+		Set unread = new HashSet();
+		RandomAccessFile source = null;
+		try {
+			if (previous != null && !previous.fSections.isEmpty()) {
+				source = new RandomAccessFile(previous.fFile, "r"); //$NON-NLS-1$
+			}
+			Iterator iterator = description.fPackageMap.values().iterator();
+			while (iterator.hasNext()) {
+				PackageNode node = (PackageNode) iterator.next();
+				String name = ((IPackageDescriptor) node.element).getName();
+				byte[] bytes = null;
+				if (source != null && !description.isPackageChanged(name) && previous.fSections.containsKey(name)) {
+					bytes = previous.readSection(source, name);
+				} else {
+					bytes = encodePackage(node);
+				}
+				if (bytes != null) {
+					names.add(name);
+					sections.add(bytes);
+				}
+			}
+			if (source != null) {
+				// packages that were never looked up are written as they were read
+				iterator = previous.fUnread.iterator();
+				while (iterator.hasNext()) {
+					String name = (String) iterator.next();
+					names.add(name);
+					sections.add(previous.readSection(source, name));
+					unread.add(name);
+				}
+			}
+		} finally {
+			if (source != null) {
+				source.close();
+			}
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream index = new DataOutputStream(bytes);
+		index.writeUTF(IApiXmlConstants.API_DESCRIPTION_CURRENT_VERSION);
+		index.writeLong(description.fPackageTimeStamp);
+		index.writeInt(names.size());
+		Map offsets = new HashMap(names.size() * 2);
+		int offset = 0;
+		for (int i = 0; i < names.size(); i++) {
+			int length = ((byte[]) sections.get(i)).length;
+			index.writeUTF((String) names.get(i));
+			index.writeInt(offset);
+			index.writeInt(length);
+			offsets.put(names.get(i), new int[] {offset, length});
+			offset += length;
+		}
+		index.flush();
+
+		File tmp = new File(file.getParentFile(), file.getName() + ".tmp"); //$NON-NLS-1$
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(bytes.size());
+			bytes.writeTo(out);
+			for (int i = 0; i < sections.size(); i++) {
+				out.write((byte[]) sections.get(i));
+			}
+		} finally {
+			out.close();
+		}
+		if (file.exists() && !file.delete()) {
+			tmp.delete();
+			throw new IOException("Unable to replace " + file); //$NON-NLS-1$
+		}
+		if (!tmp.renameTo(file)) {
+			throw new IOException("Unable to rename " + tmp + " to " + file); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		return new ProjectApiDescriptionStore(file, HEADER_SIZE + bytes.size(), IApiXmlConstants.API_DESCRIPTION_CURRENT_VERSION, description.fPackageTimeStamp, offsets, unread);
+	}
+
+	/**
+	 * Encodes the given package node, following the same rules as the XML of the description
+	 *
+	 * @param node the package node
+	 * @return the section of the package or <code>null</code> if the package is not persisted
+	 * @throws IOException
+	 */
+	private static byte[] encodePackage(PackageNode node) throws IOException {
+		if (!node.hasApiVisibility(node)) {
+			return null;
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(node.visibility);
+		out.writeInt(node.restrictions);
+		out.writeInt(node.fFragments.length);
+		for (int i = 0; i < node.fFragments.length; i++) {
+			out.writeUTF(node.fFragments[i].getHandleIdentifier());
+		}
+		encodeChildren(out, node.children);
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	private static void encodeChildren(DataOutputStream out, Map children) throws IOException {
+		List persisted = new ArrayList(children.size());
+		Iterator iterator = children.values().iterator();
+		while (iterator.hasNext()) {
+			ManifestNode node = (ManifestNode) iterator.next();
+			if (node instanceof TypeNode) {
+				if (node.hasApiVisibility(node)) {
+					persisted.add(node);
+				}
+			} else if (!RestrictionModifiers.isUnrestricted(node.restrictions)) {
+				int type = node.element.getElementType();
+				if (type == IElementDescriptor.FIELD || type == IElementDescriptor.METHOD) {
+					persisted.add(node);
+				}
+			}
+		}
+		out.writeInt(persisted.size());
+		for (int i = 0; i < persisted.size(); i++) {
+			ManifestNode node = (ManifestNode) persisted.get(i);
+			if (node instanceof TypeNode) {
+				TypeNode tn = (TypeNode) node;
+				out.writeByte(TYPE);
+				out.writeUTF(tn.fType.getHandleIdentifier());
+				out.writeInt(tn.visibility);
+				out.writeInt(tn.restrictions);
+				out.writeLong(tn.fTimeStamp);
+				encodeChildren(out, tn.children);
+			} else if (node.element.getElementType() == IElementDescriptor.FIELD) {
+				out.writeByte(FIELD);
+				out.writeUTF(((IFieldDescriptor) node.element).getName());
+				out.writeInt(node.visibility);
+				out.writeInt(node.restrictions);
+			} else {
+				IMethodDescriptor md = (IMethodDescriptor) node.element;
+				out.writeByte(METHOD);
+				out.writeUTF(md.getName());
+				out.writeUTF(md.getSignature());
+				out.writeInt(node.visibility);
+				out.writeInt(node.restrictions);
+			}
+		}
+	}
+
+	/**
+	 * Throws an exception with the given message and underlying exception.
+	 *
+	 * @param message error message
+	 * @param exception underlying exception, or <code>null</code>
+	 * @throws CoreException
+	 */
+	private static void abort(String message, Throwable exception) throws CoreException {
+		IStatus status = new Status(IStatus.ERROR, ApiPlugin.PLUGIN_ID, message, exception);
+		throw new CoreException(status);
+	}
+}
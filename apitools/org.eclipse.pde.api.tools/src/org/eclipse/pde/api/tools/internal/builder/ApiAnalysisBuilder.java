@@ -163,6 +163,12 @@ public class ApiAnalysisBuilder extends IncrementalProjectBuilder {
 	 */
 	private BuildState buildstate = null;
 	
+	/**
+	 * If the analysis of the current build has been handed to the {@link ApiAnalysisScheduler}, 
+	 * in which case the scheduler saves the build state once the analysis is done
+	 */
+	private boolean deferred = false;
+	
 	/**
 	 * Cleans up markers associated with API Tools on the given resource.
 	 * 
@@ -304,6 +310,9 @@ public class ApiAnalysisBuilder extends IncrementalProjectBuilder {
 		}
 		// update build time stamp
 		BuildStamps.incBuildStamp(this.currentproject);
+		// a scheduled analysis that has not completed is outdated, its build state was not saved
+		ApiAnalysisScheduler.getScheduler().cancel(this.currentproject);
+		this.deferred = false;
 		if (ApiPlugin.DEBUG_BUILDER) {
 			System.out.println("\nApiAnalysis builder - Starting build of " + this.currentproject.getName() + " @ " + new Date(System.currentTimeMillis())); //$NON-NLS-1$ //$NON-NLS-2$
 		}
@@ -421,7 +430,7 @@ public class ApiAnalysisBuilder extends IncrementalProjectBuilder {
 				if(projects.length < 1) {
 					//if this build cycle indicates that more projects need to be built do not close 
 					//the baselines yet, they might be re-read by another build cycle
-					if(baseline != null) {
+					if(baseline != null && !ApiAnalysisScheduler.getScheduler().closeWhenDone(baseline)) {
 						baseline.close();
 					}
 				}
@@ -455,8 +464,11 @@ public class ApiAnalysisBuilder extends IncrementalProjectBuilder {
 							ApiPlugin.log(ce);
 						}
 					}
-					BuildState.saveBuiltState(this.currentproject, this.buildstate);
+					if(!this.deferred) {
+						BuildState.saveBuiltState(this.currentproject, this.buildstate);
+					}
 					this.buildstate = null;
+					this.deferred = false;
 					Util.updateMonitor(monitor, 0);
 				}
 				if(localMonitor != null) {
@@ -716,10 +728,19 @@ public class ApiAnalysisBuilder extends IncrementalProjectBuilder {
 				// Compatibility checks
 				IApiComponent apiComponent = wbaseline.getApiComponent(id);
 				if(apiComponent != null) {
-					getAnalyzer().analyzeComponent(this.buildstate, null, null, baseline, apiComponent, new BuildContext(), localMonitor.newChild(1));
-					Util.updateMonitor(localMonitor, 1);
-					createMarkers();
-					Util.updateMonitor(localMonitor, 1);
+					ApiAnalysisScheduler scheduler = ApiAnalysisScheduler.getScheduler();
+					if(scheduler.isEnabled()) {
+						// analyzed with the other projects once the build is done
+						scheduler.schedule(this.currentproject, baseline, apiComponent, this.buildstate, getRequiredProjects(true));
+						this.deferred = true;
+						Util.updateMonitor(localMonitor, 2);
+					}
+					else {
+						getAnalyzer().analyzeComponent(this.buildstate, null, null, baseline, apiComponent, new BuildContext(), localMonitor.newChild(1));
+						Util.updateMonitor(localMonitor, 1);
+						createMarkers();
+						Util.updateMonitor(localMonitor, 1);
+					}
 				}
 			}
 		}
@@ -761,6 +782,20 @@ public class ApiAnalysisBuilder extends IncrementalProjectBuilder {
 		}
 	}
 	
+	/**
+	 * Creates the markers for the problems found by the given analyzer on the given project,
+	 * used for the analyses run by the {@link ApiAnalysisScheduler}
+	 * 
+	 * @param project the analyzed project
+	 * @param analyzer the analyzer holding the problems
+	 */
+	static void createMarkers(IProject project, IApiAnalyzer analyzer) {
+		ApiAnalysisBuilder builder = new ApiAnalysisBuilder();
+		builder.currentproject = project;
+		builder.analyzer = analyzer;
+		builder.createMarkers();
+	}
+	
 	/**
 	 * Returns the {@link IApiMarkerConstants} problem type given the 
 	 * problem category
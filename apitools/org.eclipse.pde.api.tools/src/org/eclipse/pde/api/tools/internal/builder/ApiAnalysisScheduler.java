@@ -0,0 +1,680 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.internal.builder;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.osgi.util.NLS;
+import org.eclipse.pde.api.tools.internal.model.BundleComponent;
+import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
+import org.eclipse.pde.api.tools.internal.provisional.builder.IApiAnalyzer;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiBaseline;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiComponent;
+
+/**
+ * Schedules the API analysis of full project builds to run once the workspace build is done.
+ * <p>
+ * When enabled, the {@link ApiAnalysisBuilder} only cleans up the markers of a project during a
+ * full build and hands the analysis of the project to the scheduler. Once the build is done the
+ * analyses are run on a pool of worker threads, an analysis never running at the same time as
+ * the analysis of a project it requires or that requires it, directly or through other projects.
+ * The component of a project is looked up again in the workspace baseline when its analysis runs,
+ * the analysis is skipped if the project no longer has a component. The markers of all of the
+ * analyzed projects are then created, and their build states saved, in a single workspace operation.
+ * When the job is canceled, the analyses that did not complete or whose markers were not created
+ * are scheduled again, to run after the next build.
+ * </p>
+ * <p>
+ * The scheduler is disabled by default, it is enabled by setting the
+ * <code>org.eclipse.pde.api.tools.analysisThreads</code> system property or
+ * {@link #setThreadCount(int)} to the number of worker threads to use.
+ * </p>
+ *
+ * @since 1.0.500
+ */
+public final class ApiAnalysisScheduler implements IResourceChangeListener {
+
+	/**
+	 * System property used to configure the number of worker threads
+	 */
+	public static final String THREADS_PROPERTY = "org.eclipse.pde.api.tools.analysisThreads"; //$NON-NLS-1$
+
+	/**
+	 * Family of the job running the scheduled analyses
+	 */
+	public static final Object FAMILY = ApiAnalysisScheduler.class;
+
+	/**
+	 * A scheduled analysis
+	 */
+	public static final class Analysis {
+		final IProject project;
+		final IApiBaseline baseline;
+		final BuildState state;
+		/**
+		 * Symbolic name of the component of the project
+		 */
+		final String id;
+		/**
+		 * Names of the projects on the build path of the project
+		 */
+		final Set requiredProjects;
+		/**
+		 * Symbolic names of the components required by the component of the project,
+		 * directly or through other components
+		 */
+		final Set requiredComponents;
+		IApiAnalyzer analyzer = null;
+		boolean canceled = false;
+
+		/**
+		 * Constructor
+		 * @param project the project to analyze
+		 * @param baseline the baseline to compare against or <code>null</code>
+		 * @param component the component of the project, only used to find its prerequisites
+		 * @param state the build state to record the deltas of the analysis in
+		 * @param required the projects on the build path of the project
+		 */
+		public Analysis(IProject project, IApiBaseline baseline, IApiComponent component, BuildState state, IProject[] required) {
+			this.project = project;
+			this.baseline = baseline;
+			this.state = state;
+			this.id = component.getSymbolicName();
+			this.requiredProjects = new HashSet(required.length);
+			for (int i = 0; i < required.length; i++) {
+				this.requiredProjects.add(required[i].getName());
+			}
+			this.requiredComponents = new HashSet();
+			try {
+				IApiComponent[] prerequisites = component.getBaseline().getPrerequisiteComponents(new IApiComponent[] {component});
+				for (int i = 0; i < prerequisites.length; i++) {
+					if(prerequisites[i] != component) {
+						this.requiredComponents.add(prerequisites[i].getSymbolicName());
+					}
+				}
+			}
+			catch(CoreException ce) {
+				ApiPlugin.log(ce);
+			}
+		}
+
+		/**
+		 * Returns if this analysis can run at the same time as the given one
+		 * @param other
+		 * @return <code>true</code> if neither project requires the other, directly or through
+		 * other projects, <code>false</code> otherwise
+		 */
+		public boolean isIndependentOf(Analysis other) {
+			return !requires(other) && !other.requires(this);
+		}
+
+		/**
+		 * Returns if the project of this analysis requires the project of the given analysis
+		 * @param other
+		 * @return <code>true</code> if the project of this analysis requires the other project
+		 */
+		boolean requires(Analysis other) {
+			return this.requiredProjects.contains(other.project.getName()) || this.requiredComponents.contains(other.id);
+		}
+	}
+
+	/**
+	 * Job running the analyses released at the end of a build
+	 */
+	final class AnalysisJob extends Job {
+		AnalysisJob() {
+			super(BuilderMessages.ApiAnalysisScheduler_job_name);
+			setPriority(Job.BUILD);
+		}
+
+		/* (non-Javadoc)
+		 * @see org.eclipse.core.runtime.jobs.Job#belongsTo(java.lang.Object)
+		 */
+		public boolean belongsTo(Object family) {
+			return family == FAMILY;
+		}
+
+		/* (non-Javadoc)
+		 * @see org.eclipse.core.runtime.jobs.Job#run(org.eclipse.core.runtime.IProgressMonitor)
+		 */
+		protected IStatus run(IProgressMonitor monitor) {
+			SubMonitor localmonitor = SubMonitor.convert(monitor, 2);
+			try {
+				analyze(localmonitor.newChild(1));
+				createMarkers(localmonitor.newChild(1));
+			}
+			catch(CoreException e) {
+				return e.getStatus();
+			}
+			catch(OperationCanceledException e) {
+				reschedule();
+				return Status.CANCEL_STATUS;
+			}
+			finally {
+				closeBaselines();
+				localmonitor.done();
+			}
+			return Status.OK_STATUS;
+		}
+	}
+
+	private static ApiAnalysisScheduler fInstance = null;
+
+	private int fThreads = 0;
+	/**
+	 * Analyses scheduled during the current build
+	 */
+	private List fPending = new ArrayList();
+	/**
+	 * Analyses released at the end of a build, waiting for a worker
+	 */
+	private List fReady = new ArrayList();
+	private List fRunning = new ArrayList();
+	/**
+	 * Analyses waiting for their markers to be created
+	 */
+	private List fDone = new ArrayList();
+	/**
+	 * Baselines to close once all of the scheduled analyses are done
+	 */
+	private Set fBaselines = new HashSet();
+	private AnalysisJob fJob = null;
+	private boolean fListening = false;
+
+	/**
+	 * Constructor
+	 * private - no instantiation
+	 */
+	private ApiAnalysisScheduler() {
+		try {
+			String threads = System.getProperty(THREADS_PROPERTY);
+			if(threads != null) {
+				setThreadCount(Integer.parseInt(threads.trim()));
+			}
+		}
+		catch(IllegalArgumentException iae) {
+			ApiPlugin.log(iae);
+		}
+	}
+
+	/**
+	 * Returns the singleton instance of the scheduler
+	 * @return the scheduler
+	 */
+	public static synchronized ApiAnalysisScheduler getScheduler() {
+		if(fInstance == null) {
+			fInstance = new ApiAnalysisScheduler();
+		}
+		return fInstance;
+	}
+
+	/**
+	 * Cancels all of the scheduled analyses and stops listening to the workspace
+	 */
+	public static synchronized void shutdown() {
+		if(fInstance != null) {
+			fInstance.dispose();
+			fInstance = null;
+		}
+	}
+
+	/**
+	 * Sets the number of worker threads to run the analyses on, <code>0</code> disables the scheduler
+	 * @param threads the number of worker threads
+	 */
+	public synchronized void setThreadCount(int threads) {
+		if(threads < 0) {
+			throw new IllegalArgumentException();
+		}
+		fThreads = threads;
+	}
+
+	/**
+	 * @return the number of worker threads to run the analyses on, <code>0</code> if the scheduler is disabled
+	 */
+	public synchronized int getThreadCount() {
+		return fThreads;
+	}
+
+	/**
+	 * @return if the analysis of full builds is to be scheduled
+	 */
+	public synchronized boolean isEnabled() {
+		return fThreads > 0;
+	}
+
+	/**
+	 * Schedules the analysis of the given project to run after the current build. Any analysis
+	 * of the project that has not completed yet is canceled.
+	 *
+	 * @param project the project to analyze
+	 * @param baseline the baseline to compare against or <code>null</code>
+	 * @param component the component of the project
+	 * @param state the build state to record the deltas of the analysis in, saved once the analysis is done
+	 * @param required the projects required by the project
+	 */
+	public synchronized void schedule(IProject project, IApiBaseline baseline, IApiComponent component, BuildState state, IProject[] required) {
+		cancel(project);
+		fPending.add(new Analysis(project, baseline, component, state, required));
+		if(!fListening) {
+			ResourcesPlugin.getWorkspace().addResourceChangeListener(this, IResourceChangeEvent.POST_BUILD);
+			fListening = true;
+		}
+		if(ApiPlugin.DEBUG_BUILDER) {
+			System.out.println("Scheduled the API analysis of " + project.getName()); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Cancels the scheduled analysis of the given project. The results of a canceled analysis are discarded.
+	 *
+	 * @param project the project
+	 * @return <code>true</code> if an analysis of the project was canceled, <code>false</code> otherwise
+	 */
+	public synchronized boolean cancel(IProject project) {
+		boolean canceled = remove(fPending, project) | remove(fReady, project) | remove(fDone, project);
+		for (Iterator iter = fRunning.iterator(); iter.hasNext();) {
+			Analysis analysis = (Analysis) iter.next();
+			if(analysis.project.equals(project)) {
+				analysis.canceled = true;
+				canceled = true;
+			}
+		}
+		return canceled;
+	}
+
+	/**
+	 * Records that the given baseline is to be closed once the scheduled analyses are done
+	 *
+	 * @param baseline the baseline to close
+	 * @return <code>true</code> if the baseline will be closed by the scheduler, <code>false</code>
+	 * if there are no scheduled analyses and the caller should close the baseline
+	 */
+	public synchronized boolean closeWhenDone(IApiBaseline baseline) {
+		if(fPending.isEmpty() && fReady.isEmpty() && fRunning.isEmpty() && fDone.isEmpty()) {
+			return false;
+		}
+		fBaselines.add(baseline);
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.core.resources.IResourceChangeListener#resourceChanged(org.eclipse.core.resources.IResourceChangeEvent)
+	 */
+	public void resourceChanged(IResourceChangeEvent event) {
+		if(event.getType() != IResourceChangeEvent.POST_BUILD) {
+			return;
+		}
+		synchronized (this) {
+			if(fPending.isEmpty()) {
+				return;
+			}
+			// the build is done, release the analyses scheduled during the build
+			fReady.addAll(fPending);
+			fPending.clear();
+			if(fJob == null) {
+				fJob = new AnalysisJob();
+			}
+			fJob.schedule();
+		}
+	}
+
+	/**
+	 * Runs the released analyses on the worker threads until there are none left
+	 * @param monitor
+	 */
+	void analyze(IProgressMonitor monitor) {
+		// only the job reports progress, the workers only look for cancellation
+		final SubMonitor localmonitor = SubMonitor.convert(monitor, NLS.bind(BuilderMessages.ApiAnalysisScheduler_analyzing, Integer.toString(getReadyCount())), IProgressMonitor.UNKNOWN);
+		long start = System.currentTimeMillis();
+		int count = Math.max(1, Math.min(getThreadCount(), getReadyCount()));
+		Thread[] workers = new Thread[count];
+		for (int i = 0; i < count; i++) {
+			workers[i] = new Thread(new Runnable() {
+				public void run() {
+					Analysis analysis = null;
+					while((analysis = nextAnalysis(localmonitor)) != null) {
+						analyze(analysis, localmonitor);
+					}
+				}
+			}, "API Analysis Worker " + i); //$NON-NLS-1$
+			workers[i].start();
+		}
+		for (int i = 0; i < count; i++) {
+			try {
+				workers[i].join();
+			}
+			catch(InterruptedException ie) {
+				// the worker ends on its own once there are no analyses left
+			}
+		}
+		if(ApiPlugin.DEBUG_BUILDER) {
+			System.out.println("API analysis on " + count + " threads done in " + (System.currentTimeMillis() - start) + " ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+		if(localmonitor.isCanceled()) {
+			throw new OperationCanceledException();
+		}
+	}
+
+	/**
+	 * Runs the given analysis
+	 * @param analysis
+	 * @param monitor the monitor of the job, only used to check for cancellation from the worker threads
+	 */
+	void analyze(final Analysis analysis, final IProgressMonitor monitor) {
+		IProgressMonitor cancelmonitor = new NullProgressMonitor() {
+			public boolean isCanceled() {
+				return super.isCanceled() || monitor.isCanceled() || ApiAnalysisScheduler.this.isCanceled(analysis);
+			}
+		};
+		long start = System.currentTimeMillis();
+		IApiComponent component = getComponent(analysis.project);
+		if(component == null) {
+			// the project no longer has a component, its analysis is outdated
+			if(ApiPlugin.DEBUG_BUILDER) {
+				System.out.println("Skipped the API analysis of " + analysis.project.getName()); //$NON-NLS-1$
+			}
+			analysisDone(analysis, null, false);
+			return;
+		}
+		BaseApiAnalyzer analyzer = new BaseApiAnalyzer();
+		boolean success = false;
+		boolean interrupted = false;
+		try {
+			analyzer.analyzeComponent(analysis.state, null, null, analysis.baseline, component, new BuildContext(), cancelmonitor);
+			success = true;
+		}
+		catch(OperationCanceledException oce) {
+			// the results are discarded, the analysis runs again unless it was canceled on its own
+			interrupted = monitor.isCanceled();
+		}
+		catch(RuntimeException re) {
+			ApiPlugin.log(re);
+		}
+		finally {
+			if(!success) {
+				analyzer.dispose();
+			}
+			analysisDone(analysis, success ? analyzer : null, interrupted);
+		}
+		if(ApiPlugin.DEBUG_BUILDER) {
+			System.out.println("API analysis of " + analysis.project.getName() + " done in " + (System.currentTimeMillis() - start) + " ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+	}
+
+	/**
+	 * Returns the next released analysis that is independent of all of the running ones, waiting for
+	 * running analyses to complete if required.
+	 *
+	 * @param monitor
+	 * @return the next analysis to run or <code>null</code> if there are none left
+	 */
+	synchronized Analysis nextAnalysis(IProgressMonitor monitor) {
+		while(!fReady.isEmpty() && !monitor.isCanceled()) {
+			Analysis analysis = selectAnalysis(fReady, fRunning);
+			if(analysis != null) {
+				fReady.remove(analysis);
+				fRunning.add(analysis);
+				return analysis;
+			}
+			try {
+				// all of the released analyses depend on a running one
+				wait();
+			}
+			catch(InterruptedException ie) {
+				return null;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the first of the given released analyses that is independent of all of the given
+	 * running analyses. Released analyses are run in the order they were scheduled in, an analysis
+	 * that has to wait does not hold back the independent analyses scheduled after it.
+	 *
+	 * @param ready the released {@link Analysis}es, in the order they were scheduled in
+	 * @param running the running {@link Analysis}es
+	 * @return the analysis to run next or <code>null</code> if all of the released analyses have to wait
+	 */
+	public static Analysis selectAnalysis(List ready, List running) {
+		loop: for (Iterator iter = ready.iterator(); iter.hasNext();) {
+			Analysis analysis = (Analysis) iter.next();
+			for (Iterator iter2 = running.iterator(); iter2.hasNext();) {
+				if(!analysis.isIndependentOf((Analysis) iter2.next())) {
+					continue loop;
+				}
+			}
+			return analysis;
+		}
+		return null;
+	}
+
+	/**
+	 * Records that the given analysis is done
+	 * @param analysis
+	 * @param analyzer the analyzer holding the problems found or <code>null</code> if the analysis failed
+	 * @param interrupted if the analysis was interrupted by the cancellation of the job
+	 */
+	synchronized void analysisDone(Analysis analysis, IApiAnalyzer analyzer, boolean interrupted) {
+		fRunning.remove(analysis);
+		if(interrupted && !analysis.canceled) {
+			// scheduled again once the job is done
+			fReady.add(analysis);
+		}
+		else if(analyzer != null) {
+			if(analysis.canceled) {
+				analyzer.dispose();
+			}
+			else {
+				analysis.analyzer = analyzer;
+				fDone.add(analysis);
+			}
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Creates the markers of the completed analyses and saves their build states in a single workspace operation
+	 * @param monitor
+	 * @throws CoreException
+	 */
+	void createMarkers(IProgressMonitor monitor) throws CoreException {
+		IWorkspace workspace = ResourcesPlugin.getWorkspace();
+		workspace.run(new IWorkspaceRunnable() {
+			public void run(IProgressMonitor monitor) throws CoreException {
+				Analysis[] analyses = null;
+				synchronized (ApiAnalysisScheduler.this) {
+					// builds cannot run during the operation, analyses can no longer be canceled
+					analyses = (Analysis[]) fDone.toArray(new Analysis[fDone.size()]);
+					fDone.clear();
+				}
+				SubMonitor localmonitor = SubMonitor.convert(monitor, BuilderMessages.ApiAnalysisScheduler_creating_markers, analyses.length);
+				for (int i = 0; i < analyses.length; i++) {
+					Analysis analysis = analyses[i];
+					try {
+						if(analysis.project.isAccessible()) {
+							ApiAnalysisBuilder.createMarkers(analysis.project, analysis.analyzer);
+							BuildState.saveBuiltState(analysis.project, analysis.state);
+						}
+					}
+					catch(CoreException ce) {
+						ApiPlugin.log(ce);
+					}
+					finally {
+						analysis.analyzer.dispose();
+					}
+					localmonitor.worked(1);
+				}
+			}
+		}, workspace.getRoot(), IWorkspace.AVOID_UPDATE, monitor);
+	}
+
+	/**
+	 * Schedules the released analyses that did not complete, and the completed analyses whose markers
+	 * were not created, to run again after the next build. Called when the job is canceled, once the
+	 * workers are done.
+	 */
+	synchronized void reschedule() {
+		List analyses = new ArrayList(fReady.size() + fDone.size());
+		analyses.addAll(fReady);
+		analyses.addAll(fDone);
+		fReady.clear();
+		fDone.clear();
+		for (Iterator iter = analyses.iterator(); iter.hasNext();) {
+			Analysis analysis = (Analysis) iter.next();
+			if(analysis.analyzer != null) {
+				analysis.analyzer.dispose();
+				analysis.analyzer = null;
+			}
+			if(isPending(analysis.project)) {
+				// scheduled again during the current build
+				iter.remove();
+			}
+		}
+		fPending.addAll(0, analyses);
+		if(ApiPlugin.DEBUG_BUILDER) {
+			System.out.println("Rescheduled " + analyses.size() + " canceled API analyses"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	/**
+	 * Closes the baselines recorded by {@link #closeWhenDone(IApiBaseline)} once no analysis is running
+	 * or waiting to run. Analyses scheduled during a build record their baselines again at the end of the build.
+	 */
+	void closeBaselines() {
+		IApiBaseline[] baselines = null;
+		synchronized (this) {
+			if(!fReady.isEmpty() || !fRunning.isEmpty()) {
+				// the job runs again and closes the baselines when it is done
+				return;
+			}
+			baselines = (IApiBaseline[]) fBaselines.toArray(new IApiBaseline[fBaselines.size()]);
+			fBaselines.clear();
+		}
+		for (int i = 0; i < baselines.length; i++) {
+			try {
+				baselines[i].close();
+			}
+			catch(CoreException ce) {
+				ApiPlugin.log(ce);
+			}
+		}
+	}
+
+	/**
+	 * Returns the component of the given project in the current workspace baseline. The component the
+	 * analysis was scheduled with may have been disposed since, along with the baseline it belonged to.
+	 *
+	 * @param project
+	 * @return the component of the project or <code>null</code> if it has none or it is disposed
+	 */
+	IApiComponent getComponent(IProject project) {
+		if(!project.isAccessible()) {
+			return null;
+		}
+		IApiBaseline wbaseline = ApiPlugin.getDefault().getApiBaselineManager().getWorkspaceBaseline();
+		if(wbaseline == null) {
+			return null;
+		}
+		IApiComponent component = wbaseline.getApiComponent(project);
+		if(component instanceof BundleComponent && ((BundleComponent) component).isDisposed()) {
+			return null;
+		}
+		return component;
+	}
+
+	synchronized int getReadyCount() {
+		return fReady.size();
+	}
+
+	synchronized boolean isCanceled(Analysis analysis) {
+		return analysis.canceled;
+	}
+
+	/**
+	 * Returns if an analysis of the given project is scheduled during the current build
+	 * @param project
+	 * @return <code>true</code> if an analysis of the project is pending, <code>false</code> otherwise
+	 */
+	private boolean isPending(IProject project) {
+		for (Iterator iter = fPending.iterator(); iter.hasNext();) {
+			if(((Analysis) iter.next()).project.equals(project)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Removes the analyses of the given project from the given list
+	 * @param analyses
+	 * @param project
+	 * @return <code>true</code> if an analysis was removed, <code>false</code> otherwise
+	 */
+	private boolean remove(List analyses, IProject project) {
+		boolean removed = false;
+		for (Iterator iter = analyses.iterator(); iter.hasNext();) {
+			Analysis analysis = (Analysis) iter.next();
+			if(analysis.project.equals(project)) {
+				if(analysis.analyzer != null) {
+					analysis.analyzer.dispose();
+				}
+				iter.remove();
+				removed = true;
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Cancels all of the scheduled analyses and stops listening to the workspace
+	 */
+	private void dispose() {
+		synchronized (this) {
+			fPending.clear();
+			fReady.clear();
+			for (Iterator iter = fRunning.iterator(); iter.hasNext();) {
+				((Analysis) iter.next()).canceled = true;
+			}
+			for (Iterator iter = fDone.iterator(); iter.hasNext();) {
+				((Analysis) iter.next()).analyzer.dispose();
+			}
+			fDone.clear();
+			fBaselines.clear();
+			if(fListening) {
+				ResourcesPlugin.getWorkspace().removeResourceChangeListener(this);
+				fListening = false;
+			}
+		}
+		if(fJob != null) {
+			fJob.cancel();
+		}
+	}
+}
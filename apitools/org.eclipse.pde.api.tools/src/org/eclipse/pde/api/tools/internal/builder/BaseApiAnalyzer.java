@@ -1952,8 +1952,7 @@ public class BaseApiAnalyzer implements IApiAnalyzer {
 			System.out.println("reference version of " + reference.getSymbolicName() + " : " + refversion); //$NON-NLS-1$ //$NON-NLS-2$
 			System.out.println("component version of " + component.getSymbolicName() + " : " + compversion); //$NON-NLS-1$ //$NON-NLS-2$
 		}
-		IDelta[] breakingChanges = fBuildState.getBreakingChanges();
-		if (breakingChanges.length != 0) {
+		if (fBuildState.hasBreakingChanges()) {
 			// make sure that the major version has been incremented
 			if (compversion.getMajor() <= refversion.getMajor()) {
 				newversion = new Version(compversion.getMajor() + 1, 0, 0, compversion.getQualifier() != null ? QUALIFIER : null);
@@ -1964,11 +1963,10 @@ public class BaseApiAnalyzer implements IApiAnalyzer {
 							refversionval
 						},
 						String.valueOf(newversion),
-						collectDetails(breakingChanges));
+						collectDetails(fBuildState.getBreakingChanges()));
 			}
 		} else {
-			IDelta[] compatibleChanges = fBuildState.getCompatibleChanges();
-			if (compatibleChanges.length != 0) {
+			if (fBuildState.hasCompatibleChanges()) {
 				// only new API have been added
 				if (compversion.getMajor() != refversion.getMajor()) {
 					if (!ignoreMajorVersionCheckWithoutBreakingChange()) {
@@ -1981,7 +1979,7 @@ public class BaseApiAnalyzer implements IApiAnalyzer {
 									refversionval
 								},
 								String.valueOf(newversion),
-								collectDetails(compatibleChanges));
+								collectDetails(fBuildState.getCompatibleChanges()));
 					}
 				} else if (compversion.getMinor() <= refversion.getMinor()) {
 					// the minor version should be incremented
@@ -1993,7 +1991,7 @@ public class BaseApiAnalyzer implements IApiAnalyzer {
 								refversionval
 							},
 							String.valueOf(newversion),
-							collectDetails(compatibleChanges));
+							collectDetails(fBuildState.getCompatibleChanges()));
 				}
 			} else if (compversion.getMajor() != refversion.getMajor()) {
 				if (!ignoreMajorVersionCheckWithoutBreakingChange()) {
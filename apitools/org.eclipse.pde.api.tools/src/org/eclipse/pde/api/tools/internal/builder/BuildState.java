@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2012 IBM Corporation and others.
+ * Copyright (c) 2008, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,14 +10,17 @@
  *******************************************************************************/
 package org.eclipse.pde.api.tools.internal.builder;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -27,6 +30,7 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.zip.CRC32;
 
 import org.eclipse.core.resources.IProject;
@@ -50,14 +54,38 @@ import org.eclipse.pde.core.build.IBuildEntry;
 import org.eclipse.pde.core.build.IBuildModel;
 
 /**
- * The API tools build state
+ * The API tools build state.
+ * <br><br>
+ * The deltas recorded for a project are saved in one section per type name. When the
+ * build state is read back the file is read in one go, but only its header and the index
+ * of the sections are decoded, the sections are decoded when the deltas of their type are needed.
+ * An incremental build only decodes the sections of the types it touches.
  * 
  * @since 1.0.1
  */
 public class BuildState {
 	private static final IDelta[] EMPTY_DELTAS = new IDelta[0];
 	private static final String[] NO_REEXPORTED_COMPONENTS = new String[0];
-	private static final int VERSION = 0x20;
+	private static final int VERSION = 0x21;
+	
+	/**
+	 * Location of the deltas of a type in the delta sections of a build state
+	 */
+	static class Section {
+		final int offset;
+		final int length;
+		final int compatibleCount;
+		final int breakingCount;
+		final long crc;
+		
+		Section(int offset, int length, int compatibleCount, int breakingCount, long crc) {
+			this.offset = offset;
+			this.length = length;
+			this.compatibleCount = compatibleCount;
+			this.breakingCount = breakingCount;
+			this.crc = crc;
+		}
+	}
 	
 	private Map compatibleChanges;
 	private Map breakingChanges;
@@ -74,11 +102,22 @@ public class BuildState {
 	private String[] reexportedComponents;
 	private Set apiToolingDependentProjects;
 	private long buildpathCRC = -1L;
+	/**
+	 * Map of type names to the {@link Section}s that have not been decoded yet,
+	 * or <code>null</code>
+	 * @since 1.0.500
+	 */
+	private Map sectionIndex;
+	/**
+	 * The delta sections of the read build state, or <code>null</code>
+	 * @since 1.0.500
+	 */
+	private ByteBuffer sections;
 	
 	/**
 	 * Constructor
 	 */
-	BuildState() {
+	public BuildState() {
 		this.compatibleChanges = new HashMap();
 		this.breakingChanges = new HashMap();
 		this.manifestChanges = new HashMap();
@@ -86,50 +125,81 @@ public class BuildState {
 	}
 	
 	/**
-	 * Reads the build state from an input stream
+	 * Reads the build state from an input stream. The complete stream is read, the
+	 * per-type delta sections are only decoded once they are needed.
+	 * 
 	 * @param in
 	 * @return the {@link BuildState} from the given input stream
 	 * @throws IOException
 	 */
-	 public static BuildState read(DataInputStream in) throws IOException {
-		String pluginID= in.readUTF();
-		if (!pluginID.equals(ApiPlugin.PLUGIN_ID)) {
-			throw new IOException(BuilderMessages.build_wrongFileFormat);
-		}
-		String kind= in.readUTF();
-		if (!kind.equals("STATE")) {//$NON-NLS-1$
-			throw new IOException(BuilderMessages.build_wrongFileFormat);
-		}
-		if (in.readInt() != VERSION) {
-			// this is an old build state - a full build is required
-			return null;
-		}
-		if (in.readBoolean()) {
-			// continue to read
-			BuildState state = new BuildState();
-			state.buildpathCRC = in.readLong();
-			int count = in.readInt();
-			// read all compatible deltas
-			for (int i = 0; i < count; i++) {
-				state.addCompatibleChange(readDelta(in));
+	public static BuildState read(DataInputStream in) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int count = 0;
+		while((count = in.read(buffer)) != -1) {
+			bytes.write(buffer, 0, count);
+		}
+		return read(ByteBuffer.wrap(bytes.toByteArray()));
+	}
+	
+	/**
+	 * Reads the build state from the given buffer. Only the header of the build state
+	 * and the index of the per-type delta sections are read, the sections themselves 
+	 * are decoded from the buffer when the deltas of their type are requested.
+	 * <br><br>
+	 * The build state is laid out as:
+	 * <ul>
+	 * <li>the plug-in id, the <code>STATE</code> kind and the version</li>
+	 * <li>the length and the CRC of the header</li>
+	 * <li>the header: the build path CRC, the re-exported components, the dependent projects,
+	 * the manifest and build.properties states and the index of the delta sections, sorted by type name</li>
+	 * <li>the delta sections, one per type name holding its compatible and its breaking deltas</li>
+	 * </ul>
+	 * 
+	 * @param buffer the buffer to read from, typically the contents of the build state file
+	 * @return the {@link BuildState} from the given buffer or <code>null</code> if the
+	 * build state was written by another version or its header is corrupt
+	 * @throws IOException
+	 */
+	static BuildState read(ByteBuffer buffer) throws IOException {
+		try {
+			String pluginID = readUTF(buffer);
+			if (!pluginID.equals(ApiPlugin.PLUGIN_ID)) {
+				throw new IOException(BuilderMessages.build_wrongFileFormat);
 			}
-			count = in.readInt();
-			// read all breaking deltas
-			for (int i = 0; i < count; i++) {
-				state.addBreakingChange(readDelta(in));
+			String kind = readUTF(buffer);
+			if (!kind.equals("STATE")) {//$NON-NLS-1$
+				throw new IOException(BuilderMessages.build_wrongFileFormat);
 			}
-			count = in.readInt();
-			// read all re-exported component names
-			String[] components = new String[count];
-			for (int i = 0; i < count; i++) {
-				components[i] = in.readUTF();
+			if (buffer.getInt() != VERSION) {
+				// this is an old build state - a full build is required
+				return null;
 			}
-			state.reexportedComponents = components;
-			count = in.readInt();
-			for (int i = 0; i < count; i++) {
-				state.addApiToolingDependentProject(in.readUTF());
+			byte[] header = new byte[buffer.getInt()];
+			long crc = buffer.getLong();
+			buffer.get(header);
+			CRC32 crc32 = new CRC32();
+			crc32.update(header);
+			if (crc32.getValue() != crc) {
+				// the header is corrupt - a full build is required
+				return null;
 			}
-			if(in.available() > 0) {
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(header));
+			if (in.readBoolean()) {
+				// continue to read
+				BuildState state = new BuildState();
+				state.buildpathCRC = in.readLong();
+				int count = in.readInt();
+				// read all re-exported component names
+				String[] components = new String[count];
+				for (int i = 0; i < count; i++) {
+					components[i] = in.readUTF();
+				}
+				state.reexportedComponents = components;
+				count = in.readInt();
+				for (int i = 0; i < count; i++) {
+					state.addApiToolingDependentProject(in.readUTF());
+				}
 				count = in.readInt();
 				if(count > 0) {
 					//read the saved headers
@@ -152,63 +222,237 @@ public class BuildState {
 					}
 					state.setBuildPropertiesState(map);
 				}
+				count = in.readInt();
+				// read the index of the delta sections
+				if(count > 0) {
+					state.sectionIndex = new HashMap((int) (count / 0.75f) + 1);
+					for (int i = 0; i < count; i++) {
+						String typeName = in.readUTF();
+						state.sectionIndex.put(typeName, new Section(in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readLong()));
+					}
+					state.sections = buffer.slice();
+				}
+				return state;
 			}
-			return state;
+			return null;
+		}
+		catch(BufferUnderflowException e) {
+			throw new IOException(BuilderMessages.build_wrongFileFormat);
 		}
-		return null;
 	}
 	 
 	/**
-	 * Writes the given {@link BuildState} to the given output stream
+	 * Writes the given {@link BuildState} to the given output stream. Delta sections that were 
+	 * never decoded from the last read build state are copied as they are.
+	 * 
 	 * @param state
 	 * @param out
 	 * @throws IOException
 	 */
 	public static void write(BuildState state, DataOutputStream out) throws IOException {
-		out.writeUTF(ApiPlugin.PLUGIN_ID);
-		out.writeUTF("STATE"); //$NON-NLS-1$
-		out.writeInt(VERSION);
-		out.writeBoolean(true);
-		out.writeLong(state.buildpathCRC);
-		IDelta[] compatibleChangesDeltas = state.getCompatibleChanges();
-		int length = compatibleChangesDeltas.length;
-		out.writeInt(length);
-		for (int i = 0; i < length; i++) {
-			writeDelta(compatibleChangesDeltas[i], out);
-		}
-		IDelta[] breakingChangesDeltas = state.getBreakingChanges();
-		length = breakingChangesDeltas.length;
-		out.writeInt(length);
-		for (int i = 0; i < length; i++) {
-			writeDelta(breakingChangesDeltas[i], out);
+		// collect the delta sections first, the header holds their index
+		String[] typeNames = state.getTypeNames();
+		ByteArrayOutputStream sectionBytes = new ByteArrayOutputStream();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream sectionOut = new DataOutputStream(bytes);
+		Section[] index = new Section[typeNames.length];
+		CRC32 crc32 = new CRC32();
+		for (int i = 0; i < typeNames.length; i++) {
+			Section section = state.sectionIndex == null ? null : (Section) state.sectionIndex.get(typeNames[i]);
+			int offset = sectionBytes.size();
+			if (section != null) {
+				// not decoded, copy the encoded section
+				byte[] encoded = state.getSectionBytes(section);
+				sectionBytes.write(encoded);
+				index[i] = new Section(offset, encoded.length, section.compatibleCount, section.breakingCount, section.crc);
+			}
+			else {
+				bytes.reset();
+				int compatibleCount = writeDeltas((Set) state.compatibleChanges.get(typeNames[i]), sectionOut);
+				int breakingCount = writeDeltas((Set) state.breakingChanges.get(typeNames[i]), sectionOut);
+				byte[] encoded = bytes.toByteArray();
+				crc32.reset();
+				crc32.update(encoded);
+				sectionBytes.write(encoded);
+				index[i] = new Section(offset, encoded.length, compatibleCount, breakingCount, crc32.getValue());
+			}
 		}
+		ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+		DataOutputStream headerOut = new DataOutputStream(headerBytes);
+		headerOut.writeBoolean(true);
+		headerOut.writeLong(state.buildpathCRC);
 		String[] reexportedComponents = state.getReexportedComponents();
-		length = reexportedComponents.length;
-		out.writeInt(length);
+		int length = reexportedComponents.length;
+		headerOut.writeInt(length);
 		for (int i = 0; i < length; i++) {
-			out.writeUTF(reexportedComponents[i]);
+			headerOut.writeUTF(reexportedComponents[i]);
 		}
 		Set apiToolingDependentsProjects = state.getApiToolingDependentProjects();
 		length = apiToolingDependentsProjects.size();
-		out.writeInt(length);
+		headerOut.writeInt(length);
 		for (Iterator iterator = apiToolingDependentsProjects.iterator(); iterator.hasNext(); ) {
-			out.writeUTF((String) iterator.next());
+			headerOut.writeUTF((String) iterator.next());
 		}
 		Map map = state.getManifestState();
-		out.writeInt(map.size());
+		headerOut.writeInt(map.size());
 		Entry entry = null;
 		for (Iterator i = map.entrySet().iterator(); i.hasNext();) {
 			entry = (Entry) i.next();
-			out.writeUTF((String) entry.getKey());
-			out.writeUTF((String) entry.getValue());
+			headerOut.writeUTF((String) entry.getKey());
+			headerOut.writeUTF((String) entry.getValue());
 		}
 		map = state.getBuildPropertiesState();
-		out.writeInt(map.size());
+		headerOut.writeInt(map.size());
 		entry = null;
 		for (Iterator i = map.entrySet().iterator(); i.hasNext();) {
 			entry = (Entry) i.next();
-			out.writeUTF((String) entry.getKey());
-			out.writeUTF((String) entry.getValue());
+			headerOut.writeUTF((String) entry.getKey());
+			headerOut.writeUTF((String) entry.getValue());
+		}
+		headerOut.writeInt(typeNames.length);
+		for (int i = 0; i < typeNames.length; i++) {
+			headerOut.writeUTF(typeNames[i]);
+			headerOut.writeInt(index[i].offset);
+			headerOut.writeInt(index[i].length);
+			headerOut.writeInt(index[i].compatibleCount);
+			headerOut.writeInt(index[i].breakingCount);
+			headerOut.writeLong(index[i].crc);
+		}
+		headerOut.flush();
+		byte[] header = headerBytes.toByteArray();
+		crc32.reset();
+		crc32.update(header);
+		out.writeUTF(ApiPlugin.PLUGIN_ID);
+		out.writeUTF("STATE"); //$NON-NLS-1$
+		out.writeInt(VERSION);
+		out.writeInt(header.length);
+		out.writeLong(crc32.getValue());
+		out.write(header);
+		sectionBytes.writeTo(out);
+	}
+	
+	/**
+	 * Writes the given set of deltas to the given output stream
+	 * 
+	 * @param deltas the set of {@link IDelta}s or <code>null</code>
+	 * @param out the stream to write to
+	 * @return the number of deltas written
+	 * @throws IOException
+	 */
+	private static int writeDeltas(Set deltas, DataOutputStream out) throws IOException {
+		if (deltas == null) {
+			out.writeInt(0);
+			return 0;
+		}
+		out.writeInt(deltas.size());
+		for (Iterator iterator = deltas.iterator(); iterator.hasNext(); ) {
+			writeDelta((IDelta) iterator.next(), out);
+		}
+		return deltas.size();
+	}
+	
+	/**
+	 * Reads a string written with {@link DataOutputStream#writeUTF(String)} from the given buffer
+	 * 
+	 * @param buffer
+	 * @return the string read from the buffer
+	 * @throws IOException
+	 */
+	private static String readUTF(ByteBuffer buffer) throws IOException {
+		int length = buffer.getShort() & 0xFFFF;
+		byte[] bytes = new byte[length + 2];
+		bytes[0] = (byte) (length >>> 8);
+		bytes[1] = (byte) length;
+		buffer.get(bytes, 2, length);
+		return new DataInputStream(new ByteArrayInputStream(bytes)).readUTF();
+	}
+	
+	/**
+	 * Returns the sorted names of all of the types that have recorded deltas, decoded or not
+	 * 
+	 * @return the sorted names of the types with deltas
+	 */
+	private String[] getTypeNames() {
+		TreeSet names = new TreeSet(this.compatibleChanges.keySet());
+		names.addAll(this.breakingChanges.keySet());
+		if (this.sectionIndex != null) {
+			names.addAll(this.sectionIndex.keySet());
+		}
+		return (String[]) names.toArray(new String[names.size()]);
+	}
+	
+	/**
+	 * Returns the encoded bytes of the given section from the read build state
+	 * 
+	 * @param section
+	 * @return the encoded bytes of the section
+	 */
+	private byte[] getSectionBytes(Section section) {
+		byte[] bytes = new byte[section.length];
+		ByteBuffer buffer = this.sections.duplicate();
+		buffer.position(section.offset);
+		buffer.get(bytes);
+		return bytes;
+	}
+	
+	/**
+	 * Decodes the delta section of the given type if it has not been decoded yet
+	 * 
+	 * @param typeName the name of the type
+	 */
+	private void loadSection(String typeName) {
+		if (this.sectionIndex == null) {
+			return;
+		}
+		Section section = (Section) this.sectionIndex.remove(typeName);
+		if (section != null) {
+			loadSection(typeName, section);
+		}
+	}
+	
+	/**
+	 * Decodes all of the delta sections that have not been decoded yet
+	 */
+	private void loadAllSections() {
+		if (this.sectionIndex == null) {
+			return;
+		}
+		for (Iterator iterator = this.sectionIndex.entrySet().iterator(); iterator.hasNext(); ) {
+			Entry entry = (Entry) iterator.next();
+			loadSection((String) entry.getKey(), (Section) entry.getValue());
+		}
+		this.sectionIndex = null;
+		this.sections = null;
+	}
+	
+	/**
+	 * Decodes the given delta section into the compatible and breaking changes of this state.
+	 * A section that does not match its CRC is logged and dropped.
+	 * 
+	 * @param typeName the name of the type
+	 * @param section the section of the type
+	 */
+	private void loadSection(String typeName, Section section) {
+		byte[] bytes = getSectionBytes(section);
+		CRC32 crc32 = new CRC32();
+		crc32.update(bytes);
+		if (crc32.getValue() != section.crc) {
+			ApiPlugin.log(new Status(IStatus.ERROR, ApiPlugin.PLUGIN_ID, BuilderMessages.build_wrongFileFormat + " : " + typeName)); //$NON-NLS-1$
+			return;
+		}
+		try {
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				addChange(this.compatibleChanges, readDelta(in));
+			}
+			count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				addChange(this.breakingChanges, readDelta(in));
+			}
+		}
+		catch(IOException e) {
+			ApiPlugin.log(e);
 		}
 	}
 	
@@ -287,15 +531,8 @@ public class BuildState {
 	 * @param delta the {@link IDelta} to add to the state
 	 */
 	public void addCompatibleChange(IDelta delta) {
-		String typeName = delta.getTypeName();
-		Set object = (Set) this.compatibleChanges.get(typeName);
-		if (object == null) {
-			Set changes = new HashSet();
-			changes.add(delta);
-			this.compatibleChanges.put(typeName, changes);
-		} else {
-			object.add(delta);
-		}
+		loadSection(delta.getTypeName());
+		addChange(this.compatibleChanges, delta);
 	}
 
 	/**
@@ -304,22 +541,73 @@ public class BuildState {
 	 * @param delta the {@link IDelta} to add to the state
 	 */
 	public void addBreakingChange(IDelta delta) {
+		loadSection(delta.getTypeName());
+		addChange(this.breakingChanges, delta);
+	}
+	
+	/**
+	 * Adds the given {@link IDelta} to the set of changes of its type in the given map
+	 * 
+	 * @param changes the map of type names to sets of changes
+	 * @param delta the {@link IDelta} to add
+	 */
+	private static void addChange(Map changes, IDelta delta) {
 		String typeName = delta.getTypeName();
-		Set object = (Set) this.breakingChanges.get(typeName);
+		Set object = (Set) changes.get(typeName);
 		if (object == null) {
-			Set changes = new HashSet();
-			changes.add(delta);
-			this.breakingChanges.put(typeName, changes);
+			Set set = new HashSet();
+			set.add(delta);
+			changes.put(typeName, set);
 		} else {
 			object.add(delta);
 		}
 	}
 	
+	/**
+	 * Returns if there are recorded breaking changes without decoding them
+	 * 
+	 * @return <code>true</code> if there are recorded breaking changes, <code>false</code> otherwise
+	 * @since 1.0.500
+	 */
+	public boolean hasBreakingChanges() {
+		return this.breakingChanges.size() != 0 || hasSection(false);
+	}
+	
+	/**
+	 * Returns if there are recorded compatible changes without decoding them
+	 * 
+	 * @return <code>true</code> if there are recorded compatible changes, <code>false</code> otherwise
+	 * @since 1.0.500
+	 */
+	public boolean hasCompatibleChanges() {
+		return this.compatibleChanges.size() != 0 || hasSection(true);
+	}
+	
+	/**
+	 * Returns if one of the delta sections that have not been decoded yet holds deltas of the given kind
+	 * 
+	 * @param compatible if compatible or breaking deltas are looked for
+	 * @return <code>true</code> if a section holds deltas of the given kind, <code>false</code> otherwise
+	 */
+	private boolean hasSection(boolean compatible) {
+		if (this.sectionIndex == null) {
+			return false;
+		}
+		for (Iterator iterator = this.sectionIndex.values().iterator(); iterator.hasNext(); ) {
+			Section section = (Section) iterator.next();
+			if ((compatible ? section.compatibleCount : section.breakingCount) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
 	/**
 	 * @return the complete list of recorded breaking changes with duplicates removed, or 
 	 * an empty array, never <code>null</code>
 	 */
 	public IDelta[] getBreakingChanges() {
+		loadAllSections();
 		if (this.breakingChanges == null || this.breakingChanges.size() == 0) {
 			return EMPTY_DELTAS;
 		}
@@ -336,6 +624,7 @@ public class BuildState {
 	 * or an empty array, never <code>null</code>
 	 */
 	public IDelta[] getCompatibleChanges() {
+		loadAllSections();
 		if (this.compatibleChanges == null || this.compatibleChanges.size() == 0) {
 			return EMPTY_DELTAS;
 		}
@@ -363,6 +652,10 @@ public class BuildState {
 	 * @param typeName the given type name
 	 */
 	public void cleanup(String typeName) {
+		if (this.sectionIndex != null) {
+			// no need to decode the deltas that are discarded
+			this.sectionIndex.remove(typeName);
+		}
 		this.breakingChanges.remove(typeName);
 		this.compatibleChanges.remove(typeName);
 		this.reexportedComponents = null;
@@ -535,9 +828,11 @@ public class BuildState {
 		File file = getSerializationFile(project);
 		if (file != null && file.exists()) {
 			try {
-				DataInputStream in= new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+				FileInputStream in = new FileInputStream(file);
 				try {
-					return read(in);
+					// the file is not mapped so that it can be replaced or deleted while the state is in use,
+					// only the header is decoded, the delta sections are decoded from the buffer as needed
+					return read(ByteBuffer.wrap(Util.getInputStreamAsByteArray(in, (int) file.length())));
 				} finally {
 					if (ApiPlugin.DEBUG_BUILDER) {
 						System.out.println("Saved state thinks last build failed for " + project.getName()); //$NON-NLS-1$
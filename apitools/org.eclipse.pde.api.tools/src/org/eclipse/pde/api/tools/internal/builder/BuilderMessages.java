@@ -97,6 +97,9 @@ public class BuilderMessages extends NLS {
 	public static String TagValidator_static_final_constructor;
 	public static String TagValidator_static_package_constructor;
 	public static String IncrementalBuilder_builder_for_project;
+	public static String ApiAnalysisScheduler_job_name;
+	public static String ApiAnalysisScheduler_analyzing;
+	public static String ApiAnalysisScheduler_creating_markers;
 
 	static {
 		// initialize resource bundle
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2012 IBM Corporation and others.
+ * Copyright (c) 2009, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,6 +13,7 @@ package org.eclipse.pde.api.tools.internal.builder;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
@@ -30,6 +31,251 @@ import org.eclipse.pde.api.tools.internal.provisional.model.IApiMember;
  */
 public final class ReferenceResolver {
 
+	/**
+	 * Pool of daemon helper threads shared by every resolution, so that resolutions running at the
+	 * same time (for example from the workers of a parallel use scan) never use more than
+	 * {@link ReferenceResolver#getMaxThreads()} - 1 helper threads in total. When no helper is
+	 * available the resolving thread does the work itself. Helper threads exit once they have been
+	 * idle for {@link ReferenceResolver#HELPER_IDLE_TIMEOUT} ms.
+	 */
+	static final class HelperPool {
+		private final LinkedList fTasks = new LinkedList();
+		private int fThreads = 0;
+		private int fIdle = 0;
+
+		/**
+		 * Hands the given task to an idle helper thread, starting a new helper if the pool
+		 * is not full
+		 * @param task the task to run
+		 * @return <code>true</code> if a helper thread will run the task, <code>false</code> if the pool is busy
+		 */
+		synchronized boolean offer(Runnable task) {
+			if(fIdle > fTasks.size()) {
+				fTasks.add(task);
+				notify();
+				return true;
+			}
+			if(fThreads < getMaxThreads() - 1) {
+				fThreads++;
+				fTasks.add(task);
+				Thread thread = new Thread(new Runnable() {
+					public void run() {
+						work();
+					}
+				}, "API Reference Resolver"); //$NON-NLS-1$
+				thread.setDaemon(true);
+				thread.start();
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Waits for the next task to run
+		 * @return the next task or <code>null</code> if the calling helper thread should exit
+		 */
+		private synchronized Runnable take() {
+			long deadline = System.currentTimeMillis() + HELPER_IDLE_TIMEOUT;
+			fIdle++;
+			try {
+				while(fTasks.isEmpty()) {
+					long timeout = deadline - System.currentTimeMillis();
+					if(timeout <= 0) {
+						fThreads--;
+						return null;
+					}
+					try {
+						wait(timeout);
+					}
+					catch(InterruptedException e) {
+						fThreads--;
+						return null;
+					}
+				}
+				return (Runnable) fTasks.removeFirst();
+			}
+			finally {
+				fIdle--;
+			}
+		}
+
+		/**
+		 * Runs tasks until the calling helper thread has been idle for too long
+		 */
+		void work() {
+			boolean exited = false;
+			try {
+				Runnable task = null;
+				while((task = take()) != null) {
+					task.run();
+				}
+				exited = true;
+			}
+			finally {
+				if(!exited) {
+					synchronized (this) {
+						fThreads--;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Resolves a list of work items on a number of threads. Items are either lists of
+	 * {@link Reference}s sharing the same signature key, in which case the first reference
+	 * is resolved and its resolution is shared with the others, or single {@link Reference}s.
+	 */
+	static final class ResolutionTask implements Runnable {
+		private final List fItems;
+		private final IProgressMonitor fMonitor;
+		private int fNext = 0;
+		private CoreException fException = null;
+		private RuntimeException fRuntimeException = null;
+		private int fHelpers = 0;
+
+		ResolutionTask(List items, IProgressMonitor monitor) {
+			fItems = items;
+			fMonitor = monitor;
+		}
+
+		/**
+		 * Returns the next item to resolve or <code>null</code> if all items have been handed out,
+		 * the monitor is canceled or another thread failed
+		 * @return the next item or <code>null</code>
+		 */
+		private synchronized Object next() {
+			if(fNext >= fItems.size() || fException != null || fRuntimeException != null || fMonitor.isCanceled()) {
+				return null;
+			}
+			return fItems.get(fNext++);
+		}
+
+		/**
+		 * Records the first failure, it stops the other threads
+		 * @param e
+		 */
+		private synchronized void failed(Exception e) {
+			if(fException == null && fRuntimeException == null) {
+				if(e instanceof CoreException) {
+					fException = (CoreException) e;
+				}
+				else {
+					fRuntimeException = (RuntimeException) e;
+				}
+			}
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Runnable#run()
+		 */
+		public void run() {
+			Object item = null;
+			try {
+				while((item = next()) != null) {
+					if(item instanceof List) {
+						resolveReferenceSet((List) item);
+					}
+					else {
+						((Reference) item).resolve();
+					}
+				}
+			}
+			catch(CoreException e) {
+				failed(e);
+			}
+			catch(RuntimeException e) {
+				failed(e);
+			}
+		}
+
+		/**
+		 * Called by a helper thread once it stopped working on this task
+		 */
+		synchronized void helperDone() {
+			fHelpers--;
+			notifyAll();
+		}
+
+		/**
+		 * Resolves all of the items using up to the given number of threads, the calling thread being one of them.
+		 * The other threads are taken from the shared {@link HelperPool}, as many as it has available.
+		 * Returns once every item is resolved, the monitor is canceled or a thread failed.
+		 * @param threads the maximum number of threads to use
+		 * @throws CoreException the first exception thrown while resolving an item
+		 */
+		void execute(int threads) throws CoreException {
+			Runnable helper = new Runnable() {
+				public void run() {
+					try {
+						ResolutionTask.this.run();
+					}
+					finally {
+						helperDone();
+					}
+				}
+			};
+			for (int i = 1; i < threads; i++) {
+				synchronized (this) {
+					fHelpers++;
+				}
+				if(!fgHelperPool.offer(helper)) {
+					synchronized (this) {
+						fHelpers--;
+					}
+					break;
+				}
+			}
+			run();
+			boolean interrupted = false;
+			synchronized (this) {
+				while(fHelpers > 0) {
+					try {
+						wait();
+					}
+					catch(InterruptedException e) {
+						interrupted = true;
+					}
+				}
+			}
+			if(interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			if(fException != null) {
+				throw fException;
+			}
+			if(fRuntimeException != null) {
+				throw fRuntimeException;
+			}
+		}
+	}
+
+	/**
+	 * System property used to configure the number of threads references are resolved with. 
+	 * A value of 1 resolves references on the calling thread only.
+	 */
+	public static final String THREADS_PROPERTY = "org.eclipse.pde.api.tools.referenceResolverThreads"; //$NON-NLS-1$
+
+	/**
+	 * Default maximum number of threads used to resolve references
+	 */
+	public static final int DEFAULT_MAX_THREADS = 4;
+
+	/**
+	 * Minimum number of work items each thread should get for it to be worth starting a thread
+	 */
+	static final int MIN_ITEMS_PER_THREAD = 64;
+
+	/**
+	 * Time in milliseconds after which an idle helper thread of the {@link HelperPool} exits
+	 */
+	static final long HELPER_IDLE_TIMEOUT = 30000;
+
+	/**
+	 * The helper threads shared by all resolutions
+	 */
+	static final HelperPool fgHelperPool = new HelperPool();
+
 	/**
 	 * Constructor
 	 * Private constructor, no instantiate
@@ -46,52 +292,32 @@ public final class ReferenceResolver {
 	public static void resolveReferences(List/*<IReference>*/ references, IProgressMonitor monitor) throws CoreException {
 		// sort references by target type for 'shared' resolution
 		int refcount = references.size();
-		Map sigtoref = new HashMap(refcount);
-		
-		List refs = null;
-		IReference ref = null;
-		String key = null;
 		List methodDecls = new ArrayList(refcount);
 		long start = System.currentTimeMillis();
-		Iterator iterator = references.iterator();
-		while (iterator.hasNext()) {
-			ref = (IReference) iterator.next();
-			if (ref.getReferenceKind() == IReference.REF_OVERRIDE) {
-				methodDecls.add(ref);
-			} else {
-				key = createSignatureKey(ref);
-				refs = (List) sigtoref.get(key);
-				if(refs == null) {
-					refs = new ArrayList(20);
-					sigtoref.put(key, refs);
-				}
-				refs.add(ref);
-			}
-		}
+		Map sigtoref = groupReferences(references, methodDecls);
 		if (monitor.isCanceled()) {
 			return;
 		}
 		long end = System.currentTimeMillis();
 		if (ApiPlugin.DEBUG_REFERENCE_RESOLVER) {
-			System.out.println("Reference resolver: split into " + methodDecls.size() + " method overrides and " + sigtoref.size() + " unique references (" + (end - start) + "ms)");   //$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$ //$NON-NLS-4$
+			System.out.println("Reference resolver: split into " + methodDecls.size() + " method overrides and " + sigtoref.size() + " unique references (" + (end - start) + "ms, " + throughput(refcount, end - start) + " refs/s)");   //$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
 		}
 		// resolve references
 		start = System.currentTimeMillis();
 		resolveReferenceSets(sigtoref, monitor);
 		end = System.currentTimeMillis();
 		if (ApiPlugin.DEBUG_REFERENCE_RESOLVER) {
-			System.out.println("Reference resolver: resolved unique references in " + (end - start) + "ms");  //$NON-NLS-1$//$NON-NLS-2$
+			System.out.println("Reference resolver: resolved " + sigtoref.size() + " unique references in " + (end - start) + "ms (" + throughput(refcount - methodDecls.size(), end - start) + " refs/s)");  //$NON-NLS-1$//$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		}
+		if (monitor.isCanceled()) {
+			return;
 		}
 		// resolve method overrides
 		start = System.currentTimeMillis();
-		iterator = methodDecls.iterator();
-		while (iterator.hasNext()) {
-			Reference reference = (Reference) iterator.next();
-			reference.resolve();
-		}
+		resolve(methodDecls, monitor);
 		end = System.currentTimeMillis();
 		if (ApiPlugin.DEBUG_REFERENCE_RESOLVER) {
-			System.out.println("Reference resolver: resolved method overrides in " + (end - start) + "ms");  //$NON-NLS-1$//$NON-NLS-2$
+			System.out.println("Reference resolver: resolved " + methodDecls.size() + " method overrides in " + (end - start) + "ms (" + throughput(methodDecls.size(), end - start) + " refs/s)");  //$NON-NLS-1$//$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
 		}
 	}
 	
@@ -101,53 +327,201 @@ public final class ReferenceResolver {
 	 * @throws CoreException if something bad happens
 	 */
 	private static void resolveReferenceSets(Map map, IProgressMonitor monitor) throws CoreException {
-		Iterator iterator = map.values().iterator();
+		resolve(new ArrayList(map.values()), monitor);
+	}
+	
+	/**
+	 * Resolves the given set of references sharing the same signature key: the first reference
+	 * is resolved and its resolution is set on the others.
+	 * @param refs the set of {@link Reference}s
+	 * @throws CoreException if something bad happens
+	 */
+	static void resolveReferenceSet(List refs) throws CoreException {
+		IReference ref = (IReference) refs.get(0);
+		((Reference)ref).resolve();
+		IApiMember resolved = ref.getResolvedReference();
+		if (resolved != null) {
+			Iterator iterator = refs.iterator();
+			while (iterator.hasNext()) {
+				Reference ref2 = (Reference) iterator.next();
+				ref2.setResolution(resolved);
+			}
+		}
+	}
+
+	/**
+	 * Resolves the given work items, see {@link ResolutionTask}, in parallel when there are enough of them.
+	 * @param items the items to resolve
+	 * @param monitor the monitor used to cancel the resolution
+	 * @throws CoreException if something bad happens
+	 */
+	private static void resolve(List items, IProgressMonitor monitor) throws CoreException {
+		if(items.isEmpty()) {
+			return;
+		}
+		int threads = Math.min(getMaxThreads(), (items.size() + MIN_ITEMS_PER_THREAD - 1) / MIN_ITEMS_PER_THREAD);
+		new ResolutionTask(items, monitor).execute(Math.max(1, threads));
+	}
+
+	/**
+	 * Returns the maximum number of threads to resolve references with, the number of processors
+	 * unless configured with the {@link #THREADS_PROPERTY} system property, up to {@link #DEFAULT_MAX_THREADS} 
+	 * @return the maximum number of threads
+	 */
+	static int getMaxThreads() {
+		String value = System.getProperty(THREADS_PROPERTY);
+		if(value != null) {
+			try {
+				return Math.max(1, Integer.parseInt(value.trim()));
+			}
+			catch(NumberFormatException nfe) {
+				ApiPlugin.log(nfe);
+			}
+		}
+		return Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_THREADS));
+	}
+
+	/**
+	 * Returns the number of references resolved per second
+	 * @param count the number of references
+	 * @param time the time it took in milliseconds
+	 * @return the number of references per second
+	 */
+	private static long throughput(int count, long time) {
+		return (count * 1000L) / Math.max(1, time);
+	}
+
+	/**
+	 * Groups the given references by the member they reference, see {@link SignatureKey}. 
+	 * Method override references are not grouped, they are added to the given list instead.
+	 * 
+	 * @param references list of {@link IReference} to group
+	 * @param overrides list to add the method override references to
+	 * @return the mapping of {@link SignatureKey}s to lists of {@link IReference}s
+	 * @throws CoreException if something goes wrong
+	 */
+	public static Map groupReferences(List/*<IReference>*/ references, List/*<IReference>*/ overrides) throws CoreException {
+		Map sigtoref = new HashMap(references.size());
+		// the same key is used to look up every reference, a new key is only created for the first
+		// reference to a member
+		SignatureKey probe = new SignatureKey();
 		List refs = null;
-		IReference ref= null;
+		IReference ref = null;
+		Iterator iterator = references.iterator();
 		while (iterator.hasNext()) {
-			if (monitor.isCanceled()) {
-				return;
-			}
-			refs = (List) iterator.next();
-			ref = (IReference) refs.get(0);
-			((Reference)ref).resolve();
-			IApiMember resolved = ref.getResolvedReference();
-			if (resolved != null) {
-				Iterator iterator2 = refs.iterator();
-				while (iterator2.hasNext()) {
-					Reference ref2 = (Reference) iterator2.next();
-					ref2.setResolution(resolved);
+			ref = (IReference) iterator.next();
+			if (ref.getReferenceKind() == IReference.REF_OVERRIDE) {
+				overrides.add(ref);
+			} else {
+				probe.set(ref);
+				refs = (List) sigtoref.get(probe);
+				if(refs == null) {
+					refs = new ArrayList(20);
+					sigtoref.put(probe.copy(), refs);
 				}
+				refs.add(ref);
 			}
 		}
+		return sigtoref;
 	}
-	
+
 	/**
-	 * Creates a unique string key for a given reference.
-	 * The key is of the form "component X references type/member"
-	 * <pre>
-	 * [component_id]#[type_name](#[member_name]#[member_signature])
-	 * </pre>
-	 * @param reference reference
-	 * @return a string key for the given reference.
-	 */
-	private static String createSignatureKey(IReference reference) throws CoreException {
-		StringBuffer buffer = new StringBuffer();
-		buffer.append(reference.getMember().getApiComponent().getSymbolicName());
-		buffer.append("#"); //$NON-NLS-1$
-		buffer.append(reference.getReferencedTypeName());
-		switch (reference.getReferenceType()) {
-		case IReference.T_FIELD_REFERENCE:
-			buffer.append("#"); //$NON-NLS-1$
-			buffer.append(reference.getReferencedMemberName());
-			break;
-		case IReference.T_METHOD_REFERENCE:
-			buffer.append("#"); //$NON-NLS-1$
-			buffer.append(reference.getReferencedMemberName());
-			buffer.append("#"); //$NON-NLS-1$
-			buffer.append(reference.getReferencedSignature());
-			break;
-		}
-		return buffer.toString();
-	}	
+	 * Key identifying the member a reference points to, that is the component the reference
+	 * is made from, the referenced type name and, for field and method references, the member name 
+	 * (and signature). The key holds on to the names of the reference rather than concatenating 
+	 * them so that no strings need to be built to compare two references.
+	 */
+	static final class SignatureKey {
+		private String fComponent;
+		private String fType;
+		private String fMember;
+		private String fSignature;
+		private int fHash;
+
+		/**
+		 * Sets this key to the one of the given reference
+		 * @param reference
+		 * @throws CoreException if the component of the reference cannot be determined
+		 */
+		void set(IReference reference) throws CoreException {
+			fComponent = reference.getMember().getApiComponent().getSymbolicName();
+			fType = reference.getReferencedTypeName();
+			fMember = null;
+			fSignature = null;
+			switch (reference.getReferenceType()) {
+			case IReference.T_FIELD_REFERENCE:
+				fMember = reference.getReferencedMemberName();
+				break;
+			case IReference.T_METHOD_REFERENCE:
+				fMember = reference.getReferencedMemberName();
+				fSignature = reference.getReferencedSignature();
+				break;
+			}
+			int hash = hashCode(fComponent);
+			hash = 31 * hash + hashCode(fType);
+			hash = 31 * hash + hashCode(fMember);
+			fHash = 31 * hash + hashCode(fSignature);
+		}
+
+		/**
+		 * @return a copy of this key, safe to use as a map key
+		 */
+		SignatureKey copy() {
+			SignatureKey key = new SignatureKey();
+			key.fComponent = fComponent;
+			key.fType = fType;
+			key.fMember = fMember;
+			key.fSignature = fSignature;
+			key.fHash = fHash;
+			return key;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#hashCode()
+		 */
+		public int hashCode() {
+			return fHash;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		public boolean equals(Object obj) {
+			if(this == obj) {
+				return true;
+			}
+			if(obj instanceof SignatureKey) {
+				SignatureKey key = (SignatureKey) obj;
+				return fHash == key.fHash 
+					&& equals(fType, key.fType) 
+					&& equals(fMember, key.fMember)
+					&& equals(fSignature, key.fSignature)
+					&& equals(fComponent, key.fComponent);
+			}
+			return false;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		public String toString() {
+			StringBuffer buffer = new StringBuffer();
+			buffer.append(fComponent).append('#').append(fType);
+			if(fMember != null) {
+				buffer.append('#').append(fMember);
+			}
+			if(fSignature != null) {
+				buffer.append('#').append(fSignature);
+			}
+			return buffer.toString();
+		}
+
+		private static int hashCode(String value) {
+			return value == null ? 0 : value.hashCode();
+		}
+
+		private static boolean equals(String s1, String s2) {
+			return s1 == s2 || (s1 != null && s1.equals(s2));
+		}
+	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2009 IBM Corporation and others.
+ * Copyright (c) 2007, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -50,7 +50,7 @@ public abstract class AbstractApiTypeRoot extends ApiElement implements IApiType
 			type = (IApiType) cache.getElementInfo(baseline.getName(), comp.getSymbolicName(), this.getTypeName(), IApiElement.TYPE);
 		}
 		if(type == null) {
-			type = TypeStructureBuilder.buildTypeStructure(getContents(), getApiComponent(), this);
+			type = buildStructure();
 			if(type == null) {
 				return null;
 			}
@@ -59,6 +59,16 @@ public abstract class AbstractApiTypeRoot extends ApiElement implements IApiType
 		return type;
 	}
 	
+	/**
+	 * Builds the structure of this type root, from its class file contents by default.
+	 * 
+	 * @return the type structure or <code>null</code> if it could not be built
+	 * @throws CoreException if the contents of this type root cannot be read
+	 */
+	protected IApiType buildStructure() throws CoreException {
+		return TypeStructureBuilder.buildTypeStructure(getContents(), getApiComponent(), this);
+	}
+	
 	/**
 	 * @see org.eclipse.pde.api.tools.internal.provisional.IApiTypeRoot#getApiComponent()
 	 */
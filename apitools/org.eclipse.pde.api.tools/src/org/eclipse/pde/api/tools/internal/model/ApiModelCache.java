@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009 IBM Corporation and others.
+ * Copyright (c) 2009, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,73 +10,308 @@
  *******************************************************************************/
 package org.eclipse.pde.api.tools.internal.model;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import org.eclipse.core.runtime.CoreException;
-import org.eclipse.jdt.internal.core.OverflowingLRUCache;
-import org.eclipse.jdt.internal.core.util.LRUCache;
+import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiBaseline;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiComponent;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiElement;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiField;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiMethod;
 
 /**
- * Manages the caches of {@link IApiElement}s
- * 
+ * Manages the caches of {@link IApiElement}s.
+ * Access to the caches is synchronized, they are shared by the threads resolving references.
+ * <p>
+ * Top-level types and member types are kept in two separate least-recently-used caches whose
+ * limits are expressed in (estimated) bytes rather than in number of entries. Member types are
+ * cached in groups, one group per top-level type, and a group is evicted as a whole. The limits
+ * default to {@link #DEFAULT_TYPE_CACHE_SIZE} and {@link #DEFAULT_MEMBER_TYPE_CACHE_SIZE} and can be
+ * changed with the <code>org.eclipse.pde.api.tools.typeCacheSize</code> and
+ * <code>org.eclipse.pde.api.tools.memberTypeCacheSize</code> system properties (in kilobytes) or
+ * the corresponding setters.
+ * </p>
+ * <p>
+ * Hits, misses and evictions are counted per baseline and per component, see {@link #getStatistics(String, String)}.
+ * </p>
+ *
  * @since 1.0.2
  */
 public final class ApiModelCache {
 
 	/**
-	 * Cache used for {@link IApiElement}s
+	 * Hit, miss and eviction counters of the cache
+	 *
+	 * @since 1.0.500
 	 */
-	class Cache extends OverflowingLRUCache {
+	public static final class Statistics {
+		long hits = 0;
+		long misses = 0;
+		long evictions = 0;
 
 		/**
-		 * Constructor
-		 * @param size
-		 * @param overflow
+		 * @return the number of lookups that found the element in the cache
+		 */
+		public long getHits() {
+			return hits;
+		}
+
+		/**
+		 * @return the number of lookups that did not find the element in the cache
+		 */
+		public long getMisses() {
+			return misses;
+		}
+
+		/**
+		 * @return the number of elements that were evicted from the cache to make room for others
+		 */
+		public long getEvictions() {
+			return evictions;
+		}
+
+		void add(Statistics stats) {
+			hits += stats.hits;
+			misses += stats.misses;
+			evictions += stats.evictions;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#toString()
 		 */
-		public Cache(int size, int overflow) {
-			super(size, overflow);
+		public String toString() {
+			StringBuffer buffer = new StringBuffer();
+			buffer.append("hits: ").append(hits).append(", misses: ").append(misses).append(", evictions: ").append(evictions); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			return buffer.toString();
+		}
+	}
+
+	/**
+	 * Key of a cached element, the name is the name of a type or, for a group of
+	 * member types, the name of the top-level type
+	 */
+	static final class Key {
+		final String baseline;
+		final String component;
+		final String name;
+		private final int hash;
+
+		Key(String baseline, String component, String name) {
+			this.baseline = baseline;
+			this.component = component;
+			this.name = name;
+			this.hash = (baseline.hashCode() * 31 + component.hashCode()) * 31 + name.hashCode();
 		}
 
 		/* (non-Javadoc)
-		 * @see org.eclipse.jdt.internal.core.OverflowingLRUCache#close(org.eclipse.jdt.internal.core.util.LRUCache.LRUCacheEntry)
+		 * @see java.lang.Object#hashCode()
 		 */
-		protected boolean close(LRUCacheEntry entry) {
-			return true;
+		public int hashCode() {
+			return hash;
 		}
 
 		/* (non-Javadoc)
-		 * @see org.eclipse.jdt.internal.core.OverflowingLRUCache#newInstance(int, int)
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		public boolean equals(Object obj) {
+			if (obj instanceof Key) {
+				Key other = (Key) obj;
+				return hash == other.hash && name.equals(other.name) && component.equals(other.component) && baseline.equals(other.baseline);
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * A cached element or group of member types, along with its estimated size
+	 */
+	static final class Entry {
+		Object value;
+		long size;
+		int count;
+
+		Entry(Object value, long size, int count) {
+			this.value = value;
+			this.size = size;
+			this.count = count;
+		}
+	}
+
+	/**
+	 * Least-recently-used cache of {@link Entry}s bounded by their estimated size
+	 */
+	final class Cache extends LinkedHashMap {
+
+		private static final long serialVersionUID = 1L;
+		long maxSize;
+		long size = 0;
+
+		/**
+		 * Constructor
+		 * @param maxSize the maximum size in bytes
+		 */
+		Cache(long maxSize) {
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+		}
+
+		/**
+		 * Adds the given entry, evicting the least recently used entries if the cache is then over its limit
+		 * @param key
+		 * @param entry
+		 */
+		void putEntry(Key key, Entry entry) {
+			Entry old = (Entry) put(key, entry);
+			if (old != null) {
+				size -= old.size;
+			}
+			size += entry.size;
+			evict();
+		}
+
+		/**
+		 * Removes the entry with the given key
+		 * @param key
+		 * @return the removed entry or <code>null</code>
+		 */
+		Entry removeEntry(Key key) {
+			Entry entry = (Entry) remove(key);
+			if (entry != null) {
+				size -= entry.size;
+			}
+			return entry;
+		}
+
+		/**
+		 * Updates the size of the given entry which must be in the cache
+		 * @param entry
+		 * @param delta the change in size
 		 */
-		protected LRUCache newInstance(int size, int newOverflow) {
-			return new Cache(size, newOverflow);
+		void resize(Entry entry, long delta) {
+			entry.size += delta;
+			size += delta;
+			evict();
 		}
-		
+
 		/**
-		 * Returns if the cache has any elements in it or not
-		 * 
-		 * @return true if the cache has no entries, false otherwise
+		 * Removes all of the entries of the given baseline, or of the given component if not <code>null</code>
+		 * @param baselineid
+		 * @param componentid the component id or <code>null</code>
+		 * @return <code>true</code> if any entry was removed
 		 */
-		public boolean isEmpty() {
-			return !keys().hasMoreElements();
+		boolean removeEntries(String baselineid, String componentid) {
+			boolean removed = false;
+			for (Iterator iter = entrySet().iterator(); iter.hasNext();) {
+				Map.Entry mapEntry = (Map.Entry) iter.next();
+				Key key = (Key) mapEntry.getKey();
+				if (key.baseline.equals(baselineid) && (componentid == null || key.component.equals(componentid))) {
+					size -= ((Entry) mapEntry.getValue()).size;
+					iter.remove();
+					removed = true;
+				}
+			}
+			return removed;
+		}
+
+		/**
+		 * Evicts the least recently used entries until the cache is within its limit. The most
+		 * recently used entry is never evicted, even if it is over the limit by itself.
+		 */
+		void evict() {
+			Iterator iter = entrySet().iterator();
+			while (size > maxSize && size() > 1 && iter.hasNext()) {
+				Map.Entry mapEntry = (Map.Entry) iter.next();
+				Key key = (Key) mapEntry.getKey();
+				Entry entry = (Entry) mapEntry.getValue();
+				iter.remove();
+				size -= entry.size;
+				getStatisticsFor(key.baseline, key.component).evictions += entry.count;
+			}
 		}
 	}
-	
-	static final int DEFAULT_CACHE_SIZE = 100;
-	static final int DEFAULT_OVERFLOW = (int)(DEFAULT_CACHE_SIZE * 0.1f);
+
+	/**
+	 * System property used to configure the maximum size of the type cache, in kilobytes
+	 *
+	 * @since 1.0.500
+	 */
+	public static final String TYPE_CACHE_SIZE_PROPERTY = "org.eclipse.pde.api.tools.typeCacheSize"; //$NON-NLS-1$
+
+	/**
+	 * System property used to configure the maximum size of the member type cache, in kilobytes
+	 *
+	 * @since 1.0.500
+	 */
+	public static final String MEMBER_TYPE_CACHE_SIZE_PROPERTY = "org.eclipse.pde.api.tools.memberTypeCacheSize"; //$NON-NLS-1$
+
+	/**
+	 * Default maximum size of the type cache in bytes
+	 *
+	 * @since 1.0.500
+	 */
+	public static final long DEFAULT_TYPE_CACHE_SIZE = 16 * 1024 * 1024;
+
+	/**
+	 * Default maximum size of the member type cache in bytes
+	 *
+	 * @since 1.0.500
+	 */
+	public static final long DEFAULT_MEMBER_TYPE_CACHE_SIZE = 4 * 1024 * 1024;
+
+	/**
+	 * Estimated sizes used to compute the size of a type structure
+	 */
+	private static final int TYPE_OVERHEAD = 160;
+	private static final int MEMBER_OVERHEAD = 80;
+	private static final int STRING_OVERHEAD = 40;
+	private static final int ARRAY_OVERHEAD = 16;
+	private static final int ENTRY_OVERHEAD = 64;
+
 	static ApiModelCache fInstance = null;
-	
+
 	Cache fRootCache = null;
 	Cache fMemberTypeCache = null;
-	
+
+	/**
+	 * Map of baseline id to a map of component id to {@link Statistics}
+	 */
+	private HashMap fStatistics = new HashMap();
+
 	/**
 	 * Constructor - no instantiation
 	 */
-	private ApiModelCache() {}
-	
+	private ApiModelCache() {
+		fRootCache = new Cache(getSizeProperty(TYPE_CACHE_SIZE_PROPERTY, DEFAULT_TYPE_CACHE_SIZE));
+		fMemberTypeCache = new Cache(getSizeProperty(MEMBER_TYPE_CACHE_SIZE_PROPERTY, DEFAULT_MEMBER_TYPE_CACHE_SIZE));
+	}
+
+	/**
+	 * Returns the size in bytes set with the given system property in kilobytes
+	 * @param property
+	 * @param defaultSize
+	 * @return the size in bytes
+	 */
+	private static long getSizeProperty(String property, long defaultSize) {
+		try {
+			String size = System.getProperty(property);
+			if (size != null) {
+				return Long.parseLong(size.trim()) * 1024;
+			}
+		}
+		catch (NumberFormatException nfe) {
+			ApiPlugin.log(nfe);
+		}
+		return defaultSize;
+	}
+
 	/**
 	 * Returns the singleton instance of this cache
-	 * 
+	 *
 	 * @return the cache
 	 */
 	public static synchronized ApiModelCache getCache() {
@@ -85,35 +320,17 @@ public final class ApiModelCache {
 		}
 		return fInstance;
 	}
-	
-	/**
-	 * Returns the key to use in a cache. The key is of the form:
-	 * <code>[baselineid].[componentid].[typename]</code><br>
-	 * 
-	 * @param baseline
-	 * @param component
-	 * @param typename
-	 * @return the member type cache key to use
-	 */
-	private String getCacheKey(String baseline, String component, String typename) {
-		StringBuffer buffer = new StringBuffer();
-		buffer.append(baseline).append('.').append(component).append('.').append(typename);
-		return buffer.toString();
-	}
-	
+
 	/**
 	 * Caches the given {@link IApiElement} in the correct cache based on its type.
-	 * 
+	 *
 	 * @param element the element to cache
 	 * @throws CoreException if there is a problem accessing any of the {@link IApiElement} info
 	 * in order to cache it - pass the exception along.
 	 */
-	public void cacheElementInfo(IApiElement element) throws CoreException {
+	public synchronized void cacheElementInfo(IApiElement element) throws CoreException {
 		switch(element.getType()) {
 			case IApiElement.TYPE: {
-				if(fRootCache == null) {
-					fRootCache = new Cache(DEFAULT_CACHE_SIZE, DEFAULT_OVERFLOW);
-				}
 				IApiComponent comp = element.getApiComponent();
 				if(comp != null) {
 					IApiBaseline baseline = comp.getBaseline();
@@ -121,40 +338,91 @@ public final class ApiModelCache {
 					if(id == null) {
 						return;
 					}
-					Cache compcache = (Cache) fRootCache.get(baseline.getName());
-					if(compcache == null) {
-						compcache = new Cache(DEFAULT_CACHE_SIZE, DEFAULT_OVERFLOW);
-						fRootCache.put(baseline.getName(), compcache);
-					}
-					Cache typecache = (Cache) compcache.get(id);
-					if(typecache == null) {
-						typecache = new Cache(DEFAULT_CACHE_SIZE, DEFAULT_OVERFLOW);
-						compcache.put(comp.getSymbolicName(), typecache);
-					}
 					ApiType type = (ApiType) element;
+					long size = estimateSize(type);
 					if(type.isMemberType() || isMemberType(type.getName()) /*cache even a root type with a '$' in its name here as well*/) {
-						if(this.fMemberTypeCache == null) {
-							this.fMemberTypeCache = new Cache(DEFAULT_CACHE_SIZE, DEFAULT_OVERFLOW);
+						Key key = new Key(baseline.getName(), id, getRootName(type.getName()));
+						Entry group = (Entry) fMemberTypeCache.get(key);
+						if(group == null) {
+							HashMap types = new HashMap();
+							types.put(type.getName(), new Entry(type, size, 1));
+							fMemberTypeCache.putEntry(key, new Entry(types, ENTRY_OVERHEAD + size, 1));
 						}
-						String key = getCacheKey(baseline.getName(), id, getRootName(type.getName()));
-						Cache mcache = (Cache) this.fMemberTypeCache.get(key);
-						if(mcache == null) {
-							mcache = new Cache(DEFAULT_CACHE_SIZE, DEFAULT_OVERFLOW);
-							this.fMemberTypeCache.put(key, mcache);
+						else {
+							Map types = (Map) group.value;
+							Entry old = (Entry) types.put(type.getName(), new Entry(type, size, 1));
+							long delta = size;
+							if(old != null) {
+								delta -= old.size;
+							}
+							else {
+								group.count++;
+							}
+							fMemberTypeCache.resize(group, delta);
 						}
-						mcache.put(type.getName(), type);
 					}
 					else {
-						typecache.put(element.getName(), element);
+						fRootCache.putEntry(new Key(baseline.getName(), id, element.getName()), new Entry(element, ENTRY_OVERHEAD + size, 1));
 					}
 				}
 				break;
 			}
 		}
 	}
-	
+
+	/**
+	 * Returns the estimated number of bytes retained by the given type structure
+	 * @param type
+	 * @return the estimated size of the type
+	 */
+	static long estimateSize(ApiType type) {
+		long size = TYPE_OVERHEAD;
+		size += sizeOf(type.getName());
+		size += sizeOf(type.getSignature());
+		size += sizeOf(type.getGenericSignature());
+		size += sizeOf(type.getSuperclassName());
+		size += sizeOf(type.getSuperInterfaceNames());
+		size += sizeOf(type.getMemberTypeNames());
+		IApiField[] fields = type.getFields();
+		for (int i = 0; i < fields.length; i++) {
+			size += MEMBER_OVERHEAD;
+			size += sizeOf(fields[i].getName());
+			size += sizeOf(fields[i].getSignature());
+			size += sizeOf(fields[i].getGenericSignature());
+		}
+		IApiMethod[] methods = type.getMethods();
+		for (int i = 0; i < methods.length; i++) {
+			// the method key retains the names as well
+			size += MEMBER_OVERHEAD * 2;
+			size += sizeOf(methods[i].getName());
+			size += sizeOf(methods[i].getSignature());
+			size += sizeOf(methods[i].getGenericSignature());
+			size += sizeOf(methods[i].getExceptionNames());
+			size += sizeOf(methods[i].getDefaultValue());
+		}
+		return size;
+	}
+
+	private static long sizeOf(String string) {
+		if(string == null) {
+			return 0;
+		}
+		return STRING_OVERHEAD + string.length() * 2;
+	}
+
+	private static long sizeOf(String[] strings) {
+		if(strings == null) {
+			return 0;
+		}
+		long size = ARRAY_OVERHEAD + strings.length * 4;
+		for (int i = 0; i < strings.length; i++) {
+			size += sizeOf(strings[i]);
+		}
+		return size;
+	}
+
 	/**
-	 * Returns the root type name assuming that the '$' char is a member type boundary 
+	 * Returns the root type name assuming that the '$' char is a member type boundary
 	 * @param typename
 	 * @return the pruned name or the original name
 	 */
@@ -165,7 +433,7 @@ public final class ApiModelCache {
 		}
 		return typename;
 	}
-	
+
 	/**
 	 * Method to see if the type boundary char appears in the type name
 	 * @param typename
@@ -174,127 +442,111 @@ public final class ApiModelCache {
 	private boolean isMemberType(String typename) {
 		return typename.indexOf('$') > -1;
 	}
-	
+
 	/**
-	 * Returns the {@link IApiElement} infos for the element referenced by the given 
+	 * Returns the {@link IApiElement} infos for the element referenced by the given
 	 * identifier and of the given type.
-	 * 
+	 *
 	 * @param baselineid the id of the baseline the component + element belongs to
 	 * @param componentid the id of the {@link IApiComponent} the element resides in
 	 * @param identifier for example the qualified name of the type or the id of an API component
 	 * @param type the kind of the element to look for info for
-	 * 
+	 *
 	 * @return the cached {@link IApiElement} or <code>null</code> if no such element is cached
 	 */
-	public IApiElement getElementInfo(String baselineid, String componentid, String identifier, int type) {
-		if(baselineid == null || componentid == null) {
+	public synchronized IApiElement getElementInfo(String baselineid, String componentid, String identifier, int type) {
+		if(baselineid == null || componentid == null || identifier == null) {
 			return null;
 		}
 		switch(type) {
 			case IApiElement.TYPE: {
+				IApiElement element = null;
 				if(isMemberType(identifier)) {
-					if(this.fMemberTypeCache != null) {
-						Cache mcache = (Cache) this.fMemberTypeCache.get(getCacheKey(baselineid, componentid, getRootName(identifier)));
-						if(mcache != null) {
-							return (IApiElement) mcache.get(identifier);
+					Entry group = (Entry) fMemberTypeCache.get(new Key(baselineid, componentid, getRootName(identifier)));
+					if(group != null) {
+						Entry entry = (Entry) ((Map) group.value).get(identifier);
+						if(entry != null) {
+							element = (IApiElement) entry.value;
 						}
 					}
 				}
 				else {
-					if(this.fRootCache != null) {
-						Cache compcache = (Cache) fRootCache.get(baselineid);
-						if(compcache != null) {
-							Cache typecache = (Cache) compcache.get(componentid);
-							if(typecache != null && identifier != null) {
-								return (IApiElement) typecache.get(identifier);
-							}
-						}
+					Entry entry = (Entry) fRootCache.get(new Key(baselineid, componentid, identifier));
+					if(entry != null) {
+						element = (IApiElement) entry.value;
 					}
 				}
-				break;
+				Statistics stats = getStatisticsFor(baselineid, componentid);
+				if(element != null) {
+					stats.hits++;
+				}
+				else {
+					stats.misses++;
+				}
+				return element;
 			}
 		}
 		return null;
 	}
-	
+
 	/**
 	 * Removes the {@link IApiElement} from the given component (given its id) with
 	 * the given identifier and of the given type.
-	 * 
+	 *
 	 * @param componentid the id of the component the element resides in
 	 * @param identifier the id (name) of the element to remove
 	 * @param type the type of the element (TYPE, METHOD, FIELD, etc)
-	 * 
+	 *
 	 * @return true if the element was removed, false otherwise
 	 */
-	public boolean removeElementInfo(String baselineid, String componentid, String identifier, int type) {
+	public synchronized boolean removeElementInfo(String baselineid, String componentid, String identifier, int type) {
 		if(baselineid == null) {
 			return false;
 		}
 		switch(type) {
 			case IApiElement.TYPE: {
 				if(componentid != null && identifier != null) {
-					boolean removed = true;
 					//clean member type cache
-					if(this.fMemberTypeCache != null) {
-						if(isMemberType(identifier)) {
-							Cache mcache = (Cache) this.fMemberTypeCache.get(getCacheKey(baselineid, componentid, getRootName(identifier)));
-							if(mcache != null) {
-								return mcache.remove(identifier) != null;
+					Key key = new Key(baselineid, componentid, getRootName(identifier));
+					if(isMemberType(identifier)) {
+						Entry group = (Entry) fMemberTypeCache.get(key);
+						if(group != null) {
+							Map types = (Map) group.value;
+							Entry entry = (Entry) types.remove(identifier);
+							if(entry == null) {
+								return false;
 							}
-						}
-						else {
-							this.fMemberTypeCache.remove(getCacheKey(baselineid, componentid, getRootName(identifier)));
-						}
-					}
-					if(fRootCache != null) {
-						Cache compcache = (Cache) fRootCache.get(baselineid);
-						if(compcache != null) {
-							Cache typecache = (Cache) compcache.get(componentid);
-							if(typecache != null) {
-								removed &= typecache.remove(identifier) != null;
-								if(typecache.isEmpty()) {
-									removed &= compcache.remove(componentid) != null;
-								}
-								if(compcache.isEmpty()) {
-									removed &= fRootCache.remove(baselineid) != null;
-								}
-								return removed;
+							if(types.isEmpty()) {
+								fMemberTypeCache.removeEntry(key);
 							}
-							
+							else {
+								group.count--;
+								fMemberTypeCache.resize(group, -entry.size);
+							}
+							return true;
 						}
 					}
 					else {
-						return false;
+						fMemberTypeCache.removeEntry(key);
 					}
+					return fRootCache.removeEntry(new Key(baselineid, componentid, identifier)) != null;
 				}
 				break;
 			}
 			case IApiElement.COMPONENT: {
-				flushMemberCache();
-				if(fRootCache != null && componentid != null) {
-					Cache compcache = (Cache) fRootCache.get(baselineid);
-					if(compcache != null) {
-						boolean removed = compcache.remove(componentid) != null;
-						if(compcache.isEmpty()) {
-							removed &= fRootCache.remove(baselineid) != null;
-						}
-						return removed;
-					}
+				if(componentid != null) {
+					fMemberTypeCache.removeEntries(baselineid, componentid);
+					return fRootCache.removeEntries(baselineid, componentid);
 				}
 				break;
 			}
 			case IApiElement.BASELINE: {
-				flushMemberCache();
-				if(fRootCache != null) {
-					return fRootCache.remove(baselineid) != null;
-				}
-				break;
+				return removeBaseline(baselineid);
 			}
 		}
 		return false;
 	}
-	
+
 	/**
 	 * Removes the given {@link IApiElement} info from the cache and returns it if present
 	 * @param element
@@ -302,69 +554,215 @@ public final class ApiModelCache {
 	 * @throws CoreException if there is a problem accessing any of the {@link IApiElement} info
 	 * in order to remove it from the cache - pass the exception along.
 	 */
-	public boolean removeElementInfo(IApiElement element) {
+	public synchronized boolean removeElementInfo(IApiElement element) {
 		if(element == null) {
 			return false;
 		}
  		switch(element.getType()) {
 			case IApiElement.COMPONENT:
 			case IApiElement.TYPE: {
-				if(fRootCache != null) {
-					IApiComponent comp = element.getApiComponent();
-					if(comp != null) {
-						try {
-							IApiBaseline baseline = comp.getBaseline();
-							return removeElementInfo(baseline.getName(), comp.getSymbolicName(), element.getName(), element.getType());
-						}
-						catch(CoreException ce) {}
+				IApiComponent comp = element.getApiComponent();
+				if(comp != null) {
+					try {
+						IApiBaseline baseline = comp.getBaseline();
+						return removeElementInfo(baseline.getName(), comp.getSymbolicName(), element.getName(), element.getType());
 					}
+					catch(CoreException ce) {}
 				}
 				break;
 			}
 			case IApiElement.BASELINE: {
-				flushMemberCache();
-				if(fRootCache != null) {
-					IApiBaseline baseline = (IApiBaseline) element;
-					return fRootCache.remove(baseline.getName()) != null;
-				}
-				break;
+				return removeBaseline(((IApiBaseline) element).getName());
 			}
 		}
 		return false;
 	}
-	
+
 	/**
-	 * Clears out all cached information.
+	 * Removes all of the elements of the given baseline, printing the statistics of the
+	 * baseline when tracing
+	 * @param baselineid
+	 * @return true if any element was removed, false otherwise
 	 */
-	public void flushCaches() {
-		if(fRootCache != null) {
-			fRootCache.flush();
+	private boolean removeBaseline(String baselineid) {
+		if(baselineid == null) {
+			return false;
 		}
-		flushMemberCache();
+		if(ApiPlugin.DEBUG_MODEL_CACHE) {
+			printStatistics(baselineid);
+		}
+		fMemberTypeCache.removeEntries(baselineid, null);
+		return fRootCache.removeEntries(baselineid, null);
 	}
-	
+
 	/**
-	 * Flushes the cache of member types
+	 * Clears out all cached information.
 	 */
-	private void flushMemberCache() {
-		if(this.fMemberTypeCache != null) {
-			this.fMemberTypeCache.flush();
-		}
+	public synchronized void flushCaches() {
+		fRootCache.clear();
+		fRootCache.size = 0;
+		fMemberTypeCache.clear();
+		fMemberTypeCache.size = 0;
 	}
-	
+
 	/**
 	 * Returns if the cache has any elements in it or not
-	 * 
+	 *
 	 * @return true if the cache has no entries, false otherwise
 	 */
-	public boolean isEmpty() {
-		boolean empty = true;
-		if(fRootCache != null) {
-			empty &= fRootCache.isEmpty();
+	public synchronized boolean isEmpty() {
+		return fRootCache.isEmpty() && fMemberTypeCache.isEmpty();
+	}
+
+	/**
+	 * Sets the maximum size of the cache of top-level types, evicting types if the cache is
+	 * over the new limit
+	 *
+	 * @param size the maximum size in bytes
+	 * @since 1.0.500
+	 */
+	public synchronized void setMaxTypeCacheSize(long size) {
+		fRootCache.maxSize = size;
+		fRootCache.evict();
+	}
+
+	/**
+	 * @return the maximum size of the cache of top-level types in bytes
+	 * @since 1.0.500
+	 */
+	public synchronized long getMaxTypeCacheSize() {
+		return fRootCache.maxSize;
+	}
+
+	/**
+	 * Sets the maximum size of the cache of member types, evicting types if the cache is
+	 * over the new limit
+	 *
+	 * @param size the maximum size in bytes
+	 * @since 1.0.500
+	 */
+	public synchronized void setMaxMemberTypeCacheSize(long size) {
+		fMemberTypeCache.maxSize = size;
+		fMemberTypeCache.evict();
+	}
+
+	/**
+	 * @return the maximum size of the cache of member types in bytes
+	 * @since 1.0.500
+	 */
+	public synchronized long getMaxMemberTypeCacheSize() {
+		return fMemberTypeCache.maxSize;
+	}
+
+	/**
+	 * @return the estimated number of bytes retained by the cached top-level types
+	 * @since 1.0.500
+	 */
+	public synchronized long getTypeCacheSize() {
+		return fRootCache.size;
+	}
+
+	/**
+	 * @return the estimated number of bytes retained by the cached member types
+	 * @since 1.0.500
+	 */
+	public synchronized long getMemberTypeCacheSize() {
+		return fMemberTypeCache.size;
+	}
+
+	/**
+	 * Returns the statistics of the lookups for the elements of the given baseline and component.
+	 *
+	 * @param baselineid the id of the baseline
+	 * @param componentid the id of the component or <code>null</code> for all the components of the baseline
+	 * @return a snapshot of the statistics, never <code>null</code>
+	 * @since 1.0.500
+	 */
+	public synchronized Statistics getStatistics(String baselineid, String componentid) {
+		Statistics result = new Statistics();
+		Map components = (Map) fStatistics.get(baselineid);
+		if(components != null) {
+			if(componentid != null) {
+				Statistics stats = (Statistics) components.get(componentid);
+				if(stats != null) {
+					result.add(stats);
+				}
+			}
+			else {
+				for (Iterator iter = components.values().iterator(); iter.hasNext();) {
+					result.add((Statistics) iter.next());
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the ids of the baselines statistics are available for
+	 * @since 1.0.500
+	 */
+	public synchronized String[] getStatisticsBaselines() {
+		String[] ids = (String[]) fStatistics.keySet().toArray(new String[fStatistics.size()]);
+		Arrays.sort(ids);
+		return ids;
+	}
+
+	/**
+	 * @param baselineid the id of a baseline
+	 * @return the ids of the components of the given baseline statistics are available for
+	 * @since 1.0.500
+	 */
+	public synchronized String[] getStatisticsComponents(String baselineid) {
+		Map components = (Map) fStatistics.get(baselineid);
+		if(components == null) {
+			return new String[0];
+		}
+		String[] ids = (String[]) components.keySet().toArray(new String[components.size()]);
+		Arrays.sort(ids);
+		return ids;
+	}
+
+	/**
+	 * Resets all of the statistics
+	 * @since 1.0.500
+	 */
+	public synchronized void resetStatistics() {
+		fStatistics.clear();
+	}
+
+	/**
+	 * Returns the live statistics of the given baseline and component, creating them if needed
+	 * @param baselineid
+	 * @param componentid
+	 * @return the statistics
+	 */
+	Statistics getStatisticsFor(String baselineid, String componentid) {
+		Map components = (Map) fStatistics.get(baselineid);
+		if(components == null) {
+			components = new HashMap();
+			fStatistics.put(baselineid, components);
 		}
-		if(this.fMemberTypeCache != null) {
-			empty &= this.fMemberTypeCache.isEmpty();
+		Statistics stats = (Statistics) components.get(componentid);
+		if(stats == null) {
+			stats = new Statistics();
+			components.put(componentid, stats);
+		}
+		return stats;
+	}
+
+	/**
+	 * Prints the statistics of the given baseline, per component
+	 * @param baselineid
+	 */
+	private void printStatistics(String baselineid) {
+		StringBuffer buffer = new StringBuffer();
+		buffer.append("API model cache statistics for baseline ").append(baselineid).append(" (").append(getStatistics(baselineid, null)).append(")\n"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		String[] components = getStatisticsComponents(baselineid);
+		for (int i = 0; i < components.length; i++) {
+			buffer.append('\t').append(components[i]).append(": ").append(getStatistics(baselineid, components[i])).append('\n'); //$NON-NLS-1$
 		}
-		return empty;
+		buffer.append("\ttypes: ").append(fRootCache.size).append('/').append(fRootCache.maxSize).append(" bytes, member types: ") //$NON-NLS-1$ //$NON-NLS-2$
+			.append(fMemberTypeCache.size).append('/').append(fMemberTypeCache.maxSize).append(" bytes\n"); //$NON-NLS-1$
+		System.out.print(buffer.toString());
 	}
 }
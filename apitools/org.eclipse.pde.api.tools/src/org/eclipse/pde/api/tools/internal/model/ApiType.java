@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2010 IBM Corporation and others.
+ * Copyright (c) 2008, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -420,6 +420,32 @@ public class ApiType extends ApiMember implements IApiType {
 		}
 	}
 
+	/**
+	 * Returns the name and signature of the method that encloses this type as set with
+	 * {@link #setEnclosingMethodInfo(String, String)}, or <code>null</code> if they were never set.
+	 * Used when caching a type structure.
+	 * 
+	 * @return the name and signature of the enclosing method or <code>null</code>
+	 */
+	String[] getEnclosingMethodInfo() {
+		if (fEnclosingMethodName == null && fEnclosingMethodSignature == null) {
+			return null;
+		}
+		return new String[] {
+				fEnclosingMethodName == NO_ENCLOSING_METHOD ? null : fEnclosingMethodName,
+				fEnclosingMethodSignature == NO_ENCLOSING_METHOD ? null : fEnclosingMethodSignature};
+	}
+	
+	/**
+	 * Returns the name of the enclosing type given when this type was created or <code>null</code>.
+	 * Used when caching a type structure.
+	 * 
+	 * @return the name of the enclosing type or <code>null</code>
+	 */
+	String getEnclosingTypeName() {
+		return fEnclosingTypeName;
+	}
+
 	/* (non-Javadoc)
 	 * @see org.eclipse.pde.api.tools.internal.provisional.model.IApiType#getEnclosingMethod()
 	 */
@@ -528,6 +554,19 @@ public class ApiType extends ApiMember implements IApiType {
 		fMemberTypes.put(simpleName, null);
 	}
 	
+	/**
+	 * Returns the simple names of the member types of this type or <code>null</code> if none.
+	 * Used when caching a type structure.
+	 * 
+	 * @return the simple names of the member types or <code>null</code>
+	 */
+	String[] getMemberTypeNames() {
+		if (fMemberTypes == null) {
+			return null;
+		}
+		return (String[]) fMemberTypes.keySet().toArray(new String[fMemberTypes.size()]);
+	}
+	
 	/* (non-Javadoc)
 	 * @see org.eclipse.pde.api.tools.internal.provisional.model.IApiType#getMemberType(java.lang.String)
 	 */
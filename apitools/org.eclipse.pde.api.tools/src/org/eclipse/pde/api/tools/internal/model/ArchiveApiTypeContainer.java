@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2009 IBM Corporation and others.
+ * Copyright (c) 2007, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -25,9 +25,11 @@ import java.util.Set;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
+import org.eclipse.pde.api.tools.internal.model.TypeStructureCache.ArchiveStructures;
 import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
 import org.eclipse.pde.api.tools.internal.provisional.model.ApiTypeContainerVisitor;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiElement;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiType;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeContainer;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeRoot;
 import org.eclipse.pde.api.tools.internal.util.Util;
@@ -35,7 +37,8 @@ import org.eclipse.pde.api.tools.internal.util.Util;
 import org.eclipse.core.runtime.CoreException;
 
 /**
- * {@link IApiTypeContainer} container for an archive (jar or zip) file.
+ * {@link IApiTypeContainer} container for an archive (jar or zip) file, or for a folder
+ * of an archive.
  * 
  * @since 1.0.0
  */
@@ -98,15 +101,16 @@ public class ArchiveApiTypeContainer extends ApiElement implements IApiTypeConta
 		 */
 		public byte[] getContents() throws CoreException {
 			ArchiveApiTypeContainer archive = (ArchiveApiTypeContainer) getParent();
+			ArchiveHandlePool pool = ArchiveHandlePool.getPool();
 			ZipFile zipFile;
 			try {
-				zipFile= new ZipFile(archive.fLocation);
+				zipFile = pool.acquire(archive.fLocation);
 			} catch (IOException e) {
 				abort("Failed to open archive: " + archive.fLocation, e); //$NON-NLS-1$
 				return null;
 			}
 			try {
-				ZipEntry entry = zipFile.getEntry(getName());
+				ZipEntry entry = zipFile.getEntry(archive.getEntryName(getName()));
 				InputStream stream = null;
 				if (entry != null) {
 					try {
@@ -116,7 +120,7 @@ public class ArchiveApiTypeContainer extends ApiElement implements IApiTypeConta
 						return null;
 					}
 					try {
-						return Util.getInputStreamAsByteArray(stream, -1);
+						return Util.getInputStreamAsByteArray(stream, (int) entry.getSize());
 					}
 					catch(IOException ioe) {
 						abort("Unable to read class file: " + getTypeName(), ioe); //$NON-NLS-1$
@@ -131,16 +135,31 @@ public class ArchiveApiTypeContainer extends ApiElement implements IApiTypeConta
 					}
 				}
 			} finally {
-				try {
-					zipFile.close();
-				} catch (IOException e) {
-					abort("Failed to close class file archive", e); //$NON-NLS-1$
-				}
+				pool.release(zipFile);
 			}
 			abort("Class file not found: " + getTypeName() + " in archive: " + archive.fLocation, null); //$NON-NLS-1$ //$NON-NLS-2$
 			return null;
 		}
 		
+		/* (non-Javadoc)
+		 * @see org.eclipse.pde.api.tools.internal.model.AbstractApiTypeRoot#buildStructure()
+		 */
+		protected IApiType buildStructure() throws CoreException {
+			ArchiveStructures structures = ((ArchiveApiTypeContainer) getParent()).getStructures();
+			if (structures == null) {
+				return super.buildStructure();
+			}
+			String entryName = ((ArchiveApiTypeContainer) getParent()).getEntryName(getName());
+			ApiType type = structures.read(entryName, getApiComponent(), this);
+			if (type == null) {
+				type = (ApiType) super.buildStructure();
+				if (type != null) {
+					structures.record(entryName, type);
+				}
+			}
+			return type;
+		}
+		
 		/* (non-Javadoc)
 		 * @see java.lang.Object#toString()
 		 */
@@ -154,6 +173,12 @@ public class ArchiveApiTypeContainer extends ApiElement implements IApiTypeConta
 	 */
 	String fLocation;
 	
+	/**
+	 * Path of the folder of the archive this container is rooted at, ending with a <code>/</code>,
+	 * or the empty string if this container is rooted at the root of the archive
+	 */
+	private String fPrefix;
+	
 	/**
 	 * Cache of package names to class file paths in that package,
 	 * or <code>null</code> if not yet initialized.
@@ -165,6 +190,14 @@ public class ArchiveApiTypeContainer extends ApiElement implements IApiTypeConta
 	 */
 	private String[] fPackageNames;
 	
+	/**
+	 * Cached type structures of the archive, or <code>null</code> if not yet initialized
+	 * or the structures of the archive cannot be cached.
+	 */
+	private ArchiveStructures fStructures;
+	
+	private boolean fStructuresInitialized = false;
+	
 
 	/**
 	 * Constructs an {@link IApiTypeContainer} container for the given jar or zip file
@@ -174,8 +207,35 @@ public class ArchiveApiTypeContainer extends ApiElement implements IApiTypeConta
 	 * @param path location of the file in the local file system
 	 */
 	public ArchiveApiTypeContainer(IApiElement parent, String path) {
-		super(parent, IApiElement.API_TYPE_CONTAINER, path);
+		this(parent, path, Util.EMPTY_STRING);
+	}
+	
+	/**
+	 * Constructs an {@link IApiTypeContainer} container for a folder of the given jar or zip file
+	 * at the specified location. The class files of the folder are read from the archive, the
+	 * folder is not extracted.
+	 * 
+	 * @param parent the parent {@link IApiElement} or <code>null</code> if none
+	 * @param path location of the file in the local file system
+	 * @param folder path of the folder in the archive, e.g. <code>bin/</code>
+	 */
+	public ArchiveApiTypeContainer(IApiElement parent, String path, String folder) {
+		super(parent, IApiElement.API_TYPE_CONTAINER, folder.length() == 0 ? path : path + '!' + '/' + folder);
 		this.fLocation = path;
+		if (folder.length() > 0 && !folder.endsWith("/")) { //$NON-NLS-1$
+			folder = folder + '/';
+		}
+		this.fPrefix = folder;
+	}
+	
+	/**
+	 * Returns the name of the archive entry of the given type root
+	 * 
+	 * @param name the path of the type root relative to this container
+	 * @return the name of the entry in the archive
+	 */
+	String getEntryName(String name) {
+		return fPrefix.length() == 0 ? name : fPrefix + name;
 	}
 
 	/**
@@ -224,6 +284,25 @@ public class ArchiveApiTypeContainer extends ApiElement implements IApiTypeConta
 	 * @see org.eclipse.pde.api.tools.internal.AbstractApiTypeContainer#close()
 	 */
 	public synchronized void close() throws CoreException {
+		if (fStructures != null) {
+			fStructures.save();
+		}
+		fStructures = null;
+		fStructuresInitialized = false;
+		ArchiveHandlePool.getPool().close(fLocation);
+	}
+	
+	/**
+	 * Returns the cached type structures of this archive
+	 * 
+	 * @return the type structures or <code>null</code> if they cannot be cached
+	 */
+	synchronized ArchiveStructures getStructures() {
+		if (!fStructuresInitialized) {
+			fStructures = TypeStructureCache.getCache().getStructures(fLocation);
+			fStructuresInitialized = true;
+		}
+		return fStructures;
 	}
 
 	/**
@@ -271,9 +350,10 @@ public class ArchiveApiTypeContainer extends ApiElement implements IApiTypeConta
 	private synchronized void init() throws CoreException {
 		if (fPackages == null) {
 			fPackages = new HashMap();
+			ArchiveHandlePool pool = ArchiveHandlePool.getPool();
 			ZipFile zipFile;
 			try {
-				zipFile= new ZipFile(fLocation);
+				zipFile= pool.acquire(fLocation);
 			} catch (IOException e) {
 				abort("Failed to open archive: " + fLocation, e); //$NON-NLS-1$
 				return;
@@ -283,7 +363,8 @@ public class ArchiveApiTypeContainer extends ApiElement implements IApiTypeConta
 				while (entries.hasMoreElements()) {
 					ZipEntry entry= (ZipEntry)entries.nextElement();
 					String name= entry.getName();
-					if (name.endsWith(Util.DOT_CLASS_SUFFIX)) {
+					if (name.endsWith(Util.DOT_CLASS_SUFFIX) && name.startsWith(fPrefix)) {
+						name= name.substring(fPrefix.length());
 						String pkg= Util.DEFAULT_PACKAGE_NAME;
 						int index= name.lastIndexOf('/');
 						if (index >= 0) {
@@ -298,11 +379,7 @@ public class ArchiveApiTypeContainer extends ApiElement implements IApiTypeConta
 					}
 				}
 			} finally {
-				try {
-					zipFile.close();
-				} catch (IOException e) {
-					abort("Failed to close class file archive", e); //$NON-NLS-1$
-				}
+				pool.release(zipFile);
 			}
 		}
 	}
@@ -313,7 +390,8 @@ public class ArchiveApiTypeContainer extends ApiElement implements IApiTypeConta
 	 */
 	public boolean equals(Object obj) {
 		if (obj instanceof ArchiveApiTypeContainer) {
-			return this.fLocation.equals(((ArchiveApiTypeContainer) obj).fLocation);
+			ArchiveApiTypeContainer archive = (ArchiveApiTypeContainer) obj;
+			return this.fLocation.equals(archive.fLocation) && this.fPrefix.equals(archive.fPrefix);
 		}
 		return false;
 	}
@@ -321,7 +399,7 @@ public class ArchiveApiTypeContainer extends ApiElement implements IApiTypeConta
 	 * @see java.lang.Object#hashCode()
 	 */
 	public int hashCode() {
-		return this.fLocation.hashCode();
+		return this.fLocation.hashCode() + this.fPrefix.hashCode();
 	}
 
 	/**
@@ -335,6 +413,6 @@ public class ArchiveApiTypeContainer extends ApiElement implements IApiTypeConta
 	 * @see org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeContainer#getContainerType()
 	 */
 	public int getContainerType() {
-		return ARCHIVE;
+		return fPrefix.length() == 0 ? ARCHIVE : DIRECTORY;
 	}
 }
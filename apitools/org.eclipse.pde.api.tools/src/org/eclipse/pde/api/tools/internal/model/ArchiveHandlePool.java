@@ -0,0 +1,347 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.internal.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.zip.ZipFile;
+
+import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
+
+/**
+ * Pool of shared {@link ZipFile} handles used by {@link ArchiveApiTypeContainer}s and
+ * {@link NestedArchiveApiTypeContainer}s.
+ * <p>
+ * Each archive location is opened at most once and the handle (and its parsed central
+ * directory) is shared by every reader of that archive. Handles are reference counted
+ * while in use and idle handles are closed in least-recently-used order once the number
+ * of open handles exceeds the pool limit. Handles that are in use are never closed, so the
+ * limit can be temporarily exceeded when more archives are being read at once than the
+ * pool allows. A handle that is closed while in use is detached from the pool when its archive
+ * is opened again, and stays open until its own last user releases it.
+ * </p>
+ * <p>
+ * The limit defaults to {@link #DEFAULT_MAX_OPEN_HANDLES} and can be changed with the
+ * <code>org.eclipse.pde.api.tools.archivePoolSize</code> system property or
+ * {@link #setMaxOpenHandles(int)}.
+ * </p>
+ *
+ * @since 1.0.500
+ */
+public final class ArchiveHandlePool {
+
+	/**
+	 * A pooled handle
+	 */
+	static final class Handle {
+		final String location;
+		final ZipFile zipFile;
+		int refCount = 0;
+		boolean closePending = false;
+
+		Handle(String location, ZipFile zipFile) {
+			this.location = location;
+			this.zipFile = zipFile;
+		}
+	}
+
+	/**
+	 * System property used to configure the maximum number of open handles
+	 */
+	public static final String POOL_SIZE_PROPERTY = "org.eclipse.pde.api.tools.archivePoolSize"; //$NON-NLS-1$
+
+	/**
+	 * Default maximum number of open handles
+	 */
+	public static final int DEFAULT_MAX_OPEN_HANDLES = 32;
+
+	private static ArchiveHandlePool fInstance = null;
+
+	/**
+	 * Map of archive location to {@link Handle}, in access order
+	 */
+	private LinkedHashMap fHandles = new LinkedHashMap(16, 0.75f, true);
+
+	/**
+	 * Map of {@link ZipFile} to the {@link Handle} that was detached from the pool
+	 * because its archive was closed and opened again while the handle was in use
+	 */
+	private IdentityHashMap fDetached = new IdentityHashMap();
+
+	private int fMaxOpenHandles = DEFAULT_MAX_OPEN_HANDLES;
+	private long fHits = 0;
+	private long fMisses = 0;
+
+	/**
+	 * Constructor
+	 * private - no instantiation
+	 */
+	private ArchiveHandlePool() {
+		try {
+			String size = System.getProperty(POOL_SIZE_PROPERTY);
+			if(size != null) {
+				setMaxOpenHandles(Integer.parseInt(size.trim()));
+			}
+		}
+		catch(NumberFormatException nfe) {
+			ApiPlugin.log(nfe);
+		}
+	}
+
+	/**
+	 * Returns the singleton instance of the pool
+	 * @return the pool
+	 */
+	public static synchronized ArchiveHandlePool getPool() {
+		if(fInstance == null) {
+			fInstance = new ArchiveHandlePool();
+		}
+		return fInstance;
+	}
+
+	/**
+	 * Returns a shared {@link ZipFile} for the archive at the given location, opening it if required.
+	 * Every call to this method must be balanced by a call to {@link #release(ZipFile)}; callers
+	 * must not close the returned handle themselves.
+	 *
+	 * @param location the absolute path of the archive in the local file system
+	 * @return the shared handle for the archive
+	 * @throws IOException if the archive could not be opened
+	 */
+	public ZipFile acquire(String location) throws IOException {
+		synchronized (this) {
+			Handle handle = (Handle) fHandles.get(location);
+			if(handle != null && !handle.closePending) {
+				handle.refCount++;
+				fHits++;
+				return handle.zipFile;
+			}
+		}
+		//open outside the lock, reading the central directory can take a while
+		ZipFile zipFile = new ZipFile(location);
+		List toClose = null;
+		synchronized (this) {
+			Handle handle = (Handle) fHandles.get(location);
+			if(handle != null && !handle.closePending) {
+				//another thread opened it in the mean time, use theirs
+				handle.refCount++;
+				fHits++;
+				toClose = new ArrayList(1);
+				toClose.add(zipFile);
+				zipFile = handle.zipFile;
+			}
+			else {
+				if(handle != null) {
+					//detach the pending handle, it will be closed on its last release
+					fHandles.remove(location);
+					fDetached.put(handle.zipFile, handle);
+				}
+				fMisses++;
+				handle = new Handle(location, zipFile);
+				handle.refCount = 1;
+				fHandles.put(location, handle);
+				toClose = evictIdle();
+			}
+		}
+		closeAll(toClose);
+		return zipFile;
+	}
+
+	/**
+	 * Releases a handle previously returned from {@link #acquire(String)}. The handle is kept
+	 * open for later use unless the pool is over its limit or the archive was closed while in use.
+	 *
+	 * @param zipFile the handle to release
+	 */
+	public void release(ZipFile zipFile) {
+		if(zipFile == null) {
+			return;
+		}
+		List toClose = null;
+		synchronized (this) {
+			Handle handle = (Handle) fHandles.get(zipFile.getName());
+			if(handle != null && handle.zipFile == zipFile) {
+				if(handle.refCount > 0) {
+					handle.refCount--;
+				}
+				if(handle.refCount == 0 && handle.closePending) {
+					fHandles.remove(handle.location);
+					toClose = new ArrayList(1);
+					toClose.add(zipFile);
+				}
+				else {
+					toClose = evictIdle();
+				}
+			}
+			else {
+				//a detached handle whose archive was closed and reopened while it was in use
+				handle = (Handle) fDetached.get(zipFile);
+				if(handle != null && --handle.refCount <= 0) {
+					fDetached.remove(zipFile);
+					toClose = new ArrayList(1);
+					toClose.add(zipFile);
+				}
+			}
+		}
+		closeAll(toClose);
+	}
+
+	/**
+	 * Closes the pooled handle for the given archive location. If the handle is currently
+	 * in use it is closed when its last user releases it.
+	 *
+	 * @param location the absolute path of the archive in the local file system
+	 */
+	public void close(String location) {
+		ZipFile toClose = null;
+		synchronized (this) {
+			Handle handle = (Handle) fHandles.get(location);
+			if(handle == null) {
+				return;
+			}
+			if(handle.refCount == 0) {
+				fHandles.remove(location);
+				toClose = handle.zipFile;
+			}
+			else {
+				handle.closePending = true;
+			}
+		}
+		if(toClose != null) {
+			close(toClose);
+		}
+	}
+
+	/**
+	 * Closes all idle handles in the pool and marks the ones in use to be closed
+	 * on their last release.
+	 */
+	public void closeAll() {
+		List toClose = new ArrayList();
+		synchronized (this) {
+			for(Iterator iter = fHandles.values().iterator(); iter.hasNext();) {
+				Handle handle = (Handle) iter.next();
+				if(handle.refCount == 0) {
+					toClose.add(handle.zipFile);
+					iter.remove();
+				}
+				else {
+					handle.closePending = true;
+				}
+			}
+		}
+		closeAll(toClose);
+	}
+
+	/**
+	 * Sets the maximum number of idle handles to keep open. Idle handles over the new limit
+	 * are closed immediately.
+	 *
+	 * @param max the new limit, must be greater than zero
+	 */
+	public void setMaxOpenHandles(int max) {
+		if(max < 1) {
+			throw new IllegalArgumentException("The archive pool size must be greater than zero"); //$NON-NLS-1$
+		}
+		List toClose = null;
+		synchronized (this) {
+			fMaxOpenHandles = max;
+			toClose = evictIdle();
+		}
+		closeAll(toClose);
+	}
+
+	/**
+	 * @return the maximum number of handles the pool keeps open
+	 */
+	public synchronized int getMaxOpenHandles() {
+		return fMaxOpenHandles;
+	}
+
+	/**
+	 * @return the number of handles currently open in the pool
+	 */
+	public synchronized int getOpenHandleCount() {
+		return fHandles.size();
+	}
+
+	/**
+	 * @return the number of times {@link #acquire(String)} was answered with an already open handle
+	 */
+	public synchronized long getHitCount() {
+		return fHits;
+	}
+
+	/**
+	 * @return the number of times {@link #acquire(String)} had to open the archive
+	 */
+	public synchronized long getMissCount() {
+		return fMisses;
+	}
+
+	/**
+	 * Resets the hit and miss counters
+	 */
+	public synchronized void resetCounters() {
+		fHits = 0;
+		fMisses = 0;
+	}
+
+	/**
+	 * Removes idle handles in least-recently-used order until the pool is within its limit.
+	 * Must be called while holding the lock on the pool.
+	 *
+	 * @return the list of {@link ZipFile}s to close once the lock has been released, never <code>null</code>
+	 */
+	private List evictIdle() {
+		List toClose = new ArrayList();
+		int excess = fHandles.size() - fMaxOpenHandles;
+		for(Iterator iter = fHandles.values().iterator(); excess > 0 && iter.hasNext();) {
+			Handle handle = (Handle) iter.next();
+			if(handle.refCount == 0) {
+				toClose.add(handle.zipFile);
+				iter.remove();
+				excess--;
+			}
+		}
+		return toClose;
+	}
+
+	/**
+	 * Closes all of the {@link ZipFile}s in the given list
+	 * @param zipFiles
+	 */
+	private void closeAll(List zipFiles) {
+		if(zipFiles == null) {
+			return;
+		}
+		for(Iterator iter = zipFiles.iterator(); iter.hasNext();) {
+			close((ZipFile) iter.next());
+		}
+	}
+
+	/**
+	 * Closes the given {@link ZipFile} logging any exception
+	 * @param zipFile
+	 */
+	private void close(ZipFile zipFile) {
+		try {
+			zipFile.close();
+		}
+		catch(IOException e) {
+			ApiPlugin.log(e);
+		}
+	}
+}
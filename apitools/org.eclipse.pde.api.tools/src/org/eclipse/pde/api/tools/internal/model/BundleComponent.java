@@ -10,17 +10,13 @@
  *******************************************************************************/
 package org.eclipse.pde.api.tools.internal.model;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringReader;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
@@ -30,11 +26,6 @@ import java.util.Set;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
-import javax.xml.parsers.FactoryConfigurationError;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
-
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Path;
@@ -70,16 +61,11 @@ import org.eclipse.pde.api.tools.internal.provisional.model.IApiBaseline;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiComponent;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiElement;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeContainer;
-import org.eclipse.pde.api.tools.internal.util.FileManager;
-import org.eclipse.pde.api.tools.internal.util.SourceDefaultHandler;
 import org.eclipse.pde.api.tools.internal.util.Util;
 import org.eclipse.pde.internal.core.PDEStateHelper;
-import org.eclipse.pde.internal.core.TargetWeaver;
 import org.osgi.framework.BundleException;
 import org.osgi.framework.Constants;
 import org.osgi.framework.Version;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
 
 /**
  * Implementation of an API component based on a bundle in the file system.
@@ -88,9 +74,6 @@ import org.xml.sax.SAXException;
  */
 public class BundleComponent extends Component {
 	
-	static final String TMP_API_FILE_PREFIX = "api"; //$NON-NLS-1$
-	static final String TMP_API_FILE_POSTFIX = "tmp"; //$NON-NLS-1$
-	
 	/**
 	 * Dictionary parsed from MANIFEST.MF
 	 */
@@ -107,6 +90,11 @@ public class BundleComponent extends Component {
 		Constants.BUNDLE_VERSION
 	};
 	
+	/**
+	 * Metadata read from the bundle in a single pass, or <code>null</code> if not yet read
+	 */
+	private BundleMetadata fMetadata;
+	
 	/**
 	 * Whether there is an underlying .api_description file
 	 */
@@ -143,6 +131,11 @@ public class BundleComponent extends Component {
 	 */
 	private boolean fWorkspaceBinary = false;
 	
+	/**
+	 * Whether this component has been disposed
+	 */
+	private boolean fDisposed = false;
+	
 	/**
 	 * The id of this component
 	 */
@@ -173,11 +166,23 @@ public class BundleComponent extends Component {
 		} finally {
 			synchronized(this) {
 				fManifest = null;
+				fMetadata = null;
 				fBundleDescription = null;
+				fDisposed = true;
 			}
 		}
 	}
 	
+	/**
+	 * Returns if this component has been disposed, a disposed component must no longer be used
+	 * 
+	 * @return <code>true</code> if this component has been disposed, <code>false</code> otherwise
+	 * @since 1.0.500
+	 */
+	public synchronized boolean isDisposed() {
+		return fDisposed;
+	}
+	
 	/**
 	 * Returns this bundle's manifest as a dictionary or <code>null</code> if
 	 * no manifest was found.
@@ -187,12 +192,7 @@ public class BundleComponent extends Component {
 	 */
 	protected synchronized Map getManifest() throws CoreException {
 		if(fManifest == null) {
-				fManifest = PDEStateHelper.loadManifest(new File(fLocation));
-				if (isWorkspaceBinary()) {
-					// must account for bundles in development mode - look for class files in output
-					// folders rather than jars
-					TargetWeaver.weaveManifest(fManifest);
-				}
+				fManifest = getMetadata().takeManifest();
 				if (fManifest == null || fManifest.get(Constants.BUNDLE_NAME) == null){
 					// Check if we have an old style (pre-osgi) bundle (this only works if OSGi is running.
 					try {
@@ -205,6 +205,20 @@ public class BundleComponent extends Component {
 		return fManifest;
 	}
 
+	/**
+	 * Returns the metadata of this bundle, reading it from the bundle if required.
+	 * 
+	 * @return the metadata of this bundle
+	 */
+	synchronized BundleMetadata getMetadata() {
+		if (fMetadata == null) {
+			// must account for bundles in development mode - look for class files in output
+			// folders rather than jars
+			fMetadata = BundleMetadata.read(fLocation, isWorkspaceBinary());
+		}
+		return fMetadata;
+	}
+
 	/**
 	 * Reduce the manifest to only contain required headers after {@link BundleDescription} creation.
 	 */
@@ -394,7 +408,8 @@ public class BundleComponent extends Component {
 		// first mark all packages as internal
 		initializeApiDescription(apiDesc, getBundleDescription(), getLocalPackageNames());
 		try {
-			String xml = loadApiDescription(new File(fLocation));
+			// only bundles known to have a description are read again
+			String xml = getMetadata().hasApiDescription() ? loadApiDescription(new File(fLocation)) : null;
 			setHasApiDescription(xml != null);
 			if (xml != null) {
 				ApiDescriptionProcessor.annotateApiSettings(null, apiDesc, xml);
@@ -665,127 +680,35 @@ public class BundleComponent extends Component {
 			}
 		} else {
 			// bundle is jar'd
-			ZipFile zip = null;
-			try {
-				if (path.equals(".")) { //$NON-NLS-1$
-					return new ArchiveApiTypeContainer(this, fLocation);
-				} else {
-					//classpath element can be jar or folder
-					//https://bugs.eclipse.org/bugs/show_bug.cgi?id=279729
-					zip = new ZipFile(fLocation);
-					ZipEntry entry = zip.getEntry(path);
-					if (entry != null) {
-						File tmpfolder = new File(System.getProperty("java.io.tmpdir")); //$NON-NLS-1$
-						if(entry.isDirectory()) {
-							//extract the dir and all children
-							File dir = Util.createTempFile(TMP_API_FILE_PREFIX, TMP_API_FILE_POSTFIX);
-							//hack to create a temp directory
-							// see http://bugs.sun.com/bugdatabase/view_bug.do?bug_id=4735419
-							if(dir.delete()) {
-								dir.mkdir();
-								FileManager.getManager().recordTempFileRoot(dir.getCanonicalPath());
-							}
-							extractDirectory(zip, entry.getName(), dir);
-							if(dir.isDirectory() && dir.exists()) {
-								return new DirectoryApiTypeContainer(this, dir.getCanonicalPath());
-							}
-						}
-						else {
-							File file = extractEntry(zip, entry, tmpfolder);
-							if(Util.isArchive(file.getName())) {
-								File parent = file.getParentFile();
-								if(!parent.equals(tmpfolder)) {
-									FileManager.getManager().recordTempFileRoot(parent.getCanonicalPath());
-								}
-								else {
-									FileManager.getManager().recordTempFileRoot(file.getCanonicalPath());
-								}
-								return new ArchiveApiTypeContainer(this, file.getCanonicalPath());
-							}
-						}
-					}
-				}
-			} finally {
-				if (zip != null) {
-					zip.close();
-				}
-			}
-		}
-		return null;
-	}
-		
-	/**
-	 * Extracts a directory from the archive given a path prefix for entries to retrieve.
-	 * <code>null</code> can be passed in as a prefix, causing all entries to be be extracted from 
-	 * the archive.
-	 * 
-	 * @param zip the {@link ZipFile} to extract from
-	 * @param pathprefix the prefix'ing path to include for extraction
-	 * @param parent the parent directory to extract to
-	 * @throws IOException if the {@link ZipFile} cannot be read or extraction fails to write the file(s)
-	 */
-	void extractDirectory(ZipFile zip, String pathprefix, File parent) throws IOException {
-		Enumeration entries = zip.entries();
-		String prefix = (pathprefix == null ? Util.EMPTY_STRING : pathprefix);
-		ZipEntry entry = null;
-		File file = null;
-		while (entries.hasMoreElements()) {
-			entry = (ZipEntry) entries.nextElement();
-			if(entry.getName().startsWith(prefix)) {
-				file = new File(parent, entry.getName());
-				if (entry.isDirectory()) {
-					file.mkdir();
-					continue;
-				}
-				extractEntry(zip, entry, parent);
-			}
-		}
-	}
-	
-	/**
-	 * Extracts a non-directory entry from a zip file and returns the File handle
-	 * @param zip the zip to extract from
-	 * @param entry the entry to extract
-	 * @param parent the parent directory to add the extracted entry to
-	 * @return the file handle to the extracted entry, <code>null</code> otherwise
-	 * @throws IOException
-	 */
-	File extractEntry(ZipFile zip, ZipEntry entry, File parent) throws IOException {
-		InputStream inputStream = null;
-		File file;
-		FileOutputStream outputStream = null;
-		try {
-			inputStream = zip.getInputStream(entry);
-			file = new File(parent, entry.getName());
-			File lparent = file.getParentFile();
-			if(!lparent.exists()) {
-				lparent.mkdirs();
-			}
-			outputStream = new FileOutputStream(file);
-			byte[] bytes = new byte[8096];
-			while (inputStream.available() > 0) {
-				int read = inputStream.read(bytes);
-				if (read > 0) {
-					outputStream.write(bytes, 0, read);
-				}
+			if (path.equals(".")) { //$NON-NLS-1$
+				return new ArchiveApiTypeContainer(this, fLocation);
 			}
-		} finally {
-			if (inputStream != null) {
+			//classpath element can be jar or folder
+			//https://bugs.eclipse.org/bugs/show_bug.cgi?id=279729
+			ZipEntry entry = null;
+			BundleMetadata metadata = getMetadata();
+			if (metadata.isClasspathEntryKnown(path)) {
+				entry = metadata.getClasspathEntry(path);
+			} else {
+				ArchiveHandlePool pool = ArchiveHandlePool.getPool();
+				ZipFile zip = pool.acquire(fLocation);
 				try {
-					inputStream.close();
-				} catch(IOException e) {
-					ApiPlugin.log(e);
+					entry = zip.getEntry(path);
+				} finally {
+					pool.release(zip);
 				}
 			}
-			if (outputStream != null) {
-				try {
-					outputStream.close();
-				} catch(IOException e) {
-					ApiPlugin.log(e);
+			if (entry != null) {
+				// read the class files in place rather than extracting them
+				if (entry.isDirectory()) {
+					return new ArchiveApiTypeContainer(this, fLocation, entry.getName());
+				}
+				if (Util.isArchive(entry.getName())) {
+					return new NestedArchiveApiTypeContainer(this, fLocation, entry.getName());
 				}
 			}
 		}
-		return file;
+		return null;
 	}
 	
 	public void closingZipFileAndStream(InputStream stream, ZipFile jarFile) {
@@ -806,43 +729,22 @@ public class BundleComponent extends Component {
 	}
 	
 	/**
-	 * Reads and returns the file contents corresponding to the given file name.
-	 * The bundle may be in a jar or in a directory at the specified location.
+	 * Closes the given stream and releases the given pooled {@link ZipFile}
 	 * 
-	 * @param xmlFileName the given file name
-	 * @param bundleLocation the root location of the bundle
-	 * @return the file contents or <code>null</code> if not present
+	 * @param stream the stream to close or <code>null</code>
+	 * @param jarFile the handle acquired from the {@link ArchiveHandlePool} or <code>null</code>
 	 */
-	protected String readFileContents(String xmlFileName, File bundleLocation) {
-		ZipFile jarFile = null;
-		InputStream stream = null;
+	private void releaseZipFileAndStream(InputStream stream, ZipFile jarFile) {
 		try {
-			String extension = new Path(bundleLocation.getName()).getFileExtension();
-			if (extension != null && extension.equals("jar") && bundleLocation.isFile()) { //$NON-NLS-1$
-				jarFile = new ZipFile(bundleLocation, ZipFile.OPEN_READ);
-				ZipEntry manifestEntry = jarFile.getEntry(xmlFileName);
-				if (manifestEntry != null) {
-					stream = jarFile.getInputStream(manifestEntry);
-				}
-			} else {
-				File file = new File(bundleLocation, xmlFileName);
-				if (file.exists()) {
-					stream = new FileInputStream(file);
-				}
-			}
-			if (stream == null) {
-				return null;
+			if (stream != null) {
+				stream.close();
 			}
-			return new String(Util.getInputStreamAsCharArray(stream, -1, IApiCoreConstants.UTF_8));
-		} catch(IOException e) {
-			//TODO abort
+		} catch (IOException e) {
 			ApiPlugin.log(e);
-		} finally {
-			closingZipFileAndStream(stream, jarFile);
 		}
-		return null;
+		ArchiveHandlePool.getPool().release(jarFile);
 	}
-
+	
 	/**
 	 * Parses a bundle's .api_description XML into a string. The file may be in a jar
 	 * or in a directory at the specified location.
@@ -858,7 +760,7 @@ public class BundleComponent extends Component {
 		try {
 			String extension = new Path(bundleLocation.getName()).getFileExtension();
 			if (extension != null && extension.equals("jar") && bundleLocation.isFile()) { //$NON-NLS-1$
-				jarFile = new ZipFile(bundleLocation, ZipFile.OPEN_READ);
+				jarFile = ArchiveHandlePool.getPool().acquire(bundleLocation.getPath());
 				ZipEntry manifestEntry = jarFile.getEntry(IApiCoreConstants.API_DESCRIPTION_XML_NAME);
 				if (manifestEntry != null) {
 					// new file is present
@@ -877,7 +779,7 @@ public class BundleComponent extends Component {
 			char[] charArray = Util.getInputStreamAsCharArray(stream, -1, IApiCoreConstants.UTF_8);
 			contents = new String(charArray);
 		} finally {
-			closingZipFileAndStream(stream, jarFile);
+			releaseZipFileAndStream(stream, jarFile);
 		}
 		return contents;
 	}
@@ -1035,64 +937,10 @@ public class BundleComponent extends Component {
 			// this is a source bundle with the new format
 			return true;
 		}
-		// check for the old format
-		String pluginXMLContents = readFileContents(IApiCoreConstants.PLUGIN_XML_NAME,new File(getLocation()));
-		if (pluginXMLContents != null) {
-			if (containsSourceExtensionPoint(pluginXMLContents)) {
-				return true;
-			}
-		}
-		// check if it contains a fragment.xml with the appropriate extension point
-		pluginXMLContents = readFileContents(IApiCoreConstants.FRAGMENT_XML_NAME,new File(getLocation()));
-		if (pluginXMLContents != null) {
-			if (containsSourceExtensionPoint(pluginXMLContents)) {
-				return true;
-			}
-		}
-		// parse XML contents to find extension points
-		return false;
+		// check for the old format, the plugin.xml or fragment.xml with the appropriate extension point
+		return getMetadata().hasSourceExtension();
 	}
 
-	/**
-	 * Check if the given source contains an source extension point.
-	 * 
-	 * @param pluginXMLContents the given file contents
-	 * @return true if it contains a source extension point, false otherwise
-	 */
-	private boolean containsSourceExtensionPoint(String pluginXMLContents) {
-		SAXParserFactory factory = null;
-		try {
-			factory = SAXParserFactory.newInstance();
-		} catch (FactoryConfigurationError e) {
-			return false;
-		}
-		SAXParser saxParser = null;
-		try {
-			saxParser = factory.newSAXParser();
-		} catch (ParserConfigurationException e) {
-			// ignore
-		} catch (SAXException e) {
-			// ignore
-		}
-
-		if (saxParser == null) {
-			return false;
-		}
-
-		// Parse
-		InputSource inputSource = new InputSource(new BufferedReader(new StringReader(pluginXMLContents)));
-		try {
-			SourceDefaultHandler defaultHandler = new SourceDefaultHandler();
-			saxParser.parse(inputSource, defaultHandler);
-			return defaultHandler.isSource();
-		} catch (SAXException e) {
-			// ignore
-		} catch (IOException e) {
-			// ignore
-		}
-		return false;
-	}	
-
 	/* (non-Javadoc)
 	 * @see org.eclipse.pde.api.tools.IApiComponent#isFragment()
 	 */
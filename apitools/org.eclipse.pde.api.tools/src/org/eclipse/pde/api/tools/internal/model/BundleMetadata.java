@@ -0,0 +1,337 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.internal.model;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.xml.parsers.FactoryConfigurationError;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.eclipse.osgi.util.ManifestElement;
+import org.eclipse.pde.api.tools.internal.IApiCoreConstants;
+import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
+import org.eclipse.pde.api.tools.internal.util.SourceDefaultHandler;
+import org.eclipse.pde.api.tools.internal.util.Util;
+import org.eclipse.pde.internal.core.TargetWeaver;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.Constants;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * The metadata of a bundle that a {@link BundleComponent} needs to initialize, read in a single
+ * pass over the bundle.
+ * <p>
+ * For a jar'd bundle the pass opens the bundle once, through the {@link ArchiveHandlePool} so that
+ * the handle can be shared with the container of its class files, and reads the manifest, whether
+ * the bundle has an <code>.api_description</code>, whether its <code>plugin.xml</code> or
+ * <code>fragment.xml</code> contributes a source extension and the entries of its
+ * <code>Bundle-ClassPath</code>. The contents of the <code>.api_description</code> are not kept,
+ * they are only read when the API description of the component is created.
+ * </p>
+ *
+ * @since 1.0.500
+ */
+final class BundleMetadata {
+
+	/**
+	 * The extension point source bundles of the old format contribute to
+	 */
+	private static final String SOURCE_EXTENSION_POINT = "org.eclipse.pde.core.source"; //$NON-NLS-1$
+
+	/**
+	 * The manifest or <code>null</code> if the bundle has none or it was handed over to the component
+	 */
+	private Map fManifest;
+
+	private boolean fHasApiDescription = false;
+
+	private boolean fHasSourceExtension = false;
+
+	/**
+	 * Map of the paths of the <code>Bundle-ClassPath</code> of a jar'd bundle to the {@link ZipEntry}
+	 * found for them in the bundle or <code>null</code> if the bundle has no such entry
+	 */
+	private Map fClasspathEntries = null;
+
+	private BundleMetadata() {
+	}
+
+	/**
+	 * Reads the metadata of the bundle at the given location
+	 *
+	 * @param location the location of the bundle, a jar or a directory
+	 * @param weave whether the bundle is a workspace binary bundle whose manifest must be weaved
+	 * @return the metadata of the bundle, never <code>null</code>
+	 */
+	static BundleMetadata read(String location, boolean weave) {
+		BundleMetadata metadata = new BundleMetadata();
+		File bundle = new File(location);
+		if (bundle.isFile()) {
+			metadata.readArchive(location, weave);
+		} else {
+			metadata.readDirectory(bundle, weave);
+		}
+		return metadata;
+	}
+
+	private void readArchive(String location, boolean weave) {
+		ArchiveHandlePool pool = ArchiveHandlePool.getPool();
+		ZipFile zip = null;
+		try {
+			zip = pool.acquire(location);
+		} catch (IOException e) {
+			// not a readable bundle, there is no manifest
+			return;
+		}
+		try {
+			ZipEntry entry = zip.getEntry(JarFile.MANIFEST_NAME);
+			if (entry != null) {
+				fManifest = parseManifest(zip.getInputStream(entry));
+			}
+			if (weave) {
+				TargetWeaver.weaveManifest(fManifest);
+			}
+			fHasApiDescription = zip.getEntry(IApiCoreConstants.API_DESCRIPTION_XML_NAME) != null;
+			if (!isSourceBundle()) {
+				fHasSourceExtension = containsSourceExtensionPoint(readContents(zip, IApiCoreConstants.PLUGIN_XML_NAME))
+						|| containsSourceExtensionPoint(readContents(zip, IApiCoreConstants.FRAGMENT_XML_NAME));
+			}
+			if (fManifest != null) {
+				String[] paths = getClasspath(fManifest);
+				fClasspathEntries = new HashMap(paths.length * 2);
+				for (int i = 0; i < paths.length; i++) {
+					if (!".".equals(paths[i])) { //$NON-NLS-1$
+						fClasspathEntries.put(paths[i], zip.getEntry(paths[i]));
+					}
+				}
+			}
+		} catch (IOException e) {
+			ApiPlugin.log(e);
+		} finally {
+			pool.release(zip);
+		}
+	}
+
+	private void readDirectory(File bundle, boolean weave) {
+		File file = new File(bundle, JarFile.MANIFEST_NAME);
+		try {
+			if (file.exists()) {
+				fManifest = parseManifest(new FileInputStream(file));
+			}
+		} catch (IOException e) {
+			// treat as if there is no manifest
+		}
+		if (weave) {
+			TargetWeaver.weaveManifest(fManifest);
+		}
+		fHasApiDescription = new File(bundle, IApiCoreConstants.API_DESCRIPTION_XML_NAME).exists();
+		if (!isSourceBundle()) {
+			fHasSourceExtension = containsSourceExtensionPoint(readContents(bundle, IApiCoreConstants.PLUGIN_XML_NAME))
+					|| containsSourceExtensionPoint(readContents(bundle, IApiCoreConstants.FRAGMENT_XML_NAME));
+		}
+	}
+
+	/**
+	 * Parses the manifest from the given stream and closes the stream
+	 *
+	 * @param stream the stream to read
+	 * @return the manifest headers or <code>null</code> if the manifest cannot be parsed
+	 */
+	private static Map parseManifest(InputStream stream) {
+		try {
+			return ManifestElement.parseBundleManifest(stream, null);
+		} catch (BundleException e) {
+			// treat as if there is no manifest
+		} catch (IOException e) {
+			// treat as if there is no manifest
+		} finally {
+			try {
+				stream.close();
+			} catch (IOException e) {
+				ApiPlugin.log(e);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return whether the manifest declares the bundle as a source bundle
+	 */
+	private boolean isSourceBundle() {
+		if (fManifest == null) {
+			return false;
+		}
+		try {
+			return ManifestElement.parseHeader(IApiCoreConstants.ECLIPSE_SOURCE_BUNDLE, (String) fManifest.get(IApiCoreConstants.ECLIPSE_SOURCE_BUNDLE)) != null;
+		} catch (BundleException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the paths of the <code>Bundle-ClassPath</code> of the given manifest
+	 *
+	 * @param manifest the manifest
+	 * @return the class path entries as bundle relative paths
+	 */
+	private static String[] getClasspath(Map manifest) {
+		try {
+			ManifestElement[] classpath = ManifestElement.parseHeader(Constants.BUNDLE_CLASSPATH, (String) manifest.get(Constants.BUNDLE_CLASSPATH));
+			if (classpath != null) {
+				String[] paths = new String[classpath.length];
+				for (int i = 0; i < classpath.length; i++) {
+					paths[i] = classpath[i].getValue();
+				}
+				return paths;
+			}
+		} catch (BundleException e) {
+			// the component reports the invalid header when it creates its class file containers
+		}
+		return new String[0];
+	}
+
+	private static String readContents(ZipFile zip, String name) throws IOException {
+		ZipEntry entry = zip.getEntry(name);
+		if (entry == null) {
+			return null;
+		}
+		return readContents(zip.getInputStream(entry));
+	}
+
+	private static String readContents(File bundle, String name) {
+		File file = new File(bundle, name);
+		if (!file.exists()) {
+			return null;
+		}
+		try {
+			return readContents(new FileInputStream(file));
+		} catch (IOException e) {
+			ApiPlugin.log(e);
+		}
+		return null;
+	}
+
+	private static String readContents(InputStream stream) throws IOException {
+		try {
+			return new String(Util.getInputStreamAsCharArray(stream, -1, IApiCoreConstants.UTF_8));
+		} finally {
+			try {
+				stream.close();
+			} catch (IOException e) {
+				ApiPlugin.log(e);
+			}
+		}
+	}
+
+	/**
+	 * Check if the given source contains an source extension point.
+	 *
+	 * @param pluginXMLContents the given file contents or <code>null</code>
+	 * @return true if it contains a source extension point, false otherwise
+	 */
+	private static boolean containsSourceExtensionPoint(String pluginXMLContents) {
+		// only parse the files that can contribute the extension
+		if (pluginXMLContents == null || pluginXMLContents.indexOf(SOURCE_EXTENSION_POINT) == -1) {
+			return false;
+		}
+		SAXParserFactory factory = null;
+		try {
+			factory = SAXParserFactory.newInstance();
+		} catch (FactoryConfigurationError e) {
+			return false;
+		}
+		SAXParser saxParser = null;
+		try {
+			saxParser = factory.newSAXParser();
+		} catch (ParserConfigurationException e) {
+			// ignore
+		} catch (SAXException e) {
+			// ignore
+		}
+
+		if (saxParser == null) {
+			return false;
+		}
+
+		// Parse
+		InputSource inputSource = new InputSource(new BufferedReader(new StringReader(pluginXMLContents)));
+		try {
+			SourceDefaultHandler defaultHandler = new SourceDefaultHandler();
+			saxParser.parse(inputSource, defaultHandler);
+			return defaultHandler.isSource();
+		} catch (SAXException e) {
+			// ignore
+		} catch (IOException e) {
+			// ignore
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the manifest read from the bundle and forgets about it, the component
+	 * keeps the manifest from then on
+	 *
+	 * @return the manifest or <code>null</code> if the bundle has none
+	 */
+	Map takeManifest() {
+		Map manifest = fManifest;
+		fManifest = null;
+		return manifest;
+	}
+
+	/**
+	 * @return whether the bundle has an <code>.api_description</code> file
+	 */
+	boolean hasApiDescription() {
+		return fHasApiDescription;
+	}
+
+	/**
+	 * @return whether the <code>plugin.xml</code> or <code>fragment.xml</code> of the bundle contributes
+	 * to the <code>org.eclipse.pde.core.source</code> extension point
+	 */
+	boolean hasSourceExtension() {
+		return fHasSourceExtension;
+	}
+
+	/**
+	 * Returns whether the given <code>Bundle-ClassPath</code> entry was looked up in the bundle
+	 *
+	 * @param path the bundle relative path of the class path entry
+	 * @return whether {@link #getClasspathEntry(String)} knows about the path
+	 */
+	boolean isClasspathEntryKnown(String path) {
+		return fClasspathEntries != null && fClasspathEntries.containsKey(path);
+	}
+
+	/**
+	 * Returns the archive entry of the given <code>Bundle-ClassPath</code> entry of a jar'd bundle
+	 *
+	 * @param path the bundle relative path of the class path entry
+	 * @return the entry or <code>null</code> if the bundle has no such entry or the path is unknown
+	 */
+	ZipEntry getClasspathEntry(String path) {
+		return fClasspathEntries == null ? null : (ZipEntry) fClasspathEntries.get(path);
+	}
+}
@@ -0,0 +1,643 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.internal.model;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
+import org.eclipse.pde.api.tools.internal.provisional.model.ApiTypeContainerVisitor;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiElement;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeContainer;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeRoot;
+import org.eclipse.pde.api.tools.internal.util.Util;
+
+/**
+ * {@link IApiTypeContainer} container for an archive (jar or zip) nested in another archive,
+ * such as a library listed on the <code>Bundle-ClassPath</code> of a jar'd bundle.
+ * <p>
+ * The nested archive is not extracted. Its central directory is read once to index its class
+ * files and the class files are read from the nested archive on demand. When the nested archive
+ * is stored in the outer archive without compression, it is read in place through the handle of the
+ * outer archive shared in the {@link ArchiveHandlePool}. Otherwise it is inflated into memory, the
+ * inflated bytes being released when the container is closed or when memory runs low and inflated
+ * again when needed.
+ * </p>
+ * <p>
+ * The nested archive is read without {@link ZipFile}, which only opens files. Zip64 nested archives,
+ * with more than 65535 entries or larger than 4GB, are not supported and fail to open. The outer
+ * archive is read with {@link ZipFile} and can be a Zip64 archive.
+ * </p>
+ *
+ * @since 1.0.500
+ */
+public class NestedArchiveApiTypeContainer extends ApiElement implements IApiTypeContainer {
+
+	/**
+	 * {@link IApiTypeRoot} implementation within a nested archive
+	 */
+	static class NestedApiTypeRoot extends AbstractApiTypeRoot implements Comparable {
+
+		private String fTypeName;
+
+		/**
+		 * Constructs a new handle to an {@link IApiTypeRoot} in the nested archive.
+		 *
+		 * @param container nested archive
+		 * @param entryName entry name in the nested archive
+		 */
+		public NestedApiTypeRoot(NestedArchiveApiTypeContainer container, String entryName) {
+			super(container, entryName);
+		}
+
+		/* (non-Javadoc)
+		 * @see org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeRoot#getTypeName()
+		 */
+		public String getTypeName() {
+			if (fTypeName == null) {
+				fTypeName = getName().replace('/', '.').substring(0, getName().length() - Util.DOT_CLASS_SUFFIX.length());
+			}
+			return fTypeName;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Comparable#compareTo(java.lang.Object)
+		 */
+		public int compareTo(Object o) {
+			return getTypeName().compareTo(((NestedApiTypeRoot)o).getTypeName());
+		}
+
+		/**
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		public boolean equals(Object obj) {
+			if (obj instanceof NestedApiTypeRoot) {
+				NestedApiTypeRoot classFile = (NestedApiTypeRoot) obj;
+				return this.getName().equals(classFile.getName());
+			}
+			return false;
+		}
+
+		/**
+		 * @see java.lang.Object#hashCode()
+		 */
+		public int hashCode() {
+			return getName().hashCode();
+		}
+
+		/* (non-Javadoc)
+		 * @see org.eclipse.pde.api.tools.internal.model.AbstractApiTypeRoot#getContents()
+		 */
+		public byte[] getContents() throws CoreException {
+			NestedArchiveApiTypeContainer archive = (NestedArchiveApiTypeContainer) getParent();
+			try {
+				byte[] contents = archive.read(getName());
+				if (contents != null) {
+					return contents;
+				}
+			} catch (IOException e) {
+				abort("Unable to read class file: " + getTypeName() + " in archive: " + archive.getName(), e); //$NON-NLS-1$ //$NON-NLS-2$
+				return null;
+			}
+			abort("Class file not found: " + getTypeName() + " in archive: " + archive.getName(), null); //$NON-NLS-1$ //$NON-NLS-2$
+			return null;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		public String toString() {
+			return getTypeName();
+		}
+	}
+
+	/**
+	 * An entry of the central directory of an archive
+	 */
+	static final class Entry {
+		final int method;
+		final long compressedSize;
+		final long size;
+		final long headerOffset;
+
+		Entry(int method, long compressedSize, long size, long headerOffset) {
+			this.method = method;
+			this.compressedSize = compressedSize;
+			this.size = size;
+			this.headerOffset = headerOffset;
+		}
+	}
+
+	/**
+	 * Signatures and sizes of the zip records read by this container
+	 */
+	private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	private static final int LOCAL_HEADER_SIZE = 30;
+	private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	private static final int CENTRAL_HEADER_SIZE = 46;
+	private static final int END_SIGNATURE = 0x06054b50;
+	private static final int END_SIZE = 22;
+	private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+	/**
+	 * Location of the outer archive in the local file system
+	 */
+	private String fLocation;
+
+	/**
+	 * Name of the nested archive entry in the outer archive
+	 */
+	private String fEntryName;
+
+	/**
+	 * Map of the names of the class files of the nested archive to their {@link Entry},
+	 * or <code>null</code> if not yet initialized
+	 */
+	private Map fEntries;
+
+	/**
+	 * Cache of package names to class file paths in that package,
+	 * or <code>null</code> if not yet initialized.
+	 */
+	private Map fPackages;
+
+	/**
+	 * Cache of package names in the nested archive.
+	 */
+	private String[] fPackageNames;
+
+	/**
+	 * Length of the nested archive when it is stored without compression,
+	 * <code>-1</code> if it is compressed
+	 */
+	private long fStoredLength = -1;
+
+	/**
+	 * The inflated bytes of a compressed nested archive, or <code>null</code>
+	 */
+	private SoftReference fBytes;
+
+	/**
+	 * Constructs an {@link IApiTypeContainer} container for the archive nested in the
+	 * jar or zip file at the given location.
+	 *
+	 * @param parent the parent {@link IApiElement} or <code>null</code> if none
+	 * @param path location of the outer archive in the local file system
+	 * @param entryName the name of the entry of the nested archive in the outer archive
+	 */
+	public NestedArchiveApiTypeContainer(IApiElement parent, String path, String entryName) {
+		super(parent, IApiElement.API_TYPE_CONTAINER, path + '!' + '/' + entryName);
+		this.fLocation = path;
+		this.fEntryName = entryName;
+	}
+
+	/**
+	 * @see org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeContainer#accept(org.eclipse.pde.api.tools.internal.provisional.model.ApiTypeContainerVisitor)
+	 */
+	public void accept(ApiTypeContainerVisitor visitor) throws CoreException {
+		if(visitor.visit(this)) {
+			init();
+			List packages = new ArrayList(fPackages.keySet());
+			Collections.sort(packages);
+			Iterator iterator = packages.iterator();
+			while (iterator.hasNext()) {
+				String pkg = (String) iterator.next();
+				if (visitor.visitPackage(pkg)) {
+					List types = new ArrayList((Set) fPackages.get(pkg));
+					Iterator cfIterator = types.iterator();
+					List classFiles = new ArrayList(types.size());
+					while (cfIterator.hasNext()) {
+						String entryName = (String) cfIterator.next();
+						classFiles.add(new NestedApiTypeRoot(this, entryName));
+					}
+					Collections.sort(classFiles);
+					cfIterator = classFiles.iterator();
+					while (cfIterator.hasNext()) {
+						NestedApiTypeRoot classFile = (NestedApiTypeRoot) cfIterator.next();
+						visitor.visit(pkg, classFile);
+						visitor.end(pkg, classFile);
+					}
+				}
+				visitor.endVisitPackage(pkg);
+			}
+		}
+		visitor.end(this);
+	}
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		StringBuffer buff = new StringBuffer();
+		buff.append("Nested Archive Class File Container: "+getName()); //$NON-NLS-1$
+		return buff.toString();
+	}
+
+	/**
+	 * @see org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeContainer#close()
+	 */
+	public synchronized void close() throws CoreException {
+		fBytes = null;
+	}
+
+	/**
+	 * @see org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeContainer#findTypeRoot(java.lang.String)
+	 */
+	public IApiTypeRoot findTypeRoot(String qualifiedName) throws CoreException {
+		init();
+		int index = qualifiedName.lastIndexOf('.');
+		String packageName = Util.DEFAULT_PACKAGE_NAME;
+		if (index >= 0) {
+			packageName = qualifiedName.substring(0, index);
+		}
+		Set classFileNames = (Set) fPackages.get(packageName);
+		if (classFileNames != null) {
+			String fileName = qualifiedName.replace('.', '/') + Util.DOT_CLASS_SUFFIX;
+			if (classFileNames.contains(fileName)) {
+				return new NestedApiTypeRoot(this, fileName);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @see org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeContainer#findTypeRoot(java.lang.String, java.lang.String)
+	 */
+	public IApiTypeRoot findTypeRoot(String qualifiedName, String id) throws CoreException {
+		return findTypeRoot(qualifiedName);
+	}
+
+	/**
+	 * @see org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeContainer#getPackageNames()
+	 */
+	public String[] getPackageNames() throws CoreException {
+		init();
+		synchronized (this) {
+			if (fPackageNames == null) {
+				Set names = fPackages.keySet();
+				String[] result = new String[names.size()];
+				names.toArray(result);
+				Arrays.sort(result);
+				fPackageNames = result;
+			}
+			return fPackageNames;
+		}
+	}
+
+	/**
+	 * Initializes the index of the class files of the nested archive.
+	 *
+	 * @throws CoreException
+	 */
+	private synchronized void init() throws CoreException {
+		if (fPackages == null) {
+			Map entries = null;
+			try {
+				locate();
+				entries = readCentralDirectory(length());
+			} catch (IOException e) {
+				abort("Failed to open archive: " + getName(), e); //$NON-NLS-1$
+				return;
+			}
+			fEntries = entries;
+			fPackages = new HashMap();
+			for (Iterator iter = entries.keySet().iterator(); iter.hasNext();) {
+				String name = (String) iter.next();
+				String pkg = Util.DEFAULT_PACKAGE_NAME;
+				int index = name.lastIndexOf('/');
+				if (index >= 0) {
+					pkg = name.substring(0, index).replace('/', '.');
+				}
+				Set fileNames = (Set) fPackages.get(pkg);
+				if (fileNames == null) {
+					fileNames = new HashSet();
+					fPackages.put(pkg, fileNames);
+				}
+				fileNames.add(name);
+			}
+		}
+	}
+
+	/**
+	 * Finds the nested archive in the outer archive. When it is stored without compression
+	 * its length is recorded, otherwise it is inflated.
+	 *
+	 * @throws IOException if the outer archive cannot be read or has no such entry
+	 */
+	private void locate() throws IOException {
+		ArchiveHandlePool pool = ArchiveHandlePool.getPool();
+		ZipFile zipFile = pool.acquire(fLocation);
+		try {
+			ZipEntry entry = getEntry(zipFile);
+			if (entry.getMethod() == ZipEntry.STORED) {
+				fStoredLength = entry.getSize();
+				return;
+			}
+			fStoredLength = -1;
+		} finally {
+			pool.release(zipFile);
+		}
+		inflateArchive();
+	}
+
+	/**
+	 * Returns the entry of the nested archive in the given outer archive
+	 *
+	 * @param zipFile the outer archive
+	 * @return the entry of the nested archive
+	 * @throws IOException if the outer archive has no such entry
+	 */
+	private ZipEntry getEntry(ZipFile zipFile) throws IOException {
+		ZipEntry entry = zipFile.getEntry(fEntryName);
+		if (entry == null) {
+			throw new IOException("Missing archive entry: " + fEntryName); //$NON-NLS-1$
+		}
+		return entry;
+	}
+
+	/**
+	 * Inflates the compressed nested archive into memory
+	 *
+	 * @return the bytes of the nested archive
+	 * @throws IOException if the outer archive cannot be read or has no such entry
+	 */
+	private byte[] inflateArchive() throws IOException {
+		ArchiveHandlePool pool = ArchiveHandlePool.getPool();
+		ZipFile zipFile = pool.acquire(fLocation);
+		try {
+			ZipEntry entry = getEntry(zipFile);
+			InputStream stream = zipFile.getInputStream(entry);
+			try {
+				byte[] bytes = Util.getInputStreamAsByteArray(stream, (int) entry.getSize());
+				fBytes = new SoftReference(bytes);
+				return bytes;
+			} finally {
+				try {
+					stream.close();
+				} catch (IOException e) {
+					ApiPlugin.log(e);
+				}
+			}
+		} finally {
+			pool.release(zipFile);
+		}
+	}
+
+	/**
+	 * Reads the class file with the given name from the nested archive
+	 *
+	 * @param name the name of the class file entry
+	 * @return the bytes of the class file or <code>null</code> if the archive has no such class file
+	 * @throws IOException if the archive cannot be read
+	 */
+	synchronized byte[] read(String name) throws IOException {
+		Entry entry = (Entry) fEntries.get(name);
+		if (entry == null) {
+			return null;
+		}
+		byte[] data = new byte[(int) entry.compressedSize];
+		readFully(getDataOffset(entry), data, 0, data.length);
+		switch (entry.method) {
+			case ZipEntry.STORED :
+				return data;
+			case ZipEntry.DEFLATED :
+				Inflater inflater = new Inflater(true);
+				try {
+					// the inflater needs an extra byte of input when the data has no header
+					byte[] input = new byte[data.length + 1];
+					System.arraycopy(data, 0, input, 0, data.length);
+					inflater.setInput(input);
+					byte[] contents = new byte[(int) entry.size];
+					int count = 0;
+					while (count < contents.length) {
+						int read = inflater.inflate(contents, count, contents.length - count);
+						if (read == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+							break;
+						}
+						count += read;
+					}
+					if (count < contents.length) {
+						throw new EOFException("Truncated class file: " + name); //$NON-NLS-1$
+					}
+					return contents;
+				} catch (DataFormatException e) {
+					throw new IOException("Corrupt class file: " + name + ": " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+				} finally {
+					inflater.end();
+				}
+			default :
+				throw new IOException("Unsupported compression method for class file: " + name); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Reads the central directory of the nested archive
+	 *
+	 * @param length the length of the nested archive
+	 * @return map of the names of the class file entries to {@link Entry}
+	 * @throws IOException if the archive cannot be read or is not a valid archive
+	 */
+	private Map readCentralDirectory(long length) throws IOException {
+		// the end of central directory record is followed by the archive comment
+		int tailLength = (int) Math.min(length, END_SIZE + MAX_COMMENT_SIZE);
+		byte[] tail = new byte[tailLength];
+		readFully(length - tailLength, tail, 0, tailLength);
+		int end = -1;
+		for (int i = tailLength - END_SIZE; i >= 0; i--) {
+			if (getInt(tail, i) == END_SIGNATURE) {
+				end = i;
+				break;
+			}
+		}
+		if (end == -1) {
+			throw new IOException("Not a zip archive: " + getName()); //$NON-NLS-1$
+		}
+		int count = getShort(tail, end + 10);
+		long size = getUnsignedInt(tail, end + 12);
+		long offset = getUnsignedInt(tail, end + 16);
+		// the values of a Zip64 archive are replaced by these markers, the archive is not supported
+		if (count == 0xFFFF || size == 0xFFFFFFFFL || offset == 0xFFFFFFFFL || offset + size > length) {
+			throw new IOException("Unsupported zip archive: " + getName()); //$NON-NLS-1$
+		}
+		byte[] directory = new byte[(int) size];
+		readFully(offset, directory, 0, directory.length);
+		Map entries = new HashMap(count * 2);
+		int position = 0;
+		for (int i = 0; i < count; i++) {
+			if (position + CENTRAL_HEADER_SIZE > directory.length || getInt(directory, position) != CENTRAL_HEADER_SIGNATURE) {
+				throw new IOException("Invalid central directory: " + getName()); //$NON-NLS-1$
+			}
+			int nameLength = getShort(directory, position + 28);
+			int extraLength = getShort(directory, position + 30);
+			int commentLength = getShort(directory, position + 32);
+			String name = new String(directory, position + CENTRAL_HEADER_SIZE, nameLength, "UTF-8"); //$NON-NLS-1$
+			if (name.endsWith(Util.DOT_CLASS_SUFFIX)) {
+				entries.put(name, new Entry(getShort(directory, position + 10),
+						getUnsignedInt(directory, position + 20),
+						getUnsignedInt(directory, position + 24),
+						getUnsignedInt(directory, position + 42)));
+			}
+			position += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+		}
+		return entries;
+	}
+
+	/**
+	 * Returns the offset of the data of the given entry, following its local header
+	 *
+	 * @param entry the entry
+	 * @return the offset of the data of the entry in the nested archive
+	 * @throws IOException if the local header cannot be read
+	 */
+	private long getDataOffset(Entry entry) throws IOException {
+		byte[] header = new byte[LOCAL_HEADER_SIZE];
+		readFully(entry.headerOffset, header, 0, LOCAL_HEADER_SIZE);
+		if (getInt(header, 0) != LOCAL_HEADER_SIGNATURE) {
+			throw new IOException("Invalid local header: " + getName()); //$NON-NLS-1$
+		}
+		// the extra field of the local header may differ from the one of the central directory
+		return entry.headerOffset + LOCAL_HEADER_SIZE + getShort(header, 26) + getShort(header, 28);
+	}
+
+	/**
+	 * @return the length of the nested archive
+	 */
+	private long length() throws IOException {
+		if (fStoredLength != -1) {
+			return fStoredLength;
+		}
+		return getBytes().length;
+	}
+
+	/**
+	 * Returns the inflated bytes of the compressed nested archive, inflating them again
+	 * if they were reclaimed
+	 *
+	 * @return the bytes of the nested archive
+	 * @throws IOException if the outer archive cannot be read
+	 */
+	private byte[] getBytes() throws IOException {
+		byte[] bytes = fBytes == null ? null : (byte[]) fBytes.get();
+		if (bytes == null) {
+			bytes = inflateArchive();
+		}
+		return bytes;
+	}
+
+	/**
+	 * Reads bytes of the nested archive, from the stored entry of the outer archive
+	 * or from the inflated nested archive
+	 *
+	 * @param position the position in the nested archive
+	 * @param buffer the buffer to read into
+	 * @param offset the offset in the buffer
+	 * @param length the number of bytes to read
+	 * @throws IOException if the bytes cannot be read
+	 */
+	private void readFully(long position, byte[] buffer, int offset, int length) throws IOException {
+		if (fStoredLength == -1) {
+			byte[] bytes = getBytes();
+			if (position < 0 || position + length > bytes.length) {
+				throw new EOFException(getName());
+			}
+			System.arraycopy(bytes, (int) position, buffer, offset, length);
+			return;
+		}
+		if (position < 0 || position + length > fStoredLength) {
+			throw new EOFException(getName());
+		}
+		ArchiveHandlePool pool = ArchiveHandlePool.getPool();
+		ZipFile zipFile = pool.acquire(fLocation);
+		try {
+			// skipping in a stored entry only moves the position in the outer archive
+			InputStream stream = zipFile.getInputStream(getEntry(zipFile));
+			try {
+				long skipped = 0;
+				while (skipped < position) {
+					long count = stream.skip(position - skipped);
+					if (count <= 0) {
+						throw new EOFException(getName());
+					}
+					skipped += count;
+				}
+				int read = 0;
+				while (read < length) {
+					int count = stream.read(buffer, offset + read, length - read);
+					if (count < 0) {
+						throw new EOFException(getName());
+					}
+					read += count;
+				}
+			} finally {
+				try {
+					stream.close();
+				} catch (IOException e) {
+					ApiPlugin.log(e);
+				}
+			}
+		} finally {
+			pool.release(zipFile);
+		}
+	}
+
+	private static int getShort(byte[] bytes, int offset) {
+		return (bytes[offset] & 0xFF) | ((bytes[offset + 1] & 0xFF) << 8);
+	}
+
+	private static int getInt(byte[] bytes, int offset) {
+		return getShort(bytes, offset) | (getShort(bytes, offset + 2) << 16);
+	}
+
+	private static long getUnsignedInt(byte[] bytes, int offset) {
+		return getInt(bytes, offset) & 0xFFFFFFFFL;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	public boolean equals(Object obj) {
+		if (obj instanceof NestedArchiveApiTypeContainer) {
+			NestedArchiveApiTypeContainer archive = (NestedArchiveApiTypeContainer) obj;
+			return this.fLocation.equals(archive.fLocation) && this.fEntryName.equals(archive.fEntryName);
+		}
+		return false;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#hashCode()
+	 */
+	public int hashCode() {
+		return this.fLocation.hashCode() + this.fEntryName.hashCode();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeContainer#getContainerType()
+	 */
+	public int getContainerType() {
+		return ARCHIVE;
+	}
+}
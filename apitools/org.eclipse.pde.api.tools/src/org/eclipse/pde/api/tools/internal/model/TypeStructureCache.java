@@ -0,0 +1,725 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.internal.model;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiComponent;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiField;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiMethod;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeRoot;
+import org.eclipse.pde.api.tools.internal.util.Util;
+
+/**
+ * On-disk cache of the {@link ApiType} structures built from the class files of archives.
+ * <p>
+ * Structures are stored per archive, in a file named after a digest of the names, CRCs and
+ * sizes of the class files of the archive. The cache is content addressed: an archive that
+ * is modified gets a new cache file, and identical archives at different locations share
+ * the same one. Cache files are read in a single pass and a structure is only decoded when
+ * its type is asked for, so types whose structure is cached are never parsed again. Cache
+ * files are not kept open or memory mapped so that they can be replaced and deleted on
+ * every platform.
+ * </p>
+ * <p>
+ * The cache files live in the state location of the API tools plug-in, or in the temporary
+ * directory when not running in a framework. Cache files that were not used for
+ * {@link #PRUNE_AGE} milliseconds are deleted. The cache can be disabled with the
+ * <code>org.eclipse.pde.api.tools.typeStructureCache</code> system property set to <code>false</code>.
+ * </p>
+ *
+ * @since 1.0.500
+ */
+public final class TypeStructureCache {
+
+	/**
+	 * The type structures of a single archive
+	 */
+	public static final class ArchiveStructures {
+
+		private final File fFile;
+		private final long fSize;
+		private final long fLastModified;
+
+		/**
+		 * The contents of the cache file or <code>null</code> if not loaded yet or there is none
+		 */
+		private ByteBuffer fBuffer = null;
+		private boolean fLoaded = false;
+		/**
+		 * Sorted names of the entries in the cache file, along with the offset and length
+		 * of their structure
+		 */
+		private String[] fNames = null;
+		private int[] fOffsets = null;
+		private int[] fLengths = null;
+		/**
+		 * Map of entry name to the encoded structures recorded since the cache file was loaded
+		 */
+		private Map fPending = new HashMap();
+
+		ArchiveStructures(File file, long size, long lastModified) {
+			fFile = file;
+			fSize = size;
+			fLastModified = lastModified;
+		}
+
+		/**
+		 * Returns if this describes the given archive as it currently is on disk
+		 * @param archive
+		 * @return <code>true</code> if the archive was not modified since, <code>false</code> otherwise
+		 */
+		boolean isCurrent(File archive) {
+			return archive.length() == fSize && archive.lastModified() == fLastModified;
+		}
+
+		/**
+		 * Returns the cached structure of the type in the given archive entry or <code>null</code> if
+		 * it is not cached
+		 *
+		 * @param entryName the name of the class file in the archive
+		 * @param component the component the type belongs to
+		 * @param root the type root the structure is for
+		 * @return the type structure or <code>null</code>
+		 */
+		public synchronized ApiType read(String entryName, IApiComponent component, IApiTypeRoot root) {
+			ByteBuffer buffer = null;
+			byte[] bytes = (byte[]) fPending.get(entryName);
+			if (bytes != null) {
+				buffer = ByteBuffer.wrap(bytes);
+			}
+			else {
+				load();
+				if (fBuffer == null) {
+					return null;
+				}
+				int index = Arrays.binarySearch(fNames, entryName);
+				if (index < 0) {
+					return null;
+				}
+				buffer = fBuffer.duplicate();
+				buffer.position(fOffsets[index]);
+				buffer.limit(fOffsets[index] + fLengths[index]);
+			}
+			try {
+				return decode(buffer, component, root);
+			}
+			catch (IOException e) {
+				ApiPlugin.log(e);
+			}
+			catch (RuntimeException e) {
+				// corrupt cache file, the type is parsed again
+				ApiPlugin.log(e);
+			}
+			return null;
+		}
+
+		/**
+		 * Records the structure built for the type in the given archive entry, it is written to
+		 * disk the next time the cache is saved
+		 *
+		 * @param entryName the name of the class file in the archive
+		 * @param type the structure built from the class file
+		 */
+		public synchronized void record(String entryName, ApiType type) {
+			try {
+				fPending.put(entryName, encode(type));
+			}
+			catch (IOException e) {
+				// the type is not cached, it is parsed again next time
+			}
+		}
+
+		/**
+		 * Writes the structures recorded since the cache file was loaded to the cache file, along
+		 * with the structures it already contains
+		 */
+		public synchronized void save() {
+			if (fPending.isEmpty()) {
+				return;
+			}
+			load();
+			TreeMap records = new TreeMap();
+			if (fBuffer != null) {
+				for (int i = 0; i < fNames.length; i++) {
+					records.put(fNames[i], new int[] {fOffsets[i], fLengths[i]});
+				}
+			}
+			records.putAll(fPending);
+			File dir = fFile.getParentFile();
+			if (!dir.exists()) {
+				dir.mkdirs();
+			}
+			File temp = null;
+			DataOutputStream out = null;
+			try {
+				temp = File.createTempFile(fFile.getName(), ".tmp", dir); //$NON-NLS-1$
+				ByteArrayOutputStream header = new ByteArrayOutputStream();
+				DataOutputStream hout = new DataOutputStream(header);
+				hout.writeInt(VERSION);
+				hout.writeInt(records.size());
+				for (Iterator iter = records.keySet().iterator(); iter.hasNext();) {
+					writeString(hout, (String) iter.next());
+					// offset and length, the offsets are patched below once the header size is known
+					hout.writeInt(0);
+					hout.writeInt(0);
+				}
+				hout.flush();
+				byte[] headerBytes = header.toByteArray();
+				ByteBuffer patch = ByteBuffer.wrap(headerBytes);
+				patch.position(8);
+				int offset = headerBytes.length;
+				for (Iterator iter = records.entrySet().iterator(); iter.hasNext();) {
+					Map.Entry entry = (Map.Entry) iter.next();
+					byte[] name = ((String) entry.getKey()).getBytes(UTF_8);
+					patch.position(patch.position() + 4 + name.length);
+					int length = getLength(entry.getValue());
+					patch.putInt(offset);
+					patch.putInt(length);
+					offset += length;
+				}
+				out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+				out.write(headerBytes);
+				for (Iterator iter = records.values().iterator(); iter.hasNext();) {
+					Object value = iter.next();
+					if (value instanceof byte[]) {
+						out.write((byte[]) value);
+					}
+					else {
+						int[] location = (int[]) value;
+						byte[] bytes = new byte[location[1]];
+						ByteBuffer buffer = fBuffer.duplicate();
+						buffer.position(location[0]);
+						buffer.get(bytes);
+						out.write(bytes);
+					}
+				}
+				out.close();
+				out = null;
+				// the structures stay available from the pending records if the file cannot be replaced
+				fFile.delete();
+				if (temp.renameTo(fFile)) {
+					fPending.clear();
+					fBuffer = null;
+					fLoaded = false;
+				}
+				else {
+					temp.delete();
+				}
+			}
+			catch (IOException e) {
+				ApiPlugin.log(e);
+			}
+			finally {
+				if (out != null) {
+					try {
+						out.close();
+					}
+					catch (IOException e) {
+						// ignore
+					}
+					temp.delete();
+				}
+			}
+		}
+
+		private int getLength(Object record) {
+			if (record instanceof byte[]) {
+				return ((byte[]) record).length;
+			}
+			return ((int[]) record)[1];
+		}
+
+		/**
+		 * Reads the cache file and its table of entries, if not already done
+		 */
+		private void load() {
+			if (fLoaded) {
+				return;
+			}
+			fLoaded = true;
+			if (!fFile.isFile()) {
+				return;
+			}
+			FileInputStream stream = null;
+			try {
+				stream = new FileInputStream(fFile);
+				ByteBuffer buffer = ByteBuffer.wrap(Util.getInputStreamAsByteArray(stream, (int) fFile.length()));
+				if (buffer.getInt() != VERSION) {
+					return;
+				}
+				int count = buffer.getInt();
+				String[] names = new String[count];
+				int[] offsets = new int[count];
+				int[] lengths = new int[count];
+				for (int i = 0; i < count; i++) {
+					names[i] = readString(buffer);
+					offsets[i] = buffer.getInt();
+					lengths[i] = buffer.getInt();
+				}
+				fNames = names;
+				fOffsets = offsets;
+				fLengths = lengths;
+				fBuffer = buffer;
+				long now = System.currentTimeMillis();
+				if (now - fFile.lastModified() > TOUCH_INTERVAL) {
+					// keep the file from being pruned while in use
+					fFile.setLastModified(now);
+				}
+			}
+			catch (IOException e) {
+				ApiPlugin.log(e);
+			}
+			catch (RuntimeException e) {
+				// truncated or corrupt cache file, it is replaced on the next save
+				ApiPlugin.log(e);
+			}
+			finally {
+				if (stream != null) {
+					try {
+						stream.close();
+					}
+					catch (IOException e) {
+						// ignore
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * System property used to disable the cache
+	 */
+	public static final String ENABLED_PROPERTY = "org.eclipse.pde.api.tools.typeStructureCache"; //$NON-NLS-1$
+
+	/**
+	 * Cache files that were not used for that many milliseconds (30 days) are deleted
+	 */
+	public static final long PRUNE_AGE = 30L * 24 * 60 * 60 * 1000;
+
+	/**
+	 * Version of the cache file format, cache files with a different version are replaced
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * The modification time of the cache files in use is updated once a day
+	 */
+	private static final long TOUCH_INTERVAL = 24L * 60 * 60 * 1000;
+
+	/**
+	 * Name of the directory holding the cache files
+	 */
+	private static final String CACHE_DIR = ".type_structures"; //$NON-NLS-1$
+
+	private static final String CACHE_FILE_EXTENSION = ".types"; //$NON-NLS-1$
+
+	private static final String UTF_8 = "UTF-8"; //$NON-NLS-1$
+
+	private static final int NO_STRING = -1;
+
+	/**
+	 * Tags of the constant values of fields
+	 */
+	private static final byte NO_VALUE = 0;
+	private static final byte INT_VALUE = 1;
+	private static final byte LONG_VALUE = 2;
+	private static final byte FLOAT_VALUE = 3;
+	private static final byte DOUBLE_VALUE = 4;
+	private static final byte STRING_VALUE = 5;
+
+	/**
+	 * Flags of a type structure
+	 */
+	private static final int ANONYMOUS = 0x1;
+	private static final int LOCAL = 0x2;
+	private static final int MEMBER = 0x4;
+	private static final int ENCLOSING_METHOD = 0x8;
+
+	private static TypeStructureCache fInstance = null;
+
+	/**
+	 * Map of archive location to {@link ArchiveStructures}
+	 */
+	private HashMap fArchives = new HashMap();
+
+	private File fDirectory = null;
+	private boolean fEnabled = true;
+	private boolean fPruned = false;
+
+	/**
+	 * Constructor
+	 * private - no instantiation
+	 */
+	private TypeStructureCache() {
+		fEnabled = !"false".equalsIgnoreCase(System.getProperty(ENABLED_PROPERTY)); //$NON-NLS-1$
+		if (ApiPlugin.isRunningInFramework()) {
+			fDirectory = ApiPlugin.getDefault().getStateLocation().append(CACHE_DIR).toFile();
+		}
+		else {
+			fDirectory = new File(System.getProperty("java.io.tmpdir"), ApiPlugin.PLUGIN_ID + File.separator + CACHE_DIR); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Returns the singleton cache
+	 * @return the cache
+	 */
+	public static synchronized TypeStructureCache getCache() {
+		if (fInstance == null) {
+			fInstance = new TypeStructureCache();
+		}
+		return fInstance;
+	}
+
+	/**
+	 * Returns the type structures of the archive at the given location or <code>null</code> if the
+	 * cache is disabled or the archive cannot be read
+	 *
+	 * @param location the location of the archive in the local file system
+	 * @return the structures of the archive or <code>null</code>
+	 */
+	public synchronized ArchiveStructures getStructures(String location) {
+		if (!fEnabled) {
+			return null;
+		}
+		File archive = new File(location);
+		ArchiveStructures structures = (ArchiveStructures) fArchives.get(location);
+		if (structures != null && structures.isCurrent(archive)) {
+			return structures;
+		}
+		long size = archive.length();
+		long lastModified = archive.lastModified();
+		String digest = computeDigest(location);
+		if (digest == null) {
+			return null;
+		}
+		structures = new ArchiveStructures(new File(fDirectory, digest + CACHE_FILE_EXTENSION), size, lastModified);
+		fArchives.put(location, structures);
+		return structures;
+	}
+
+	/**
+	 * Writes the structures recorded for all archives to disk and forgets about the archives,
+	 * deleting the cache files that were not used for {@link #PRUNE_AGE} milliseconds the first
+	 * time it is called
+	 */
+	public synchronized void save() {
+		for (Iterator iter = fArchives.values().iterator(); iter.hasNext();) {
+			((ArchiveStructures) iter.next()).save();
+		}
+		fArchives.clear();
+		if (!fPruned) {
+			fPruned = true;
+			final long limit = System.currentTimeMillis() - PRUNE_AGE;
+			File[] stale = fDirectory.listFiles(new FileFilter() {
+				public boolean accept(File file) {
+					return file.lastModified() < limit;
+				}
+			});
+			if (stale != null) {
+				for (int i = 0; i < stale.length; i++) {
+					stale[i].delete();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes the digest of the class files of the archive at the given location from their names,
+	 * CRCs and sizes, as found in the central directory of the archive
+	 *
+	 * @param location
+	 * @return the hex encoded digest or <code>null</code> if the archive cannot be read
+	 */
+	private String computeDigest(String location) {
+		ArchiveHandlePool pool = ArchiveHandlePool.getPool();
+		ZipFile zipFile = null;
+		try {
+			zipFile = pool.acquire(location);
+		}
+		catch (IOException e) {
+			return null;
+		}
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+			byte[] numbers = new byte[16];
+			ByteBuffer buffer = ByteBuffer.wrap(numbers);
+			Enumeration entries = zipFile.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = (ZipEntry) entries.nextElement();
+				String name = entry.getName();
+				if (name.endsWith(Util.DOT_CLASS_SUFFIX)) {
+					digest.update(name.getBytes(UTF_8));
+					buffer.clear();
+					buffer.putLong(entry.getCrc());
+					buffer.putLong(entry.getSize());
+					digest.update(numbers);
+				}
+			}
+			byte[] hash = digest.digest();
+			StringBuffer result = new StringBuffer(hash.length * 2);
+			for (int i = 0; i < hash.length; i++) {
+				String hex = Integer.toHexString(hash[i] & 0xFF);
+				if (hex.length() == 1) {
+					result.append('0');
+				}
+				result.append(hex);
+			}
+			return result.toString();
+		}
+		catch (NoSuchAlgorithmException e) {
+			// every Java platform is required to support SHA-1
+			ApiPlugin.log(e);
+		}
+		catch (UnsupportedEncodingException e) {
+			// every Java platform is required to support UTF-8
+			ApiPlugin.log(e);
+		}
+		finally {
+			pool.release(zipFile);
+		}
+		return null;
+	}
+
+	/**
+	 * Encodes the given type structure
+	 * @param type
+	 * @return the encoded structure
+	 * @throws IOException if the type has a constant value that cannot be encoded
+	 */
+	static byte[] encode(ApiType type) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+		DataOutputStream out = new DataOutputStream(bytes);
+		writeString(out, type.getName());
+		writeString(out, type.getSignature());
+		writeString(out, type.getGenericSignature());
+		out.writeInt(type.getModifiers());
+		writeString(out, type.getEnclosingTypeName());
+		writeString(out, type.getSuperclassName());
+		writeStrings(out, type.getSuperInterfaceNames());
+		String[] enclosingMethod = type.getEnclosingMethodInfo();
+		int flags = 0;
+		if (type.isAnonymous()) {
+			flags |= ANONYMOUS;
+		}
+		if (type.isLocal()) {
+			flags |= LOCAL;
+		}
+		if (type.isMemberType()) {
+			flags |= MEMBER;
+		}
+		if (enclosingMethod != null) {
+			flags |= ENCLOSING_METHOD;
+		}
+		out.writeInt(flags);
+		if (type.isLocal() || type.isMemberType()) {
+			writeString(out, type.getSimpleName());
+		}
+		if (enclosingMethod != null) {
+			writeString(out, enclosingMethod[0]);
+			writeString(out, enclosingMethod[1]);
+		}
+		writeStrings(out, type.getMemberTypeNames());
+		IApiField[] fields = type.getFields();
+		out.writeInt(fields.length);
+		for (int i = 0; i < fields.length; i++) {
+			IApiField field = fields[i];
+			writeString(out, field.getName());
+			writeString(out, field.getSignature());
+			writeString(out, field.getGenericSignature());
+			out.writeInt(field.getModifiers());
+			Object value = field.getConstantValue();
+			if (value == null) {
+				out.writeByte(NO_VALUE);
+			}
+			else if (value instanceof Integer) {
+				out.writeByte(INT_VALUE);
+				out.writeInt(((Integer) value).intValue());
+			}
+			else if (value instanceof Long) {
+				out.writeByte(LONG_VALUE);
+				out.writeLong(((Long) value).longValue());
+			}
+			else if (value instanceof Float) {
+				out.writeByte(FLOAT_VALUE);
+				out.writeFloat(((Float) value).floatValue());
+			}
+			else if (value instanceof Double) {
+				out.writeByte(DOUBLE_VALUE);
+				out.writeDouble(((Double) value).doubleValue());
+			}
+			else if (value instanceof String) {
+				out.writeByte(STRING_VALUE);
+				writeString(out, (String) value);
+			}
+			else {
+				throw new IOException("Unsupported constant value: " + value.getClass().getName()); //$NON-NLS-1$
+			}
+		}
+		IApiMethod[] methods = type.getMethods();
+		out.writeInt(methods.length);
+		for (int i = 0; i < methods.length; i++) {
+			IApiMethod method = methods[i];
+			writeString(out, method.getName());
+			writeString(out, method.getSignature());
+			writeString(out, method.getGenericSignature());
+			out.writeInt(method.getModifiers());
+			writeStrings(out, method.getExceptionNames());
+			writeString(out, method.getDefaultValue());
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Decodes a type structure
+	 * @param buffer the encoded structure
+	 * @param component the component the type belongs to
+	 * @param root the type root of the type
+	 * @return the decoded structure
+	 * @throws IOException
+	 */
+	static ApiType decode(ByteBuffer buffer, IApiComponent component, IApiTypeRoot root) throws IOException {
+		String name = readString(buffer);
+		String signature = readString(buffer);
+		String genericSig = readString(buffer);
+		int modifiers = buffer.getInt();
+		String enclosingName = readString(buffer);
+		ApiType type = new ApiType(component, name, signature, genericSig, modifiers, enclosingName, root);
+		type.setSuperclassName(readString(buffer));
+		type.setSuperInterfaceNames(readStrings(buffer));
+		int flags = buffer.getInt();
+		if ((flags & ANONYMOUS) != 0) {
+			type.setAnonymous();
+		}
+		if ((flags & LOCAL) != 0) {
+			type.setLocal();
+		}
+		if ((flags & MEMBER) != 0) {
+			type.setMemberType();
+		}
+		if ((flags & (LOCAL | MEMBER)) != 0) {
+			type.setSimpleName(readString(buffer));
+		}
+		if ((flags & ENCLOSING_METHOD) != 0) {
+			type.setEnclosingMethodInfo(readString(buffer), readString(buffer));
+		}
+		String[] memberTypes = readStrings(buffer);
+		if (memberTypes != null) {
+			for (int i = 0; i < memberTypes.length; i++) {
+				type.addMemberType(memberTypes[i], 0);
+			}
+		}
+		int count = buffer.getInt();
+		for (int i = 0; i < count; i++) {
+			String fieldName = readString(buffer);
+			String fieldSignature = readString(buffer);
+			String fieldGenericSig = readString(buffer);
+			int fieldModifiers = buffer.getInt();
+			Object value = null;
+			switch (buffer.get()) {
+				case INT_VALUE:
+					value = new Integer(buffer.getInt());
+					break;
+				case LONG_VALUE:
+					value = new Long(buffer.getLong());
+					break;
+				case FLOAT_VALUE:
+					value = new Float(buffer.getFloat());
+					break;
+				case DOUBLE_VALUE:
+					value = new Double(buffer.getDouble());
+					break;
+				case STRING_VALUE:
+					value = readString(buffer);
+					break;
+			}
+			type.addField(fieldName, fieldSignature, fieldGenericSig, fieldModifiers, value);
+		}
+		count = buffer.getInt();
+		for (int i = 0; i < count; i++) {
+			String methodName = readString(buffer);
+			String methodSignature = readString(buffer);
+			String methodGenericSig = readString(buffer);
+			int methodModifiers = buffer.getInt();
+			ApiMethod method = type.addMethod(methodName, methodSignature, methodGenericSig, methodModifiers, readStrings(buffer));
+			String defaultValue = readString(buffer);
+			if (defaultValue != null) {
+				method.setDefaultValue(defaultValue);
+			}
+		}
+		return type;
+	}
+
+	private static void writeString(DataOutputStream out, String string) throws IOException {
+		if (string == null) {
+			out.writeInt(NO_STRING);
+			return;
+		}
+		byte[] bytes = string.getBytes(UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static void writeStrings(DataOutputStream out, String[] strings) throws IOException {
+		if (strings == null) {
+			out.writeInt(NO_STRING);
+			return;
+		}
+		out.writeInt(strings.length);
+		for (int i = 0; i < strings.length; i++) {
+			writeString(out, strings[i]);
+		}
+	}
+
+	private static String readString(ByteBuffer buffer) throws UnsupportedEncodingException {
+		int length = buffer.getInt();
+		if (length == NO_STRING) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, UTF_8);
+	}
+
+	private static String[] readStrings(ByteBuffer buffer) throws UnsupportedEncodingException {
+		int length = buffer.getInt();
+		if (length == NO_STRING) {
+			return null;
+		}
+		String[] strings = new String[length];
+		for (int i = 0; i < length; i++) {
+			strings[i] = readString(buffer);
+		}
+		return strings;
+	}
+}
@@ -10,6 +10,9 @@
  *******************************************************************************/
 package org.eclipse.pde.api.tools.internal.provisional.comparator;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
@@ -17,6 +20,7 @@ import java.util.Set;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.jdt.core.Flags;
 import org.eclipse.pde.api.tools.internal.comparator.ClassFileComparator;
@@ -30,6 +34,7 @@ import org.eclipse.pde.api.tools.internal.provisional.VisibilityModifiers;
 import org.eclipse.pde.api.tools.internal.provisional.model.ApiTypeContainerVisitor;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiBaseline;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiComponent;
+import org.eclipse.pde.api.tools.internal.provisional.model.IApiElement;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiScope;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiType;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeContainer;
@@ -112,8 +117,174 @@ public class ApiComparator {
 		return null;
 	}
 
+	/**
+	 * Compares API components on a bounded number of threads. Each comparison is identified by its index
+	 * and stores its result in a slot of its own, so that callers can merge the results in index order
+	 * whatever the order in which the comparisons completed.
+	 */
+	static abstract class ParallelComparison implements Runnable {
+		private int count = 0;
+		private int next = 0;
+		private int done = 0;
+		private IProgressMonitor monitor = null;
+		private RuntimeException failure = null;
+		/**
+		 * The time spent on each comparison in milliseconds
+		 */
+		final long[] times;
+
+		/**
+		 * Constructor
+		 * @param count the number of comparisons
+		 * @param monitor the monitor of the caller, only used to check for cancellation from the worker threads
+		 */
+		ParallelComparison(int count, IProgressMonitor monitor) {
+			this.count = count;
+			this.monitor = monitor;
+			this.times = new long[count];
+		}
+
+		/**
+		 * Runs the comparison with the given index
+		 * @param index
+		 * @param localmonitor
+		 */
+		abstract void compare(int index, IProgressMonitor localmonitor);
+
+		synchronized int nextComparison() {
+			if(next >= count || failure != null || monitor.isCanceled()) {
+				return -1;
+			}
+			return next++;
+		}
+
+		synchronized void comparisonDone(RuntimeException e) {
+			done++;
+			if(e != null && failure == null) {
+				failure = e;
+			}
+		}
+
+		synchronized int getDoneCount() {
+			return done;
+		}
+
+		/**
+		 * Runs the given comparison, recording the time spent on it
+		 * @param index
+		 * @param localmonitor
+		 */
+		void run(int index, IProgressMonitor localmonitor) {
+			long time = System.currentTimeMillis();
+			RuntimeException error = null;
+			try {
+				compare(index, localmonitor);
+			}
+			catch(RuntimeException e) {
+				error = e;
+			}
+			finally {
+				times[index] = System.currentTimeMillis() - time;
+			}
+			comparisonDone(error);
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Runnable#run()
+		 */
+		public void run() {
+			// only the calling thread reports progress, the workers only look for cancellation
+			IProgressMonitor cancelmonitor = new NullProgressMonitor() {
+				public boolean isCanceled() {
+					return super.isCanceled() || monitor.isCanceled();
+				}
+			};
+			int index = -1;
+			while((index = nextComparison()) > -1) {
+				run(index, cancelmonitor);
+			}
+		}
+
+		/**
+		 * Runs all of the comparisons, on the calling thread if only one thread is requested
+		 * @param threads the maximum number of threads to use
+		 * @param localmonitor the monitor to report progress to, one tick per comparison
+		 */
+		void execute(int threads, SubMonitor localmonitor) {
+			threads = Math.min(threads, count);
+			if(threads <= 1) {
+				int index = -1;
+				while((index = nextComparison()) > -1) {
+					run(index, localmonitor.newChild(1));
+				}
+			}
+			else {
+				Thread[] workers = new Thread[threads];
+				for (int i = 0; i < workers.length; i++) {
+					workers[i] = new Thread(this, "API Comparison Worker " + (i + 1)); //$NON-NLS-1$
+					workers[i].setDaemon(true);
+					workers[i].start();
+				}
+				int reported = 0;
+				boolean interrupted = false;
+				for (int i = 0; i < workers.length; i++) {
+					while(workers[i].isAlive()) {
+						try {
+							workers[i].join(250);
+						}
+						catch(InterruptedException ie) {
+							interrupted = true;
+						}
+						int completed = getDoneCount();
+						if(completed > reported) {
+							localmonitor.worked(completed - reported);
+							reported = completed;
+						}
+					}
+				}
+				if(interrupted) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			if(failure != null) {
+				throw failure;
+			}
+		}
+	}
+
+	/**
+	 * Prints the time spent comparing each of the given components, most expensive first
+	 * @param names the names of the compared components
+	 * @param times the time spent on each component in milliseconds
+	 * @param elapsed the total elapsed time in milliseconds
+	 * @param threads the number of threads the components were compared with
+	 */
+	static void printTimings(final String[] names, final long[] times, long elapsed, int threads) {
+		Integer[] order = new Integer[names.length];
+		long total = 0;
+		for (int i = 0; i < order.length; i++) {
+			order[i] = new Integer(i);
+			total += times[i];
+		}
+		Arrays.sort(order, new Comparator() {
+			public int compare(Object o1, Object o2) {
+				long t1 = times[((Integer) o1).intValue()];
+				long t2 = times[((Integer) o2).intValue()];
+				return t1 > t2 ? -1 : (t1 < t2 ? 1 : 0);
+			}
+		});
+		StringBuffer buffer = new StringBuffer();
+		buffer.append("Compared ").append(names.length).append(" components on ").append(threads).append(" thread(s) in ").append(elapsed).append("ms (").append(total).append("ms of comparisons)\n"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+		for (int i = 0; i < order.length; i++) {
+			int index = order[i].intValue();
+			buffer.append('\t').append(times[index]).append("ms\t").append(names[index]).append('\n'); //$NON-NLS-1$
+		}
+		System.out.print(buffer.toString());
+	}
+
 	/**
 	 * Returns a delta that corresponds to the difference between the given baseline and the reference.
+	 * <p>Equivalent to: compare(referenceBaseline, baseline, visibilityModifiers, force, 1, monitor);</p>
 	 * 
 	 * @param referenceBaseline the given API baseline which is used as the reference
 	 * @param baseline the given API baseline to compare with
@@ -130,25 +301,60 @@ public class ApiComparator {
 			final int visibilityModifiers,
 			final boolean force, 
 			final IProgressMonitor monitor) {
-		SubMonitor localmonitor = SubMonitor.convert(monitor, 2);
+		return compare(referenceBaseline, baseline, visibilityModifiers, force, 1, monitor);
+	}
+
+	/**
+	 * Returns a delta that corresponds to the difference between the given baseline and the reference.
+	 * <p>
+	 * When more than one thread is requested the components are compared concurrently. The delta is
+	 * the same whatever the number of threads: the deltas of the components are added in the order
+	 * of the components of the reference baseline.
+	 * </p>
+	 * 
+	 * @param referenceBaseline the given API baseline which is used as the reference
+	 * @param baseline the given API baseline to compare with
+	 * @param visibilityModifiers the given visibility that triggers what visibility should be used for the comparison
+	 * @param force a flag to force the comparison of nested API components with the same versions 
+	 * @param threads the maximum number of threads to compare components with, must be greater than zero
+	 * @param monitor
+	 *
+	 * @return a delta, an empty delta if no difference is found or null if the delta detection failed
+	 * @throws IllegalArgumentException if one of the two baselines is null or the number of threads is not greater than zero
+	 * @since 1.0.500
+	 */
+	public static IDelta compare(
+			final IApiBaseline referenceBaseline,
+			final IApiBaseline baseline,
+			final int visibilityModifiers,
+			final boolean force,
+			final int threads,
+			final IProgressMonitor monitor) {
+		if (referenceBaseline == null || baseline == null) {
+			throw new IllegalArgumentException("None of the baselines must be null"); //$NON-NLS-1$
+		}
+		if (threads < 1) {
+			throw new IllegalArgumentException("The number of threads must be greater than zero"); //$NON-NLS-1$
+		}
+		final IApiComponent[] apiComponents = referenceBaseline.getApiComponents();
+		IApiComponent[] apiComponents2 = baseline.getApiComponents();
+		SubMonitor localmonitor = SubMonitor.convert(monitor, apiComponents.length * 2 + 1);
 		try {
-			if (referenceBaseline == null || baseline == null) {
-				throw new IllegalArgumentException("None of the baselines must be null"); //$NON-NLS-1$
-			}
-			IApiComponent[] apiComponents = referenceBaseline.getApiComponents();
-			IApiComponent[] apiComponents2 = baseline.getApiComponents();
+			long start = System.currentTimeMillis();
 			Set apiComponentsIds = new HashSet();
-			final Delta globalDelta = new Delta();
+			final IApiComponent[] counterparts = new IApiComponent[apiComponents.length];
+			final IDelta[] versionDeltas = new IDelta[apiComponents.length];
+			final IDelta[] deltas = new IDelta[apiComponents.length];
+			final ArrayList compared = new ArrayList();
 			for (int i = 0, max = apiComponents.length; i < max; i++) {
-				Util.updateMonitor(localmonitor);
+				Util.updateMonitor(localmonitor, 1);
 				IApiComponent apiComponent = apiComponents[i];
 				if (!apiComponent.isSystemComponent()) {
 					String id = apiComponent.getSymbolicName();
 					IApiComponent apiComponent2 = baseline.getApiComponent(id);
-					IDelta delta = null;
 					if (apiComponent2 == null) {
 						// report removal of an API component
-						delta =
+						deltas[i] =
 							new Delta(
 									null,
 									IDelta.API_BASELINE_ELEMENT_TYPE,
@@ -161,30 +367,42 @@ public class ApiComparator {
 						apiComponentsIds.add(id);
 						String versionString = apiComponent.getVersion();
 						String versionString2 = apiComponent2.getVersion();
-						IDelta bundleVersionChangesDelta = checkBundleVersionChanges(apiComponent2, id, versionString, versionString2);
-						if (bundleVersionChangesDelta != null) {
-							globalDelta.add(bundleVersionChangesDelta);
-						}
+						versionDeltas[i] = checkBundleVersionChanges(apiComponent2, id, versionString, versionString2);
 						if (!versionString.equals(versionString2)
 								|| force) {
-							long time = System.currentTimeMillis();
-							try {
-								delta = compare(apiComponent, apiComponent2, referenceBaseline, baseline, visibilityModifiers, localmonitor.newChild(1));
-							} finally {
-								if (ApiPlugin.DEBUG_API_COMPARATOR) {
-									System.out.println("Time spent for " + id+ " " + versionString + " : " + (System.currentTimeMillis() - time) + "ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
-								}
-							}
+							counterparts[i] = apiComponent2;
+							compared.add(new Integer(i));
 						}
 					}
-					if (delta != null && delta != NO_DELTA) {
-						globalDelta.add(delta);
-					}
 				}
 			}
-			Util.updateMonitor(localmonitor, 1);
+			localmonitor.setWorkRemaining(compared.size() + 1);
+			ParallelComparison comparison = new ParallelComparison(compared.size(), localmonitor) {
+				void compare(int index, IProgressMonitor localmonitor) {
+					int i = ((Integer) compared.get(index)).intValue();
+					deltas[i] = ApiComparator.compare(apiComponents[i], counterparts[i], referenceBaseline, baseline, visibilityModifiers, localmonitor);
+				}
+			};
+			comparison.execute(threads, localmonitor);
+			if (ApiPlugin.DEBUG_API_COMPARATOR) {
+				String[] names = new String[compared.size()];
+				for (int i = 0; i < names.length; i++) {
+					IApiComponent apiComponent = apiComponents[((Integer) compared.get(i)).intValue()];
+					names[i] = apiComponent.getSymbolicName() + " " + apiComponent.getVersion(); //$NON-NLS-1$
+				}
+				printTimings(names, comparison.times, System.currentTimeMillis() - start, threads);
+			}
+			Util.updateMonitor(localmonitor);
+			final Delta globalDelta = new Delta();
+			for (int i = 0; i < apiComponents.length; i++) {
+				if (versionDeltas[i] != null) {
+					globalDelta.add(versionDeltas[i]);
+				}
+				if (deltas[i] != null && deltas[i] != NO_DELTA) {
+					globalDelta.add(deltas[i]);
+				}
+			}
 			for (int i = 0, max = apiComponents2.length; i < max; i++) {
-				Util.updateMonitor(localmonitor);
 				IApiComponent apiComponent = apiComponents2[i];
 				if (!apiComponent.isSystemComponent()) {
 					String id = apiComponent.getSymbolicName();
@@ -202,6 +420,7 @@ public class ApiComparator {
 					}
 				}
 			}
+			Util.updateMonitor(localmonitor, 1);
 			return globalDelta.isEmpty() ? NO_DELTA : globalDelta;
 		}
 		finally {
@@ -680,18 +899,61 @@ public class ApiComparator {
 			final boolean force,
 			final boolean continueOnResolverError,
 			final IProgressMonitor monitor) throws CoreException {
+		return compare(scope, baseline, visibilityModifiers, force, continueOnResolverError, 1, monitor);
+	}
+
+	/**
+	 * Returns a delta that corresponds to the comparison of the two given API baselines. 
+	 * Nested API components with the same versions are not compared.
+	 * <p>
+	 * When more than one thread is requested and the scope is made of API components or of a single
+	 * API baseline, the components are compared concurrently. The resulting delta does not depend on the
+	 * number of threads.
+	 * </p>
+	 * 
+	 * @param scope the given scope for the comparison
+	 * @param baseline the given API baseline to compare with
+	 * @param visibilityModifiers the given visibility that triggers what visibility should be used for the comparison
+	 * @param force a flag to force the comparison of nested API components with the same versions
+	 * @param continueOnResolverError if <code>true</code> the comparison will continue even if a component in the scope has a resolver error 
+	 * @param threads the maximum number of threads to compare components with, must be greater than zero
+	 * @param monitor the given progress monitor to report progress
+	 *
+	 * @return a delta, an empty delta if no difference is found or null if the delta detection failed. If set to continue on resolver error a delta, possibly empty, will always be returned
+	 * @throws IllegalArgumentException if one of the two baselines is null or the number of threads is not greater than zero
+	 *         CoreException if one of the element in the scope cannot be visited
+	 * @since 1.0.500
+	 */
+	public static IDelta compare(
+			final IApiScope scope,
+			final IApiBaseline baseline,
+			final int visibilityModifiers,
+			final boolean force,
+			final boolean continueOnResolverError,
+			final int threads,
+			final IProgressMonitor monitor) throws CoreException {
 		
 		if (scope == null || baseline == null) {
 			throw new IllegalArgumentException("None of the scope or the baseline must be null"); //$NON-NLS-1$
 		}
+		if (threads < 1) {
+			throw new IllegalArgumentException("The number of threads must be greater than zero"); //$NON-NLS-1$
+		}
 		SubMonitor localmonitor = SubMonitor.convert(monitor, 2);
 		try {
 			final Set deltas = new HashSet();
-			final CompareApiScopeVisitor visitor = new CompareApiScopeVisitor(deltas, baseline, force, visibilityModifiers, continueOnResolverError, localmonitor.newChild(1));
-			scope.accept(visitor);
+			boolean containsError = false;
+			final IApiElement[] elements = scope.getApiElements();
+			if (threads > 1 && elements.length > 1 && isComponentScope(elements)) {
+				containsError = compareComponents(elements, deltas, baseline, visibilityModifiers, force, continueOnResolverError, threads, localmonitor.newChild(1));
+			} else {
+				final CompareApiScopeVisitor visitor = new CompareApiScopeVisitor(deltas, baseline, force, visibilityModifiers, continueOnResolverError, threads, localmonitor.newChild(1));
+				scope.accept(visitor);
+				containsError = visitor.containsError();
+			}
 			
 			// If set to continue on error, return whatever deltas were collected
-			if (!continueOnResolverError && visitor.containsError()) {
+			if (!continueOnResolverError && containsError) {
 				return null;
 			}
 			if (deltas.isEmpty()) {
@@ -727,6 +989,84 @@ public class ApiComparator {
 		}
 	}
 
+	/**
+	 * Returns if all of the given scope elements are API components
+	 * @param elements
+	 * @return <code>true</code> if all of the elements are API components, <code>false</code> otherwise
+	 */
+	private static boolean isComponentScope(IApiElement[] elements) {
+		for (int i = 0; i < elements.length; i++) {
+			if (elements[i].getType() != IApiElement.COMPONENT) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Compares the given API components with their counterparts in the reference baseline on a number
+	 * of threads, collecting the leaf deltas in the given set
+	 * 
+	 * @param elements the API components to compare
+	 * @param deltas the set to collect the leaf deltas in
+	 * @param baseline the reference baseline
+	 * @param visibilityModifiers
+	 * @param force
+	 * @param continueOnResolverError
+	 * @param threads
+	 * @param monitor
+	 * @return <code>true</code> if one of the components has resolver errors, <code>false</code> otherwise
+	 * @throws CoreException if one of the components cannot be visited
+	 */
+	private static boolean compareComponents(
+			final IApiElement[] elements,
+			final Set deltas,
+			final IApiBaseline baseline,
+			final int visibilityModifiers,
+			final boolean force,
+			final boolean continueOnResolverError,
+			final int threads,
+			final IProgressMonitor monitor) throws CoreException {
+		SubMonitor localmonitor = SubMonitor.convert(monitor, elements.length);
+		try {
+			long start = System.currentTimeMillis();
+			final CompareApiScopeVisitor[] visitors = new CompareApiScopeVisitor[elements.length];
+			final CoreException[] errors = new CoreException[elements.length];
+			ParallelComparison comparison = new ParallelComparison(elements.length, localmonitor) {
+				void compare(int index, IProgressMonitor localmonitor) {
+					visitors[index] = new CompareApiScopeVisitor(new HashSet(), baseline, force, visibilityModifiers, continueOnResolverError, localmonitor);
+					try {
+						visitors[index].visit((IApiComponent) elements[index]);
+					} catch (CoreException e) {
+						errors[index] = e;
+					}
+				}
+			};
+			comparison.execute(threads, localmonitor);
+			if (ApiPlugin.DEBUG_API_COMPARATOR) {
+				String[] names = new String[elements.length];
+				for (int i = 0; i < names.length; i++) {
+					IApiComponent component = (IApiComponent) elements[i];
+					names[i] = component.getSymbolicName() + " " + component.getVersion(); //$NON-NLS-1$
+				}
+				printTimings(names, comparison.times, System.currentTimeMillis() - start, threads);
+			}
+			Util.updateMonitor(localmonitor);
+			boolean containsError = false;
+			for (int i = 0; i < elements.length; i++) {
+				if (errors[i] != null) {
+					throw errors[i];
+				}
+				deltas.addAll(visitors[i].deltas);
+				containsError |= visitors[i].containsError();
+			}
+			return containsError;
+		}
+		finally {
+			localmonitor.done();
+		}
+	}
+
 	/**
 	 * Returns true, if the given type descriptor should be skipped, false otherwise.
 	 * @param visibilityModifiers
@@ -35,6 +35,7 @@ public class CompareApiScopeVisitor extends ApiScopeVisitor {
 	boolean force;
 	boolean continueOnResolverError = false;
 	boolean containsErrors = false;
+	int threads = 1;
 	IProgressMonitor monitor;
 
 	public CompareApiScopeVisitor(
@@ -44,6 +45,29 @@ public class CompareApiScopeVisitor extends ApiScopeVisitor {
 			final int visibilityModifiers,
 			final boolean continueOnResolverError,
 			final IProgressMonitor monitor) {
+		this(deltas, baseline, force, visibilityModifiers, continueOnResolverError, 1, monitor);
+	}
+	
+	/**
+	 * Constructor
+	 * @param deltas
+	 * @param baseline
+	 * @param force
+	 * @param visibilityModifiers
+	 * @param continueOnResolverError
+	 * @param threads the maximum number of threads to compare the components of a visited baseline with
+	 * @param monitor
+	 * @since 1.0.500
+	 */
+	public CompareApiScopeVisitor(
+			final Set deltas,
+			final IApiBaseline baseline,
+			final boolean force,
+			final int visibilityModifiers,
+			final boolean continueOnResolverError,
+			final int threads,
+			final IProgressMonitor monitor) {
+		this.threads = threads;
 		this.deltas = deltas;
 		this.referenceBaseline = baseline;
 		this.visibilityModifiers = visibilityModifiers;
@@ -55,7 +79,7 @@ public class CompareApiScopeVisitor extends ApiScopeVisitor {
 	public boolean visit(IApiBaseline baseline) throws CoreException {
 		try {
 			Util.updateMonitor(this.monitor);
-			IDelta delta = ApiComparator.compare(this.referenceBaseline, baseline, this.visibilityModifiers, this.force, null);
+			IDelta delta = ApiComparator.compare(this.referenceBaseline, baseline, this.visibilityModifiers, this.force, this.threads, null);
 			if (delta != null) {
 				delta.accept(new DeltaVisitor() {
 					public void endVisit(IDelta localDelta) {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2012 IBM Corporation and others.
+ * Copyright (c) 2009, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -19,6 +19,7 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.pde.api.tools.internal.builder.Reference;
@@ -35,6 +36,8 @@ import org.eclipse.pde.api.tools.internal.provisional.model.IApiType;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeContainer;
 import org.eclipse.pde.api.tools.internal.provisional.model.IApiTypeRoot;
 import org.eclipse.pde.api.tools.internal.search.SearchMessages;
+import org.eclipse.pde.api.tools.internal.search.UseSearchRequestor;
+import org.eclipse.pde.api.tools.internal.search.XmlSearchReporter;
 import org.eclipse.pde.api.tools.internal.util.Util;
 
 import com.ibm.icu.text.MessageFormat;
@@ -133,10 +136,167 @@ public final class ApiSearchEngine {
 		}
 	}
 	
+	/**
+	 * Searches the component elements of a scope on a number of threads. Each thread uses its own copy of the 
+	 * requestor and its own reporter shard, which are merged back once every component has been searched.
+	 * Other elements of the scope are left to the serial search.
+	 */
+	class ParallelSearch implements Runnable {
+		private IApiElement[] elements = null;
+		private UseSearchRequestor requestor = null;
+		private XmlSearchReporter[] shards = null;
+		private CoreException[] errors = null;
+		private IProgressMonitor monitor = null;
+		private int next = 0;
+		private int done = 0;
+		private int workers = 0;
+
+		/**
+		 * Constructor
+		 */
+		ParallelSearch(IApiElement[] elements, UseSearchRequestor requestor, int threads, IProgressMonitor monitor) {
+			this.elements = elements;
+			this.requestor = requestor;
+			this.shards = new XmlSearchReporter[threads];
+			this.errors = new CoreException[elements.length];
+			this.monitor = monitor;
+		}
+
+		/**
+		 * Returns the index of the next component element to search or -1 if there are no more 
+		 * component elements or the search was canceled
+		 * @return the index of the next component element or -1
+		 */
+		synchronized int nextElement() {
+			while(next < elements.length && elements[next].getType() != IApiElement.COMPONENT) {
+				next++;
+			}
+			if(next >= elements.length || monitor.isCanceled()) {
+				return -1;
+			}
+			return next++;
+		}
+
+		synchronized void elementDone() {
+			done++;
+		}
+
+		synchronized int getDoneCount() {
+			return done;
+		}
+
+		synchronized int nextWorker() {
+			return workers++;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Runnable#run()
+		 */
+		public void run() {
+			XmlSearchReporter shard = shards[nextWorker()];
+			UseSearchRequestor local = requestor.copy();
+			// only the thread that started the search reports progress, the workers only look for cancellation
+			IProgressMonitor cancelmonitor = new NullProgressMonitor() {
+				public boolean isCanceled() {
+					return super.isCanceled() || monitor.isCanceled();
+				}
+			};
+			int index = -1;
+			while((index = nextElement()) > -1) {
+				long loopstart = System.currentTimeMillis();
+				try {
+					searchReferences(local, elements[index], shard, cancelmonitor);
+					if(cancelmonitor.isCanceled()) {
+						// same as the serial search, nextElement() stops the search
+						shard.reportResults(elements[index], NO_REFERENCES);
+					}
+				}
+				catch(CoreException ce) {
+					errors[index] = ce;
+				}
+				catch(RuntimeException re) {
+					errors[index] = new CoreException(new Status(IStatus.ERROR, ApiPlugin.PLUGIN_ID, re.getMessage(), re));
+				}
+				if(ApiPlugin.DEBUG_SEARCH_ENGINE) {
+					System.out.println("Searched "+elements[index].getApiComponent().getSymbolicName()+" on "+Thread.currentThread().getName()+" in "+(System.currentTimeMillis()-loopstart)+" ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+				}
+				elementDone();
+			}
+		}
+
+		/**
+		 * Searches all of the component elements, merging the results of the reporter shards into the given reporter
+		 * @param reporter
+		 * @param localmonitor the monitor to report progress to, two ticks per component element
+		 * @return the errors that occurred for each element in scope order, <code>null</code> entries for elements that 
+		 * were searched without problems or were not searched
+		 */
+		CoreException[] execute(XmlSearchReporter reporter, SubMonitor localmonitor) {
+			for (int i = 0; i < shards.length; i++) {
+				shards[i] = reporter.newShard();
+			}
+			Thread[] threads = new Thread[shards.length];
+			for (int i = 0; i < threads.length; i++) {
+				threads[i] = new Thread(this, "API Use Scan Worker " + (i + 1)); //$NON-NLS-1$
+				threads[i].setDaemon(true);
+				threads[i].start();
+			}
+			int reported = 0;
+			boolean interrupted = false;
+			for (int i = 0; i < threads.length; i++) {
+				while(threads[i].isAlive()) {
+					try {
+						threads[i].join(250);
+					}
+					catch(InterruptedException ie) {
+						interrupted = true;
+					}
+					int count = getDoneCount();
+					if(count > reported) {
+						localmonitor.worked((count - reported) * 2);
+						reported = count;
+					}
+				}
+			}
+			if(interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			// merge in worker order, the counts do not depend on which thread searched which element
+			for (int i = 0; i < shards.length; i++) {
+				reporter.merge(shards[i]);
+			}
+			return errors;
+		}
+	}
+
 	/**
 	 * Simple string used for reporting what is being searched
 	 */
 	private String fRequestorContext = null;
+
+	/**
+	 * The number of threads to search scope elements with
+	 */
+	private int fThreadCount = 1;
+
+	/**
+	 * Sets the number of threads used to search the elements of the scope. The component elements of
+	 * the scope are searched concurrently when more than one thread is requested and the search is done using a 
+	 * {@link UseSearchRequestor} reporting to an {@link XmlSearchReporter}: every thread then searches
+	 * with its own copy of the requestor and reports to its own shard of the reporter. Each searched
+	 * component is written to its own report files so the output does not depend on the number
+	 * of threads. Other elements of the scope, and other requestors and reporters, are always searched 
+	 * from the calling thread.
+	 * 
+	 * @param threads the number of threads, must be greater than zero
+	 * @since 1.0.500
+	 */
+	public void setThreadCount(int threads) {
+		if(threads < 1) {
+			throw new IllegalArgumentException("The number of search threads must be greater than zero"); //$NON-NLS-1$
+		}
+		fThreadCount = threads;
+	}
 	
 	/**
 	 * Returns the set of resolved references for the given {@link IApiType}
@@ -256,6 +416,7 @@ public final class ApiSearchEngine {
 			Util.updateMonitor(localmonitor, 1);
 		}
 		finally {
+			reporter.reportElementDone(element);
 			localmonitor.done();
 		}
 	}
@@ -287,7 +448,39 @@ public final class ApiSearchEngine {
 			long loopstart = 0;
 			String taskname = null;
 			MultiStatus mstatus = null;
+			int threads = 1;
+			if(fThreadCount > 1 && requestor instanceof UseSearchRequestor && reporter instanceof XmlSearchReporter) {
+				int components = 0;
+				for (int i = 0; i < scopeelements.length; i++) {
+					if(scopeelements[i].getType() == IApiElement.COMPONENT) {
+						components++;
+					}
+				}
+				threads = Math.min(fThreadCount, components);
+			}
+			// with more than one thread the component elements are searched in parallel, the others serially
+			CoreException[] errors = null;
+			if(threads > 1) {
+				if(ApiPlugin.DEBUG_SEARCH_ENGINE) {
+					System.out.println("Searching the component elements of "+scopeelements.length+" elements on "+threads+" threads"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				}
+				ParallelSearch search = new ParallelSearch(scopeelements, (UseSearchRequestor) requestor, threads, localmonitor);
+				errors = search.execute((XmlSearchReporter) reporter, localmonitor);
+				if(localmonitor.isCanceled()) {
+					return;
+				}
+			}
 			for (int i = 0; i < scopeelements.length; i++) {
+				if(errors != null && scopeelements[i].getType() == IApiElement.COMPONENT) {
+					// searched in parallel, only report its error in scope order
+					if(errors[i] != null) {
+						if(mstatus == null) {
+							mstatus = new MultiStatus(ApiPlugin.PLUGIN_ID, IStatus.ERROR, null, null);
+						}
+						mstatus.add(new Status(IStatus.ERROR, ApiPlugin.PLUGIN_ID, errors[i].getMessage(), errors[i]));
+					}
+					continue;
+				}
 				try {
 					taskname = MessageFormat.format(SearchMessages.ApiSearchEngine_searching_project, new String[] {scopeelements[i].getApiComponent().getSymbolicName(), fRequestorContext});
 					localmonitor.setTaskName(taskname);
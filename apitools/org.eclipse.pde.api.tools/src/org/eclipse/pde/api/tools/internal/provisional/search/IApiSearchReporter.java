@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2011 IBM Corporation and others.
+ * Copyright (c) 2009, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -29,6 +29,15 @@ public interface IApiSearchReporter {
 	 */
 	public void reportResults(IApiElement element, final IReference[] references);
 	
+	/**
+	 * Reports that all of the results of the given element have been reported. Reporters
+	 * that buffer results can write them out at this point.
+	 * 
+	 * @param element the element that was searched
+	 * @since 1.0.500
+	 */
+	public void reportElementDone(IApiElement element);
+	
 	/**
 	 * Reports the current listing of objects that were not searched for whatever reason. 
 	 * @param notsearched array of elements not searched 
@@ -0,0 +1,646 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.api.tools.internal.search;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.pde.api.tools.internal.provisional.ApiPlugin;
+import org.eclipse.pde.api.tools.internal.provisional.Factory;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IComponentDescriptor;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IElementDescriptor;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IMemberDescriptor;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IMethodDescriptor;
+import org.eclipse.pde.api.tools.internal.provisional.descriptors.IReferenceTypeDescriptor;
+import org.eclipse.pde.api.tools.internal.util.Util;
+
+/**
+ * Binary index of the references in an API use scan.
+ * <p>
+ * The XML reports of a use scan location are converted once into an index file holding the
+ * references grouped by referenced component and referenced (top level) type. The groups are
+ * sorted so that the references to the types of a component are found with a binary search of the
+ * memory mapped index file, without parsing any XML.
+ * </p>
+ * <p>
+ * The index records the number, total size and latest modification time of the report files it was
+ * built from and is rebuilt when they no longer match the scan location. The report files are only
+ * stamped when the index is first obtained in a session. After that, the index is checked against the
+ * modification times of the scan location and of its component directories, which change when
+ * a scan is written again or reports are added or removed. Only when these have changed are the
+ * report files stamped again.
+ * </p>
+ *
+ * @since 1.0.500
+ */
+public final class UseScanIndex {
+
+	/**
+	 * Version of the index file format, an index with another version is rebuilt
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * Name of the directory the index files are written to
+	 */
+	private static final String INDEX_DIR = ".use_scan_index"; //$NON-NLS-1$
+
+	/**
+	 * Number of ints in a group entry: component, type, first reference, reference count
+	 */
+	private static final int GROUP_SIZE = 4;
+
+	/**
+	 * Number of ints in a reference entry: referencing component id and version, referenced component version,
+	 * origin member (element type, type name, name, signature), referenced member (element type, type name,
+	 * name, signature), line number, reference kind, flags and visibility
+	 */
+	private static final int REFERENCE_SIZE = 15;
+
+	/**
+	 * Index of a <code>null</code> string in the string table
+	 */
+	private static final int NO_STRING = -1;
+
+	/**
+	 * Visitor collecting all of the references of a use scan into the tables of a new index
+	 */
+	static class IndexBuilder extends UseScanVisitor {
+		/**
+		 * Map of referenced component id to a map of referenced type name to the {@link List} of
+		 * reference entries (int[]), sorted so the groups are written in binary search order
+		 */
+		TreeMap fGroups = new TreeMap();
+		HashMap fStringIds = new HashMap();
+		ArrayList fStrings = new ArrayList();
+		IComponentDescriptor fComponent = null;
+		IComponentDescriptor fReferencingComponent = null;
+		IMemberDescriptor fMember = null;
+		List fReferences = null;
+
+		/* (non-Javadoc)
+		 * @see org.eclipse.pde.api.tools.internal.search.UseScanVisitor#visitComponent(org.eclipse.pde.api.tools.internal.provisional.descriptors.IComponentDescriptor)
+		 */
+		public boolean visitComponent(IComponentDescriptor target) {
+			fComponent = target;
+			return true;
+		}
+
+		/* (non-Javadoc)
+		 * @see org.eclipse.pde.api.tools.internal.search.UseScanVisitor#visitReferencingComponent(org.eclipse.pde.api.tools.internal.provisional.descriptors.IComponentDescriptor)
+		 */
+		public boolean visitReferencingComponent(IComponentDescriptor component) {
+			fReferencingComponent = component;
+			return true;
+		}
+
+		/* (non-Javadoc)
+		 * @see org.eclipse.pde.api.tools.internal.search.UseScanVisitor#visitMember(org.eclipse.pde.api.tools.internal.provisional.descriptors.IMemberDescriptor)
+		 */
+		public boolean visitMember(IMemberDescriptor referencedMember) {
+			fMember = referencedMember;
+			String type = getRootTypeName(referencedMember);
+			TreeMap types = (TreeMap) fGroups.get(fComponent.getId());
+			if(types == null) {
+				types = new TreeMap();
+				fGroups.put(fComponent.getId(), types);
+			}
+			fReferences = (List) types.get(type);
+			if(fReferences == null) {
+				fReferences = new ArrayList();
+				types.put(type, fReferences);
+			}
+			return true;
+		}
+
+		/* (non-Javadoc)
+		 * @see org.eclipse.pde.api.tools.internal.search.UseScanVisitor#visitReference(org.eclipse.pde.api.tools.internal.search.IReferenceDescriptor)
+		 */
+		public void visitReference(IReferenceDescriptor reference) {
+			int[] entry = new int[REFERENCE_SIZE];
+			entry[0] = id(fReferencingComponent.getId());
+			entry[1] = id(fReferencingComponent.getVersion());
+			entry[2] = id(fComponent.getVersion());
+			encode(reference.getMember(), entry, 3);
+			encode(fMember, entry, 7);
+			entry[11] = reference.getLineNumber();
+			entry[12] = reference.getReferenceKind();
+			entry[13] = reference.getReferenceFlags();
+			entry[14] = reference.getVisibility();
+			fReferences.add(entry);
+		}
+
+		/**
+		 * Encodes the given member in four ints: element type, (enclosing) type name, name and signature
+		 * @param member
+		 * @param entry
+		 * @param offset
+		 */
+		private void encode(IMemberDescriptor member, int[] entry, int offset) {
+			entry[offset] = member.getElementType();
+			entry[offset + 3] = NO_STRING;
+			switch(member.getElementType()) {
+				case IElementDescriptor.TYPE: {
+					entry[offset + 1] = id(((IReferenceTypeDescriptor) member).getQualifiedName());
+					entry[offset + 2] = NO_STRING;
+					break;
+				}
+				case IElementDescriptor.METHOD: {
+					entry[offset + 1] = id(member.getEnclosingType().getQualifiedName());
+					entry[offset + 2] = id(member.getName());
+					entry[offset + 3] = id(((IMethodDescriptor) member).getSignature());
+					break;
+				}
+				default: {
+					entry[offset + 1] = id(member.getEnclosingType().getQualifiedName());
+					entry[offset + 2] = id(member.getName());
+				}
+			}
+		}
+
+		/**
+		 * Returns the index of the given string in the string table, adding it if required
+		 * @param string
+		 * @return the index of the string
+		 */
+		int id(String string) {
+			if(string == null) {
+				return NO_STRING;
+			}
+			Integer id = (Integer) fStringIds.get(string);
+			if(id == null) {
+				id = new Integer(fStrings.size());
+				fStringIds.put(string, id);
+				fStrings.add(string);
+			}
+			return id.intValue();
+		}
+	}
+
+	private String fLocation = null;
+	private long[] fStamp = null;
+	private long[] fRootStamp = null;
+	private String[] fStrings = null;
+	private ByteBuffer fBuffer = null;
+	private int fGroupsOffset = 0;
+	private int fGroupCount = 0;
+	private int fReferencesOffset = 0;
+	private long fLastChecked = 0;
+
+	/**
+	 * Constructor
+	 * @param location
+	 */
+	private UseScanIndex(String location) {
+		fLocation = location;
+	}
+
+	/**
+	 * Returns the index of the use scan at the given location, reading it from the index directory if
+	 * it is up to date or building it from the XML reports otherwise.
+	 *
+	 * @param location the exact location of the use scan XML reports, see {@link UseScanManager#getExactScanLocation(String)}
+	 * @param monitor
+	 * @return the index of the use scan
+	 * @throws Exception if the index could not be built
+	 */
+	public static UseScanIndex getIndex(String location, IProgressMonitor monitor) throws Exception {
+		File root = new File(location);
+		// taken first so that changes made while the reports are stamped are seen by the next check
+		long[] rootStamp = computeRootStamp(root);
+		long[] stamp = computeStamp(root);
+		File file = getIndexFile(location, stamp);
+		UseScanIndex index = new UseScanIndex(location);
+		if(!file.exists() || !index.load(file, stamp)) {
+			long start = System.currentTimeMillis();
+			index.build(file, stamp, monitor);
+			if(ApiPlugin.DEBUG_SEARCH_ENGINE) {
+				System.out.println("Indexed use scan "+location+" in "+(System.currentTimeMillis()-start)+" ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			}
+			if(!index.load(file, stamp)) {
+				throw new IOException(file.getAbsolutePath());
+			}
+		}
+		index.fRootStamp = rootStamp;
+		index.fLastChecked = System.currentTimeMillis();
+		return index;
+	}
+
+	/**
+	 * Returns if the report files of the use scan still match the ones the index was built from.
+	 * The scan location is only checked again once the given interval has elapsed since the last check,
+	 * and the report files are only stamped again if the scan location or its component directories
+	 * were modified.
+	 *
+	 * @param interval the number of milliseconds a successful check remains valid
+	 * @return <code>true</code> if the index is up to date, <code>false</code> if it has to be rebuilt
+	 */
+	public synchronized boolean isUpToDate(long interval) {
+		long now = System.currentTimeMillis();
+		if(now - fLastChecked < interval) {
+			return true;
+		}
+		File root = new File(fLocation);
+		long[] rootStamp = computeRootStamp(root);
+		if(!Arrays.equals(rootStamp, fRootStamp)) {
+			if(!Arrays.equals(computeStamp(root), fStamp)) {
+				return false;
+			}
+			fRootStamp = rootStamp;
+		}
+		fLastChecked = now;
+		return true;
+	}
+
+	/**
+	 * Adds the references to the given types of the given component to the given collection.
+	 *
+	 * @param componentId the symbolic name of the referenced component
+	 * @param types the qualified names of the top level types to collect references to, or <code>null</code>
+	 * to collect the references to all types of the component
+	 * @param references the collection to add the references to
+	 */
+	public void collect(String componentId, String[] types, IReferenceCollection references) {
+		if(types == null || types.length == 0) {
+			int first = findFirstGroup(componentId);
+			for(int i = first; i > -1 && i < fGroupCount && componentId.equals(getString(groupInt(i, 0))); i++) {
+				collectGroup(i, componentId, references);
+			}
+		}
+		else {
+			for (int i = 0; i < types.length; i++) {
+				int group = findGroup(componentId, types[i]);
+				if(group > -1) {
+					collectGroup(group, componentId, references);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the number of (component, type) groups in the index
+	 */
+	public int getGroupCount() {
+		return fGroupCount;
+	}
+
+	/**
+	 * Adds the references of the given group to the given collection
+	 * @param group
+	 * @param componentId
+	 * @param references
+	 */
+	private void collectGroup(int group, String componentId, IReferenceCollection references) {
+		String type = getString(groupInt(group, 1));
+		int first = groupInt(group, 2);
+		int count = groupInt(group, 3);
+		for (int i = first; i < first + count; i++) {
+			int offset = fReferencesOffset + i * REFERENCE_SIZE * 4;
+			IComponentDescriptor referencing = Factory.componentDescriptor(getString(fBuffer.getInt(offset)), getString(fBuffer.getInt(offset + 4)));
+			IComponentDescriptor referenced = Factory.componentDescriptor(componentId, getString(fBuffer.getInt(offset + 8)));
+			IMemberDescriptor origin = decode(offset + 12);
+			IMemberDescriptor target = decode(offset + 28);
+			references.add(type, new ReferenceDescriptor(referencing, origin, fBuffer.getInt(offset + 44), referenced, target, fBuffer.getInt(offset + 48), fBuffer.getInt(offset + 52), fBuffer.getInt(offset + 56), null));
+		}
+	}
+
+	/**
+	 * Decodes the member stored at the given offset of the index buffer
+	 * @param offset
+	 * @return the member descriptor
+	 */
+	private IMemberDescriptor decode(int offset) {
+		String type = getString(fBuffer.getInt(offset + 4));
+		switch(fBuffer.getInt(offset)) {
+			case IElementDescriptor.FIELD: {
+				return Factory.fieldDescriptor(type, getString(fBuffer.getInt(offset + 8)));
+			}
+			case IElementDescriptor.METHOD: {
+				return Factory.methodDescriptor(type, getString(fBuffer.getInt(offset + 8)), getString(fBuffer.getInt(offset + 12)));
+			}
+			default: {
+				return Factory.typeDescriptor(type);
+			}
+		}
+	}
+
+	/**
+	 * Binary search for the group of the given component and type
+	 * @param componentId
+	 * @param type
+	 * @return the index of the group or <code>-1</code>
+	 */
+	private int findGroup(String componentId, String type) {
+		int low = 0;
+		int high = fGroupCount - 1;
+		while(low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = getString(groupInt(mid, 0)).compareTo(componentId);
+			if(cmp == 0) {
+				cmp = getString(groupInt(mid, 1)).compareTo(type);
+			}
+			if(cmp < 0) {
+				low = mid + 1;
+			}
+			else if(cmp > 0) {
+				high = mid - 1;
+			}
+			else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Binary search for the first group of the given component
+	 * @param componentId
+	 * @return the index of the first group of the component or <code>-1</code>
+	 */
+	private int findFirstGroup(String componentId) {
+		int low = 0;
+		int high = fGroupCount;
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			if(getString(groupInt(mid, 0)).compareTo(componentId) < 0) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		return low < fGroupCount && componentId.equals(getString(groupInt(low, 0))) ? low : -1;
+	}
+
+	private int groupInt(int group, int field) {
+		return fBuffer.getInt(fGroupsOffset + (group * GROUP_SIZE + field) * 4);
+	}
+
+	private String getString(int id) {
+		return id == NO_STRING ? null : fStrings[id];
+	}
+
+	/**
+	 * Maps the given index file and reads its string table
+	 * @param file
+	 * @param stamp the expected stamp of the use scan
+	 * @return <code>true</code> if the index was loaded, <code>false</code> if it does not match the use scan
+	 */
+	private boolean load(File file, long[] stamp) {
+		FileInputStream stream = null;
+		try {
+			stream = new FileInputStream(file);
+			FileChannel channel = stream.getChannel();
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if(buffer.getInt() != VERSION) {
+				return false;
+			}
+			String location = readString(buffer);
+			if(!fLocation.equals(location) || buffer.getLong() != stamp[0] || buffer.getLong() != stamp[1] || buffer.getLong() != stamp[2]) {
+				return false;
+			}
+			String[] strings = new String[buffer.getInt()];
+			for (int i = 0; i < strings.length; i++) {
+				strings[i] = readString(buffer);
+			}
+			fGroupCount = buffer.getInt();
+			fGroupsOffset = buffer.position();
+			fReferencesOffset = fGroupsOffset + fGroupCount * GROUP_SIZE * 4;
+			fStrings = strings;
+			fStamp = stamp;
+			fBuffer = buffer;
+			return true;
+		}
+		catch(IOException ioe) {
+			ApiPlugin.log(ioe);
+		}
+		catch(RuntimeException re) {
+			// truncated or corrupt index, it is rebuilt
+			ApiPlugin.log(re);
+		}
+		finally {
+			if(stream != null) {
+				try {
+					// the mapping remains valid once the channel is closed
+					stream.close();
+				}
+				catch(IOException e) {
+					// ignore
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Parses the XML reports of the use scan and writes the index to the given file
+	 * @param file
+	 * @param stamp
+	 * @param monitor
+	 * @throws Exception
+	 */
+	private void build(File file, long[] stamp, IProgressMonitor monitor) throws Exception {
+		IndexBuilder builder = new IndexBuilder();
+		new UseScanParser().parse(fLocation, monitor, builder);
+		File dir = file.getParentFile();
+		if(!dir.exists()) {
+			dir.mkdirs();
+		}
+		// remove the indexes of previous versions of the scan
+		final String prefix = getLocationKey(fLocation);
+		File[] stale = dir.listFiles(new FileFilter() {
+			public boolean accept(File pathname) {
+				return pathname.getName().startsWith(prefix);
+			}
+		});
+		for (int i = 0; stale != null && i < stale.length; i++) {
+			stale[i].delete();
+		}
+		File temp = File.createTempFile(file.getName(), ".tmp", dir); //$NON-NLS-1$
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			out.writeInt(VERSION);
+			writeString(out, fLocation);
+			out.writeLong(stamp[0]);
+			out.writeLong(stamp[1]);
+			out.writeLong(stamp[2]);
+			// sort the types before the string table is written, their ids are assigned here
+			List groups = new ArrayList();
+			for (Iterator iter = builder.fGroups.entrySet().iterator(); iter.hasNext();) {
+				Map.Entry entry = (Map.Entry) iter.next();
+				int component = builder.id((String) entry.getKey());
+				for (Iterator iter2 = ((TreeMap) entry.getValue()).entrySet().iterator(); iter2.hasNext();) {
+					Map.Entry entry2 = (Map.Entry) iter2.next();
+					groups.add(new Object[] {new int[] {component, builder.id((String) entry2.getKey())}, entry2.getValue()});
+				}
+			}
+			out.writeInt(builder.fStrings.size());
+			for (Iterator iter = builder.fStrings.iterator(); iter.hasNext();) {
+				writeString(out, (String) iter.next());
+			}
+			out.writeInt(groups.size());
+			int first = 0;
+			for (Iterator iter = groups.iterator(); iter.hasNext();) {
+				Object[] group = (Object[]) iter.next();
+				int[] key = (int[]) group[0];
+				int count = ((List) group[1]).size();
+				out.writeInt(key[0]);
+				out.writeInt(key[1]);
+				out.writeInt(first);
+				out.writeInt(count);
+				first += count;
+			}
+			for (Iterator iter = groups.iterator(); iter.hasNext();) {
+				Object[] group = (Object[]) iter.next();
+				for (Iterator iter2 = ((List) group[1]).iterator(); iter2.hasNext();) {
+					int[] entry = (int[]) iter2.next();
+					for (int i = 0; i < entry.length; i++) {
+						out.writeInt(entry[i]);
+					}
+				}
+			}
+			out.close();
+			out = null;
+			if(!temp.renameTo(file)) {
+				throw new IOException(file.getAbsolutePath());
+			}
+		}
+		finally {
+			if(out != null) {
+				try {
+					out.close();
+				}
+				catch(IOException e) {
+					// ignore
+				}
+			}
+			temp.delete();
+		}
+	}
+
+	/**
+	 * Returns the qualified name of the top level type of the given member
+	 * @param member
+	 * @return the top level type name
+	 */
+	public static String getRootTypeName(IMemberDescriptor member) {
+		String name;
+		if (member instanceof IReferenceTypeDescriptor) {
+			name = ((IReferenceTypeDescriptor) member).getQualifiedName();
+		} else {
+			name = member.getEnclosingType().getQualifiedName();
+		}
+		int idx = name.indexOf('$');
+		if (idx > -1) {
+			name = name.substring(0, idx);
+		}
+		return name;
+	}
+
+	/**
+	 * Computes the number, total size and latest modification time of the XML files of the
+	 * use scan at the given location
+	 * @param root
+	 * @return the stamp of the use scan
+	 */
+	static long[] computeStamp(File root) {
+		long[] stamp = new long[3];
+		File[] files = Util.getAllFiles(root, new FileFilter() {
+			public boolean accept(File pathname) {
+				return pathname.isDirectory() || pathname.getName().endsWith(".xml"); //$NON-NLS-1$
+			}
+		});
+		if(files != null) {
+			for (int i = 0; i < files.length; i++) {
+				stamp[0]++;
+				stamp[1] += files[i].length();
+				stamp[2] = Math.max(stamp[2], files[i].lastModified());
+			}
+		}
+		return stamp;
+	}
+
+	/**
+	 * Computes the latest modification time of the use scan location and of its component directories,
+	 * and their number, without walking the report files
+	 * @param root
+	 * @return the stamp of the use scan location
+	 */
+	static long[] computeRootStamp(File root) {
+		long[] stamp = new long[] {root.lastModified(), 0, 0};
+		File[] children = root.listFiles();
+		if(children != null) {
+			stamp[1] = children.length;
+			for (int i = 0; i < children.length; i++) {
+				stamp[2] = Math.max(stamp[2], children[i].lastModified());
+			}
+		}
+		return stamp;
+	}
+
+	/**
+	 * Returns the file the index of the use scan with the given location and stamp is stored in
+	 * @param location
+	 * @param stamp
+	 * @return the index file
+	 */
+	private static File getIndexFile(String location, long[] stamp) {
+		File dir = null;
+		if(ApiPlugin.isRunningInFramework()) {
+			dir = ApiPlugin.getDefault().getStateLocation().append(INDEX_DIR).toFile();
+		}
+		else {
+			dir = new File(System.getProperty("java.io.tmpdir"), ApiPlugin.PLUGIN_ID + File.separator + INDEX_DIR); //$NON-NLS-1$
+		}
+		// a new file is used for each stamp, the mapping of an older index may still be in use
+		StringBuffer name = new StringBuffer(getLocationKey(location));
+		name.append(Long.toHexString(stamp[0] ^ (stamp[1] << 16) ^ stamp[2])).append(".index"); //$NON-NLS-1$
+		return new File(dir, name.toString());
+	}
+
+	/**
+	 * Returns the prefix of the index file names of the given location
+	 * @param location
+	 * @return the prefix of the index file names
+	 */
+	private static String getLocationKey(String location) {
+		return Integer.toHexString(location.hashCode()) + '_';
+	}
+
+	private static void writeString(DataOutputStream out, String string) throws IOException {
+		byte[] bytes = string.getBytes("UTF-8"); //$NON-NLS-1$
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buffer) throws UnsupportedEncodingException {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, "UTF-8"); //$NON-NLS-1$
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010, 2011 IBM Corporation and others.
+ * Copyright (c) 2010, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -15,6 +15,7 @@ import java.io.FileFilter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.jar.JarFile;
 import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
@@ -56,6 +57,13 @@ public class UseScanManager {
 	 * Number of entries to cache in the {@link UseScanCache}
 	 */
 	public static final int DEFAULT_CACHE_SIZE = 1000;
+	/**
+	 * Number of milliseconds during which a use scan index is used without checking
+	 * that the scan it was built from has not changed
+	 * 
+	 * @since 1.0.500
+	 */
+	public static final long INDEX_CHECK_INTERVAL = 2000;
 	
 	/**
 	 * Cache to maintain the list of least recently used <code>UseScanReferences</code>
@@ -83,6 +91,11 @@ public class UseScanManager {
 	}
 
 	private String[] fLocations = null;
+	
+	/**
+	 * Map of exact use scan location to its {@link UseScanIndex}
+	 */
+	private HashMap fIndexes = new HashMap();
 
 	/**
 	 * {@link FileFilter} for finding use scan directories
@@ -173,7 +186,7 @@ public class UseScanManager {
 			}
 			if (locations != null) {
 				IStringVariableManager stringManager = null;
-				localmonitor.setWorkRemaining(locations.length * 2);
+				localmonitor.setWorkRemaining(locations.length * 3);
 				for (int i = 0; i < locations.length; i++) {
 					Util.updateMonitor(localmonitor, 1);
 					File file = new File(locations[i]);
@@ -214,7 +227,14 @@ public class UseScanManager {
 							}
 							throw new Exception(message);
 						}
-						parser.parse(locations[i], localmonitor.newChild(2), visitor);
+						// the index is built or the reports are parsed, never both
+						SubMonitor scanmonitor = SubMonitor.convert(localmonitor.newChild(2), 4);
+						UseScanIndex index = getIndex(locations[i], scanmonitor.newChild(2));
+						if (index != null) {
+							index.collect(apiComponent.getSymbolicName(), types, references);
+						} else {
+							parser.parse(locations[i], scanmonitor.newChild(2), visitor);
+						}
 						Util.updateMonitor(localmonitor);
 					} catch (Exception e) {
 						ApiPlugin.log(e); // log the exception and continue with next location
@@ -231,6 +251,31 @@ public class UseScanManager {
 		}
 	}
 
+	/**
+	 * Returns the index of the use scan at the given location, building it if the scan was never 
+	 * indexed or changed since it was indexed.
+	 * 
+	 * @param location the exact location of the use scan
+	 * @param monitor
+	 * @return the index or <code>null</code> if the scan could not be indexed, in which case its XML 
+	 * reports have to be parsed
+	 */
+	private synchronized UseScanIndex getIndex(String location, IProgressMonitor monitor) {
+		UseScanIndex index = (UseScanIndex) fIndexes.get(location);
+		if (index != null && index.isUpToDate(INDEX_CHECK_INTERVAL)) {
+			return index;
+		}
+		fIndexes.remove(location);
+		try {
+			index = UseScanIndex.getIndex(location, monitor);
+			fIndexes.put(location, index);
+			return index;
+		} catch (Exception e) {
+			ApiPlugin.log(e);
+		}
+		return null;
+	}
+
 	/**
 	 * Returns the scan 
 	 * @param location
@@ -391,5 +436,8 @@ public class UseScanManager {
 			reference.clear();
 		}
 		fApiComponentCache.flush();
+		synchronized (this) {
+			fIndexes.clear();
+		}
 	}
 }
@@ -314,6 +314,22 @@ public class UseSearchRequestor implements IApiSearchRequestor {
 		return (fSearchMask & INCLUDE_ILLEGAL_USE) > 0;
 	}
 	
+	/**
+	 * Returns a new requestor with the same scope and settings as this requestor. A requestor
+	 * keeps track of the component being searched, so each thread searching components
+	 * in parallel needs its own copy.
+	 * 
+	 * @return a copy of this requestor
+	 * @since 1.0.500
+	 */
+	public UseSearchRequestor copy() {
+		UseSearchRequestor requestor = new UseSearchRequestor(fComponentIds, null, fSearchMask);
+		requestor.fScope = fScope;
+		requestor.jarPatterns = jarPatterns;
+		requestor.antFilterRoot = antFilterRoot;
+		return requestor;
+	}
+	
 	/**
 	 * The patterns for jar names to exclude from the search
 	 * @param patterns
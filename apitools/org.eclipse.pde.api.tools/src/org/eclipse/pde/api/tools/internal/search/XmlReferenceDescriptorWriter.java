@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2011 IBM Corporation and others.
+ * Copyright (c) 2009, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -17,10 +17,16 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -50,6 +56,13 @@ import org.xml.sax.helpers.DefaultHandler;
 
 /**
  * Writes reference descriptions to XML files.
+ * <p>
+ * References can either be written right away with {@link #writeReferences(IReferenceDescriptor[])}
+ * or be collected with {@link #addReferences(IReferenceDescriptor[])} and written out with 
+ * {@link #flush()}, for example once all of the references of a component have been collected.
+ * Files that do not exist yet are streamed out without building a document, references
+ * written to an existing file are merged with its content.
+ * </p>
  * 
  * @since 1.0.1
  */
@@ -98,23 +111,47 @@ public class XmlReferenceDescriptorWriter {
 	 * @param references
 	 */
 	public void writeReferences(IReferenceDescriptor[] references) {
+		addReferences(references);
+		flush();
+	}
+	
+	/**
+	 * Collects the given references, they are written to XML files on the next call to {@link #flush()}
+	 * 
+	 * @param references
+	 * @since 1.0.500
+	 */
+	public void addReferences(IReferenceDescriptor[] references) {
 		if(fLocation != null) {
+			try {
+				collateResults(references);
+			}
+			catch (CoreException e) {
+				ApiPlugin.log(e);
+			}
+		}
+	}
+	
+	/**
+	 * Writes all of the collected references to XML files and forgets about them
+	 * 
+	 * @since 1.0.500
+	 */
+	public void flush() {
+		if(fLocation != null && fReferenceMap != null) {
 			try {
 				File parent = new File(fLocation);
 				if(!parent.exists()) {
 					parent.mkdirs();
 				}
-				collateResults(references);
 				writeXML(parent);
 			} 
 			catch (Exception e) {
 				ApiPlugin.log(e);
 			}
 			finally {
-				if(fReferenceMap != null) {
-					fReferenceMap.clear();
-					fReferenceMap = null;
-				}
+				fReferenceMap.clear();
+				fReferenceMap = null;
 			}
 		}
 	}
@@ -143,8 +180,8 @@ public class XmlReferenceDescriptorWriter {
 		HashMap rmap = null;
 		HashMap mmap = null;
 		HashMap vmap = null;
-		HashMap tmap = null;
-		HashSet reflist = null;
+		Map tmap = null;
+		Set reflist = null;
 		IComponentDescriptor rcomponent = null;
 		IComponentDescriptor mcomponent = null;
 		for (int i = 0; i < references.length; i++) {
@@ -174,15 +211,15 @@ public class XmlReferenceDescriptorWriter {
 				mmap.put(visibility, vmap);
 			}
 			type = new Integer(references[i].getReferenceType());
-			tmap = (HashMap) vmap.get(type);
+			tmap = (Map) vmap.get(type);
 			if(tmap == null) {
-				tmap = new HashMap();
+				tmap = new TreeMap();
 				vmap.put(type, tmap);
 			}
 			tname = getText(references[i].getReferencedMember());
-			reflist = (HashSet) tmap.get(tname);
+			reflist = (Set) tmap.get(tname);
 			if(reflist == null) {
-				reflist = new HashSet();
+				reflist = new LinkedHashSet();
 				tmap.put(tname, reflist);
 			}
 			reflist.add(references[i]);
@@ -243,7 +280,7 @@ public class XmlReferenceDescriptorWriter {
 	 */
 	private void writeXML(File parent) throws CoreException, FileNotFoundException, IOException {
 		HashMap vismap = null;
-		HashMap typemap = null;
+		Map typemap = null;
 		HashMap rmap = null;
 		HashMap mmap = null;
 		Integer type = null;
@@ -281,7 +318,7 @@ public class XmlReferenceDescriptorWriter {
 					for(Iterator iter3 = vismap.entrySet().iterator(); iter3.hasNext();) {
 						Map.Entry entry4 = (Map.Entry) iter3.next();
 						type = (Integer) entry4.getKey();
-						typemap = (HashMap) entry4.getValue();
+						typemap = (Map) entry4.getValue();
 						writeGroup(id, referee, location, getRefTypeName(type.intValue()), typemap, vis.intValue());
 					}
 				}
@@ -298,14 +335,18 @@ public class XmlReferenceDescriptorWriter {
 	 * @param map
 	 * @param visibility
 	 */
-	private void writeGroup(String origin, String referee, File parent, String name, HashMap map, int visibility) throws CoreException, FileNotFoundException, IOException {
+	private void writeGroup(String origin, String referee, File parent, String name, Map map, int visibility) throws CoreException, FileNotFoundException, IOException {
 		if(parent.exists()) {
+			File out = new File(parent, name+".xml"); //$NON-NLS-1$
+			if(!out.exists()) {
+				streamGroup(origin, referee, out, name, map, visibility);
+				return;
+			}
 			BufferedWriter writer = null;
 			try {
 				Document doc = null;
 				Element root = null;
 				int count = 0;
-				File out = new File(parent, name+".xml"); //$NON-NLS-1$
 				if(out.exists()) {
 					try {
 						FileInputStream inputStream = null;
@@ -346,7 +387,7 @@ public class XmlReferenceDescriptorWriter {
 					return;
 				}
 				String tname = null;
-				HashSet refs = null;
+				Set refs = null;
 				Element telement = null;
 				for(Iterator iter = map.entrySet().iterator(); iter.hasNext();) {
 					Map.Entry entry = (Map.Entry) iter.next();
@@ -357,7 +398,7 @@ public class XmlReferenceDescriptorWriter {
 						telement.setAttribute(IApiXmlConstants.ATTR_NAME, tname);
 						root.appendChild(telement);
 					}
-					refs = (HashSet) entry.getValue();
+					refs = (Set) entry.getValue();
 					if(refs != null) {
 						for(Iterator iter2 = refs.iterator(); iter2.hasNext();) {
 							count++;
@@ -386,6 +427,160 @@ public class XmlReferenceDescriptorWriter {
 		}
 	}
 	
+	/**
+	 * Writes a new file for a group of references straight to disk, without building a document
+	 * @param origin the name of the bundle that has the references in it
+	 * @param referee the name of the bundle that is referenced
+	 * @param out the file to write
+	 * @param name
+	 * @param map
+	 * @param visibility
+	 */
+	private void streamGroup(String origin, String referee, File out, String name, Map map, int visibility) throws CoreException, IOException {
+		int count = 0;
+		for(Iterator iter = map.values().iterator(); iter.hasNext();) {
+			count += ((Set) iter.next()).size();
+		}
+		Writer writer = null;
+		try {
+			writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(out), IApiCoreConstants.UTF_8));
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n<"); //$NON-NLS-1$
+			writer.write(IApiXmlConstants.REFERENCES);
+			if (alternate != null) {
+				writeAttribute(writer, IApiXmlConstants.ATTR_ALTERNATE, getId(alternate));
+			}
+			writeAttribute(writer, IApiXmlConstants.ATTR_NAME, getFormattedTypeName(name));
+			writeAttribute(writer, IApiXmlConstants.ATTR_ORIGIN, origin);
+			writeAttribute(writer, IApiXmlConstants.ATTR_REFEREE, referee);
+			writeAttribute(writer, IApiXmlConstants.ATTR_REFERENCE_COUNT, Integer.toString(count));
+			writeAttribute(writer, IApiXmlConstants.ATTR_REFERENCE_VISIBILITY, Integer.toString(visibility));
+			writer.write(">\n"); //$NON-NLS-1$
+			for(Iterator iter = map.entrySet().iterator(); iter.hasNext();) {
+				Map.Entry entry = (Map.Entry) iter.next();
+				Set refs = (Set) entry.getValue();
+				// group the references by kind, in the order the kinds are first seen
+				LinkedHashMap kinds = new LinkedHashMap();
+				IReferenceDescriptor last = null;
+				for(Iterator iter2 = refs.iterator(); iter2.hasNext();) {
+					last = (IReferenceDescriptor) iter2.next();
+					Integer kind = new Integer(last.getReferenceKind());
+					List list = (List) kinds.get(kind);
+					if(list == null) {
+						list = new ArrayList();
+						kinds.put(kind, list);
+					}
+					list.add(last);
+				}
+				writer.write("    <"); //$NON-NLS-1$
+				writer.write(IApiXmlConstants.ELEMENT_TARGET);
+				writeAttribute(writer, IApiXmlConstants.ATTR_NAME, (String) entry.getKey());
+				if(last != null && last.getReferencedMember() != null) {
+					writeMemberDetails(writer, last.getReferencedMember());
+				}
+				writer.write(">\n"); //$NON-NLS-1$
+				for(Iterator iter2 = kinds.entrySet().iterator(); iter2.hasNext();) {
+					Map.Entry kentry = (Map.Entry) iter2.next();
+					Integer kind = (Integer) kentry.getKey();
+					List list = (List) kentry.getValue();
+					writer.write("        <"); //$NON-NLS-1$
+					writer.write(IApiXmlConstants.REFERENCE_KIND);
+					writeAttribute(writer, IApiXmlConstants.ATTR_FLAGS, Integer.toString(((IReferenceDescriptor) list.get(0)).getReferenceFlags()));
+					writeAttribute(writer, IApiXmlConstants.ATTR_KIND, kind.toString());
+					writeAttribute(writer, IApiXmlConstants.ATTR_REFERENCE_KIND_NAME, Reference.getReferenceText(kind.intValue()));
+					writer.write(">\n"); //$NON-NLS-1$
+					for(Iterator iter3 = list.iterator(); iter3.hasNext();) {
+						IReferenceDescriptor ref = (IReferenceDescriptor) iter3.next();
+						if(ref.getReferencedMember() == null) {
+							continue;
+						}
+						IMemberDescriptor member = ref.getMember();
+						writer.write("            <"); //$NON-NLS-1$
+						writer.write(IApiXmlConstants.ATTR_REFERENCE);
+						writeAttribute(writer, IApiXmlConstants.ATTR_ORIGIN, getText(member));
+						String[] messages = ref.getProblemMessages();
+						if(messages != null) {
+							writeAttribute(writer, IApiXmlConstants.ELEMENT_PROBLEM_MESSAGE_ARGUMENTS, getText(messages));
+						}
+						writeMemberDetails(writer, member);
+						writeAttribute(writer, IApiXmlConstants.ATTR_LINE_NUMBER, Integer.toString(ref.getLineNumber()));
+						writer.write("/>\n"); //$NON-NLS-1$
+					}
+					writer.write("        </"); //$NON-NLS-1$
+					writer.write(IApiXmlConstants.REFERENCE_KIND);
+					writer.write(">\n"); //$NON-NLS-1$
+				}
+				writer.write("    </"); //$NON-NLS-1$
+				writer.write(IApiXmlConstants.ELEMENT_TARGET);
+				writer.write(">\n"); //$NON-NLS-1$
+			}
+			writer.write("</"); //$NON-NLS-1$
+			writer.write(IApiXmlConstants.REFERENCES);
+			writer.write(">\n"); //$NON-NLS-1$
+			writer.flush();
+		}
+		finally {
+			if(writer != null) {
+				writer.close();
+			}
+		}
+	}
+	
+	/**
+	 * Writes the same member details as {@link #addMemberDetails(Element, IMemberDescriptor)} as attributes
+	 * of the element being written
+	 * @param writer
+	 * @param member
+	 * @throws IOException
+	 */
+	private void writeMemberDetails(Writer writer, IMemberDescriptor member) throws IOException {
+		switch (member.getElementType()) {
+		case IElementDescriptor.TYPE:
+			writeAttribute(writer, IApiXmlConstants.ATTR_TYPE, ((IReferenceTypeDescriptor)member).getQualifiedName());
+			break;
+		case IElementDescriptor.FIELD:
+			IReferenceTypeDescriptor encl = member.getEnclosingType();
+			writeAttribute(writer, IApiXmlConstants.ATTR_TYPE, encl.getQualifiedName());
+			writeAttribute(writer, IApiXmlConstants.ATTR_MEMBER_NAME, member.getName());
+			break;
+		case IElementDescriptor.METHOD:
+			encl = member.getEnclosingType();
+			writeAttribute(writer, IApiXmlConstants.ATTR_TYPE, encl.getQualifiedName());
+			writeAttribute(writer, IApiXmlConstants.ATTR_MEMBER_NAME, member.getName());
+			writeAttribute(writer, IApiXmlConstants.ATTR_SIGNATURE, ((IMethodDescriptor)member).getSignature());
+			break;
+		}
+	}
+	
+	/**
+	 * Writes an attribute with the given name and value, escaping the value as required 
+	 * @param writer
+	 * @param name
+	 * @param value the value, nothing is written if <code>null</code>
+	 * @throws IOException
+	 */
+	private void writeAttribute(Writer writer, String name, String value) throws IOException {
+		if(value == null) {
+			return;
+		}
+		writer.write(' ');
+		writer.write(name);
+		writer.write("=\""); //$NON-NLS-1$
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch(c) {
+				case '&': writer.write("&amp;"); break; //$NON-NLS-1$
+				case '<': writer.write("&lt;"); break; //$NON-NLS-1$
+				case '>': writer.write("&gt;"); break; //$NON-NLS-1$
+				case '"': writer.write("&quot;"); break; //$NON-NLS-1$
+				case '\n': writer.write("&#10;"); break; //$NON-NLS-1$
+				case '\r': writer.write("&#13;"); break; //$NON-NLS-1$
+				case '\t': writer.write("&#9;"); break; //$NON-NLS-1$
+				default: writer.write(c);
+			}
+		}
+		writer.write('"');
+	}
+	
 	/**
 	 * Add member descriptor details to the given element.
 	 * 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2011 IBM Corporation and others.
+ * Copyright (c) 2009, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -54,6 +54,13 @@ public class XmlSearchReporter implements IApiSearchReporter {
 	private int referenceCount = 0;
 	private int illegalCount = 0;
 	private int internalCount = 0;
+	/**
+	 * Writer collecting the references of the element currently being reported, the references
+	 * are written out once the element is done so that the report files of the element are only 
+	 * written once, and memory use is bounded by the references of a single element
+	 */
+	private XmlReferenceDescriptorWriter fWriter = null;
+	private IApiElement fElement = null;
 	
 	/**
 	 * Constructor
@@ -84,9 +91,15 @@ public class XmlSearchReporter implements IApiSearchReporter {
 			// This reporter does not create xml for components with no references
 			return;
 		}
+		if(fElement != element) {
+			flush();
+			fElement = element;
+		}
+		if(fWriter == null) {
+			fWriter = new XmlReferenceDescriptorWriter(fLocation);
+		}
 		// Use a hashset for counting to remove any duplicate references that the writer would remove
 		HashSet writtenReferences = new HashSet();
-		XmlReferenceDescriptorWriter writer = new XmlReferenceDescriptorWriter(fLocation);
 		List descriptors = new ArrayList(references.length + 1);
 		for (int i = 0; i < references.length; i++) {
 			Reference reference = (Reference) references[i];
@@ -112,9 +125,51 @@ public class XmlSearchReporter implements IApiSearchReporter {
 			}
 		}
 		
-		writer.writeReferences((IReferenceDescriptor[]) descriptors.toArray(new IReferenceDescriptor[descriptors.size()]));
+		fWriter.addReferences((IReferenceDescriptor[]) descriptors.toArray(new IReferenceDescriptor[descriptors.size()]));
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.eclipse.pde.api.tools.internal.provisional.search.IApiSearchReporter#reportElementDone(org.eclipse.pde.api.tools.internal.provisional.model.IApiElement)
+	 */
+	public void reportElementDone(IApiElement element) {
+		flush();
+	}
+	
+	/**
+	 * Writes out the references collected for the current element
+	 */
+	private void flush() {
+		if(fWriter != null) {
+			fWriter.flush();
+		}
+		fElement = null;
 	}
 		
+	/**
+	 * Returns a new reporter writing to the same location as this reporter. The results of a
+	 * component are written to files of their own, so shards can report the results of different 
+	 * components at the same time. The counts of a shard are added to the ones of this reporter
+	 * with {@link #merge(XmlSearchReporter)}.
+	 * 
+	 * @return a new reporter shard
+	 * @since 1.0.500
+	 */
+	public XmlSearchReporter newShard() {
+		return new XmlSearchReporter(fLocation, debug);
+	}
+	
+	/**
+	 * Adds the reference counts of the given shard to the counts of this reporter
+	 * 
+	 * @param shard a shard created with {@link #newShard()}
+	 * @since 1.0.500
+	 */
+	public synchronized void merge(XmlSearchReporter shard) {
+		referenceCount += shard.referenceCount;
+		illegalCount += shard.illegalCount;
+		internalCount += shard.internalCount;
+	}
+	
 	/**
 	 * Resolves the id to use for the component in the mapping
 	 * @param component
@@ -212,6 +267,7 @@ public class XmlSearchReporter implements IApiSearchReporter {
 	 * @see org.eclipse.pde.api.tools.internal.provisional.search.IApiSearchReporter#reportCounts()
 	 */
 	public void reportCounts(){
+		flush();
 		BufferedWriter writer = null;
 		try {
 			if(this.debug) {
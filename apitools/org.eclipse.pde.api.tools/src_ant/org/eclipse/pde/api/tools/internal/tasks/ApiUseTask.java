@@ -319,6 +319,7 @@ public final class ApiUseTask extends CommonUtilsTask {
 			}
 			
 			ApiPlugin.DEBUG_SEARCH_ENGINE = this.debug;
+			engine.setThreadCount(this.threads);
 			engine.search(baseline, requestor, reporter, null);
 		}
 		catch(CoreException ce) {
@@ -497,6 +498,7 @@ public final class ApiUseTask extends CommonUtilsTask {
 			System.out.println("Searching for API references : " + this.considerapi); //$NON-NLS-1$
 			System.out.println("Searching for internal references : " + this.considerinternal); //$NON-NLS-1$
 			System.out.println("Searching for illegal API use : "+ this.considerillegaluse); //$NON-NLS-1$
+			System.out.println("Search threads : " + this.threads); //$NON-NLS-1$
 			if (this.excludeListLocation != null) {
 				System.out.println("Exclude list location : " + this.excludeListLocation); //$NON-NLS-1$
 			} else {
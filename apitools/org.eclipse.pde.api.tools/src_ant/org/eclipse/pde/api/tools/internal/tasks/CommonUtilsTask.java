@@ -52,6 +52,31 @@ public abstract class CommonUtilsTask extends Task {
 	
 	protected String reportLocation;
 	
+	/**
+	 * The number of threads used to compare or search components
+	 */
+	protected int threads = 1;
+	
+	/**
+	 * Sets the number of threads used to compare or search components.
+	 * <p>Components are processed concurrently when more than one thread is used, the reports are the same whatever the number of threads.</p>
+	 * <p>Default is <code>1</code>.</p>
+	 * 
+	 * @param threads the number of threads
+	 * @throws BuildException if the number of threads is not a number greater than zero
+	 */
+	public void setThreads(String threads) {
+		try {
+			this.threads = Integer.parseInt(threads.trim());
+		}
+		catch(NumberFormatException nfe) {
+			this.threads = 0;
+		}
+		if(this.threads < 1) {
+			throw new BuildException(NLS.bind(Messages.ApiUseTask_invalid_thread_count, threads));
+		}
+	}
+	
 	/**
 	 * Creates a baseline with the given name and EE file location in the given directory.  The installLocation
 	 * will be searched for bundles to add as API components.
@@ -95,6 +95,7 @@ public class Messages extends NLS {
 	public static String ApiMigrationTask_scan_locatoin_same_as_report_location;
 
 	public static String ApiUseReportConversionTask_conversion_complete;
+	public static String ApiUseTask_invalid_thread_count;
 	public static String ApiUseTask_missing_baseline_argument;
 	public static String ApiUseTask_missing_report_location;
 	public static String ApiUseTask_search_engine_problem;
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2009 IBM Corporation and others.
+ * Copyright (c) 2008, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,7 +11,6 @@
 package org.eclipse.pde.internal.ds.core.builders;
 
 import java.io.StringReader;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Stack;
 
@@ -28,16 +27,14 @@ import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jface.text.BadLocationException;
-import org.eclipse.jface.text.FindReplaceDocumentAdapter;
 import org.eclipse.jface.text.IDocument;
-import org.eclipse.jface.text.IRegion;
-import org.eclipse.jface.text.Position;
 import org.eclipse.pde.internal.core.builders.CompilerFlags;
+import org.eclipse.pde.internal.core.builders.XMLOffsetIndex;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 import org.w3c.dom.Text;
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
-import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 import org.xml.sax.helpers.DefaultHandler;
@@ -49,10 +46,12 @@ public class XMLErrorReporter extends DefaultHandler {
 	public static final char F_CHILD_SEP = '>';
 
 	class ElementData {
+		int index;
 		int offset;
 		boolean fErrorNode;
 
-		public ElementData(int offset) {
+		public ElementData(int index, int offset) {
+			this.index = index;
 			this.offset = offset;
 		}
 	}
@@ -65,10 +64,9 @@ public class XMLErrorReporter extends DefaultHandler {
 	private IDocument fTextDocument;
 	private Stack fElementStack;
 	private Element fRootElement;
-	private Locator fLocator;
-	private int fHighestOffset;
 	private HashMap fOffsetTable;
-	private FindReplaceDocumentAdapter fFindReplaceAdapter;
+	private XMLOffsetIndex fOffsetIndex;
+	private int fNextElement = 0;
 
 	public XMLErrorReporter(IFile file) {
 		ITextFileBufferManager manager = FileBuffers.getTextFileBufferManager();
@@ -78,7 +76,7 @@ public class XMLErrorReporter extends DefaultHandler {
 			manager.connect(file.getFullPath(), LocationKind.NORMALIZE, null);
 			fTextDocument = manager.getTextFileBuffer(file.getFullPath(), LocationKind.NORMALIZE).getDocument();
 			manager.disconnect(file.getFullPath(), LocationKind.NORMALIZE, null);
-			fFindReplaceAdapter = new FindReplaceDocumentAdapter(fTextDocument);
+			fOffsetIndex = new XMLOffsetIndex(fTextDocument.get());
 			fOffsetTable = new HashMap();
 			fElementStack = new Stack();
 			removeFileMarkers();
@@ -193,10 +191,12 @@ public class XMLErrorReporter extends DefaultHandler {
 		else
 			((Element) fElementStack.peek()).appendChild(element);
 		fElementStack.push(element);
-		try {
-			if (fTextDocument != null)
-				fOffsetTable.put(element, new ElementData(getStartOffset(qName)));
-		} catch (BadLocationException e) {
+		if (fOffsetIndex != null) {
+			int index = fOffsetIndex.find(fNextElement, qName);
+			if (index != -1) {
+				fOffsetTable.put(element, new ElementData(index, fOffsetIndex.getStartOffset(index)));
+				fNextElement = index + 1;
+			}
 		}
 	}
 
@@ -219,109 +219,26 @@ public class XMLErrorReporter extends DefaultHandler {
 	 * @see org.xml.sax.helpers.DefaultHandler#characters(char[], int, int)
 	 */
 	public void characters(char[] characters, int start, int length) throws SAXException {
-		StringBuffer buff = new StringBuffer();
-		for (int i = 0; i < length; i++) {
-			buff.append(characters[start + i]);
+		Node parent = fRootElement == null ? (Node) fXMLDocument : (Node) fElementStack.peek();
+		Node last = parent.getLastChild();
+		if (last instanceof Text) {
+			// the parser may report the text of a node in several chunks
+			((Text) last).appendData(new String(characters, start, length));
+		} else {
+			parent.appendChild(fXMLDocument.createTextNode(new String(characters, start, length)));
 		}
-		Text text = fXMLDocument.createTextNode(buff.toString());
-		if (fRootElement == null)
-			fXMLDocument.appendChild(text);
-		else
-			((Element) fElementStack.peek()).appendChild(text);
-	}
-
-	/* (non-Javadoc)
-	 * @see org.xml.sax.helpers.DefaultHandler#setDocumentLocator(org.xml.sax.Locator)
-	 */
-	public void setDocumentLocator(Locator locator) {
-		fLocator = locator;
-	}
-
-	private int getStartOffset(String elementName) throws BadLocationException {
-		int line = fLocator.getLineNumber();
-		int col = fLocator.getColumnNumber();
-		if (col < 0)
-			col = fTextDocument.getLineLength(line);
-		String text = fTextDocument.get(fHighestOffset + 1, fTextDocument.getLineOffset(line) - fHighestOffset - 1);
-
-		ArrayList commentPositions = new ArrayList();
-		for (int idx = 0; idx < text.length();) {
-			idx = text.indexOf("<!--", idx); //$NON-NLS-1$
-			if (idx == -1)
-				break;
-			int end = text.indexOf("-->", idx); //$NON-NLS-1$
-			if (end == -1)
-				break;
-
-			commentPositions.add(new Position(idx, end - idx));
-			idx = end + 1;
-		}
-
-		int idx = 0;
-		for (; idx < text.length(); idx += 1) {
-			idx = text.indexOf("<" + elementName, idx); //$NON-NLS-1$
-			if (idx == -1)
-				break;
-			boolean valid = true;
-			for (int i = 0; i < commentPositions.size(); i++) {
-				Position pos = (Position) commentPositions.get(i);
-				if (pos.includes(idx)) {
-					valid = false;
-					break;
-				}
-			}
-			if (valid)
-				break;
-		}
-		if (idx > -1)
-			fHighestOffset += idx + 1;
-		return fHighestOffset;
-	}
-
-	private int getAttributeOffset(String name, String value, int offset) throws BadLocationException {
-		IRegion nameRegion = fFindReplaceAdapter.find(offset, name + "=\"" + getWritableString(value), true, false, false, false); //$NON-NLS-1$
-		if (nameRegion != null) {
-			return nameRegion.getOffset();
-		}
-		return -1;
-	}
-
-	private String getWritableString(String source) {
-		StringBuffer buf = new StringBuffer();
-		for (int i = 0; i < source.length(); i++) {
-			char c = source.charAt(i);
-			switch (c) {
-				case '&' :
-					buf.append("&amp;"); //$NON-NLS-1$
-					break;
-				case '<' :
-					buf.append("&lt;"); //$NON-NLS-1$
-					break;
-				case '>' :
-					buf.append("&gt;"); //$NON-NLS-1$
-					break;
-				case '\'' :
-					buf.append("&apos;"); //$NON-NLS-1$
-					break;
-				case '\"' :
-					buf.append("&quot;"); //$NON-NLS-1$
-					break;
-				default :
-					buf.append(c);
-					break;
-			}
-		}
-		return buf.toString();
 	}
 
 	protected String getTextContent(Element element) {
 		ElementData data = (ElementData) fOffsetTable.get(element);
-		try {
-			IRegion nameRegion = fFindReplaceAdapter.find(data.offset, "</" + element.getNodeName() + ">", true, true, false, false); //$NON-NLS-1$ //$NON-NLS-2$
-			int offset = data.offset + element.getNodeName().length() + 2;
-			if (nameRegion != null)
-				return fTextDocument.get(offset, nameRegion.getOffset() - offset).trim();
-		} catch (BadLocationException e) {
+		if (data != null) {
+			int end = fOffsetIndex.getEndOffset(data.index);
+			int offset = fOffsetIndex.getContentOffset(data.index);
+			try {
+				if (end != -1)
+					return fTextDocument.get(offset, end - offset).trim();
+			} catch (BadLocationException e) {
+			}
 		}
 		return null;
 	}
@@ -337,11 +254,13 @@ public class XMLErrorReporter extends DefaultHandler {
 
 	protected int getLine(Element element, String attName) {
 		ElementData data = (ElementData) fOffsetTable.get(element);
-		try {
-			int offset = getAttributeOffset(attName, element.getAttribute(attName), data.offset);
-			if (offset != -1)
-				return fTextDocument.getLineOfOffset(offset) + 1;
-		} catch (BadLocationException e) {
+		if (data != null) {
+			try {
+				int offset = fOffsetIndex.getAttributeOffset(data.index, attName);
+				if (offset != -1)
+					return fTextDocument.getLineOfOffset(offset) + 1;
+			} catch (BadLocationException e) {
+			}
 		}
 		return getLine(element);
 	}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2012 IBM Corporation and others.
+ * Copyright (c) 2007, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -21,45 +21,203 @@ public class BundleValidationOperation implements IWorkspaceRunnable {
 
 	private static StateObjectFactory FACTORY;
 
+	/**
+	 * Maximum number of validation states kept in the cache
+	 */
+	private static final int CACHE_SIZE = 8;
+
+	/**
+	 * Resolved validation states keyed by the cache key of the operation that created them,
+	 * the least recently used state is dropped once the cache is full
+	 */
+	private static final Map<Object, ValidationState> fgCache = new LinkedHashMap<Object, ValidationState>(CACHE_SIZE, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<Object, ValidationState> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	/**
+	 * A resolved validation state along with the bundle descriptions of the models it was
+	 * created from, so that it can be brought up to date with the next set of models by only
+	 * replacing the bundles that changed.
+	 */
+	private static class ValidationState {
+		/**
+		 * The PDE state the bundle descriptions of the models belong to. When the target
+		 * changes, every description is replaced and the validation state is rebuilt.
+		 */
+		final State source;
+		final State state;
+		Dictionary<?, ?>[] properties;
+		/**
+		 * Maps the models added to the state to their description at the time they were added
+		 */
+		final Map<IPluginModelBase, BundleDescription> sources = new HashMap<IPluginModelBase, BundleDescription>();
+		/**
+		 * Maps the models added to the state to the copy of their description in the state
+		 */
+		final Map<IPluginModelBase, BundleDescription> copies = new HashMap<IPluginModelBase, BundleDescription>();
+
+		ValidationState(State source, Dictionary<?, ?>[] properties) {
+			this.source = source;
+			this.state = FACTORY.createState(true);
+			this.properties = properties;
+			state.setPlatformProperties(properties);
+		}
+
+		/**
+		 * Adds a copy of the description of the given model to the state
+		 * 
+		 * @return whether the copy was added, it is not if the state already holds a bundle with the same id
+		 */
+		boolean add(IPluginModelBase model, BundleDescription bundle) {
+			BundleDescription copy = FACTORY.createBundleDescription(bundle);
+			if (!state.addBundle(copy))
+				return false;
+			sources.put(model, bundle);
+			copies.put(model, copy);
+			return true;
+		}
+
+		void remove(IPluginModelBase model) {
+			sources.remove(model);
+			state.removeBundle(copies.remove(model));
+		}
+	}
+
 	private IPluginModelBase[] fModels;
 	private Dictionary<?, ?>[] fProperties;
+	private Object fCacheKey;
 	private State fState;
+	private Map<BundleDescription, Object[]> fResolverErrors;
+	private boolean fHasErrors;
 
 	public BundleValidationOperation(IPluginModelBase[] models) {
 		this(models, new Dictionary[] {TargetPlatformHelper.getTargetEnvironment()});
 	}
 
 	public BundleValidationOperation(IPluginModelBase[] models, Dictionary<?, ?>[] properties) {
+		this(models, properties, null);
+	}
+
+	/**
+	 * Creates an operation that reuses the state resolved by the last operation created with
+	 * the same cache key. Only the bundles whose model was added, removed or changed since
+	 * are replaced in the cached state before it is re-resolved incrementally.
+	 * <p>
+	 * The cached state is only used by one operation at a time: the resolver errors are collected
+	 * while the operation runs and {@link #getState()} returns a copy of the cached state, so the
+	 * results of an operation are not affected by the next operation with the same key.
+	 * </p>
+	 * 
+	 * @param models the models to validate
+	 * @param properties the platform properties to resolve the models with
+	 * @param cacheKey the key of the cached state, or <code>null</code> to always create a new state
+	 */
+	public BundleValidationOperation(IPluginModelBase[] models, Dictionary<?, ?>[] properties, Object cacheKey) {
 		fModels = models;
 		fProperties = properties;
+		fCacheKey = cacheKey;
 	}
 
 	public void run(IProgressMonitor monitor) throws CoreException {
 		if (FACTORY == null)
 			FACTORY = Platform.getPlatformAdmin().getFactory();
 		monitor.beginTask("", fModels.length + 1); //$NON-NLS-1$
-		fState = FACTORY.createState(true);
+		State source = TargetPlatformHelper.getState();
+		ValidationState cached = null;
+		if (fCacheKey != null) {
+			// take the cached state out of the cache while it is updated
+			synchronized (fgCache) {
+				cached = fgCache.remove(fCacheKey);
+			}
+		}
+		if (cached == null || cached.source != source || !update(cached, monitor)) {
+			cached = new ValidationState(source, fProperties);
+			for (int i = 0; i < fModels.length; i++) {
+				BundleDescription bundle = fModels[i].getBundleDescription();
+				if (bundle != null)
+					cached.add(fModels[i], bundle);
+				monitor.worked(1);
+			}
+			cached.state.resolve(false);
+		}
+		// collect the results while no other operation can update the cached state
+		fResolverErrors = collectResolverErrors(cached.state);
+		fHasErrors = hasErrors(cached.state);
+		if (fCacheKey != null) {
+			fState = FACTORY.createState(cached.state);
+			synchronized (fgCache) {
+				fgCache.put(fCacheKey, cached);
+			}
+		} else {
+			fState = cached.state;
+		}
+		monitor.done();
+	}
+
+	/**
+	 * Brings the given cached state up to date with the models and platform properties of this
+	 * operation and re-resolves it if anything changed.
+	 * 
+	 * @param cached the cached state
+	 * @param monitor progress monitor
+	 * @return <code>false</code> if the state could not be updated and must be rebuilt
+	 */
+	private boolean update(ValidationState cached, IProgressMonitor monitor) {
+		boolean changed = false;
+		Set<IPluginModelBase> current = new HashSet<IPluginModelBase>(fModels.length * 2);
 		for (int i = 0; i < fModels.length; i++) {
 			BundleDescription bundle = fModels[i].getBundleDescription();
-			if (bundle != null)
-				fState.addBundle(FACTORY.createBundleDescription(bundle));
+			if (bundle != null) {
+				current.add(fModels[i]);
+				// the model manager replaces the description of a model whose manifest changed
+				BundleDescription previous = cached.sources.get(fModels[i]);
+				if (previous != bundle) {
+					if (previous != null)
+						cached.remove(fModels[i]);
+					if (!cached.add(fModels[i], bundle))
+						return false;
+					changed = true;
+				}
+			}
 			monitor.worked(1);
 		}
-		fState.setPlatformProperties(fProperties);
-		fState.resolve(false);
-		monitor.done();
+		if (cached.sources.size() > current.size()) {
+			IPluginModelBase[] models = cached.sources.keySet().toArray(new IPluginModelBase[cached.sources.size()]);
+			for (int i = 0; i < models.length; i++) {
+				if (!current.contains(models[i])) {
+					cached.remove(models[i]);
+					changed = true;
+				}
+			}
+		}
+		if (!Arrays.equals(cached.properties, fProperties)) {
+			cached.properties = fProperties;
+			cached.state.setPlatformProperties(fProperties);
+			cached.state.resolve(false);
+		} else if (changed || !cached.state.isResolved()) {
+			cached.state.resolve(true);
+		}
+		return true;
 	}
 
 	public Map<BundleDescription, Object[]> getResolverErrors() {
+		return new HashMap<BundleDescription, Object[]>(fResolverErrors);
+	}
+
+	private static Map<BundleDescription, Object[]> collectResolverErrors(State state) {
 		Set<String> alreadyDuplicated = new HashSet<String>();
 		Map<BundleDescription, Object[]> map = new HashMap<BundleDescription, Object[]>();
-		BundleDescription[] bundles = fState.getBundles();
+		BundleDescription[] bundles = state.getBundles();
 		for (int i = 0; i < bundles.length; i++) {
 			BundleDescription desc = bundles[i];
 			if (!desc.isResolved()) {
-				map.put(desc, fState.getResolverErrors(desc));
+				map.put(desc, state.getResolverErrors(desc));
 			} else if (desc.isSingleton() && !alreadyDuplicated.contains(desc.getSymbolicName())) {
-				BundleDescription[] dups = fState.getBundles(desc.getSymbolicName());
+				BundleDescription[] dups = state.getBundles(desc.getSymbolicName());
 				if (dups.length > 1) {
 					// more than 1 singleton present
 					alreadyDuplicated.add(desc.getSymbolicName());
@@ -74,19 +232,30 @@ public class BundleValidationOperation implements IWorkspaceRunnable {
 		return map;
 	}
 
+	/**
+	 * Returns the state the models were validated in. The state of an operation with a cache key
+	 * is a copy of the cached state: it holds copies of the validated bundles but is not resolved,
+	 * the resolution is only available through {@link #getResolverErrors()} and {@link #hasErrors()}.
+	 * 
+	 * @return the validation state
+	 */
 	public State getState() {
 		return fState;
 	}
 
 	public boolean hasErrors() {
-		if (fState.getHighestBundleId() > -1) {
-			BundleDescription[] bundles = fState.getBundles();
+		return fHasErrors;
+	}
+
+	private static boolean hasErrors(State state) {
+		if (state.getHighestBundleId() > -1) {
+			BundleDescription[] bundles = state.getBundles();
 			for (int i = 0; i < bundles.length; i++) {
 				BundleDescription desc = bundles[i];
 				if (!desc.isResolved()) {
 					return true;
 				} else if (desc.isSingleton()) {
-					BundleDescription[] dups = fState.getBundles(desc.getSymbolicName());
+					BundleDescription[] dups = state.getBundles(desc.getSymbolicName());
 					if (dups.length > 1) {
 						// more than one singleton
 						return true;
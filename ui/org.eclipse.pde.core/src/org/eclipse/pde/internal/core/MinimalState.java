@@ -23,6 +23,21 @@ import org.osgi.framework.Constants;
 
 public class MinimalState {
 
+	/**
+	 * Manifest contents read from a bundle location, before the bundle is added to a state
+	 */
+	protected static class BundleManifest {
+		final File location;
+		final Map<String, String> manifest;
+		final boolean hasBundleStructure;
+
+		BundleManifest(File location, Map<String, String> manifest, boolean hasBundleStructure) {
+			this.location = location;
+			this.manifest = manifest;
+			this.hasBundleStructure = hasBundleStructure;
+		}
+	}
+
 	protected State fState;
 
 	protected long fId;
@@ -109,6 +124,20 @@ public class MinimalState {
 	}
 
 	public BundleDescription addBundle(File bundleLocation, long bundleId) throws PluginConversionException, CoreException {
+		return addBundle(readBundleManifest(bundleLocation), bundleId);
+	}
+
+	/**
+	 * Reads the manifest of the bundle at the given location, converting a <code>plugin.xml</code>
+	 * or <code>fragment.xml</code> if the bundle has no OSGi manifest.  This method does not
+	 * modify any state and may be called from several threads at once.
+	 * 
+	 * @param bundleLocation root location of the bundle
+	 * @return the manifest read from the bundle
+	 * @throws PluginConversionException if a legacy plug-in could not be converted
+	 * @throws CoreException if no manifest could be found at the location
+	 */
+	protected static BundleManifest readBundleManifest(File bundleLocation) throws PluginConversionException, CoreException {
 		Map<String, String> manifest = PDEStateHelper.loadManifest(bundleLocation);
 		// update for development mode
 		TargetWeaver.weaveManifest(manifest);
@@ -118,7 +147,19 @@ public class MinimalState {
 			if (manifest == null || manifest.get(Constants.BUNDLE_SYMBOLICNAME) == null)
 				throw new CoreException(new Status(IStatus.ERROR, PDECore.PLUGIN_ID, IStatus.ERROR, "Error parsing plug-in manifest file at " + bundleLocation.toString(), null)); //$NON-NLS-1$
 		}
-		BundleDescription desc = addBundle(manifest, bundleLocation, bundleId);
+		return new BundleManifest(bundleLocation, manifest, hasBundleStructure);
+	}
+
+	/**
+	 * Adds a bundle described by a previously read manifest to the state.
+	 * 
+	 * @param bundle manifest read with {@link #readBundleManifest(File)}
+	 * @param bundleId the id to use for the bundle or <code>-1</code> to assign the next available id
+	 * @return the added bundle description or <code>null</code> if the manifest is not valid
+	 */
+	protected BundleDescription addBundle(BundleManifest bundle, long bundleId) {
+		Map<String, String> manifest = bundle.manifest;
+		BundleDescription desc = addBundle(manifest, bundle.location, bundleId);
 		if (desc != null && manifest != null && "true".equals(manifest.get(ICoreConstants.ECLIPSE_SYSTEM_BUNDLE))) { //$NON-NLS-1$
 			// if this is the system bundle then 
 			// indicate that the javaProfile has changed since the new system
@@ -127,7 +168,7 @@ public class MinimalState {
 			fSystemBundle = desc.getSymbolicName();
 		}
 		if (desc != null) {
-			addAuxiliaryData(desc, manifest, hasBundleStructure);
+			addAuxiliaryData(desc, manifest, bundle.hasBundleStructure);
 		}
 		return desc;
 	}
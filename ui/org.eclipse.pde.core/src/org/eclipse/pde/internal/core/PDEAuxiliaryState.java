@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2012 IBM Corporation and others.
+ * Copyright (c) 2006, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -367,6 +367,14 @@ public class PDEAuxiliaryState {
 		return result;
 	}
 
+	/**
+	 * Removes the auxiliary information stored for the given bundle.
+	 * @param bundleID id of the bundle description
+	 */
+	protected void removeAuxiliaryData(long bundleID) {
+		fPluginInfos.remove(Long.toString(bundleID));
+	}
+
 	/**
 	 * Clears the plugin info object map.
 	 */
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.internal.core;
+
+import java.util.*;
+import org.eclipse.core.runtime.*;
+import org.eclipse.core.runtime.spi.IDynamicExtensionRegistry;
+import org.eclipse.core.runtime.spi.RegistryContributor;
+
+/**
+ * Inverted index of the contributions made to a {@link PDEExtensionRegistry}. The index maps
+ * every extension point ID to the extensions contributed to it, whether or not the point is
+ * declared, and every contributor to the extensions and extension points it contributes.
+ * <p>
+ * The index is kept up to date by the {@link PDERegistryStrategy} as contributions are added to
+ * and removed from the registry. It is not thread safe, callers synchronize access to it.
+ * </p>
+ */
+class PDEExtensionIndex {
+
+	private static final IExtension[] NO_EXTENSIONS = new IExtension[0];
+	private static final IExtensionPoint[] NO_EXTENSION_POINTS = new IExtensionPoint[0];
+
+	/**
+	 * The extensions and extension points of a contributor
+	 */
+	private static class Contribution {
+		IExtension[] extensions = NO_EXTENSIONS;
+		/**
+		 * Unique identifiers of the points of the extensions. They are recorded when the contribution
+		 * is indexed because the extensions can no longer be accessed once it is removed from the registry.
+		 */
+		String[] pointIds;
+		IExtensionPoint[] points = NO_EXTENSION_POINTS;
+	}
+
+	/**
+	 * Contributions keyed by contributor ID
+	 */
+	private Map<String, Contribution> fContributions = new HashMap<String, Contribution>();
+
+	/**
+	 * Extensions contributed to every extension point, keyed by the unique identifier of the point
+	 */
+	private Map<String, List<IExtension>> fExtensionsByPoint = new HashMap<String, List<IExtension>>();
+
+	/**
+	 * Creates the index of all contributions made to the given registry
+	 *
+	 * @param registry the registry
+	 */
+	PDEExtensionIndex(IExtensionRegistry registry) {
+		if (registry instanceof IDynamicExtensionRegistry) {
+			IContributor[] contributors = ((IDynamicExtensionRegistry) registry).getAllContributors();
+			for (int i = 0; i < contributors.length; i++)
+				add(registry, contributors[i]);
+		}
+	}
+
+	/**
+	 * Indexes the contributions of the given contributor, replacing the ones
+	 * indexed for it before, if any
+	 *
+	 * @param registry the registry
+	 * @param contributor the contributor
+	 */
+	void add(IExtensionRegistry registry, IContributor contributor) {
+		String id = getId(contributor);
+		remove(id);
+		Contribution contribution = new Contribution();
+		contribution.extensions = registry.getExtensions(contributor);
+		contribution.pointIds = new String[contribution.extensions.length];
+		for (int i = 0; i < contribution.extensions.length; i++) {
+			String pointId = contribution.extensions[i].getExtensionPointUniqueIdentifier();
+			contribution.pointIds[i] = pointId;
+			List<IExtension> list = fExtensionsByPoint.get(pointId);
+			if (list == null) {
+				list = new ArrayList<IExtension>(2);
+				fExtensionsByPoint.put(pointId, list);
+			}
+			list.add(contribution.extensions[i]);
+		}
+		contribution.points = registry.getExtensionPoints(contributor);
+		if (contribution.extensions.length > 0 || contribution.points.length > 0)
+			fContributions.put(id, contribution);
+	}
+
+	/**
+	 * Removes the contributions of the given contributor from the index
+	 *
+	 * @param contributor the contributor
+	 */
+	void remove(IContributor contributor) {
+		remove(getId(contributor));
+	}
+
+	private void remove(String id) {
+		Contribution contribution = fContributions.remove(id);
+		if (contribution == null)
+			return;
+		for (int i = 0; i < contribution.extensions.length; i++) {
+			List<IExtension> list = fExtensionsByPoint.get(contribution.pointIds[i]);
+			if (list != null) {
+				list.remove(contribution.extensions[i]);
+				if (list.isEmpty())
+					fExtensionsByPoint.remove(contribution.pointIds[i]);
+			}
+		}
+	}
+
+	/**
+	 * Returns the extensions contributed to the given extension point,
+	 * including extensions to an extension point that is not declared
+	 *
+	 * @param pointId the unique identifier of the extension point
+	 * @return the extensions contributed to the point
+	 */
+	IExtension[] getExtensions(String pointId) {
+		List<IExtension> list = fExtensionsByPoint.get(pointId);
+		return list == null ? NO_EXTENSIONS : list.toArray(new IExtension[list.size()]);
+	}
+
+	/**
+	 * @param contributor the contributor
+	 * @return the extensions contributed by the given contributor
+	 */
+	IExtension[] getExtensions(IContributor contributor) {
+		Contribution contribution = fContributions.get(getId(contributor));
+		return contribution == null ? NO_EXTENSIONS : contribution.extensions;
+	}
+
+	/**
+	 * @param contributor the contributor
+	 * @return the extension points contributed by the given contributor
+	 */
+	IExtensionPoint[] getExtensionPoints(IContributor contributor) {
+		Contribution contribution = fContributions.get(getId(contributor));
+		return contribution == null ? NO_EXTENSION_POINTS : contribution.points;
+	}
+
+	private static String getId(IContributor contributor) {
+		// the names of the contributors of different versions of a bundle are the same, their ids are not
+		if (contributor instanceof RegistryContributor)
+			return ((RegistryContributor) contributor).getActualId();
+		return contributor.getName();
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2012 IBM Corporation and others.
+ * Copyright (c) 2006, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -33,6 +33,8 @@ public class PDEExtensionRegistry {
 	private PDERegistryStrategy fStrategy = null;
 
 	private IPluginModelBase[] fModels = null;
+	private PDEExtensionIndex fIndex = null; // index of the contributions made to fRegistry, null until needed
+	private Object fIndexLock = new Object();
 	private ArrayList<IRegistryChangeListener> fListeners = new ArrayList<IRegistryChangeListener>();
 
 	private static final String EXTENSION_DIR = ".extensions"; //$NON-NLS-1$
@@ -89,6 +91,51 @@ public class PDEExtensionRegistry {
 		return RegistryFactory.createRegistry(fStrategy, fMasterKey, fUserKey);
 	}
 
+	/**
+	 * Returns the index of the contributions made to the registry, creating the registry
+	 * and indexing its contents if needed
+	 */
+	private PDEExtensionIndex getIndex() {
+		IExtensionRegistry registry = getRegistry();
+		synchronized (fIndexLock) {
+			if (fIndex == null)
+				fIndex = new PDEExtensionIndex(registry);
+			return fIndex;
+		}
+	}
+
+	/**
+	 * Discards the index of the registry, it is recreated the next time it is needed
+	 */
+	private void disposeIndex() {
+		synchronized (fIndexLock) {
+			fIndex = null;
+		}
+	}
+
+	/**
+	 * Called by the registry strategy after the contribution of the given contributor
+	 * was added to the registry
+	 */
+	void contributionAdded(IExtensionRegistry registry, IContributor contributor) {
+		synchronized (fIndexLock) {
+			// the contribution is indexed along with all others when the index is created
+			if (fIndex != null)
+				fIndex.add(registry, contributor);
+		}
+	}
+
+	/**
+	 * Called by the registry strategy after the contribution of the given contributor
+	 * was removed from the registry
+	 */
+	void contributionRemoved(IContributor contributor) {
+		synchronized (fIndexLock) {
+			if (fIndex != null)
+				fIndex.remove(contributor);
+		}
+	}
+
 	public void targetReloaded() {
 		// stop old registry (which will write contents to FS) and delete the cache it creates
 		// might see if we can dispose of a registry without writing to file system.  NOTE: Don't call stop() because we want to still reuse fStrategy
@@ -96,24 +143,32 @@ public class PDEExtensionRegistry {
 			fRegistry.stop(fMasterKey);
 		CoreUtility.deleteContent(new File(PDECore.getDefault().getStateLocation().toFile(), EXTENSION_DIR));
 		fRegistry = null;
+		disposeIndex();
 	}
 
 	// dispose of registry without writing contents.
 	public void dispose() {
 		fStrategy.dispose();
 		fRegistry = null;
+		disposeIndex();
 	}
 
 	// Methods to access data in Extension Registry
 
 	public IPluginModelBase[] findExtensionPlugins(String pointId, boolean activeOnly) {
 		IExtensionPoint point = getExtensionPoint(pointId);
+		HashSet<IPluginModelBase> plugins = new HashSet<IPluginModelBase>();
 		if (point == null) {
-			// if extension point for extension does not exist, search all plug-ins manually
-			return activeOnly ? PluginRegistry.getActiveModels() : PluginRegistry.getAllModels();
+			// if extension point for extension does not exist, look up the plug-ins contributing to it in the index
+			IExtension[] exts = getDanglingExtensions(pointId);
+			for (int i = 0; i < exts.length; i++) {
+				IPluginModelBase base = getPlugin(exts[i].getContributor(), true);
+				if (base != null && isIncluded(base, activeOnly))
+					plugins.add(base);
+			}
+			return plugins.toArray(new IPluginModelBase[plugins.size()]);
 		}
 		IExtension[] exts = point.getExtensions();
-		HashSet<IPluginModelBase> plugins = new HashSet<IPluginModelBase>();
 		for (int i = 0; i < exts.length; i++) {
 			IPluginModelBase base = getPlugin(exts[i].getContributor(), false);
 			if (base != null && !plugins.contains(base) && (!activeOnly || base.isEnabled()))
@@ -172,7 +227,7 @@ public class PDEExtensionRegistry {
 		IContributor contributor = fStrategy.createContributor(base);
 		if (contributor == null)
 			return new IPluginExtension[0];
-		IExtension[] extensions = getRegistry().getExtensions(fStrategy.createContributor(base));
+		IExtension[] extensions = getExtensions(contributor);
 		ArrayList<PluginExtension> list = new ArrayList<PluginExtension>();
 		for (int i = 0; i < extensions.length; i++) {
 			PluginExtension extension = new PluginExtension(extensions[i]);
@@ -187,7 +242,7 @@ public class PDEExtensionRegistry {
 		IContributor contributor = fStrategy.createContributor(base);
 		if (contributor == null)
 			return new IPluginExtensionPoint[0];
-		IExtensionPoint[] extensions = getRegistry().getExtensionPoints(fStrategy.createContributor(base));
+		IExtensionPoint[] extensions = getExtensionPoints(contributor);
 		ArrayList<PluginExtensionPoint> list = new ArrayList<PluginExtensionPoint>();
 		for (int i = 0; i < extensions.length; i++) {
 			PluginExtensionPoint point = new PluginExtensionPoint(extensions[i]);
@@ -217,21 +272,50 @@ public class PDEExtensionRegistry {
 					list.add(extensions[i]);
 			}
 		} else {
-			IPluginModelBase[] bases = activeOnly ? PluginRegistry.getActiveModels() : PluginRegistry.getAllModels();
-			for (int i = 0; i < bases.length; i++) {
-				IContributor contributor = fStrategy.createContributor(bases[i]);
-				if (contributor == null)
-					continue;
-				IExtension[] extensions = getRegistry().getExtensions(contributor);
-				for (int j = 0; j < extensions.length; j++) {
-					if (extensions[j].getExtensionPointUniqueIdentifier().equals(extensionPointId))
-						list.add(extensions[j]);
-				}
+			IExtension[] extensions = getDanglingExtensions(extensionPointId);
+			for (int i = 0; i < extensions.length; i++) {
+				IPluginModelBase base = getPlugin(extensions[i].getContributor(), true);
+				if (base != null && isIncluded(base, activeOnly))
+					list.add(extensions[i]);
 			}
 		}
 		return list.toArray(new IExtension[list.size()]);
 	}
 
+	private IExtension[] getDanglingExtensions(String pointId) {
+		PDEExtensionIndex index = getIndex();
+		synchronized (fIndexLock) {
+			return index.getExtensions(pointId);
+		}
+	}
+
+	private IExtension[] getExtensions(IContributor contributor) {
+		PDEExtensionIndex index = getIndex();
+		synchronized (fIndexLock) {
+			return index.getExtensions(contributor);
+		}
+	}
+
+	private IExtensionPoint[] getExtensionPoints(IContributor contributor) {
+		PDEExtensionIndex index = getIndex();
+		synchronized (fIndexLock) {
+			return index.getExtensionPoints(contributor);
+		}
+	}
+
+	/*
+	 * Returns whether the given model is one of the active models, or one of all models, of the
+	 * plug-in registry. A target model is hidden by a workspace model with the same ID.
+	 */
+	private boolean isIncluded(IPluginModelBase base, boolean activeOnly) {
+		if (base.getUnderlyingResource() != null)
+			return true;
+		if (activeOnly && !base.isEnabled())
+			return false;
+		ModelEntry entry = PluginRegistry.findEntry(base.getPluginBase().getId());
+		return entry != null && !entry.hasWorkspaceModels();
+	}
+
 	// make sure we return the right IPluginModelBase when we have multiple versions of a plug-in Id
 	private IPluginModelBase getPlugin(IContributor icontributor, boolean searchAll) {
 		if (!(icontributor instanceof RegistryContributor))
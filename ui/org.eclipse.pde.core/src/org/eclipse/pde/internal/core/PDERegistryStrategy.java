@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2012 IBM Corporation and others.
+ * Copyright (c) 2007, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -80,6 +80,7 @@ public class PDERegistryStrategy extends RegistryStrategy {
 						for (int j = 0; j < contributors.length; j++) {
 							if (removedEntries[i].getId().equals(contributors[j].getName())) {
 								registry.removeContributor(contributors[j], fKey);
+								fPDERegistry.contributionRemoved(contributors[j]);
 								break;
 							}
 						}
@@ -207,6 +208,8 @@ public class PDERegistryStrategy extends RegistryStrategy {
 			}
 			if (is != null) {
 				registry.addContribution(new BufferedInputStream(is), contributor, true, input.getPath(), null, fKey);
+				// contributions with problems are partially added, index whatever the registry holds
+				fPDERegistry.contributionAdded(registry, contributor);
 			}
 		} catch (IOException e) {
 		} finally {
@@ -224,6 +227,7 @@ public class PDERegistryStrategy extends RegistryStrategy {
 			IContributor contributor = createContributor(base);
 			if (contributor != null && ((IDynamicExtensionRegistry) registry).hasContributor(contributor)) {
 				((IDynamicExtensionRegistry) registry).removeContributor(createContributor(base), fKey);
+				fPDERegistry.contributionRemoved(contributor);
 			}
 		}
 	}
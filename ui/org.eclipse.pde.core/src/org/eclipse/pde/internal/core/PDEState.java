@@ -15,6 +15,7 @@ import java.io.*;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.*;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.*;
@@ -31,13 +32,37 @@ import org.eclipse.pde.internal.core.util.CoreUtility;
 
 public class PDEState extends MinimalState {
 
+	/**
+	 * Upper bound on the number of threads used to read bundle manifests
+	 */
+	private static final int MAX_LOADING_THREADS = 8;
+
 	private PDEAuxiliaryState fAuxiliaryState;
 
 	private ArrayList<IPluginModelBase> fTargetModels = new ArrayList<IPluginModelBase>();
 	private ArrayList<IPluginModelBase> fWorkspaceModels = new ArrayList<IPluginModelBase>();
 	private boolean fCombined;
-	private long fTargetTimestamp;
+	private long fTargetKey;
 	private boolean fNewState;
+	private TargetStateIndex fTargetIndex = new TargetStateIndex();
+	// whether the target state was changed since it was read from the cache
+	private boolean fTargetStateChanged;
+	// whether only the fingerprints recorded in the target index changed since it was read from the cache
+	private boolean fTargetIndexChanged;
+
+	/**
+	 * Receives the bundle manifests read by {@link PDEState#readBundleManifests(File[], boolean, IProgressMonitor, ManifestRequestor)}
+	 */
+	private interface ManifestRequestor {
+		/**
+		 * Called on the thread that requested the read, in the order of the locations read.
+		 * 
+		 * @param index index of the location in the locations read
+		 * @param file bundle location
+		 * @param manifest manifest read from the location or <code>null</code> if the location is not a bundle
+		 */
+		void acceptManifest(int index, File file, BundleManifest manifest);
+	}
 
 	/**
 	 * Creates a deep copy of the PDEState and its external models.  None of the workspace models are included in the copy.
@@ -46,7 +71,7 @@ public class PDEState extends MinimalState {
 	public PDEState(PDEState state) {
 		super(state);
 		fCombined = false;
-		fTargetTimestamp = state.fTargetTimestamp;
+		fTargetKey = state.fTargetKey;
 		// make sure to copy auxiliary state before trying to copy models, otherwise you will get NPEs.  Need auxiliary data to accurate create new models.
 		copyAuxiliaryState();
 		copyModels(state);
@@ -56,7 +81,7 @@ public class PDEState extends MinimalState {
 		// always read the state instead of copying over contents of current state.  If current state has not been reloaded, it will
 		// not contain any data from the target plug-ins.
 		fAuxiliaryState = new PDEAuxiliaryState();
-		fAuxiliaryState.readPluginInfoCache(new File(DIR, Long.toString(fTargetTimestamp) + ".target")); //$NON-NLS-1$
+		fAuxiliaryState.readPluginInfoCache(new File(DIR, Long.toString(fTargetKey) + ".target")); //$NON-NLS-1$
 	}
 
 	private void copyModels(PDEState state) {
@@ -116,20 +141,24 @@ public class PDEState extends MinimalState {
 	}
 
 	private void readTargetState(URL[] urls, IProgressMonitor monitor) {
-		fTargetTimestamp = computeTimestamp(urls);
+		fTargetKey = computeTargetKey(urls);
 		if (DEBUG) {
-			System.out.println("Timestamp of " + urls.length + " target URLS: " + fTargetTimestamp); //$NON-NLS-1$ //$NON-NLS-2$
+			System.out.println("Cache key of " + urls.length + " target URLS: " + fTargetKey); //$NON-NLS-1$ //$NON-NLS-2$
 		}
-		File dir = new File(DIR, Long.toString(fTargetTimestamp) + ".target"); //$NON-NLS-1$
-		if ((fState = readStateCache(dir)) == null || !fAuxiliaryState.readPluginInfoCache(dir)) {
+		File dir = new File(DIR, Long.toString(fTargetKey) + ".target"); //$NON-NLS-1$
+		// if this set of bundles was never cached, start from the last cached target and apply the differences
+		File cacheDir = TargetStateIndex.exists(dir) ? dir : findLatestTargetCache();
+		TargetStateIndex index = null;
+		if (cacheDir == null || (fState = readStateCache(cacheDir)) == null || !fAuxiliaryState.readPluginInfoCache(cacheDir) || (index = TargetStateIndex.read(cacheDir)) == null) {
 			if (DEBUG) {
 				System.out.println("Creating new state, persisted state did not exist"); //$NON-NLS-1$
 			}
+			fAuxiliaryState.clear();
 			createNewTargetState(true, urls, monitor);
 			resolveState(false);
 		} else {
 			if (DEBUG) {
-				System.out.println("Restored previously persisted state"); //$NON-NLS-1$
+				System.out.println("Restored previously persisted state from: " + cacheDir.getName()); //$NON-NLS-1$
 			}
 			// get the system bundle from the State
 			if (fState.getPlatformProperties() != null && fState.getPlatformProperties().length > 0) {
@@ -138,32 +167,289 @@ public class PDEState extends MinimalState {
 					fSystemBundle = systemBundle;
 			}
 
+			fId = fState.getHighestBundleId();
+			boolean bundlesChanged = refreshTargetState(urls, index, monitor);
+			fTargetStateChanged = bundlesChanged || !cacheDir.equals(dir);
 			boolean propertiesChanged = initializePlatformProperties();
 			fState.setResolver(Platform.getPlatformAdmin().createResolver());
-			if (propertiesChanged)
+			if (propertiesChanged || bundlesChanged)
 				fState.resolve(false);
-			fId = fState.getHighestBundleId();
+			fId = Math.max(fId, fState.getHighestBundleId());
+		}
+	}
+
+	/**
+	 * Brings a target state restored from the cache up to date with the given bundle locations.
+	 * Only the bundles whose location was added, removed or whose manifest changed since the
+	 * cache was written are removed from or added to the state.  A location that was touched
+	 * but whose manifest headers did not change keeps its bundle description, only its new
+	 * fingerprint is recorded in the target index.  The manifests of the locations that need
+	 * to be compared are read in parallel, see {@link #readBundleManifests(File[], boolean, IProgressMonitor, ManifestRequestor)}.
+	 * 
+	 * @param urls locations of the bundles in the target
+	 * @param index index read with the cached state
+	 * @param monitor progress monitor
+	 * @return whether any bundle was added to or removed from the state
+	 */
+	private boolean refreshTargetState(URL[] urls, TargetStateIndex index, IProgressMonitor monitor) {
+		final boolean[] changed = new boolean[] {false};
+		monitor.beginTask("", urls.length); //$NON-NLS-1$
+		try {
+			List<File> toRead = new ArrayList<File>();
+			final List<TargetStateIndex.Entry> entries = new ArrayList<TargetStateIndex.Entry>();
+			for (int i = 0; i < urls.length; i++) {
+				File file = new File(urls[i].getFile());
+				String location = file.getAbsolutePath();
+				TargetStateIndex.Entry entry = index.remove(location);
+				if (!file.exists()) {
+					if (entry != null && entry.bundleId != TargetStateIndex.NO_BUNDLE) {
+						removeTargetBundle(entry.bundleId);
+						changed[0] = true;
+					}
+					monitor.worked(1);
+				} else if (entry != null && entry.matches(file)) {
+					fTargetIndex.put(location, entry);
+					monitor.worked(1);
+				} else {
+					toRead.add(file);
+					entries.add(entry);
+				}
+			}
+			// the cached state must stay consistent with the index, so reading is not canceled half way
+			readBundleManifests(toRead.toArray(new File[toRead.size()]), false, monitor, new ManifestRequestor() {
+				public void acceptManifest(int index, File file, BundleManifest manifest) {
+					TargetStateIndex.Entry entry = entries.get(index);
+					if (manifest == null) {
+						changed[0] |= markNotABundle(file, entry);
+						return;
+					}
+					String digest = TargetStateIndex.digest(manifest.manifest);
+					if (entry != null && digest.equals(entry.digest)) {
+						// touched but unchanged, only record the new fingerprint
+						fTargetIndex.put(file, digest, entry.bundleId);
+						fTargetIndexChanged = true;
+						return;
+					}
+					if (DEBUG) {
+						System.out.println("Updating target bundle: " + file.getAbsolutePath()); //$NON-NLS-1$
+					}
+					if (entry != null)
+						removeTargetBundle(entry.bundleId);
+					addTargetBundle(file, manifest);
+					changed[0] = true;
+				}
+			});
+			// whatever is left in the index is no longer part of the target
+			for (Iterator<String> iter = index.getLocations().iterator(); iter.hasNext();) {
+				TargetStateIndex.Entry entry = index.get(iter.next());
+				if (entry.bundleId != TargetStateIndex.NO_BUNDLE) {
+					removeTargetBundle(entry.bundleId);
+					changed[0] = true;
+				}
+			}
+		} finally {
+			monitor.done();
 		}
+		return changed[0];
+	}
+
+	/**
+	 * Records that the given location could not be loaded as a bundle, removing the bundle
+	 * previously created for it.
+	 * 
+	 * @param file bundle location
+	 * @param entry previous index entry for the location or <code>null</code>
+	 * @return whether a bundle was removed from the state
+	 */
+	private boolean markNotABundle(File file, TargetStateIndex.Entry entry) {
+		indexNotABundle(file);
+		if (entry != null && entry.bundleId != TargetStateIndex.NO_BUNDLE) {
+			removeTargetBundle(entry.bundleId);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Records an existing location that could not be loaded as a bundle in the target index,
+	 * so that it is not read again until it changes.
+	 * 
+	 * @param file bundle location
+	 */
+	private void indexNotABundle(File file) {
+		if (file.exists())
+			fTargetIndex.put(file, "", TargetStateIndex.NO_BUNDLE); //$NON-NLS-1$
+	}
+
+	private void removeTargetBundle(long bundleId) {
+		if (bundleId == TargetStateIndex.NO_BUNDLE)
+			return;
+		BundleDescription desc = fState.getBundle(bundleId);
+		if (desc != null)
+			fState.removeBundle(desc);
+		fAuxiliaryState.removeAuxiliaryData(bundleId);
+	}
+
+	/**
+	 * Adds the bundle with the given manifest to the state and records it in the target index.
+	 * 
+	 * @param file bundle location
+	 * @param manifest manifest read from the location
+	 * @return the added bundle description or <code>null</code>
+	 */
+	private BundleDescription addTargetBundle(File file, BundleManifest manifest) {
+		BundleDescription desc = addBundle(manifest, -1);
+		fTargetIndex.put(file, TargetStateIndex.digest(manifest.manifest), desc == null ? TargetStateIndex.NO_BUNDLE : desc.getBundleId());
+		return desc;
+	}
+
+	/**
+	 * Returns the most recently written target state cache directory that has an index,
+	 * or <code>null</code> if there is none.
+	 * 
+	 * @return cache directory or <code>null</code>
+	 */
+	private File findLatestTargetCache() {
+		File[] children = new File(DIR).listFiles();
+		File latest = null;
+		long modified = Long.MIN_VALUE;
+		if (children != null) {
+			for (int i = 0; i < children.length; i++) {
+				File child = children[i];
+				if (child.isDirectory() && child.getName().endsWith(".target") && TargetStateIndex.exists(child)) { //$NON-NLS-1$
+					if (child.lastModified() > modified) {
+						modified = child.lastModified();
+						latest = child;
+					}
+				}
+			}
+		}
+		return latest;
 	}
 
 	private void createNewTargetState(boolean resolve, URL[] urls, IProgressMonitor monitor) {
 		fState = stateObjectFactory.createState(resolve);
 		monitor.beginTask("", urls.length); //$NON-NLS-1$
+		File[] files = new File[urls.length];
 		for (int i = 0; i < urls.length; i++) {
-			File file = new File(urls[i].getFile());
+			files[i] = new File(urls[i].getFile());
+		}
+		boolean completed = readBundleManifests(files, true, monitor, new ManifestRequestor() {
+			public void acceptManifest(int index, File file, BundleManifest manifest) {
+				if (manifest == null)
+					indexNotABundle(file);
+				else
+					addTargetBundle(file, manifest);
+			}
+		});
+		if (completed)
+			fNewState = true;
+	}
+
+	/**
+	 * Returns the number of threads to use to read bundle manifests when creating or refreshing
+	 * a target state.  Can be set with the <code>pde.stateLoadingThreads</code> system property,
+	 * a value of <code>1</code> loads all bundles on the calling thread.
+	 * 
+	 * @param bundleCount number of bundles that will be loaded
+	 * @return number of threads to use
+	 */
+	private int getLoadingThreadCount(int bundleCount) {
+		int threads = Math.min(Runtime.getRuntime().availableProcessors(), MAX_LOADING_THREADS);
+		String property = System.getProperty("pde.stateLoadingThreads"); //$NON-NLS-1$
+		if (property != null) {
 			try {
-				if (monitor.isCanceled())
+				threads = Integer.parseInt(property.trim());
+			} catch (NumberFormatException e) {
+			}
+		}
+		return Math.max(1, Math.min(threads, bundleCount));
+	}
+
+	/**
+	 * Reads and converts the bundle manifests at the given locations, on a bounded pool of worker
+	 * threads when more than one thread is configured (see {@link #getLoadingThreadCount(int)}).
+	 * The manifests are handed to the requestor on the calling thread in the order of the given
+	 * locations, so bundle ids are assigned exactly as they would be when loading serially.
+	 * 
+	 * @param files locations of the bundles to read
+	 * @param cancelable whether the read stops when the monitor is canceled
+	 * @param monitor progress monitor, one unit of work is reported per location
+	 * @param requestor receives the manifest read for each location
+	 * @return <code>false</code> if the operation was canceled, <code>true</code> otherwise
+	 */
+	private boolean readBundleManifests(File[] files, boolean cancelable, IProgressMonitor monitor, ManifestRequestor requestor) {
+		int threads = getLoadingThreadCount(files.length);
+		if (threads <= 1) {
+			for (int i = 0; i < files.length; i++) {
+				if (cancelable && monitor.isCanceled())
 					// if canceled, stop loading bundles
-					return;
-				monitor.subTask(file.getName());
-				addBundle(file, -1);
-			} catch (PluginConversionException e) {
-			} catch (CoreException e) {
-			} finally {
+					return false;
+				monitor.subTask(files[i].getName());
+				BundleManifest manifest = null;
+				try {
+					manifest = readBundleManifest(files[i]);
+				} catch (PluginConversionException e) {
+				} catch (CoreException e) {
+				}
+				requestor.acceptManifest(i, files[i], manifest);
 				monitor.worked(1);
 			}
+			return true;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "PDE State Loader"); //$NON-NLS-1$
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		try {
+			List<Future<BundleManifest>> manifests = new ArrayList<Future<BundleManifest>>(files.length);
+			for (int i = 0; i < files.length; i++) {
+				final File file = files[i];
+				manifests.add(executor.submit(new Callable<BundleManifest>() {
+					public BundleManifest call() throws Exception {
+						return readBundleManifest(file);
+					}
+				}));
+			}
+			boolean interrupted = false;
+			try {
+				for (int i = 0; i < files.length; i++) {
+					if (cancelable && monitor.isCanceled())
+						// if canceled, stop loading bundles
+						return false;
+					monitor.subTask(files[i].getName());
+					BundleManifest manifest = null;
+					while (true) {
+						try {
+							manifest = manifests.get(i).get();
+							break;
+						} catch (ExecutionException e) {
+							Throwable cause = e.getCause();
+							// unreadable bundles are skipped, same as when loading serially
+							if (!(cause instanceof PluginConversionException) && !(cause instanceof CoreException))
+								PDECore.log(cause);
+							break;
+						} catch (InterruptedException e) {
+							interrupted = true;
+							if (cancelable)
+								return false;
+							// the requestor must see every location, wait for the read to complete
+						}
+					}
+					requestor.acceptManifest(i, files[i], manifest);
+					monitor.worked(1);
+				}
+				return true;
+			} finally {
+				if (interrupted)
+					Thread.currentThread().interrupt();
+			}
+		} finally {
+			executor.shutdownNow();
 		}
-		fNewState = true;
 	}
 
 	protected void addAuxiliaryData(BundleDescription desc, Map<String, String> manifest, boolean hasBundleStructure) {
@@ -263,6 +549,23 @@ public class PDEState extends MinimalState {
 		return computeTimestamp(urls, 0);
 	}
 
+	/**
+	 * Computes the key of the target state cache for the given bundle locations, only
+	 * locations that exist are taken into account.
+	 * 
+	 * @param urls bundle locations
+	 * @return cache key
+	 */
+	private long computeTargetKey(URL[] urls) {
+		List<String> locations = new ArrayList<String>(urls.length);
+		for (int i = 0; i < urls.length; i++) {
+			File file = new File(urls[i].getFile());
+			if (file.exists())
+				locations.add(file.getAbsolutePath());
+		}
+		return TargetStateIndex.computeKey(locations);
+	}
+
 	private long computeTimestamp(URL[] urls, long timestamp) {
 		List<URL> sorted = new ArrayList<URL>(urls.length);
 		for (int i = 0; i < urls.length; i++) {
@@ -363,7 +666,16 @@ public class PDEState extends MinimalState {
 	 * Saves state associated with the external PDE target. 
 	 */
 	public void saveExternalState() {
-		IPluginModelBase[] models = PluginRegistry.getExternalModels();
+		saveTargetState(PluginRegistry.getExternalModels());
+	}
+
+	/**
+	 * Saves the target state made of the given models, along with the target index.  When only
+	 * the fingerprints of touched but unchanged bundles were updated, only the index is written.
+	 * 
+	 * @param models the target models to save
+	 */
+	public void saveTargetState(IPluginModelBase[] models) {
 		URL[] urls = new URL[models.length];
 		for (int i = 0; i < urls.length; i++) {
 			try {
@@ -375,12 +687,12 @@ public class PDEState extends MinimalState {
 				return;
 			}
 		}
-		fTargetTimestamp = computeTimestamp(urls);
-		File dir = new File(DIR, Long.toString(fTargetTimestamp) + ".target"); //$NON-NLS-1$
+		fTargetKey = computeTargetKey(urls);
+		File dir = new File(DIR, Long.toString(fTargetKey) + ".target"); //$NON-NLS-1$
 
 		boolean osgiStateExists = dir.exists() && dir.isDirectory();
 		boolean auxStateExists = fAuxiliaryState.exists(dir);
-		if (!osgiStateExists || !auxStateExists) {
+		if (!osgiStateExists || !auxStateExists || !TargetStateIndex.exists(dir) || fTargetStateChanged) {
 			if (!dir.exists())
 				dir.mkdirs();
 			if (DEBUG) {
@@ -394,6 +706,15 @@ public class PDEState extends MinimalState {
 			}
 			fAuxiliaryState.savePluginInfo(dir);
 			saveState(state, dir);
+			fTargetIndex.write(dir);
+			fTargetStateChanged = false;
+			fTargetIndexChanged = false;
+		} else if (fTargetIndexChanged) {
+			if (DEBUG) {
+				System.out.println("Saving target index to: " + dir.getAbsolutePath()); //$NON-NLS-1$
+			}
+			fTargetIndex.write(dir);
+			fTargetIndexChanged = false;
 		} else if (DEBUG) {
 			System.out.println("External state unchanged, save skipped."); //$NON-NLS-1$
 		}
@@ -421,7 +742,7 @@ public class PDEState extends MinimalState {
 			saveState(state, dir);
 			PDEAuxiliaryState.writePluginInfo(models, dir);
 		}
-		clearStaleStates(".target", fTargetTimestamp); //$NON-NLS-1$
+		clearStaleStates(".target", fTargetKey); //$NON-NLS-1$
 		clearStaleStates(".workspace", timestamp); //$NON-NLS-1$
 		clearStaleStates(".cache", 0); //$NON-NLS-1$
 	}
@@ -515,20 +836,21 @@ public class PDEState extends MinimalState {
 		for (int i = 0; i < newBundleURLs.length; i++) {
 			File file = new File(newBundleURLs[i].getFile());
 			try {
-				BundleDescription desc = addBundle(file, -1);
+				BundleDescription desc = addTargetBundle(file, readBundleManifest(file));
 				if (desc != null)
 					descriptions.add(desc);
 			} catch (PluginConversionException e) {
 			} catch (CoreException e) {
 			}
 		}
-		// compute Timestamp and save all new information
-		fTargetTimestamp = computeTimestamp(newBundleURLs, fTargetTimestamp);
-		File dir = new File(DIR, Long.toString(fTargetTimestamp) + ".target"); //$NON-NLS-1$
+		// compute the cache key and save all new information
+		fTargetKey = TargetStateIndex.computeKey(fTargetIndex.getLocations());
+		File dir = new File(DIR, Long.toString(fTargetKey) + ".target"); //$NON-NLS-1$
 		if (!dir.exists())
 			dir.mkdirs();
 		fAuxiliaryState.savePluginInfo(dir);
 		saveState(dir);
+		fTargetIndex.write(dir);
 
 		// resolve state - same steps as when populating a new State
 		resolveState(false);
@@ -537,7 +859,7 @@ public class PDEState extends MinimalState {
 	}
 
 	public File getTargetDirectory() {
-		return new File(DIR, Long.toString(fTargetTimestamp) + ".target"); //$NON-NLS-1$
+		return new File(DIR, Long.toString(fTargetKey) + ".target"); //$NON-NLS-1$
 	}
 
 }
@@ -37,8 +37,8 @@ public class PDEStateHelper {
 	 * Parses a bundle's manifest into a dictionary. The bundle may be in a jar
 	 * or in a directory at the specified location.
 	 * 
-	 * Note: Used by org.eclipse.pde.api.tools.internal.model.BundleComponent.getManifest()
-	 * and may be called without OSGi running.
+	 * Note: Used by {@link TargetPlatformHelper} and {@link MinimalState} when creating
+	 * states and may be called without OSGi running.
 	 * 
 	 * @param bundleLocation root location of the bundle
 	 * @return bundle manifest dictionary or <code>null</code> if none
@@ -96,7 +96,11 @@ public class PDEStateHelper {
 			return null;
 		}
 
-		Dictionary<String, String> converted = converter.convertManifest(bundleLocation, false, null, false, null);
+		Dictionary<String, String> converted;
+		// the converter keeps per conversion state, bundles may be loaded from several threads
+		synchronized (converter) {
+			converted = converter.convertManifest(bundleLocation, false, null, false, null);
+		}
 		if (converted == null) {
 			return null;
 		}
@@ -110,7 +114,7 @@ public class PDEStateHelper {
 		return manifest;
 	}
 
-	private static PluginConverter acquirePluginConverter() {
+	private static synchronized PluginConverter acquirePluginConverter() {
 		if (fConverter == null) {
 			PDECore activator = PDECore.getDefault();
 			if (activator != null) {
@@ -155,6 +155,9 @@ public class PluginModelManager implements IModelProviderListener {
 	private ArrayList<IPluginModelListener> fListeners; // a list of listeners interested in changes to the plug-in models
 	private ArrayList<IStateDeltaListener> fStateListeners; // a list of listeners interested in changes to the PDE/resolver State
 
+	private volatile PluginModelSnapshot fSnapshot; // a snapshot of the master table, null until requested after a change
+	private long fGeneration; // incremented every time a batch of changes has been applied to the master table
+
 	/**
 	 * Initialize the workspace and external (target) model manager
 	 * and add listeners to each one
@@ -259,10 +262,10 @@ public class PluginModelManager implements IModelProviderListener {
 				handleChange((IPluginModelBase) changed[i], delta);
 		}
 
+		StateDelta stateDelta = null;
 		if (fState != null) {
 			// if the target location has not changed, incrementally re-resolve the state after processing all the add/remove/modify changes
 			// Otherwise, the state is in a good resolved state
-			StateDelta stateDelta = null;
 			if ((e.getEventTypes() & IModelProviderEvent.TARGET_CHANGED) == 0) {
 				if ((e.getEventTypes() & IModelProviderEvent.ENVIRONMENT_CHANGED) != 0) {
 					// environment has changed, do complete resolution
@@ -277,11 +280,16 @@ public class PluginModelManager implements IModelProviderListener {
 					}
 				}
 			}
+		}
+
+		// the master table and the state are up to date, readers get a new snapshot from now on
+		invalidateSnapshot();
+
+		if (fState != null) {
 			// trigger a classpath update for all workspace plug-ins affected by the
 			// processed batch of changes
 			updateAffectedEntries(stateDelta, e);
 			fireStateDelta(stateDelta);
-
 		}
 
 		// notify all interested listeners in the changes made to the master table of entries
@@ -577,6 +585,53 @@ public class PluginModelManager implements IModelProviderListener {
 		}
 	}
 
+	/**
+	 * Returns an immutable snapshot of the master table. The snapshot is taken the first time
+	 * it is requested after a batch of model changes and is shared until the next batch is applied.
+	 *
+	 * @return a snapshot of the master table
+	 */
+	public PluginModelSnapshot getSnapshot() {
+		PluginModelSnapshot snapshot = fSnapshot;
+		if (snapshot != null)
+			return snapshot;
+		Map<String, LocalModelEntry> entries = getEntryTable();
+		long generation;
+		synchronized (this) {
+			if (fSnapshot != null)
+				return fSnapshot;
+			generation = fGeneration;
+		}
+		synchronized (entries) {
+			snapshot = new PluginModelSnapshot(generation, entries.values());
+		}
+		synchronized (this) {
+			// a snapshot taken while a batch of changes was applied must not be kept
+			if (fGeneration == generation)
+				fSnapshot = snapshot;
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Returns the generation of the master table. The generation is incremented every time
+	 * a batch of model changes has been applied, data derived from a {@link PluginModelSnapshot}
+	 * of the same generation is up to date.
+	 *
+	 * @return the generation of the master table
+	 */
+	public synchronized long getGeneration() {
+		return fGeneration;
+	}
+
+	/**
+	 * Discards the current snapshot of the master table and increments its generation
+	 */
+	private synchronized void invalidateSnapshot() {
+		fGeneration++;
+		fSnapshot = null;
+	}
+
 	/**
 	 * Sets active target definition handle if not yet set. If an existing target
 	 * definition corresponds to workspace target settings, it is selected as the
@@ -885,8 +940,9 @@ public class PluginModelManager implements IModelProviderListener {
 	 * @return the plug-in model for the best match plug-in with the given ID
 	 */
 	public IPluginModelBase findModel(String id) {
-		ModelEntry entry = findEntry(id);
-		return entry == null ? null : entry.getModel();
+		if ("system.bundle".equals(id)) //$NON-NLS-1$
+			id = getSystemBundleId();
+		return id == null ? null : getSnapshot().findModel(id);
 	}
 
 	/**
@@ -951,18 +1007,11 @@ public class PluginModelManager implements IModelProviderListener {
 	 * (possibly) fragments that are checked on the Target Platform preference page.
 	 */
 	public IPluginModelBase[] getActiveModels(boolean includeFragments) {
-		int size = getEntryTable().size();
-		ArrayList<IPluginModelBase> result = new ArrayList<IPluginModelBase>(size);
-		Iterator<LocalModelEntry> iter = getEntryTable().values().iterator();
-		while (iter.hasNext()) {
-			ModelEntry entry = iter.next();
-			IPluginModelBase[] models = entry.getActiveModels();
-			for (int i = 0; i < models.length; i++) {
-				if (models[i] instanceof IPluginModel || includeFragments)
-					result.add(models[i]);
-			}
-		}
-		return result.toArray(new IPluginModelBase[result.size()]);
+		// the snapshot array is shared, callers get their own copy
+		IPluginModelBase[] models = getSnapshot().getActiveModels(includeFragments);
+		IPluginModelBase[] result = new IPluginModelBase[models.length];
+		System.arraycopy(models, 0, result, 0, models.length);
+		return result;
 	}
 
 	/**
@@ -1002,18 +1051,11 @@ public class PluginModelManager implements IModelProviderListener {
 	 * checked on the Target Platform preference page.
 	 */
 	public IPluginModelBase[] getAllModels(boolean includeFragments) {
-		int size = getEntryTable().size();
-		ArrayList<IPluginModelBase> result = new ArrayList<IPluginModelBase>(size);
-		Iterator<LocalModelEntry> iter = getEntryTable().values().iterator();
-		while (iter.hasNext()) {
-			ModelEntry entry = iter.next();
-			IPluginModelBase[] models = entry.hasWorkspaceModels() ? entry.getWorkspaceModels() : entry.getExternalModels();
-			for (int i = 0; i < models.length; i++) {
-				if (models[i] instanceof IPluginModel || includeFragments)
-					result.add(models[i]);
-			}
-		}
-		return result.toArray(new IPluginModelBase[result.size()]);
+		// the snapshot array is shared, callers get their own copy
+		IPluginModelBase[] models = getSnapshot().getAllModels(includeFragments);
+		IPluginModelBase[] result = new IPluginModelBase[models.length];
+		System.arraycopy(models, 0, result, 0, models.length);
+		return result;
 	}
 
 	/**
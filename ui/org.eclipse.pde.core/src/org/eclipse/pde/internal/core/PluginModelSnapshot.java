@@ -0,0 +1,211 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.internal.core;
+
+import java.util.*;
+import org.eclipse.osgi.service.resolver.BundleDescription;
+import org.eclipse.osgi.service.resolver.ExportPackageDescription;
+import org.eclipse.pde.core.plugin.*;
+
+/**
+ * An immutable view of the master table of the {@link PluginModelManager}, taken after the
+ * manager has processed a batch of model changes.
+ * <p>
+ * A snapshot holds the active and all models, with and without fragments, the best model for
+ * every plug-in ID and the packages exported by the active models. The arrays returned by a
+ * snapshot are shared by all its readers and must not be modified.
+ * </p>
+ * <p>
+ * The exported packages can be queried by name, or by prefix for content assist and the like.
+ * The exports of the active models are only collected the first time they are queried.
+ * </p>
+ * <p>
+ * Every batch of changes processed by the manager increments its generation. Data derived from a
+ * snapshot can be cached as long as {@link PluginModelManager#getGeneration()} returns the generation
+ * of the snapshot it was derived from.
+ * </p>
+ */
+public final class PluginModelSnapshot {
+
+	private static final IPluginModelBase[] NO_MODELS = new IPluginModelBase[0];
+	private static final ExportPackageDescription[] NO_EXPORTS = new ExportPackageDescription[0];
+
+	/**
+	 * Orders the package names ignoring case, names that only differ by case are kept apart
+	 */
+	private static final Comparator<String> PACKAGE_ORDER = new Comparator<String>() {
+		public int compare(String name1, String name2) {
+			int result = String.CASE_INSENSITIVE_ORDER.compare(name1, name2);
+			return result != 0 ? result : name1.compareTo(name2);
+		}
+	};
+
+	private final long fGeneration;
+	private final IPluginModelBase[] fActiveModels;
+	private final IPluginModelBase[] fActivePlugins;
+	private final IPluginModelBase[] fAllModels;
+	private final IPluginModelBase[] fAllPlugins;
+	private final Map<String, IPluginModelBase> fModels;
+	// the exports by package name in case insensitive order, null until the exports are first queried
+	private SortedMap<String, ExportPackageDescription[]> fExports;
+
+	/**
+	 * Creates a snapshot of the given model entries. The caller must hold the lock
+	 * of the collection while the snapshot is created.
+	 *
+	 * @param generation the generation of the master table
+	 * @param entries the entries of the master table, in ID order
+	 */
+	PluginModelSnapshot(long generation, Collection<? extends ModelEntry> entries) {
+		fGeneration = generation;
+		List<IPluginModelBase> active = new ArrayList<IPluginModelBase>(entries.size());
+		List<IPluginModelBase> activePlugins = new ArrayList<IPluginModelBase>(entries.size());
+		List<IPluginModelBase> all = new ArrayList<IPluginModelBase>(entries.size());
+		List<IPluginModelBase> allPlugins = new ArrayList<IPluginModelBase>(entries.size());
+		fModels = new HashMap<String, IPluginModelBase>(entries.size() * 2);
+		for (Iterator<? extends ModelEntry> iter = entries.iterator(); iter.hasNext();) {
+			ModelEntry entry = iter.next();
+			IPluginModelBase[] models = entry.getActiveModels();
+			for (int i = 0; i < models.length; i++) {
+				active.add(models[i]);
+				if (models[i] instanceof IPluginModel)
+					activePlugins.add(models[i]);
+			}
+			models = entry.hasWorkspaceModels() ? entry.getWorkspaceModels() : entry.getExternalModels();
+			for (int i = 0; i < models.length; i++) {
+				all.add(models[i]);
+				if (models[i] instanceof IPluginModel)
+					allPlugins.add(models[i]);
+			}
+			IPluginModelBase model = entry.getModel();
+			if (model != null)
+				fModels.put(entry.getId(), model);
+		}
+		fActiveModels = toArray(active);
+		fActivePlugins = toArray(activePlugins);
+		fAllModels = toArray(all);
+		fAllPlugins = toArray(allPlugins);
+	}
+
+	private static IPluginModelBase[] toArray(List<IPluginModelBase> list) {
+		return list.isEmpty() ? NO_MODELS : list.toArray(new IPluginModelBase[list.size()]);
+	}
+
+	/**
+	 * Collects the exports of the active models the first time they are queried
+	 */
+	private synchronized void initializeExports() {
+		if (fExports != null)
+			return;
+		Map<String, List<ExportPackageDescription>> exports = new HashMap<String, List<ExportPackageDescription>>();
+		for (int i = 0; i < fActiveModels.length; i++) {
+			BundleDescription desc = fActiveModels[i].getBundleDescription();
+			if (desc == null)
+				continue;
+			ExportPackageDescription[] packages = desc.getExportPackages();
+			for (int j = 0; j < packages.length; j++) {
+				List<ExportPackageDescription> descriptions = exports.get(packages[j].getName());
+				if (descriptions == null) {
+					descriptions = new ArrayList<ExportPackageDescription>(1);
+					exports.put(packages[j].getName(), descriptions);
+				}
+				descriptions.add(packages[j]);
+			}
+		}
+		SortedMap<String, ExportPackageDescription[]> map = new TreeMap<String, ExportPackageDescription[]>(PACKAGE_ORDER);
+		for (Iterator<Map.Entry<String, List<ExportPackageDescription>>> iter = exports.entrySet().iterator(); iter.hasNext();) {
+			Map.Entry<String, List<ExportPackageDescription>> entry = iter.next();
+			List<ExportPackageDescription> list = entry.getValue();
+			map.put(entry.getKey(), list.toArray(new ExportPackageDescription[list.size()]));
+		}
+		fExports = map;
+	}
+
+	/**
+	 * Returns the generation of the master table this snapshot was taken of
+	 *
+	 * @return the generation of the snapshot
+	 */
+	public long getGeneration() {
+		return fGeneration;
+	}
+
+	/**
+	 * Returns the same models as {@link PluginModelManager#getActiveModels(boolean)}.
+	 * The returned array is shared and must not be modified.
+	 *
+	 * @param includeFragments whether fragments are included
+	 * @return the active models
+	 */
+	public IPluginModelBase[] getActiveModels(boolean includeFragments) {
+		return includeFragments ? fActiveModels : fActivePlugins;
+	}
+
+	/**
+	 * Returns the same models as {@link PluginModelManager#getAllModels(boolean)}.
+	 * The returned array is shared and must not be modified.
+	 *
+	 * @param includeFragments whether fragments are included
+	 * @return all models
+	 */
+	public IPluginModelBase[] getAllModels(boolean includeFragments) {
+		return includeFragments ? fAllModels : fAllPlugins;
+	}
+
+	/**
+	 * Returns the best match model with the given ID, as chosen by {@link ModelEntry#getModel()}
+	 *
+	 * @param id the plug-in ID
+	 * @return the best match model or <code>null</code> if there is no such model
+	 */
+	public IPluginModelBase findModel(String id) {
+		return id == null ? null : fModels.get(id);
+	}
+
+	/**
+	 * Returns the names of the packages exported by active models that start with the given
+	 * prefix, ignoring case, in case insensitive order.
+	 *
+	 * @param prefix the prefix of the package names, the empty string returns all names
+	 * @return the names of the matching exported packages, possibly empty
+	 */
+	public String[] getExportedPackages(String prefix) {
+		initializeExports();
+		// the names starting with the prefix follow the upper case prefix, which sorts before
+		// the names that are only equal to the prefix ignoring case
+		char[] start = prefix.toCharArray();
+		for (int i = 0; i < start.length; i++)
+			start[i] = Character.toUpperCase(start[i]);
+		List<String> names = new ArrayList<String>();
+		int length = prefix.length();
+		for (Iterator<String> iter = fExports.tailMap(new String(start)).keySet().iterator(); iter.hasNext();) {
+			String name = iter.next();
+			if (!name.regionMatches(true, 0, prefix, 0, length))
+				break;
+			names.add(name);
+		}
+		return names.toArray(new String[names.size()]);
+	}
+
+	/**
+	 * Returns the descriptions of the exports of the given package by active models, giving
+	 * the exporting bundles and the exported versions. The returned array is shared and must
+	 * not be modified.
+	 *
+	 * @param packageName the name of the package
+	 * @return the exports of the package, possibly empty
+	 */
+	public ExportPackageDescription[] getExports(String packageName) {
+		initializeExports();
+		ExportPackageDescription[] exports = fExports.get(packageName);
+		return exports == null ? NO_EXPORTS : exports;
+	}
+}
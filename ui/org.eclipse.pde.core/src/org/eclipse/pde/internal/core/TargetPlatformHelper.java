@@ -424,7 +424,7 @@ public class TargetPlatformHelper {
 
 	public static Map<Long, String> getPatchMap(PDEState state) {
 		HashMap<Long, String> properties = new HashMap<Long, String>();
-		IPluginModelBase[] models = PluginRegistry.getActiveModels();
+		IPluginModelBase[] models = PDECore.getDefault().getModelManager().getSnapshot().getActiveModels(true);
 		for (int i = 0; i < models.length; i++) {
 			BundleDescription desc = models[i].getBundleDescription();
 			if (desc == null)
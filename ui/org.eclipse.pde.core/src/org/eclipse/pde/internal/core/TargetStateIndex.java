@@ -0,0 +1,322 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.internal.core;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Index of the bundle locations that make up a cached target state.  For every location
+ * the index stores a fingerprint (size, modification time and a digest of the manifest
+ * headers) along with the id of the bundle description created for it in the cached state,
+ * so that changes to a target can be applied to the cached state bundle by bundle.
+ * <p>
+ * The index is persisted next to the cached state in a versioned binary file.
+ * </p>
+ */
+public class TargetStateIndex {
+
+	/**
+	 * Name of the index file in a state cache directory
+	 */
+	private static final String INDEX_FILE = ".index"; //$NON-NLS-1$
+
+	/**
+	 * Version of the index file format, an index with a different version is ignored
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * Bundle id recorded for a location that could not be loaded as a bundle
+	 */
+	public static final long NO_BUNDLE = -1;
+
+	/**
+	 * Fingerprint and bundle id recorded for a single location
+	 */
+	public static class Entry {
+		final long size;
+		final long lastModified;
+		final String digest;
+		final long bundleId;
+
+		Entry(long size, long lastModified, String digest, long bundleId) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.digest = digest;
+			this.bundleId = bundleId;
+		}
+
+		/**
+		 * Returns whether the size and modification time of the given location are the ones recorded.
+		 * A location that does not match may still have the same manifest, compare digests to know.
+		 *
+		 * @param location bundle location
+		 * @return whether the location appears unchanged
+		 */
+		public boolean matches(File location) {
+			long[] stat = stat(location);
+			return stat[0] == size && stat[1] == lastModified;
+		}
+
+		/**
+		 * @return digest of the manifest headers, see {@link TargetStateIndex#digest(Map)}
+		 */
+		public String getDigest() {
+			return digest;
+		}
+
+		/**
+		 * @return id of the bundle description created for the location or {@link TargetStateIndex#NO_BUNDLE}
+		 */
+		public long getBundleId() {
+			return bundleId;
+		}
+	}
+
+	private Map<String, Entry> fEntries = new HashMap<String, Entry>();
+
+	/**
+	 * Returns the entry recorded for the given location or <code>null</code>
+	 *
+	 * @param location absolute path of the bundle location
+	 * @return the recorded entry or <code>null</code>
+	 */
+	public Entry get(String location) {
+		return fEntries.get(location);
+	}
+
+	/**
+	 * Records the fingerprint of the given location
+	 *
+	 * @param location bundle location
+	 * @param digest digest of the bundle's manifest headers, see {@link #digest(Map)}
+	 * @param bundleId id of the bundle description for the location or {@link #NO_BUNDLE}
+	 */
+	public void put(File location, String digest, long bundleId) {
+		long[] stat = stat(location);
+		fEntries.put(location.getAbsolutePath(), new Entry(stat[0], stat[1], digest, bundleId));
+	}
+
+	/**
+	 * Records an existing entry for the given location
+	 *
+	 * @param location absolute path of the bundle location
+	 * @param entry the entry to record
+	 */
+	public void put(String location, Entry entry) {
+		fEntries.put(location, entry);
+	}
+
+	/**
+	 * Removes the entry for the given location
+	 *
+	 * @param location absolute path of the bundle location
+	 * @return the removed entry or <code>null</code>
+	 */
+	public Entry remove(String location) {
+		return fEntries.remove(location);
+	}
+
+	/**
+	 * @return the locations recorded in this index
+	 */
+	public Set<String> getLocations() {
+		return fEntries.keySet();
+	}
+
+	/**
+	 * Computes the key used to name the cache directory of a target made of the given locations.
+	 * The key only depends on the set of locations, changes to the bundles themselves are
+	 * tracked by the index entries.
+	 *
+	 * @param locations absolute paths of the bundle locations
+	 * @return the cache key
+	 */
+	public static long computeKey(Collection<String> locations) {
+		List<String> sorted = new ArrayList<String>(locations.size());
+		for (Iterator<String> iter = locations.iterator(); iter.hasNext();) {
+			sorted.add(iter.next().toLowerCase());
+		}
+		Collections.sort(sorted);
+		MessageDigest digest = getMessageDigest();
+		for (Iterator<String> iter = sorted.iterator(); iter.hasNext();) {
+			update(digest, iter.next());
+			digest.update((byte) 0);
+		}
+		byte[] hash = digest.digest();
+		long key = 0;
+		for (int i = 0; i < 8; i++) {
+			key = (key << 8) | (hash[i] & 0xFF);
+		}
+		// keep the key positive, it is used as a directory name
+		return key & Long.MAX_VALUE;
+	}
+
+	/**
+	 * Computes a digest of the given manifest headers.  Two manifests with the same headers
+	 * and values have the same digest regardless of header order or file timestamps.
+	 *
+	 * @param manifest manifest headers
+	 * @return hex encoded digest
+	 */
+	public static String digest(Map<String, String> manifest) {
+		MessageDigest digest = getMessageDigest();
+		if (manifest != null) {
+			List<String> keys = new ArrayList<String>(manifest.keySet());
+			Collections.sort(keys);
+			for (Iterator<String> iter = keys.iterator(); iter.hasNext();) {
+				String key = iter.next();
+				update(digest, key);
+				digest.update((byte) ':');
+				String value = manifest.get(key);
+				if (value != null)
+					update(digest, value);
+				digest.update((byte) '\n');
+			}
+		}
+		byte[] hash = digest.digest();
+		StringBuffer buffer = new StringBuffer(hash.length * 2);
+		for (int i = 0; i < hash.length; i++) {
+			String hex = Integer.toHexString(hash[i] & 0xFF);
+			if (hex.length() == 1)
+				buffer.append('0');
+			buffer.append(hex);
+		}
+		return buffer.toString();
+	}
+
+	/**
+	 * Returns whether a readable index exists in the given directory
+	 *
+	 * @param dir state cache directory
+	 * @return whether an index file exists
+	 */
+	public static boolean exists(File dir) {
+		return new File(dir, INDEX_FILE).isFile();
+	}
+
+	/**
+	 * Reads the index stored in the given directory.
+	 *
+	 * @param dir state cache directory
+	 * @return the index or <code>null</code> if there is no index, it is not readable or was written by another version
+	 */
+	public static TargetStateIndex read(File dir) {
+		File file = new File(dir, INDEX_FILE);
+		if (!file.isFile())
+			return null;
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if (in.readInt() != VERSION)
+				return null;
+			TargetStateIndex index = new TargetStateIndex();
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String location = in.readUTF();
+				long size = in.readLong();
+				long lastModified = in.readLong();
+				String digest = in.readUTF();
+				long bundleId = in.readLong();
+				index.fEntries.put(location, new Entry(size, lastModified, digest, bundleId));
+			}
+			return index;
+		} catch (IOException e) {
+			PDECore.log(e);
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Writes this index to the given directory
+	 *
+	 * @param dir state cache directory
+	 */
+	public void write(File dir) {
+		if (!dir.exists())
+			dir.mkdirs();
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(dir, INDEX_FILE))));
+			out.writeInt(VERSION);
+			out.writeInt(fEntries.size());
+			for (Iterator<Map.Entry<String, Entry>> iter = fEntries.entrySet().iterator(); iter.hasNext();) {
+				Map.Entry<String, Entry> mapEntry = iter.next();
+				Entry entry = mapEntry.getValue();
+				out.writeUTF(mapEntry.getKey());
+				out.writeLong(entry.size);
+				out.writeLong(entry.lastModified);
+				out.writeUTF(entry.digest);
+				out.writeLong(entry.bundleId);
+			}
+		} catch (IOException e) {
+			PDECore.log(e);
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the size and modification time of a bundle location.  For a jarred bundle these
+	 * are the ones of the jar, for a directory bundle the sizes of the manifest files are summed
+	 * up and their latest modification time is used.
+	 *
+	 * @param location bundle location
+	 * @return size and modification time
+	 */
+	public static long[] stat(File location) {
+		if (location.isFile())
+			return new long[] {location.length(), location.lastModified()};
+		long size = 0;
+		long modified = 0;
+		String[] names = new String[] {ICoreConstants.BUNDLE_FILENAME_DESCRIPTOR, ICoreConstants.PLUGIN_FILENAME_DESCRIPTOR, ICoreConstants.FRAGMENT_FILENAME_DESCRIPTOR};
+		for (int i = 0; i < names.length; i++) {
+			File file = new File(location, names[i]);
+			if (file.exists()) {
+				size += file.length();
+				modified = Math.max(modified, file.lastModified());
+			}
+		}
+		return new long[] {size, modified};
+	}
+
+	private static void update(MessageDigest digest, String value) {
+		try {
+			digest.update(value.getBytes("UTF-8")); //$NON-NLS-1$
+		} catch (UnsupportedEncodingException e) {
+			digest.update(value.getBytes());
+		}
+	}
+
+	private static MessageDigest getMessageDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform is required to support SHA-1
+			throw new IllegalStateException(e.getMessage());
+		}
+	}
+}
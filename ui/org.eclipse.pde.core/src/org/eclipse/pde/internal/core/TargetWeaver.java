@@ -58,7 +58,7 @@ public class TargetWeaver {
 	 * 
 	 * @return properties
 	 */
-	protected static Properties getDevProperties() {
+	protected static synchronized Properties getDevProperties() {
 		if (fgIsDev) {
 			if (fgDevProperties == null) {
 				fgDevProperties = new Properties();
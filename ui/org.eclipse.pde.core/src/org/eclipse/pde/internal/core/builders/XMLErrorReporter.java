@@ -1,5 +1,5 @@
 /*******************************************************************************
- *  Copyright (c) 2000, 2012 IBM Corporation and others.
+ *  Copyright (c) 2000, 2013 IBM Corporation and others.
  *  All rights reserved. This program and the accompanying materials
  *  are made available under the terms of the Eclipse Public License v1.0
  *  which accompanies this distribution, and is available at
@@ -11,7 +11,6 @@
  *******************************************************************************/
 package org.eclipse.pde.internal.core.builders;
 
-import org.eclipse.jface.text.Position;
 import org.w3c.dom.Element;
 
 import java.io.StringReader;
@@ -36,10 +35,12 @@ public class XMLErrorReporter extends DefaultHandler {
 	public static final char F_CHILD_SEP = '>';
 
 	class ElementData {
+		int index;
 		int offset;
 		boolean fErrorNode;
 
-		public ElementData(int offset) {
+		public ElementData(int index, int offset) {
+			this.index = index;
 			this.offset = offset;
 		}
 	}
@@ -60,13 +61,18 @@ public class XMLErrorReporter extends DefaultHandler {
 
 	private Element fRootElement;
 
-	private Locator fLocator;
-
-	private int fHighestOffset;
-
 	private HashMap<Element, ElementData> fOffsetTable;
 
-	private FindReplaceDocumentAdapter fFindReplaceAdapter;
+	/**
+	 * Offsets of the elements of the document, elements are matched to the index in
+	 * the order they are reported by the parser
+	 */
+	private XMLOffsetIndex fOffsetIndex;
+
+	/**
+	 * Number in the offset index of the element following the last reported element
+	 */
+	private int fNextElement = 0;
 
 	private double fSchemaVersion = 2.1;
 
@@ -78,7 +84,7 @@ public class XMLErrorReporter extends DefaultHandler {
 			manager.connect(file.getFullPath(), LocationKind.NORMALIZE, null);
 			fTextDocument = manager.getTextFileBuffer(file.getFullPath(), LocationKind.NORMALIZE).getDocument();
 			manager.disconnect(file.getFullPath(), LocationKind.NORMALIZE, null);
-			fFindReplaceAdapter = new FindReplaceDocumentAdapter(fTextDocument);
+			fOffsetIndex = new XMLOffsetIndex(fTextDocument.get());
 			fOffsetTable = new HashMap<Element, ElementData>();
 			fElementStack = new Stack<Element>();
 			removeFileMarkers();
@@ -229,10 +235,12 @@ public class XMLErrorReporter extends DefaultHandler {
 		else
 			fElementStack.peek().appendChild(element);
 		fElementStack.push(element);
-		try {
-			if (fTextDocument != null)
-				fOffsetTable.put(element, new ElementData(getStartOffset(qName)));
-		} catch (BadLocationException e) {
+		if (fOffsetIndex != null) {
+			int index = fOffsetIndex.find(fNextElement, qName);
+			if (index != -1) {
+				fOffsetTable.put(element, new ElementData(index, fOffsetIndex.getStartOffset(index)));
+				fNextElement = index + 1;
+			}
 		}
 	}
 
@@ -255,109 +263,26 @@ public class XMLErrorReporter extends DefaultHandler {
 	 * @see org.xml.sax.helpers.DefaultHandler#characters(char[], int, int)
 	 */
 	public void characters(char[] characters, int start, int length) throws SAXException {
-		StringBuffer buff = new StringBuffer();
-		for (int i = 0; i < length; i++) {
-			buff.append(characters[start + i]);
-		}
-		Text text = fXMLDocument.createTextNode(buff.toString());
-		if (fRootElement == null)
-			fXMLDocument.appendChild(text);
-		else
-			fElementStack.peek().appendChild(text);
-	}
-
-	/* (non-Javadoc)
-	 * @see org.xml.sax.helpers.DefaultHandler#setDocumentLocator(org.xml.sax.Locator)
-	 */
-	public void setDocumentLocator(Locator locator) {
-		fLocator = locator;
-	}
-
-	private int getStartOffset(String elementName) throws BadLocationException {
-		int line = fLocator.getLineNumber();
-		int col = fLocator.getColumnNumber();
-		if (col < 0)
-			col = fTextDocument.getLineLength(line);
-		String text = fTextDocument.get(fHighestOffset + 1, fTextDocument.getLineOffset(line) - fHighestOffset - 1);
-
-		ArrayList<Position> commentPositions = new ArrayList<Position>();
-		for (int idx = 0; idx < text.length();) {
-			idx = text.indexOf("<!--", idx); //$NON-NLS-1$
-			if (idx == -1)
-				break;
-			int end = text.indexOf("-->", idx); //$NON-NLS-1$
-			if (end == -1)
-				break;
-
-			commentPositions.add(new Position(idx, end - idx));
-			idx = end + 1;
-		}
-
-		int idx = 0;
-		for (; idx < text.length(); idx += 1) {
-			idx = text.indexOf("<" + elementName, idx); //$NON-NLS-1$
-			if (idx == -1)
-				break;
-			boolean valid = true;
-			for (int i = 0; i < commentPositions.size(); i++) {
-				Position pos = commentPositions.get(i);
-				if (pos.includes(idx)) {
-					valid = false;
-					break;
-				}
-			}
-			if (valid)
-				break;
-		}
-		if (idx > -1)
-			fHighestOffset += idx + 1;
-		return fHighestOffset;
-	}
-
-	private int getAttributeOffset(String name, String value, int offset) throws BadLocationException {
-		IRegion nameRegion = fFindReplaceAdapter.find(offset, name + "=\"" + getWritableString(value), true, false, false, false); //$NON-NLS-1$
-		if (nameRegion != null) {
-			return nameRegion.getOffset();
-		}
-		return -1;
-	}
-
-	private String getWritableString(String source) {
-		StringBuffer buf = new StringBuffer();
-		for (int i = 0; i < source.length(); i++) {
-			char c = source.charAt(i);
-			switch (c) {
-				case '&' :
-					buf.append("&amp;"); //$NON-NLS-1$
-					break;
-				case '<' :
-					buf.append("&lt;"); //$NON-NLS-1$
-					break;
-				case '>' :
-					buf.append("&gt;"); //$NON-NLS-1$
-					break;
-				case '\'' :
-					buf.append("&apos;"); //$NON-NLS-1$
-					break;
-				case '\"' :
-					buf.append("&quot;"); //$NON-NLS-1$
-					break;
-				default :
-					buf.append(c);
-					break;
-			}
+		Node parent = fRootElement == null ? fXMLDocument : fElementStack.peek();
+		Node last = parent.getLastChild();
+		if (last instanceof Text) {
+			// the parser may report the text of a node in several chunks
+			((Text) last).appendData(new String(characters, start, length));
+		} else {
+			parent.appendChild(fXMLDocument.createTextNode(new String(characters, start, length)));
 		}
-		return buf.toString();
 	}
 
 	protected String getTextContent(Element element) {
 		ElementData data = fOffsetTable.get(element);
-		try {
-			IRegion nameRegion = fFindReplaceAdapter.find(data.offset, "</" + element.getNodeName() + ">", true, true, false, false); //$NON-NLS-1$ //$NON-NLS-2$
-			int offset = data.offset + element.getNodeName().length() + 2;
-			if (nameRegion != null)
-				return fTextDocument.get(offset, nameRegion.getOffset() - offset).trim();
-		} catch (BadLocationException e) {
+		if (data != null) {
+			int end = fOffsetIndex.getEndOffset(data.index);
+			int offset = fOffsetIndex.getContentOffset(data.index);
+			try {
+				if (end != -1)
+					return fTextDocument.get(offset, end - offset).trim();
+			} catch (BadLocationException e) {
+			}
 		}
 		return null;
 	}
@@ -373,11 +298,13 @@ public class XMLErrorReporter extends DefaultHandler {
 
 	protected int getLine(Element element, String attName) {
 		ElementData data = fOffsetTable.get(element);
-		try {
-			int offset = getAttributeOffset(attName, element.getAttribute(attName), data.offset);
-			if (offset != -1)
-				return fTextDocument.getLineOfOffset(offset) + 1;
-		} catch (BadLocationException e) {
+		if (data != null) {
+			try {
+				int offset = fOffsetIndex.getAttributeOffset(data.index, attName);
+				if (offset != -1)
+					return fTextDocument.getLineOfOffset(offset) + 1;
+			} catch (BadLocationException e) {
+			}
 		}
 		return getLine(element);
 	}
@@ -0,0 +1,321 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.internal.core.builders;
+
+/**
+ * Offsets of the elements and attributes of an XML document, computed by tokenizing the
+ * text of the document once.
+ * <p>
+ * Elements are numbered in the order of their start tags, which is the order in which a
+ * SAX parser reports them. For every element the index records the offset of its start tag,
+ * of its content and of its end tag, along with the offsets of the names of its attributes.
+ * Comments, processing instructions, CDATA sections and declarations are skipped. The
+ * tokenizer does not validate the document, offsets are recorded up to the end of the text
+ * even if the document is not well-formed.
+ * </p>
+ */
+public class XMLOffsetIndex {
+
+	private final String fText;
+	private int fCount = 0;
+	private String[] fNames = new String[64];
+	private int[] fStarts = new int[64];
+	private int[] fContentStarts = new int[64];
+	private int[] fEnds = new int[64];
+	/**
+	 * Index in the attribute arrays of the first attribute of each element, the attributes
+	 * of an element end where the attributes of the next one start
+	 */
+	private int[] fFirstAttributes = new int[65];
+	private int fAttributeCount = 0;
+	private String[] fAttributeNames = new String[128];
+	private int[] fAttributeOffsets = new int[128];
+
+	/**
+	 * Creates the index of the given text
+	 *
+	 * @param text the text of an XML document
+	 */
+	public XMLOffsetIndex(String text) {
+		fText = text;
+		tokenize();
+	}
+
+	/**
+	 * @return the number of elements in the document
+	 */
+	public int getElementCount() {
+		return fCount;
+	}
+
+	/**
+	 * @param element the number of an element
+	 * @return the name of the element
+	 */
+	public String getName(int element) {
+		return fNames[element];
+	}
+
+	/**
+	 * @param element the number of an element
+	 * @return the offset of the <code>&lt;</code> starting the start tag of the element
+	 */
+	public int getStartOffset(int element) {
+		return fStarts[element];
+	}
+
+	/**
+	 * @param element the number of an element
+	 * @return the offset following the start tag of the element, or the end of the text
+	 * if the start tag is not closed
+	 */
+	public int getContentOffset(int element) {
+		return fContentStarts[element];
+	}
+
+	/**
+	 * @param element the number of an element
+	 * @return the offset of the <code>&lt;/</code> starting the end tag of the element, the offset
+	 * following the start tag for an empty element, or <code>-1</code> if the element is not closed
+	 */
+	public int getEndOffset(int element) {
+		return fEnds[element];
+	}
+
+	/**
+	 * Returns the offset of the name of the given attribute in the start tag of the given element
+	 *
+	 * @param element the number of an element
+	 * @param name the name of the attribute
+	 * @return the offset of the attribute or <code>-1</code> if the element has no such attribute
+	 */
+	public int getAttributeOffset(int element, String name) {
+		for (int i = fFirstAttributes[element]; i < fFirstAttributes[element + 1]; i++) {
+			if (fAttributeNames[i].equals(name))
+				return fAttributeOffsets[i];
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the number of the first element with the given name, starting at the given element
+	 *
+	 * @param from the number of the element to start at
+	 * @param name the name of the element
+	 * @return the number of the element or <code>-1</code> if there is none
+	 */
+	public int find(int from, String name) {
+		for (int i = from; i < fCount; i++) {
+			if (fNames[i].equals(name))
+				return i;
+		}
+		return -1;
+	}
+
+	private void tokenize() {
+		int length = fText.length();
+		int[] stack = new int[16];
+		int depth = 0;
+		int i = 0;
+		while (i < length) {
+			int lt = fText.indexOf('<', i);
+			if (lt == -1 || lt + 1 == length)
+				break;
+			char c = fText.charAt(lt + 1);
+			if (fText.startsWith("<!--", lt)) { //$NON-NLS-1$
+				i = skipTo("-->", lt + 4); //$NON-NLS-1$
+			} else if (fText.startsWith("<![CDATA[", lt)) { //$NON-NLS-1$
+				i = skipTo("]]>", lt + 9); //$NON-NLS-1$
+			} else if (c == '?') {
+				i = skipTo("?>", lt + 2); //$NON-NLS-1$
+			} else if (c == '!') {
+				i = skipDeclaration(lt + 2);
+			} else if (c == '/') {
+				int nameEnd = scanName(lt + 2);
+				String name = fText.substring(lt + 2, nameEnd);
+				// close the innermost open element of that name, along with any unclosed element it holds
+				for (int d = depth - 1; d >= 0; d--) {
+					if (fNames[stack[d]].equals(name)) {
+						fEnds[stack[d]] = lt;
+						depth = d;
+						break;
+					}
+				}
+				i = skipTo(">", nameEnd); //$NON-NLS-1$
+			} else {
+				int nameEnd = scanName(lt + 1);
+				if (nameEnd == lt + 1) {
+					// not a tag
+					i = lt + 1;
+					continue;
+				}
+				int element = addElement(fText.substring(lt + 1, nameEnd), lt);
+				i = scanAttributes(element, nameEnd);
+				if (fEnds[element] == -1 && fContentStarts[element] < length) {
+					if (depth == stack.length) {
+						int[] newStack = new int[depth * 2];
+						System.arraycopy(stack, 0, newStack, 0, depth);
+						stack = newStack;
+					}
+					stack[depth++] = element;
+				}
+			}
+		}
+		fFirstAttributes[fCount] = fAttributeCount;
+	}
+
+	/**
+	 * Scans the attributes of the start tag of the given element
+	 *
+	 * @param element the element
+	 * @param offset the offset following the name of the element
+	 * @return the offset following the start tag
+	 */
+	private int scanAttributes(int element, int offset) {
+		int length = fText.length();
+		int i = offset;
+		while (i < length) {
+			char c = fText.charAt(i);
+			if (c == '>') {
+				fContentStarts[element] = i + 1;
+				return i + 1;
+			}
+			if (c == '/' && i + 1 < length && fText.charAt(i + 1) == '>') {
+				fContentStarts[element] = i + 2;
+				fEnds[element] = i + 2;
+				return i + 2;
+			}
+			if (c == '<') {
+				// unterminated start tag
+				fContentStarts[element] = i;
+				return i;
+			}
+			int nameEnd = scanName(i);
+			if (nameEnd == i) {
+				i++;
+				continue;
+			}
+			addAttribute(fText.substring(i, nameEnd), i);
+			i = skipWhitespace(nameEnd);
+			if (i < length && fText.charAt(i) == '=') {
+				i = skipWhitespace(i + 1);
+				if (i < length) {
+					char quote = fText.charAt(i);
+					if (quote == '"' || quote == '\'') {
+						int close = fText.indexOf(quote, i + 1);
+						i = close == -1 ? length : close + 1;
+					}
+				}
+			}
+		}
+		fContentStarts[element] = length;
+		return length;
+	}
+
+	/**
+	 * Skips a declaration such as a <code>DOCTYPE</code>, including its internal subset
+	 *
+	 * @param offset the offset following the <code>&lt;!</code>
+	 * @return the offset following the declaration
+	 */
+	private int skipDeclaration(int offset) {
+		int length = fText.length();
+		int brackets = 0;
+		for (int i = offset; i < length; i++) {
+			char c = fText.charAt(i);
+			switch (c) {
+				case '"' :
+				case '\'' :
+					int close = fText.indexOf(c, i + 1);
+					if (close == -1)
+						return length;
+					i = close;
+					break;
+				case '[' :
+					brackets++;
+					break;
+				case ']' :
+					brackets--;
+					break;
+				case '<' :
+					if (brackets > 0 && fText.startsWith("<!--", i)) //$NON-NLS-1$
+						i = skipTo("-->", i + 4) - 1; //$NON-NLS-1$
+					break;
+				case '>' :
+					if (brackets <= 0)
+						return i + 1;
+					break;
+			}
+		}
+		return length;
+	}
+
+	private int skipTo(String delimiter, int offset) {
+		int index = fText.indexOf(delimiter, offset);
+		return index == -1 ? fText.length() : index + delimiter.length();
+	}
+
+	private int skipWhitespace(int offset) {
+		int length = fText.length();
+		while (offset < length && Character.isWhitespace(fText.charAt(offset)))
+			offset++;
+		return offset;
+	}
+
+	private int scanName(int offset) {
+		int length = fText.length();
+		while (offset < length) {
+			char c = fText.charAt(offset);
+			if (Character.isWhitespace(c) || c == '>' || c == '/' || c == '=' || c == '<' || c == '"' || c == '\'')
+				break;
+			offset++;
+		}
+		return offset;
+	}
+
+	private int addElement(String name, int start) {
+		if (fCount == fNames.length) {
+			int size = fCount * 2;
+			fNames = grow(fNames, size);
+			fStarts = grow(fStarts, size);
+			fContentStarts = grow(fContentStarts, size);
+			fEnds = grow(fEnds, size);
+			fFirstAttributes = grow(fFirstAttributes, size + 1);
+		}
+		fNames[fCount] = name;
+		fStarts[fCount] = start;
+		fEnds[fCount] = -1;
+		fFirstAttributes[fCount] = fAttributeCount;
+		return fCount++;
+	}
+
+	private void addAttribute(String name, int offset) {
+		if (fAttributeCount == fAttributeNames.length) {
+			int size = fAttributeCount * 2;
+			fAttributeNames = grow(fAttributeNames, size);
+			fAttributeOffsets = grow(fAttributeOffsets, size);
+		}
+		fAttributeNames[fAttributeCount] = name;
+		fAttributeOffsets[fAttributeCount++] = offset;
+	}
+
+	private static String[] grow(String[] array, int size) {
+		String[] result = new String[size];
+		System.arraycopy(array, 0, result, 0, array.length);
+		return result;
+	}
+
+	private static int[] grow(int[] array, int size) {
+		int[] result = new int[size];
+		System.arraycopy(array, 0, result, 0, array.length);
+		return result;
+	}
+}
@@ -73,18 +73,37 @@ public class DirectoryBundleContainer extends AbstractBundleContainer {
 			File[] files = site.listFiles();
 			SubMonitor localMonitor = SubMonitor.convert(monitor, Messages.DirectoryBundleContainer_0, files.length);
 			List<TargetBundle> bundles = new ArrayList<TargetBundle>(files.length);
+			// only files added or modified since the last scan need to be opened
+			DirectoryBundleIndex index = "true".equals(System.getProperty("pde.nocache")) ? null : DirectoryBundleIndex.read(site); //$NON-NLS-1$ //$NON-NLS-2$
 			for (int i = 0; i < files.length; i++) {
 				if (localMonitor.isCanceled()) {
 					return new TargetBundle[0];
 				}
-				try {
-					TargetBundle rb = new TargetBundle(files[i]);
-					bundles.add(rb);
-				} catch (CoreException e) {
-					// ignore files that are not valid bundles (users may have non-bundle files in their target directory)
+				DirectoryBundleIndex.Entry entry = index != null ? index.get(files[i]) : null;
+				if (entry != null) {
+					if (entry.isBundle()) {
+						bundles.add(entry.createBundle(files[i]));
+					}
+				} else {
+					try {
+						TargetBundle rb = new TargetBundle(files[i]);
+						bundles.add(rb);
+						if (index != null) {
+							index.put(files[i], rb);
+						}
+					} catch (CoreException e) {
+						// ignore files that are not valid bundles (users may have non-bundle files in their target directory)
+						if (index != null) {
+							index.putNotABundle(files[i]);
+						}
+					}
 				}
 				localMonitor.worked(1);
 			}
+			if (index != null) {
+				index.retain(files);
+				index.save();
+			}
 			localMonitor.done();
 			return bundles.toArray(new TargetBundle[bundles.size()]);
 		}
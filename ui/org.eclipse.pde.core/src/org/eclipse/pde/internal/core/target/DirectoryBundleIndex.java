@@ -0,0 +1,313 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.internal.core.target;
+
+import java.io.*;
+import java.net.URI;
+import java.util.*;
+import org.eclipse.equinox.frameworkadmin.BundleInfo;
+import org.eclipse.pde.core.target.TargetBundle;
+import org.eclipse.pde.internal.core.PDECore;
+import org.eclipse.pde.internal.core.TargetStateIndex;
+
+/**
+ * Index of the files found in the site directory of a {@link DirectoryBundleContainer}.
+ * For every file the index stores its size and modification time along with the bundle
+ * information read from its manifest, or the fact that it is not a bundle, so that a
+ * rescan of the directory only has to open the files that were added or modified since
+ * the last time the directory was resolved.
+ * <p>
+ * Indexes are persisted in the PDE core state location, one versioned binary file per
+ * site directory.
+ * </p>
+ */
+public class DirectoryBundleIndex {
+
+	/**
+	 * Name of the directory holding the indexes in the PDE core state location
+	 */
+	private static final String INDEX_DIR = ".target_index"; //$NON-NLS-1$
+
+	/**
+	 * Version of the index file format, an index with a different version is ignored
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * Information recorded for a single file of the directory
+	 */
+	public static class Entry {
+		final long size;
+		final long lastModified;
+		final boolean isBundle;
+		final String symbolicName;
+		final String version;
+		final boolean isFragment;
+		final boolean isSource;
+		final String sourceName;
+		final String sourceVersion;
+		final String sourceLocation;
+		final String sourcePath;
+
+		Entry(long size, long lastModified, boolean isBundle, String symbolicName, String version, boolean isFragment, boolean isSource, String sourceName, String sourceVersion, String sourceLocation, String sourcePath) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.isBundle = isBundle;
+			this.symbolicName = symbolicName;
+			this.version = version;
+			this.isFragment = isFragment;
+			this.isSource = isSource;
+			this.sourceName = sourceName;
+			this.sourceVersion = sourceVersion;
+			this.sourceLocation = sourceLocation;
+			this.sourcePath = sourcePath;
+		}
+
+		/**
+		 * @return whether the file was a valid bundle when it was indexed
+		 */
+		public boolean isBundle() {
+			return isBundle;
+		}
+
+		/**
+		 * Creates a new target bundle for the given file from the recorded information.
+		 * Must only be called for entries that are bundles.
+		 *
+		 * @param file the indexed file
+		 * @return a new target bundle
+		 */
+		public TargetBundle createBundle(File file) {
+			return new IndexedTargetBundle(file, this);
+		}
+	}
+
+	/**
+	 * Target bundle created from an index entry rather than from the bundle's manifest
+	 */
+	private static class IndexedTargetBundle extends TargetBundle {
+
+		IndexedTargetBundle(File file, Entry entry) {
+			fInfo = new BundleInfo(file.toURI());
+			fInfo.setSymbolicName(entry.symbolicName);
+			fInfo.setVersion(entry.version);
+			fIsFragment = entry.isFragment;
+			if (entry.isSource) {
+				URI location = entry.sourceLocation != null ? URI.create(entry.sourceLocation) : null;
+				fSourceTarget = new BundleInfo(entry.sourceName, entry.sourceVersion, location, BundleInfo.NO_LEVEL, false);
+			}
+			fSourcePath = entry.sourcePath;
+		}
+	}
+
+	private File fSite;
+	private Map<String, Entry> fEntries = new HashMap<String, Entry>();
+	private boolean fChanged = false;
+
+	private DirectoryBundleIndex(File site) {
+		fSite = site;
+	}
+
+	/**
+	 * Returns the entry recorded for the given file if the file has not changed since it was indexed
+	 *
+	 * @param file a file of the site directory
+	 * @return the entry or <code>null</code> if the file is not indexed or was modified
+	 */
+	public Entry get(File file) {
+		Entry entry = fEntries.get(file.getAbsolutePath());
+		if (entry != null) {
+			long[] stat = TargetStateIndex.stat(file);
+			if (stat[0] == entry.size && stat[1] == entry.lastModified) {
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Records the given bundle for the given file
+	 *
+	 * @param file a file of the site directory
+	 * @param bundle the bundle read from the file
+	 */
+	public void put(File file, TargetBundle bundle) {
+		long[] stat = TargetStateIndex.stat(file);
+		BundleInfo info = bundle.getBundleInfo();
+		BundleInfo source = bundle.getSourceTarget();
+		String sourceName = null;
+		String sourceVersion = null;
+		String sourceLocation = null;
+		if (source != null) {
+			sourceName = source.getSymbolicName();
+			sourceVersion = source.getVersion();
+			if (source.getLocation() != null) {
+				sourceLocation = source.getLocation().toString();
+			}
+		}
+		fEntries.put(file.getAbsolutePath(), new Entry(stat[0], stat[1], true, info.getSymbolicName(), info.getVersion(), bundle.isFragment(), source != null, sourceName, sourceVersion, sourceLocation, bundle.getSourcePath()));
+		fChanged = true;
+	}
+
+	/**
+	 * Records that the given file is not a valid bundle
+	 *
+	 * @param file a file of the site directory
+	 */
+	public void putNotABundle(File file) {
+		long[] stat = TargetStateIndex.stat(file);
+		fEntries.put(file.getAbsolutePath(), new Entry(stat[0], stat[1], false, null, null, false, false, null, null, null, null));
+		fChanged = true;
+	}
+
+	/**
+	 * Removes the entries of files that are no longer in the site directory
+	 *
+	 * @param files the files currently in the site directory
+	 */
+	public void retain(File[] files) {
+		Set<String> paths = new HashSet<String>(files.length);
+		for (int i = 0; i < files.length; i++) {
+			paths.add(files[i].getAbsolutePath());
+		}
+		if (fEntries.keySet().retainAll(paths)) {
+			fChanged = true;
+		}
+	}
+
+	/**
+	 * Returns the index of the given site directory.  Returns an empty index if the directory
+	 * was never indexed, the index is not readable or was written by another version.
+	 *
+	 * @param site the site directory
+	 * @return the index, never <code>null</code>
+	 */
+	public static DirectoryBundleIndex read(File site) {
+		DirectoryBundleIndex index = new DirectoryBundleIndex(site);
+		File file = getIndexFile(site);
+		if (!file.isFile())
+			return index;
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if (in.readInt() != VERSION || !site.getAbsolutePath().equals(in.readUTF()))
+				return index;
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String path = in.readUTF();
+				long size = in.readLong();
+				long lastModified = in.readLong();
+				boolean isBundle = in.readBoolean();
+				String symbolicName = readString(in);
+				String version = readString(in);
+				boolean isFragment = in.readBoolean();
+				boolean isSource = in.readBoolean();
+				String sourceName = readString(in);
+				String sourceVersion = readString(in);
+				String sourceLocation = readString(in);
+				String sourcePath = readString(in);
+				index.fEntries.put(path, new Entry(size, lastModified, isBundle, symbolicName, version, isFragment, isSource, sourceName, sourceVersion, sourceLocation, sourcePath));
+			}
+		} catch (IOException e) {
+			// start over with an empty index
+			index.fEntries.clear();
+			PDECore.log(e);
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Writes this index to the PDE core state location if it changed since it was read.
+	 * The index is written to a temporary file first so that concurrent resolutions of the
+	 * same directory never see a partially written index.
+	 */
+	public void save() {
+		if (!fChanged)
+			return;
+		File file = getIndexFile(fSite);
+		File dir = file.getParentFile();
+		if (!dir.exists())
+			dir.mkdirs();
+		DataOutputStream out = null;
+		File temp = null;
+		try {
+			temp = File.createTempFile(file.getName(), ".tmp", dir); //$NON-NLS-1$
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			out.writeInt(VERSION);
+			out.writeUTF(fSite.getAbsolutePath());
+			out.writeInt(fEntries.size());
+			for (Iterator<Map.Entry<String, Entry>> iter = fEntries.entrySet().iterator(); iter.hasNext();) {
+				Map.Entry<String, Entry> mapEntry = iter.next();
+				Entry entry = mapEntry.getValue();
+				out.writeUTF(mapEntry.getKey());
+				out.writeLong(entry.size);
+				out.writeLong(entry.lastModified);
+				out.writeBoolean(entry.isBundle);
+				writeString(out, entry.symbolicName);
+				writeString(out, entry.version);
+				out.writeBoolean(entry.isFragment);
+				out.writeBoolean(entry.isSource);
+				writeString(out, entry.sourceName);
+				writeString(out, entry.sourceVersion);
+				writeString(out, entry.sourceLocation);
+				writeString(out, entry.sourcePath);
+			}
+			out.close();
+			out = null;
+			file.delete();
+			if (!temp.renameTo(file)) {
+				temp.delete();
+			}
+			fChanged = false;
+		} catch (IOException e) {
+			PDECore.log(e);
+			if (temp != null)
+				temp.delete();
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+				}
+				temp.delete();
+			}
+		}
+	}
+
+	/**
+	 * Returns the file the index of the given site directory is stored in
+	 *
+	 * @param site the site directory
+	 * @return index file
+	 */
+	private static File getIndexFile(File site) {
+		long key = TargetStateIndex.computeKey(Collections.singleton(site.getAbsolutePath()));
+		File dir = new File(PDECore.getDefault().getStateLocation().toFile(), INDEX_DIR);
+		return new File(dir, Long.toString(key) + ".index"); //$NON-NLS-1$
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null)
+			out.writeUTF(value);
+	}
+}
@@ -12,6 +12,7 @@ package org.eclipse.pde.internal.core.target;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.TransformerException;
 import org.eclipse.core.runtime.*;
@@ -74,6 +75,20 @@ public class TargetDefinition implements ITargetDefinition {
 
 	private int fSequenceNumber = -1;
 
+	// time in milliseconds each location took to resolve, in location order, or null if not resolved
+	private volatile long[] fResolutionTimes;
+
+	/**
+	 * Maximum number of threads used to resolve the locations of a target
+	 */
+	private static final int MAX_RESOLUTION_THREADS = 4;
+
+	private static boolean DEBUG_RESOLUTION = false;
+
+	static {
+		DEBUG_RESOLUTION = PDECore.getDefault().isDebugging() && "true".equals(Platform.getDebugOption("org.eclipse.pde.core/target/resolution")); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
 	/**
 	 * Constructs a target definition based on the given handle. 
 	 */
@@ -210,6 +225,7 @@ public class TargetDefinition implements ITargetDefinition {
 		}
 
 		fContainers = locations;
+		fResolutionTimes = null;
 
 		if (locations == null) {
 			fIncluded = null;
@@ -231,10 +247,12 @@ public class TargetDefinition implements ITargetDefinition {
 		// Clear the feature model cache as it is based on the bundle container locations
 		fFeatures = null;
 		fOtherBundles = null;
-		if (location == null) {
-			fFeaturesInLocation.clear();
-		} else {
-			fFeaturesInLocation.remove(location);
+		synchronized (fFeaturesInLocation) {
+			if (location == null) {
+				fFeaturesInLocation.clear();
+			} else {
+				fFeaturesInLocation.remove(location);
+			}
 		}
 		if (fContainers == null) {
 			fIncluded = null;
@@ -254,14 +272,42 @@ public class TargetDefinition implements ITargetDefinition {
 		try {
 			MultiStatus status = new MultiStatus(PDECore.PLUGIN_ID, 0, Messages.TargetDefinition_2, null);
 			if (containers != null) {
-				for (int i = 0; i < containers.length; i++) {
-					if (subMonitor.isCanceled()) {
-						return Status.CANCEL_STATUS;
+				long[] times = new long[containers.length];
+				IStatus[] statuses;
+				int threads = getResolutionThreadCount(containers.length);
+				if (threads > 1) {
+					statuses = resolveConcurrently(containers, threads, times, subMonitor);
+				} else {
+					statuses = new IStatus[containers.length];
+					for (int i = 0; i < containers.length; i++) {
+						if (subMonitor.isCanceled()) {
+							return Status.CANCEL_STATUS;
+						}
+						subMonitor.subTask(Messages.TargetDefinition_4);
+						long start = System.currentTimeMillis();
+						statuses[i] = containers[i].resolve(this, subMonitor.newChild(10));
+						times[i] = System.currentTimeMillis() - start;
 					}
-					subMonitor.subTask(Messages.TargetDefinition_4);
-					IStatus s = containers[i].resolve(this, subMonitor.newChild(10));
-					if (!s.isOK()) {
-						status.add(s);
+				}
+				if (DEBUG_RESOLUTION) {
+					for (int i = 0; i < containers.length; i++) {
+						String location;
+						try {
+							location = containers[i].getLocation(false);
+						} catch (CoreException e) {
+							location = containers[i].toString();
+						}
+						System.out.println("Resolved target location " + containers[i].getType() + " " + location + " in " + times[i] + " ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+					}
+				}
+				if (statuses == null) {
+					return Status.CANCEL_STATUS;
+				}
+				fResolutionTimes = times;
+				// merge the statuses in location order, regardless of the order the locations finished in
+				for (int i = 0; i < statuses.length; i++) {
+					if (!statuses[i].isOK()) {
+						status.add(statuses[i]);
 					}
 				}
 			}
@@ -277,6 +323,149 @@ public class TargetDefinition implements ITargetDefinition {
 		}
 	}
 
+	/**
+	 * Returns the number of threads used to resolve the locations of a target.  Can be set
+	 * with the <code>pde.targetResolutionThreads</code> system property, a value of <code>1</code>
+	 * resolves all locations one after the other on the calling thread.
+	 * 
+	 * @param locationCount number of locations to resolve
+	 * @return number of threads to use
+	 */
+	private static int getResolutionThreadCount(int locationCount) {
+		int threads = MAX_RESOLUTION_THREADS;
+		String property = System.getProperty("pde.targetResolutionThreads"); //$NON-NLS-1$
+		if (property != null) {
+			try {
+				threads = Integer.parseInt(property.trim());
+			} catch (NumberFormatException e) {
+			}
+		}
+		return Math.max(1, Math.min(threads, locationCount));
+	}
+
+	/**
+	 * Resolves the given locations on a bounded pool of threads.  Each location reports its progress
+	 * through its own {@link SubMonitor} on a share of the given monitor, canceling the given monitor
+	 * cancels every location still resolving.
+	 * 
+	 * @param containers locations to resolve
+	 * @param threads number of threads to use
+	 * @param times array to store the time each location took to resolve in
+	 * @param monitor progress monitor for the whole resolution
+	 * @return the resolution status of each location in location order, or <code>null</code> if canceled
+	 */
+	private IStatus[] resolveConcurrently(final ITargetLocation[] containers, int threads, final long[] times, SubMonitor monitor) {
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "Target Location Resolver"); //$NON-NLS-1$
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		final ConcurrentProgressMonitor shared = new ConcurrentProgressMonitor(monitor);
+		final IStatus[] statuses = new IStatus[containers.length];
+		try {
+			CompletionService<Integer> completion = new ExecutorCompletionService<Integer>(executor);
+			shared.subTask(Messages.TargetDefinition_4);
+			for (int i = 0; i < containers.length; i++) {
+				final int index = i;
+				// a SubMonitor only tracks one active child, so every location converts its own share of the shared monitor
+				final SubMonitor locationMonitor = SubMonitor.convert(new SubProgressMonitor(shared, 10));
+				completion.submit(new Callable<Integer>() {
+					public Integer call() throws Exception {
+						long start = System.currentTimeMillis();
+						try {
+							statuses[index] = containers[index].resolve(TargetDefinition.this, locationMonitor);
+						} catch (RuntimeException e) {
+							statuses[index] = new Status(IStatus.ERROR, PDECore.PLUGIN_ID, e.getMessage(), e);
+						} finally {
+							times[index] = System.currentTimeMillis() - start;
+							locationMonitor.done();
+						}
+						return Integer.valueOf(index);
+					}
+				});
+			}
+			for (int i = 0; i < containers.length; i++) {
+				completion.take();
+			}
+			return shared.isCanceled() ? null : statuses;
+		} catch (InterruptedException e) {
+			shared.setCanceled(true);
+			Thread.currentThread().interrupt();
+			return null;
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Returns how long the given location took to resolve the last time this target was resolved, in
+	 * milliseconds, or <code>-1</code> if the location was not resolved as part of this target.  Shows
+	 * which of the locations of a target dominate the time it takes to load.
+	 * 
+	 * @param location a location of this target
+	 * @return resolution time in milliseconds or <code>-1</code>
+	 */
+	public long getResolutionTime(ITargetLocation location) {
+		ITargetLocation[] containers = fContainers;
+		long[] times = fResolutionTimes;
+		if (containers != null && times != null && times.length == containers.length) {
+			for (int i = 0; i < containers.length; i++) {
+				if (containers[i] == location) {
+					return times[i];
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Progress monitor shared by the locations of a target that resolve concurrently.  Calls are
+	 * forwarded to the wrapped monitor one at a time.  Canceling this monitor cancels the locations
+	 * still resolving without canceling the wrapped monitor.
+	 */
+	private static class ConcurrentProgressMonitor extends ProgressMonitorWrapper {
+
+		private volatile boolean fCanceled = false;
+
+		ConcurrentProgressMonitor(IProgressMonitor monitor) {
+			super(monitor);
+		}
+
+		public synchronized void beginTask(String name, int totalWork) {
+			super.beginTask(name, totalWork);
+		}
+
+		public synchronized void done() {
+			super.done();
+		}
+
+		public synchronized void internalWorked(double work) {
+			super.internalWorked(work);
+		}
+
+		public synchronized void setTaskName(String name) {
+			super.setTaskName(name);
+		}
+
+		public synchronized void subTask(String name) {
+			super.subTask(name);
+		}
+
+		public synchronized void worked(int work) {
+			super.worked(work);
+		}
+
+		public boolean isCanceled() {
+			return fCanceled || super.isCanceled();
+		}
+
+		public void setCanceled(boolean canceled) {
+			fCanceled = canceled;
+		}
+	}
+
 	/* (non-Javadoc)
 	 * @see org.eclipse.pde.core.target.ITargetDefinition#isResolved()
 	 */
@@ -851,7 +1040,8 @@ public class TargetDefinition implements ITargetDefinition {
 		}
 
 		TargetFeature[] models = null;
-		if (fFeaturesInLocation != null) {
+		// locations may be resolved concurrently
+		synchronized (fFeaturesInLocation) {
 			models = fFeaturesInLocation.get(path);
 		}
 
@@ -860,7 +1050,9 @@ public class TargetDefinition implements ITargetDefinition {
 		}
 
 		models = ExternalFeatureModelManager.createFeatures(path, new ArrayList<Object>(), monitor);
-		fFeaturesInLocation.put(path, models);
+		synchronized (fFeaturesInLocation) {
+			fFeaturesInLocation.put(path, models);
+		}
 		return models;
 	}
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- *  Copyright (c) 2007, 2009 IBM Corporation and others.
+ *  Copyright (c) 2007, 2013 IBM Corporation and others.
  *  All rights reserved. This program and the accompanying materials
  *  are made available under the terms of the Eclipse Public License v1.0
  *  which accompanies this distribution, and is available at
@@ -31,6 +31,13 @@ import org.osgi.framework.Constants;
 
 public abstract class LaunchValidationOperation implements IWorkspaceRunnable {
 
+	/**
+	 * Java profile properties read from the system bundle, keyed by the location of the
+	 * profile. Values are arrays holding the modification stamp of the profile and its
+	 * properties, or <code>null</code> if the system bundle has no such profile.
+	 */
+	private static final Map fgProfiles = new HashMap();
+
 	private BundleValidationOperation fOperation;
 	protected ILaunchConfiguration fLaunchConfiguration;
 
@@ -39,7 +46,9 @@ public abstract class LaunchValidationOperation implements IWorkspaceRunnable {
 	}
 
 	public void run(IProgressMonitor monitor) throws CoreException {
-		fOperation = new BundleValidationOperation(getModels(), getPlatformProperties());
+		// the state resolved for a configuration is reused by the next validation of that configuration
+		Object cacheKey = fLaunchConfiguration == null ? null : fLaunchConfiguration.getName();
+		fOperation = new BundleValidationOperation(getModels(), getPlatformProperties(), cacheKey);
 		fOperation.run(monitor);
 	}
 
@@ -99,6 +108,22 @@ public abstract class LaunchValidationOperation implements IWorkspaceRunnable {
 
 		File location = new File(model.getInstallLocation());
 		String filename = ee.replace('/', '_') + ".profile"; //$NON-NLS-1$
+		// the profile only needs to be read again if the system bundle changed
+		Long stamp = new Long(location.isDirectory() ? new File(location, filename).lastModified() : location.lastModified());
+		String key = location.getPath() + File.pathSeparatorChar + filename;
+		synchronized (fgProfiles) {
+			Object[] cached = (Object[]) fgProfiles.get(key);
+			if (cached != null && cached[0].equals(stamp))
+				return (Properties) cached[1];
+		}
+		Properties profile = readJavaProfileProperties(location, filename);
+		synchronized (fgProfiles) {
+			fgProfiles.put(key, new Object[] {stamp, profile});
+		}
+		return profile;
+	}
+
+	private Properties readJavaProfileProperties(File location, String filename) {
 		InputStream is = null;
 		ZipFile zipFile = null;
 		try {
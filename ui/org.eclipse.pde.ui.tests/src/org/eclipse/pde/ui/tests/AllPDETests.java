@@ -48,6 +48,8 @@ public class AllPDETests {
 		suite.addTest(ProjectCreationTests.suite());
 		suite.addTest(BundleRootTests.suite());
 		suite.addTest(PluginRegistryTests.suite());
+		suite.addTest(PluginModelSnapshotTests.suite());
+		suite.addTest(PDEExtensionRegistryTests.suite());
 		suite.addTest(ClasspathResolverTest.suite());
 		suite.addTest(ClasspathContributorTest.suite());
 		return suite;
@@ -21,6 +21,7 @@ public class AllLauncherTests {
 	public static Test suite() {
 		TestSuite suite = new TestSuite("Test Suite for testing launching utils"); //$NON-NLS-1$
 		suite.addTest(LaunchConfigurationHelperTestCase.suite());
+		suite.addTest(BundleValidationOperationTests.suite());
 		return suite;
 	}
 
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.ui.tests.launcher;
+
+import java.util.*;
+import junit.framework.*;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.osgi.service.resolver.BundleDescription;
+import org.eclipse.osgi.service.resolver.ResolverError;
+import org.eclipse.pde.core.plugin.IPluginModelBase;
+import org.eclipse.pde.core.plugin.PluginRegistry;
+import org.eclipse.pde.internal.core.BundleValidationOperation;
+import org.eclipse.pde.internal.core.TargetPlatformHelper;
+
+/**
+ * Tests that the validation state cached by the {@link BundleValidationOperation} resolves
+ * the same as a state created for every validation
+ */
+public class BundleValidationOperationTests extends TestCase {
+
+	private static final String CACHE_KEY = "BundleValidationOperationTests";
+
+	public static Test suite() {
+		return new TestSuite(BundleValidationOperationTests.class);
+	}
+
+	/**
+	 * Tests that a cached state updated with removed and added models reports the
+	 * same resolver errors as a new state created for the same models
+	 *
+	 * @throws Exception
+	 */
+	public void testIncrementalUpdateResolvesAsNewState() throws Exception {
+		IPluginModelBase[] all = PluginRegistry.getActiveModels();
+		IPluginModelBase[] withoutRuntime = without(all, "org.eclipse.core.runtime");
+		IPluginModelBase[] withoutOsgi = without(all, "org.eclipse.osgi");
+		Dictionary[] properties = new Dictionary[] {TargetPlatformHelper.getTargetEnvironment()};
+
+		// missing bundles are added back, then another bundle is removed
+		IPluginModelBase[][] steps = new IPluginModelBase[][] {withoutRuntime, all, withoutOsgi, withoutOsgi, all};
+		for (int i = 0; i < steps.length; i++) {
+			BundleValidationOperation cached = run(steps[i], properties, CACHE_KEY);
+			BundleValidationOperation fresh = run(steps[i], properties, null);
+			assertEquals("Wrong resolver errors at step " + i, describe(fresh.getResolverErrors()), describe(cached.getResolverErrors()));
+			assertEquals("Wrong errors at step " + i, fresh.hasErrors(), cached.hasErrors());
+			assertEquals("Wrong bundles at step " + i, fresh.getState().getBundles().length, cached.getState().getBundles().length);
+		}
+	}
+
+	/**
+	 * Tests that the results of an operation do not change when the next operation with the
+	 * same cache key updates the cached state
+	 *
+	 * @throws Exception
+	 */
+	public void testResultsUnaffectedByNextOperation() throws Exception {
+		IPluginModelBase[] all = PluginRegistry.getActiveModels();
+		Dictionary[] properties = new Dictionary[] {TargetPlatformHelper.getTargetEnvironment()};
+		BundleValidationOperation first = run(without(all, "org.eclipse.core.runtime"), properties, CACHE_KEY);
+		List errors = describe(first.getResolverErrors());
+		boolean hasErrors = first.hasErrors();
+		int bundles = first.getState().getBundles().length;
+
+		run(all, properties, CACHE_KEY);
+		assertEquals("The resolver errors of the first operation should not change", errors, describe(first.getResolverErrors()));
+		assertEquals("The errors of the first operation should not change", hasErrors, first.hasErrors());
+		assertEquals("The state of the first operation should not change", bundles, first.getState().getBundles().length);
+		assertNull("The state of the first operation should not hold the added bundle", first.getState().getBundle("org.eclipse.core.runtime", null));
+	}
+
+	private BundleValidationOperation run(IPluginModelBase[] models, Dictionary[] properties, Object cacheKey) throws Exception {
+		BundleValidationOperation operation = new BundleValidationOperation(models, properties, cacheKey);
+		operation.run(new NullProgressMonitor());
+		return operation;
+	}
+
+	private IPluginModelBase[] without(IPluginModelBase[] models, String id) {
+		List result = new ArrayList(models.length);
+		for (int i = 0; i < models.length; i++) {
+			if (!id.equals(models[i].getPluginBase().getId()))
+				result.add(models[i]);
+		}
+		assertTrue("Missing bundle " + id, result.size() < models.length);
+		return (IPluginModelBase[]) result.toArray(new IPluginModelBase[result.size()]);
+	}
+
+	/**
+	 * Returns a sorted description of the given resolver errors that does not depend on the
+	 * state the bundle descriptions belong to
+	 */
+	private List describe(Map errors) {
+		List result = new ArrayList(errors.size());
+		for (Iterator iter = errors.entrySet().iterator(); iter.hasNext();) {
+			Map.Entry entry = (Map.Entry) iter.next();
+			BundleDescription bundle = (BundleDescription) entry.getKey();
+			List details = new ArrayList();
+			Object[] values = (Object[]) entry.getValue();
+			for (int i = 0; i < values.length; i++) {
+				if (values[i] instanceof ResolverError) {
+					ResolverError error = (ResolverError) values[i];
+					details.add(error.getType() + " " + error.getData());
+				} else {
+					details.add(String.valueOf(values[i]));
+				}
+			}
+			Collections.sort(details);
+			result.add(bundle.getSymbolicName() + "_" + bundle.getVersion() + " " + details);
+		}
+		Collections.sort(result);
+		return result;
+	}
+}
@@ -22,6 +22,7 @@ public class PDEPerformanceTests {
 		suite.addTest(SchemaTraversePerfTest.suite());
 		suite.addTest(OpenManifestEditorPerfTest.suite());
 		suite.addTest(TargetPlatformPerfTest.suite());
+		suite.addTest(TargetStateCreationPerfTest.suite());
 		return suite;
 	}
 
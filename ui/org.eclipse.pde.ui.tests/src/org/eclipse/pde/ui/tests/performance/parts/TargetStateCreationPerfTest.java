@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.ui.tests.performance.parts;
+
+import java.net.URL;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.pde.core.plugin.TargetPlatform;
+import org.eclipse.pde.internal.core.*;
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.PerformanceTestCase;
+
+/**
+ * Compares the time it takes to create a new (uncached) target state when bundle manifests
+ * are read serially and when they are read on a pool of worker threads.
+ *
+ * The bundles of the running platform are used as the target.
+ */
+public class TargetStateCreationPerfTest extends PerformanceTestCase {
+
+	private static final String THREADS_PROPERTY = "pde.stateLoadingThreads";
+
+	private String fOriginalThreads;
+
+	public static Test suite() {
+		return new TestSuite(TargetStateCreationPerfTest.class);
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		fOriginalThreads = System.getProperty(THREADS_PROPERTY);
+		TargetPlatformHelper.getKnownExecutionEnvironments();
+	}
+
+	protected void tearDown() throws Exception {
+		if (fOriginalThreads == null) {
+			System.getProperties().remove(THREADS_PROPERTY);
+		} else {
+			System.setProperty(THREADS_PROPERTY, fOriginalThreads);
+		}
+		super.tearDown();
+	}
+
+	/**
+	 * Creates the target state reading every manifest on the calling thread
+	 */
+	public void testCreateStateSerial() throws Exception {
+		tagAsSummary("Create target state (serial)", Dimension.ELAPSED_PROCESS); //$NON-NLS-1$
+		System.setProperty(THREADS_PROPERTY, "1");
+		executeTest();
+	}
+
+	/**
+	 * Creates the target state reading the manifests on the default number of worker threads
+	 */
+	public void testCreateStateParallel() throws Exception {
+		tagAsSummary("Create target state (parallel)", Dimension.ELAPSED_PROCESS); //$NON-NLS-1$
+		System.getProperties().remove(THREADS_PROPERTY);
+		executeTest();
+	}
+
+	private void executeTest() {
+		URL[] paths = PluginPathFinder.getPluginPaths(TargetPlatform.getLocation());
+		// Warm-up Iterations
+		int bundles = 0;
+		for (int i = 0; i < 2; i++) {
+			bundles = new PDEState(paths, false, new NullProgressMonitor()).getState().getBundles().length;
+		}
+		// Test Iterations
+		for (int i = 0; i < 10; i++) {
+			startMeasuring();
+			PDEState state = new PDEState(paths, false, new NullProgressMonitor());
+			stopMeasuring();
+			assertEquals("All iterations should load the same bundles", bundles, state.getState().getBundles().length);
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+}
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.ui.tests.project;
+
+import java.io.ByteArrayInputStream;
+import junit.framework.*;
+import org.eclipse.core.resources.*;
+import org.eclipse.core.runtime.IExtension;
+import org.eclipse.pde.core.plugin.IPluginModelBase;
+import org.eclipse.pde.core.plugin.PluginRegistry;
+import org.eclipse.pde.core.project.IBundleProjectDescription;
+import org.eclipse.pde.internal.core.PDECore;
+import org.eclipse.pde.internal.core.PDEExtensionRegistry;
+
+/**
+ * Tests the lookups of the {@link PDEExtensionRegistry} answered from the index of its
+ * contributions, and that the index follows the changes of the models
+ */
+public class PDEExtensionRegistryTests extends TestCase {
+
+	private static final String PROJECT_NAME = "extension.index.tests";
+	private static final String UNDECLARED_POINT = "extension.index.tests.undeclared";
+	private static final String OTHER_UNDECLARED_POINT = "extension.index.tests.other";
+
+	public static Test suite() {
+		return new TestSuite(PDEExtensionRegistryTests.class);
+	}
+
+	protected void tearDown() throws Exception {
+		IProject project = getProject();
+		if (project.exists()) {
+			project.delete(true, null);
+			PluginRegistryTests.waitForBuild();
+		}
+		super.tearDown();
+	}
+
+	/**
+	 * Tests that the extensions to an extension point that is not declared, and the plug-ins
+	 * contributing them, are found
+	 *
+	 * @throws Exception
+	 */
+	public void testUndeclaredExtensionPoint() throws Exception {
+		IPluginModelBase model = createProject(UNDECLARED_POINT);
+		IExtension[] extensions = getRegistry().findExtensions(UNDECLARED_POINT, false);
+		assertEquals("Wrong number of extensions", 1, extensions.length);
+		assertEquals("Wrong contributor", PROJECT_NAME, extensions[0].getContributor().getName());
+		assertEquals("Wrong number of active extensions", 1, getRegistry().findExtensions(UNDECLARED_POINT, true).length);
+
+		IPluginModelBase[] plugins = getRegistry().findExtensionPlugins(UNDECLARED_POINT, true);
+		assertEquals("Only the contributing plug-in should be returned", 1, plugins.length);
+		assertSame("Wrong contributing plug-in", model, plugins[0]);
+	}
+
+	/**
+	 * Tests that no plug-in is returned for an extension point that is neither declared nor
+	 * extended, rather than every model as before the index
+	 */
+	public void testUnknownExtensionPoint() {
+		assertEquals("No extension should be found", 0, getRegistry().findExtensions("extension.index.tests.unknown", false).length);
+		assertEquals("No plug-in should be found", 0, getRegistry().findExtensionPlugins("extension.index.tests.unknown", false).length);
+		assertEquals("No plug-in should be found", 0, getRegistry().findExtensionPlugins("extension.index.tests.unknown", true).length);
+	}
+
+	/**
+	 * Tests that the extensions and extension points of a plug-in are found
+	 *
+	 * @throws Exception
+	 */
+	public void testContributionsOfPlugin() throws Exception {
+		IPluginModelBase model = createProject(UNDECLARED_POINT);
+		assertEquals("Wrong number of extensions", 1, getRegistry().findExtensionsForPlugin(model).length);
+		assertEquals("Wrong extension point", UNDECLARED_POINT, getRegistry().findExtensionsForPlugin(model)[0].getPoint());
+		assertEquals("Wrong number of extension points", 1, getRegistry().findExtensionPointsForPlugin(model).length);
+		assertEquals("Wrong extension point", PROJECT_NAME + ".point", getRegistry().findExtensionPointsForPlugin(model)[0].getFullId());
+	}
+
+	/**
+	 * Tests that the index is updated when the extensions of a plug-in change and when the
+	 * plug-in is removed
+	 *
+	 * @throws Exception
+	 */
+	public void testIndexUpdatedOnModelChange() throws Exception {
+		createProject(UNDECLARED_POINT);
+		assertEquals("Wrong number of extensions", 1, getRegistry().findExtensions(UNDECLARED_POINT, false).length);
+		assertEquals("No extension should be found yet", 0, getRegistry().findExtensions(OTHER_UNDECLARED_POINT, false).length);
+
+		getProject().getFile("plugin.xml").setContents(new ByteArrayInputStream(getPluginXml(OTHER_UNDECLARED_POINT).getBytes("UTF-8")), true, false, null);
+		PluginRegistryTests.waitForBuild();
+		assertEquals("The extension should have moved", 0, getRegistry().findExtensions(UNDECLARED_POINT, false).length);
+		assertEquals("The extension should have moved", 0, getRegistry().findExtensionPlugins(UNDECLARED_POINT, false).length);
+		assertEquals("Wrong number of extensions", 1, getRegistry().findExtensions(OTHER_UNDECLARED_POINT, false).length);
+
+		getProject().delete(true, null);
+		PluginRegistryTests.waitForBuild();
+		assertEquals("The extensions of the removed plug-in should not be found", 0, getRegistry().findExtensions(OTHER_UNDECLARED_POINT, false).length);
+		assertEquals("The removed plug-in should not be found", 0, getRegistry().findExtensionPlugins(OTHER_UNDECLARED_POINT, false).length);
+	}
+
+	/**
+	 * Creates a plug-in project declaring an extension point and contributing an extension
+	 * to the given point
+	 *
+	 * @param pointId the point the extension of the project is contributed to
+	 * @return the model of the project
+	 * @throws Exception
+	 */
+	private IPluginModelBase createProject(String pointId) throws Exception {
+		IProject project = getProject();
+		IBundleProjectDescription description = ProjectCreationTests.getBundleProjectService().getDescription(project);
+		description.setSymbolicName(PROJECT_NAME);
+		description.setSingleton(true);
+		description.setExtensionRegistry(true);
+		description.apply(null);
+		project.getFile("plugin.xml").create(new ByteArrayInputStream(getPluginXml(pointId).getBytes("UTF-8")), true, null);
+		PluginRegistryTests.waitForBuild();
+		IPluginModelBase model = PluginRegistry.findModel(project);
+		assertNotNull("Missing model of " + PROJECT_NAME, model);
+		// query the registry once so the index exists before the test changes the models
+		getRegistry().findExtensions(UNDECLARED_POINT, false);
+		return model;
+	}
+
+	private String getPluginXml(String pointId) {
+		StringBuffer buffer = new StringBuffer();
+		buffer.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		buffer.append("<?eclipse version=\"3.4\"?>\n");
+		buffer.append("<plugin>\n");
+		buffer.append("   <extension-point id=\"point\" name=\"Point\"/>\n");
+		buffer.append("   <extension point=\"").append(pointId).append("\">\n");
+		buffer.append("      <element/>\n");
+		buffer.append("   </extension>\n");
+		buffer.append("</plugin>\n");
+		return buffer.toString();
+	}
+
+	private PDEExtensionRegistry getRegistry() {
+		return PDECore.getDefault().getExtensionsRegistry();
+	}
+
+	private IProject getProject() {
+		return ResourcesPlugin.getWorkspace().getRoot().getProject(PROJECT_NAME);
+	}
+}
@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.ui.tests.project;
+
+import java.util.*;
+import junit.framework.*;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.osgi.service.resolver.BundleDescription;
+import org.eclipse.osgi.service.resolver.ExportPackageDescription;
+import org.eclipse.pde.core.plugin.IPluginModelBase;
+import org.eclipse.pde.core.project.*;
+import org.eclipse.pde.internal.core.PDECore;
+import org.eclipse.pde.internal.core.PluginModelSnapshot;
+
+/**
+ * Tests the snapshots of the master table of the plug-in model manager
+ */
+public class PluginModelSnapshotTests extends TestCase {
+
+	private static final String PROJECT_NAME = "snapshot.tests.bundle";
+	private static final String PACKAGE_NAME = "snapshot.tests.bundle.api";
+	private static final String OTHER_PACKAGE_NAME = "snapshot.tests.bundle.Internal";
+
+	public static Test suite() {
+		return new TestSuite(PluginModelSnapshotTests.class);
+	}
+
+	protected void tearDown() throws Exception {
+		IProject project = getProject();
+		if (project.exists()) {
+			project.delete(true, null);
+			PluginRegistryTests.waitForBuild();
+		}
+		super.tearDown();
+	}
+
+	/**
+	 * Tests that the same snapshot is returned as long as the models do not change
+	 */
+	public void testSnapshotShared() {
+		PluginModelSnapshot snapshot = getSnapshot();
+		assertSame("The snapshot should be shared until the models change", snapshot, getSnapshot());
+		assertEquals("The snapshot should be of the current generation", PDECore.getDefault().getModelManager().getGeneration(), snapshot.getGeneration());
+	}
+
+	/**
+	 * Tests that adding and removing a workspace bundle discards the snapshot and increments its
+	 * generation, and that the next snapshot holds the model and the exports of the bundle, even
+	 * when the exports of the discarded snapshot were already queried
+	 *
+	 * @throws CoreException
+	 */
+	public void testSnapshotInvalidatedOnModelChange() throws CoreException {
+		PluginModelSnapshot before = getSnapshot();
+		assertNull("The bundle should not be known yet", before.findModel(PROJECT_NAME));
+		assertEquals("The package should not be exported yet", 0, before.getExports(PACKAGE_NAME).length);
+
+		createProject(new String[] {PACKAGE_NAME});
+
+		PluginModelSnapshot added = getSnapshot();
+		assertNotSame("The snapshot should be discarded when a model is added", before, added);
+		assertTrue("The generation should be incremented when a model is added", added.getGeneration() > before.getGeneration());
+		IPluginModelBase model = added.findModel(PROJECT_NAME);
+		assertNotNull("The new snapshot should hold the added model", model);
+		assertEquals("The new snapshot should hold the exports of the added model", 1, added.getExports(PACKAGE_NAME).length);
+		assertEquals("Wrong exporter", PROJECT_NAME, added.getExports(PACKAGE_NAME)[0].getExporter().getSymbolicName());
+		assertNull("The discarded snapshot should not change", before.findModel(PROJECT_NAME));
+		assertEquals("The discarded snapshot should not change", 0, before.getExports(PACKAGE_NAME).length);
+
+		getProject().delete(true, null);
+		PluginRegistryTests.waitForBuild();
+
+		PluginModelSnapshot removed = getSnapshot();
+		assertNotSame("The snapshot should be discarded when a model is removed", added, removed);
+		assertTrue("The generation should be incremented when a model is removed", removed.getGeneration() > added.getGeneration());
+		assertNull("The removed model should not be in the new snapshot", removed.findModel(PROJECT_NAME));
+		assertEquals("The exports of the removed model should not be in the new snapshot", 0, removed.getExports(PACKAGE_NAME).length);
+	}
+
+	/**
+	 * Tests the exported packages found by prefix, ignoring case and in case insensitive order
+	 *
+	 * @throws CoreException
+	 */
+	public void testExportedPackagesByPrefix() throws CoreException {
+		createProject(new String[] {PACKAGE_NAME, OTHER_PACKAGE_NAME});
+		PluginModelSnapshot snapshot = getSnapshot();
+
+		String[] names = snapshot.getExportedPackages(PROJECT_NAME);
+		assertEquals("Wrong exported packages", Arrays.asList(new String[] {PACKAGE_NAME, OTHER_PACKAGE_NAME}), Arrays.asList(names));
+		names = snapshot.getExportedPackages(PROJECT_NAME.toUpperCase());
+		assertEquals("The prefix should be matched ignoring case", Arrays.asList(new String[] {PACKAGE_NAME, OTHER_PACKAGE_NAME}), Arrays.asList(names));
+		names = snapshot.getExportedPackages(OTHER_PACKAGE_NAME);
+		assertEquals("A package name should match itself", Arrays.asList(new String[] {OTHER_PACKAGE_NAME}), Arrays.asList(names));
+
+		names = snapshot.getExportedPackages("");
+		assertTrue("The empty prefix should match the exported packages", Arrays.asList(names).containsAll(Arrays.asList(new String[] {PACKAGE_NAME, OTHER_PACKAGE_NAME})));
+		for (int i = 1; i < names.length; i++)
+			assertTrue("The packages should be in case insensitive order", String.CASE_INSENSITIVE_ORDER.compare(names[i - 1], names[i]) <= 0);
+		assertEquals("The empty prefix should match every exported package", getExportedPackageCount(snapshot), names.length);
+
+		assertEquals("No package should match", 0, snapshot.getExportedPackages(PROJECT_NAME + ".none").length);
+		assertEquals("No package should match", 0, snapshot.getExportedPackages("~").length);
+	}
+
+	/**
+	 * Creates a bundle project exporting the given packages
+	 *
+	 * @param packages the names of the exported packages
+	 * @throws CoreException
+	 */
+	private void createProject(String[] packages) throws CoreException {
+		IBundleProjectService service = ProjectCreationTests.getBundleProjectService();
+		IBundleProjectDescription description = service.getDescription(getProject());
+		description.setSymbolicName(PROJECT_NAME);
+		IPackageExportDescription[] exports = new IPackageExportDescription[packages.length];
+		for (int i = 0; i < packages.length; i++)
+			exports[i] = service.newPackageExport(packages[i], null, true, null);
+		description.setPackageExports(exports);
+		description.apply(null);
+		PluginRegistryTests.waitForBuild();
+	}
+
+	/**
+	 * Returns the number of distinct packages exported by the active models of the snapshot
+	 */
+	private int getExportedPackageCount(PluginModelSnapshot snapshot) {
+		Set names = new HashSet();
+		IPluginModelBase[] models = snapshot.getActiveModels(true);
+		for (int i = 0; i < models.length; i++) {
+			BundleDescription desc = models[i].getBundleDescription();
+			if (desc == null)
+				continue;
+			ExportPackageDescription[] exports = desc.getExportPackages();
+			for (int j = 0; j < exports.length; j++)
+				names.add(exports[j].getName());
+		}
+		return names.size();
+	}
+
+	private PluginModelSnapshot getSnapshot() {
+		return PDECore.getDefault().getModelManager().getSnapshot();
+	}
+
+	private IProject getProject() {
+		return ResourcesPlugin.getWorkspace().getRoot().getProject(PROJECT_NAME);
+	}
+}
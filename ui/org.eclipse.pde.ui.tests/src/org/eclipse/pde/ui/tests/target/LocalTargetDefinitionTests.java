@@ -444,6 +444,55 @@ public class LocalTargetDefinitionTests extends AbstractTargetTest {
 		}
 	}
 	
+	/**
+	 * Tests that rescanning a directory with the persisted bundle index answers the same
+	 * bundles as reading every manifest, including source and fragment information.
+	 * 
+	 * @throws Exception
+	 */
+	public void testIndexedDirectoryBundleContainer() throws Exception {
+		// extract the 3.0.2 skeleton, it has a mix of classic, bundle and source plug-ins
+		IPath location = extractClassicPlugins();
+		String restore = System.getProperty("pde.nocache");
+		try {
+			System.setProperty("pde.nocache", "true");
+			Set expected = describeBundles(location);
+			System.getProperties().remove("pde.nocache");
+			// the first scan creates the index, the second one reads it
+			assertEquals("Wrong bundles when creating the index", expected, describeBundles(location));
+			assertEquals("Wrong bundles when reading the index", expected, describeBundles(location));
+		} finally {
+			if (restore == null) {
+				System.getProperties().remove("pde.nocache");
+			} else {
+				System.setProperty("pde.nocache", restore);
+			}
+		}
+	}
+	
+	/**
+	 * Resolves a new directory container at the given location and returns a description of
+	 * every bundle it contains.
+	 * 
+	 * @param location directory location
+	 * @return set of bundle descriptions
+	 */
+	private Set describeBundles(IPath location) throws Exception {
+		ITargetDefinition definition = getNewTarget();
+		ITargetLocation container = getTargetService().newDirectoryLocation(location.toOSString());
+		definition.setTargetLocations(new ITargetLocation[]{container});
+		definition.resolve(null);
+		TargetBundle[] bundles = definition.getBundles();
+		Set descriptions = new HashSet();
+		for (int i = 0; i < bundles.length; i++) {
+			TargetBundle bundle = bundles[i];
+			StringBuffer buffer = new StringBuffer();
+			buffer.append(bundle.getBundleInfo()).append(' ').append(bundle.isFragment()).append(' ').append(bundle.getSourceTarget()).append(' ').append(bundle.getSourcePath());
+			descriptions.add(buffer.toString());
+		}
+		return descriptions;
+	}
+	
 	/**
 	 * Tests reading a 3.0 style plug-in that has a MANIFEST file that is not a bundle
 	 * manifest.
@@ -22,6 +22,7 @@ import org.eclipse.pde.core.plugin.TargetPlatform;
 import org.eclipse.pde.core.target.*;
 import org.eclipse.pde.internal.core.*;
 import org.eclipse.pde.internal.core.target.IUBundleContainer;
+import org.eclipse.pde.internal.core.target.TargetDefinition;
 import org.eclipse.pde.internal.core.target.TargetPlatformService;
 
 public class TargetDefinitionResolutionTests extends AbstractTargetTest {
@@ -97,6 +98,62 @@ public class TargetDefinitionResolutionTests extends AbstractTargetTest {
 		// TODO Should we have tests for this?
 	}
 	
+	/**
+	 * Tests that resolving the locations of a target concurrently gives the same bundles
+	 * and statuses, in the same order, as resolving them one after the other
+	 */
+	public void testConcurrentResolution() throws Exception {
+		IPath dirPath = extractAbcdePlugins();
+		String original = System.getProperty("pde.targetResolutionThreads");
+		try {
+			System.setProperty("pde.targetResolutionThreads", "1");
+			ITargetDefinition serial = getResolutionTestTarget(dirPath);
+			IStatus serialStatus = serial.resolve(null);
+			System.setProperty("pde.targetResolutionThreads", "4");
+			ITargetDefinition concurrent = getResolutionTestTarget(dirPath);
+			IStatus concurrentStatus = concurrent.resolve(null);
+
+			assertEquals("Wrong resolution severity", serialStatus.getSeverity(), concurrentStatus.getSeverity());
+			IStatus[] serialChildren = serialStatus.getChildren();
+			IStatus[] concurrentChildren = concurrentStatus.getChildren();
+			assertEquals("Wrong number of resolution statuses", serialChildren.length, concurrentChildren.length);
+			for (int i = 0; i < serialChildren.length; i++) {
+				assertEquals("Wrong status severity", serialChildren[i].getSeverity(), concurrentChildren[i].getSeverity());
+				assertEquals("Wrong status message", serialChildren[i].getMessage(), concurrentChildren[i].getMessage());
+			}
+
+			TargetBundle[] serialBundles = serial.getAllBundles();
+			TargetBundle[] concurrentBundles = concurrent.getAllBundles();
+			assertEquals("Wrong number of bundles", serialBundles.length, concurrentBundles.length);
+			for (int i = 0; i < serialBundles.length; i++) {
+				assertEquals("Wrong bundle", serialBundles[i].getBundleInfo(), concurrentBundles[i].getBundleInfo());
+				assertEquals("Wrong bundle status", serialBundles[i].getStatus().getSeverity(), concurrentBundles[i].getStatus().getSeverity());
+			}
+			assertEquals("Wrong target status", serial.getStatus().getSeverity(), concurrent.getStatus().getSeverity());
+
+			ITargetLocation[] locations = concurrent.getTargetLocations();
+			for (int i = 0; i < locations.length; i++) {
+				assertTrue("Missing resolution time", ((TargetDefinition) concurrent).getResolutionTime(locations[i]) >= 0);
+			}
+			assertEquals("A location of another target should have no resolution time", -1, ((TargetDefinition) concurrent).getResolutionTime(serial.getTargetLocations()[0]));
+		} finally {
+			if (original == null) {
+				System.getProperties().remove("pde.targetResolutionThreads");
+			} else {
+				System.setProperty("pde.targetResolutionThreads", original);
+			}
+		}
+	}
+
+	private ITargetDefinition getResolutionTestTarget(IPath dirPath) {
+		ITargetDefinition definition = getNewTarget();
+		ITargetLocation directoryContainer = getTargetService().newDirectoryLocation(dirPath.toOSString());
+		ITargetLocation brokenContainer = getTargetService().newDirectoryLocation("***SHOULD NOT EXIST***");
+		ITargetLocation profileContainer = getTargetService().newProfileLocation(TargetPlatform.getDefaultLocation(), null);
+		definition.setTargetLocations(new ITargetLocation[] {directoryContainer, brokenContainer, profileContainer});
+		return definition;
+	}
+
 	public void testResolutionCaching() throws Exception {
 		ITargetDefinition definition = getNewTarget();
 		assertTrue(definition.isResolved());
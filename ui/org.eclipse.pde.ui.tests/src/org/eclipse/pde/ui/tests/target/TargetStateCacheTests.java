@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.ui.tests.target;
+
+import java.io.*;
+import java.net.URL;
+import junit.framework.*;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.pde.internal.core.PDEState;
+import org.eclipse.pde.internal.core.TargetStateIndex;
+
+/**
+ * Tests the target state cache and the index of bundle fingerprints persisted with it
+ */
+public class TargetStateCacheTests extends TestCase {
+
+	private File fTargetDir;
+	private File fCacheDir;
+
+	public static Test suite() {
+		return new TestSuite(TargetStateCacheTests.class);
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		fTargetDir = File.createTempFile("targetStateCache", "");
+		fTargetDir.delete();
+		fTargetDir.mkdirs();
+	}
+
+	protected void tearDown() throws Exception {
+		delete(fTargetDir);
+		if (fCacheDir != null) {
+			delete(fCacheDir);
+		}
+		super.tearDown();
+	}
+
+	/**
+	 * Tests that touching a bundle without changing its manifest keeps its bundle description
+	 * and persists the new fingerprint, so the bundle is not read again on the next startup
+	 */
+	public void testTouchedBundlePersistsIndexEntry() throws Exception {
+		File bundle = createBundle("touched.bundle");
+		File manifest = new File(bundle, "META-INF/MANIFEST.MF");
+		URL[] urls = new URL[] {bundle.toURL()};
+
+		PDEState state = new PDEState(urls, true, new NullProgressMonitor());
+		state.saveTargetState(state.getTargetModels());
+		fCacheDir = state.getTargetDirectory();
+		TargetStateIndex.Entry entry = TargetStateIndex.read(fCacheDir).get(bundle.getAbsolutePath());
+		assertNotNull("The bundle should be indexed", entry);
+		assertTrue("The bundle should have a description", entry.getBundleId() != TargetStateIndex.NO_BUNDLE);
+
+		manifest.setLastModified(manifest.lastModified() + 10000);
+		assertFalse("The index entry should no longer match the touched bundle", entry.matches(bundle));
+
+		state = new PDEState(urls, true, new NullProgressMonitor());
+		state.saveTargetState(state.getTargetModels());
+		assertEquals("The touched bundle should be read from the same cache", fCacheDir, state.getTargetDirectory());
+		TargetStateIndex.Entry touched = TargetStateIndex.read(fCacheDir).get(bundle.getAbsolutePath());
+		assertNotNull("The touched bundle should be indexed", touched);
+		assertTrue("The new fingerprint of the touched bundle should be persisted", touched.matches(bundle));
+		assertEquals("The touched bundle should keep its description", entry.getBundleId(), touched.getBundleId());
+		assertEquals("The manifest digest should be unchanged", entry.getDigest(), touched.getDigest());
+		assertNotNull("The touched bundle should still be in the state", state.getState().getBundle(touched.getBundleId()));
+	}
+
+	private File createBundle(String symbolicName) throws IOException {
+		File bundle = new File(fTargetDir, symbolicName);
+		File metaInf = new File(bundle, "META-INF");
+		metaInf.mkdirs();
+		Writer writer = new OutputStreamWriter(new FileOutputStream(new File(metaInf, "MANIFEST.MF")), "UTF-8");
+		try {
+			writer.write("Manifest-Version: 1.0\n");
+			writer.write("Bundle-ManifestVersion: 2\n");
+			writer.write("Bundle-SymbolicName: " + symbolicName + "\n");
+			writer.write("Bundle-Version: 1.0.0\n");
+		} finally {
+			writer.close();
+		}
+		return bundle;
+	}
+
+	private void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (int i = 0; i < children.length; i++) {
+				delete(children[i]);
+			}
+		}
+		file.delete();
+	}
+}
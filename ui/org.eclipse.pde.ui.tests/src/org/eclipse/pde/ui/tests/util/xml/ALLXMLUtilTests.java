@@ -1,5 +1,5 @@
 /*******************************************************************************
- *  Copyright (c) 2006, 2008 IBM Corporation and others.
+ *  Copyright (c) 2006, 2013 IBM Corporation and others.
  *  All rights reserved. This program and the accompanying materials
  *  are made available under the terms of the Eclipse Public License v1.0
  *  which accompanies this distribution, and is available at
@@ -18,6 +18,7 @@ public class ALLXMLUtilTests {
 	public static Test suite() {
 		TestSuite suite = new TestSuite("XML Utilities Test Suite"); //$NON-NLS-1$
 		suite.addTest(ParserWrapperTestCase.suite());
+		suite.addTest(XMLOffsetIndexTestCase.suite());
 		return suite;
 	}
 
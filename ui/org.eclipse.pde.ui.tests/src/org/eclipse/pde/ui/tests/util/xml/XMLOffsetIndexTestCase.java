@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.ui.tests.util.xml;
+
+import junit.framework.*;
+import org.eclipse.pde.internal.core.builders.XMLOffsetIndex;
+
+/**
+ * Tests the element and attribute offsets computed by {@link XMLOffsetIndex}
+ */
+public class XMLOffsetIndexTestCase extends TestCase {
+
+	private static final String TEXT = "<?xml version=\"1.0\"?>\n" + //$NON-NLS-1$
+			"<!DOCTYPE plugin [<!ENTITY e \"<b>\"> <!-- <c> -->]>\n" + //$NON-NLS-1$
+			"<plugin>\n" + //$NON-NLS-1$
+			" <!-- <extension point='commented'/> -->\n" + //$NON-NLS-1$
+			" <extension point = 'p' id=\"a&amp;b\"><a x='>'/><![CDATA[<z>]]>\n text</extension>\n" + //$NON-NLS-1$
+			" <extension/>\n" + //$NON-NLS-1$
+			"</plugin>"; //$NON-NLS-1$
+
+	public static Test suite() {
+		return new TestSuite(XMLOffsetIndexTestCase.class);
+	}
+
+	public void testElements() {
+		XMLOffsetIndex index = new XMLOffsetIndex(TEXT);
+		assertEquals("Wrong number of elements", 4, index.getElementCount()); //$NON-NLS-1$
+		String[] names = new String[] {"plugin", "extension", "a", "extension"}; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		for (int i = 0; i < names.length; i++) {
+			assertEquals("Wrong element name", names[i], index.getName(i)); //$NON-NLS-1$
+			assertTrue("Wrong start offset", TEXT.startsWith("<" + names[i], index.getStartOffset(i))); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		assertEquals("Wrong start offset", TEXT.indexOf("<extension point = 'p'"), index.getStartOffset(1)); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("Wrong next element", 3, index.find(2, "extension")); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("Element should not be found", -1, index.find(0, "c")); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	public void testContent() {
+		XMLOffsetIndex index = new XMLOffsetIndex(TEXT);
+		String content = TEXT.substring(index.getContentOffset(1), index.getEndOffset(1));
+		assertEquals("Wrong content", "<a x='>'/><![CDATA[<z>]]>\n text", content); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("Empty element should have no content", index.getContentOffset(2), index.getEndOffset(2)); //$NON-NLS-1$
+		assertEquals("Wrong end offset", TEXT.lastIndexOf("</plugin>"), index.getEndOffset(0)); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	public void testAttributes() {
+		XMLOffsetIndex index = new XMLOffsetIndex(TEXT);
+		assertEquals("Wrong attribute offset", TEXT.indexOf("point = 'p'"), index.getAttributeOffset(1, "point")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertEquals("Wrong attribute offset", TEXT.indexOf("id=\"a&amp;b\""), index.getAttributeOffset(1, "id")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertEquals("Wrong attribute offset", TEXT.indexOf("x='>'"), index.getAttributeOffset(2, "x")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertEquals("Attribute should not be found", -1, index.getAttributeOffset(3, "point")); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	public void testUnclosedElements() {
+		String text = "<plugin><extension point=\"p\"><element></extension"; //$NON-NLS-1$
+		XMLOffsetIndex index = new XMLOffsetIndex(text);
+		assertEquals("Wrong number of elements", 3, index.getElementCount()); //$NON-NLS-1$
+		assertEquals("Element should not be closed", -1, index.getEndOffset(0)); //$NON-NLS-1$
+		assertEquals("Wrong end offset", text.indexOf("</extension"), index.getEndOffset(1)); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("Element should not be closed", -1, index.getEndOffset(2)); //$NON-NLS-1$
+		assertEquals("Wrong attribute offset", text.indexOf("point"), index.getAttributeOffset(1, "point")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009 Zend Technologies Ltd. and others.
+ * Copyright (c) 2009, 2013 Zend Technologies Ltd. and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -20,6 +20,8 @@ public class AllLogViewTests {
 		TestSuite suite = new TestSuite("Test for log view");
 		//$JUnit-BEGIN$
 		suite.addTestSuite(LogEntryTest.class);
+		suite.addTestSuite(LogIndexTest.class);
+		suite.addTestSuite(LogReaderTest.class);
 		//$JUnit-END$
 		return suite;
 	}
@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.ui.tests.views.log;
+
+import java.io.*;
+import junit.framework.TestCase;
+import org.eclipse.ui.internal.views.log.LogIndex;
+
+/**
+ * Tests the index of the sessions and entries of a log file
+ */
+public class LogIndexTest extends TestCase {
+
+	private static final String SESSION = "!SESSION 2013-01-03 11:15:30.000 -----------------------------------------------";
+	private static final String ENTRY = "!ENTRY org.eclipse.pde.ui 4 0 2013-01-03 11:15:30.123";
+
+	private File fFile;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		fFile = File.createTempFile("logIndex", ".log");
+	}
+
+	protected void tearDown() throws Exception {
+		fFile.delete();
+		super.tearDown();
+	}
+
+	public void testSessionsAndEntries() throws IOException {
+		String text = SESSION + "\neclipse.buildId=unittest\n" + ENTRY + "\n!MESSAGE one\n" + ENTRY + "\n!MESSAGE two\n" + SESSION + "\n" + ENTRY + "\n!MESSAGE three\n";
+		write(text, false);
+		LogIndex index = update(new LogIndex(fFile));
+
+		assertEquals("Wrong session count", 2, index.getSessionCount());
+		assertEquals("Wrong entry count", 3, index.getEntryCount());
+		assertEquals("Wrong session offset", 0, index.getSessionOffset(0));
+		assertEquals("Wrong session offset", text.lastIndexOf(SESSION), index.getSessionOffset(1));
+		assertEquals("Wrong entry offset", text.indexOf(ENTRY), index.getEntryOffset(0));
+		assertEquals("Wrong entry offset", text.indexOf(ENTRY, text.indexOf("!MESSAGE one")), index.getEntryOffset(1));
+		assertEquals("Wrong first entry", 0, index.getFirstEntry(0));
+		assertEquals("Wrong first entry", 2, index.getFirstEntry(1));
+		assertEquals("Wrong session of entry", 0, index.getSession(1));
+		assertEquals("Wrong session of entry", 1, index.getSession(2));
+		assertEquals("The header of a session should end at its first entry", index.getEntryOffset(0), index.getSessionEnd(0));
+		assertEquals("An entry should end at the next session", index.getSessionOffset(1), index.getEntryEnd(1));
+		assertEquals("The last entry should end at the end of the file", text.length(), index.getEntryEnd(2));
+	}
+
+	public void testEntriesBeforeFirstSession() throws IOException {
+		write(ENTRY + "\n!MESSAGE one\n" + SESSION + "\n" + ENTRY + "\n", false);
+		LogIndex index = update(new LogIndex(fFile));
+
+		assertEquals("Wrong entry count", 2, index.getEntryCount());
+		assertEquals("An entry preceding the first session should have none", -1, index.getSession(0));
+		assertEquals("Wrong session of entry", 0, index.getSession(1));
+	}
+
+	public void testLeadingWhitespace() throws IOException {
+		String text = "  " + SESSION + "\n\t" + ENTRY + "\n!MESSAGE one\n \t" + ENTRY + "\n!MESSAGE   !ENTRY is not an entry\n";
+		write(text, false);
+		LogIndex index = update(new LogIndex(fFile));
+
+		assertEquals("Wrong session count", 1, index.getSessionCount());
+		assertEquals("Wrong entry count", 2, index.getEntryCount());
+		assertEquals("The offset should be the start of the line", 0, index.getSessionOffset(0));
+		assertEquals("The offset should be the start of the line", text.indexOf("\t" + ENTRY), index.getEntryOffset(0));
+		assertEquals("The offset should be the start of the line", text.indexOf(" \t" + ENTRY), index.getEntryOffset(1));
+	}
+
+	public void testCRLF() throws IOException {
+		String text = SESSION + "\r\neclipse.buildId=unittest\r\n" + ENTRY + "\r\n!MESSAGE one\r\n" + ENTRY + "\r\n!MESSAGE two\r\n";
+		write(text, false);
+		LogIndex index = update(new LogIndex(fFile));
+
+		assertEquals("Wrong session count", 1, index.getSessionCount());
+		assertEquals("Wrong entry count", 2, index.getEntryCount());
+		assertEquals("Wrong entry offset", text.indexOf(ENTRY), index.getEntryOffset(0));
+		assertEquals("Wrong entry offset", text.lastIndexOf(ENTRY), index.getEntryOffset(1));
+	}
+
+	public void testLineAcrossBuffers() throws IOException {
+		// the scan buffer is 64k, split the entry line over two reads
+		StringBuffer text = new StringBuffer(SESSION).append('\n');
+		while (text.length() < 64 * 1024 - 3)
+			text.append("x");
+		text.append('\n').append(ENTRY).append("\n!MESSAGE one\n");
+		write(text.toString(), false);
+		LogIndex index = update(new LogIndex(fFile));
+
+		assertEquals("Wrong entry count", 1, index.getEntryCount());
+		assertEquals("Wrong entry offset", text.indexOf(ENTRY), index.getEntryOffset(0));
+	}
+
+	public void testIncrementalAppend() throws IOException {
+		String first = SESSION + "\n" + ENTRY + "\n!MESSAGE one\n";
+		write(first, false);
+		LogIndex index = update(new LogIndex(fFile));
+		assertEquals("Wrong entry count", 1, index.getEntryCount());
+
+		// an entry line written in two parts
+		write("!ENT", true);
+		update(index);
+		assertEquals("An incomplete line should not be an entry", 1, index.getEntryCount());
+		write("RY org.eclipse.pde.ui 4 0 2013-01-03 11:15:30.123\n!MESSAGE two\n" + SESSION + "\n" + ENTRY + "\n", true);
+		update(index);
+
+		LogIndex fresh = update(new LogIndex(fFile));
+		assertEquals("Wrong session count", 2, index.getSessionCount());
+		assertEquals("Wrong entry count", 3, index.getEntryCount());
+		assertEquals("Wrong entry offset", first.length(), index.getEntryOffset(1));
+		assertSameIndex(fresh, index);
+	}
+
+	public void testTruncation() throws IOException {
+		write(SESSION + "\n" + ENTRY + "\n!MESSAGE one\n" + ENTRY + "\n!MESSAGE two\n", false);
+		LogIndex index = update(new LogIndex(fFile));
+		assertEquals("Wrong entry count", 2, index.getEntryCount());
+
+		write(ENTRY + "\n", false);
+		update(index);
+		assertEquals("The truncated log should be scanned again", 0, index.getSessionCount());
+		assertEquals("The truncated log should be scanned again", 1, index.getEntryCount());
+		assertEquals("Wrong entry offset", 0, index.getEntryOffset(0));
+	}
+
+	public void testRolledOverLog() throws IOException {
+		write(SESSION + "\n" + ENTRY + "\n!MESSAGE one\n", false);
+		LogIndex index = update(new LogIndex(fFile));
+		assertEquals("Wrong entry count", 1, index.getEntryCount());
+
+		// a new log of another session that is already longer than the old one
+		String session = "!SESSION 2013-02-04 09:00:00.000 -----------------------------------------------";
+		write(session + "\neclipse.buildId=unittest\n" + ENTRY + "\n!MESSAGE one\n" + ENTRY + "\n!MESSAGE two\n" + ENTRY + "\n!MESSAGE three\n", false);
+		update(index);
+		assertEquals("The new log should be scanned from the start", 3, index.getEntryCount());
+		assertSameIndex(update(new LogIndex(fFile)), index);
+	}
+
+	private void assertSameIndex(LogIndex expected, LogIndex actual) {
+		assertEquals("Wrong session count", expected.getSessionCount(), actual.getSessionCount());
+		assertEquals("Wrong entry count", expected.getEntryCount(), actual.getEntryCount());
+		for (int i = 0; i < expected.getSessionCount(); i++) {
+			assertEquals("Wrong session offset", expected.getSessionOffset(i), actual.getSessionOffset(i));
+			assertEquals("Wrong first entry", expected.getFirstEntry(i), actual.getFirstEntry(i));
+		}
+		for (int i = 0; i < expected.getEntryCount(); i++) {
+			assertEquals("Wrong entry offset", expected.getEntryOffset(i), actual.getEntryOffset(i));
+			assertEquals("Wrong entry end", expected.getEntryEnd(i), actual.getEntryEnd(i));
+			assertEquals("Wrong session of entry", expected.getSession(i), actual.getSession(i));
+		}
+	}
+
+	private LogIndex update(LogIndex index) throws IOException {
+		index.update();
+		return index;
+	}
+
+	private void write(String text, boolean append) throws IOException {
+		Writer writer = new OutputStreamWriter(new FileOutputStream(fFile, append), "UTF-8");
+		try {
+			writer.write(text);
+		} finally {
+			writer.close();
+		}
+	}
+}
@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.ui.tests.views.log;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+import org.eclipse.ui.XMLMemento;
+import org.eclipse.ui.internal.views.log.*;
+
+/**
+ * Tests reading the entries of a log file a page at a time
+ */
+public class LogReaderTest extends TestCase {
+
+	private File fFile;
+	private XMLMemento fMemento;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		fFile = File.createTempFile("logReader", ".log");
+		fMemento = XMLMemento.createWriteRoot("logView");
+		fMemento.putString(LogView.P_LOG_INFO, "true");
+		fMemento.putString(LogView.P_LOG_WARNING, "true");
+		fMemento.putString(LogView.P_LOG_ERROR, "true");
+		fMemento.putString(LogView.P_LOG_OK, "true");
+		fMemento.putString(LogView.P_SHOW_ALL_SESSIONS, "true");
+		setLimit(256);
+	}
+
+	protected void tearDown() throws Exception {
+		fFile.delete();
+		super.tearDown();
+	}
+
+	/**
+	 * Tests that the most recent entries are read up to the limit, whether or not the limit
+	 * is a multiple of the number of entries read at once
+	 */
+	public void testLimitAtPageBoundaries() throws IOException {
+		writeLog(new int[] {600}, 0);
+		LogIndex index = new LogIndex(fFile);
+		int[] limits = new int[] {1, 255, 256, 257, 512, 600, 1000};
+		for (int i = 0; i < limits.length; i++) {
+			setLimit(limits[i]);
+			int[] range = new int[] {0, -1, 0};
+			List entries = read(index, range);
+			int count = Math.min(limits[i], 600);
+			assertEquals("Wrong number of entries for limit " + limits[i], count, entries.size());
+			assertEquals("Wrong first entry for limit " + limits[i], "entry " + (600 - count), getMessage(entries, 0));
+			assertEquals("Wrong last entry for limit " + limits[i], "entry 599", getMessage(entries, count - 1));
+			assertEquals("Wrong start of the page for limit " + limits[i], 600 - count, range[0]);
+			assertEquals("Wrong end of the page for limit " + limits[i], 600, range[1]);
+			assertEquals("Wrong first readable entry for limit " + limits[i], 0, range[2]);
+		}
+	}
+
+	/**
+	 * Tests paging through the older entries of the log until its start
+	 */
+	public void testOlderPages() throws IOException {
+		writeLog(new int[] {600}, 0);
+		LogIndex index = new LogIndex(fFile);
+		int[] range = new int[] {0, -1, 0};
+		assertEquals("Wrong number of entries", 256, read(index, range).size());
+		assertEquals("Wrong start of the page", 344, range[0]);
+
+		range[1] = range[0];
+		List entries = read(index, range);
+		assertEquals("Wrong number of older entries", 256, entries.size());
+		assertEquals("Wrong first older entry", "entry 88", getMessage(entries, 0));
+		assertEquals("Wrong last older entry", "entry 343", getMessage(entries, 255));
+		assertEquals("Wrong start of the older page", 88, range[0]);
+		assertEquals("Wrong end of the older page", 344, range[1]);
+
+		range[1] = range[0];
+		entries = read(index, range);
+		assertEquals("Wrong number of oldest entries", 88, entries.size());
+		assertEquals("Wrong first oldest entry", "entry 0", getMessage(entries, 0));
+		assertEquals("The oldest page should start the log", range[2], range[0]);
+	}
+
+	/**
+	 * Tests that only the entries of the most recent session are read unless all sessions are shown
+	 */
+	public void testMostRecentSession() throws IOException {
+		writeLog(new int[] {300, 10}, 0);
+		LogIndex index = new LogIndex(fFile);
+		fMemento.putString(LogView.P_SHOW_ALL_SESSIONS, "false");
+		int[] range = new int[] {0, -1, 0};
+		List entries = read(index, range);
+		assertEquals("Only the entries of the last session should be read", 10, entries.size());
+		assertEquals("Wrong first entry", "entry 300", getMessage(entries, 0));
+		assertEquals("No older entry should be readable", range[2], range[0]);
+		assertEquals("Wrong first readable entry", 300, range[2]);
+
+		fMemento.putString(LogView.P_SHOW_ALL_SESSIONS, "true");
+		range = new int[] {0, -1, 0};
+		entries = read(index, range);
+		assertEquals("The entries of all sessions should be read", 256, entries.size());
+		assertEquals("Wrong first entry", "entry 54", getMessage(entries, 0));
+	}
+
+	/**
+	 * Tests that without an entry limit, the entries read span about as many bytes as the
+	 * view used to read from the tail of the log, and that the older entries can be paged to
+	 */
+	public void testNoLimit() throws IOException {
+		// about 1.3MB of entries, more than a page of entries is needed to span the maximum length
+		writeLog(new int[] {600}, 2048);
+		LogIndex index = new LogIndex(fFile);
+		fMemento.putString(LogView.P_USE_LIMIT, "false");
+		int[] range = new int[] {0, -1, 0};
+		List entries = read(index, range);
+		assertTrue("Not all entries should be read", entries.size() < 600);
+		assertEquals("Wrong start of the page", 600 - entries.size(), range[0]);
+		assertTrue("The entries read should span the maximum length", index.getEntryEnd(599) - index.getEntryOffset(range[0]) >= LogReader.MAX_FILE_LENGTH);
+		assertTrue("No more than a page of entries should be read past the maximum length", index.getEntryEnd(599) - index.getEntryOffset(range[0] + 256) < LogReader.MAX_FILE_LENGTH);
+
+		int read = entries.size();
+		while (range[0] > range[2]) {
+			range[1] = range[0];
+			read += read(index, range).size();
+		}
+		assertEquals("Every entry should be read by paging", 600, read);
+	}
+
+	private List read(LogIndex index, int[] range) {
+		List entries = new ArrayList();
+		LogReader.parseLogFile(index, range, entries, fMemento);
+		return entries;
+	}
+
+	private String getMessage(List entries, int i) {
+		return ((LogEntry) entries.get(i)).getMessage();
+	}
+
+	private void setLimit(int limit) {
+		fMemento.putString(LogView.P_USE_LIMIT, "true");
+		fMemento.putInteger(LogView.P_LOG_LIMIT, limit);
+	}
+
+	/**
+	 * Writes a log with the given number of entries in every session
+	 *
+	 * @param sessions the number of entries of every session
+	 * @param stackLength the length of the stack of every entry
+	 */
+	private void writeLog(int[] sessions, int stackLength) throws IOException {
+		StringBuffer stack = new StringBuffer();
+		while (stack.length() < stackLength)
+			stack.append("\tat org.eclipse.pde.Test.test(Test.java:1)\n");
+		Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fFile), "UTF-8"));
+		try {
+			int entry = 0;
+			for (int i = 0; i < sessions.length; i++) {
+				writer.write("!SESSION 2013-01-0" + (i + 1) + " 11:15:30.000 -----------------------------------------------\n");
+				writer.write("eclipse.buildId=unittest\n");
+				for (int j = 0; j < sessions[i]; j++) {
+					writer.write("\n!ENTRY org.eclipse.pde.ui 4 0 2013-01-0" + (i + 1) + " 11:15:30.123\n");
+					writer.write("!MESSAGE entry " + entry++ + "\n");
+					if (stackLength > 0) {
+						writer.write("!STACK 0\n");
+						writer.write(stack.toString());
+					}
+				}
+			}
+		} finally {
+			writer.close();
+		}
+	}
+}
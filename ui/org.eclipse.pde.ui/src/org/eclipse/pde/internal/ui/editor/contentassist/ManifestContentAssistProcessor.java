@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2011 IBM Corporation and others.
+ * Copyright (c) 2006, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -26,7 +26,7 @@ import org.eclipse.osgi.service.resolver.BundleDescription;
 import org.eclipse.osgi.service.resolver.ExportPackageDescription;
 import org.eclipse.osgi.util.ManifestElement;
 import org.eclipse.pde.core.plugin.*;
-import org.eclipse.pde.internal.core.ICoreConstants;
+import org.eclipse.pde.internal.core.*;
 import org.eclipse.pde.internal.core.util.HeaderMap;
 import org.eclipse.pde.internal.core.util.PDEJavaHelper;
 import org.eclipse.pde.internal.ui.PDEPluginImages;
@@ -274,18 +274,19 @@ public class ManifestContentAssistProcessor extends TypePackageCompletionProcess
 			int length = value.length();
 			set.remove(value);
 			ArrayList<TypeCompletionProposal> completions = new ArrayList<TypeCompletionProposal>();
-			IPluginModelBase[] bases = PluginRegistry.getActiveModels();
+			PluginModelSnapshot snapshot = PDECore.getDefault().getModelManager().getSnapshot();
+			String[] pkgNames = snapshot.getExportedPackages(value);
 
-			for (int j = 0; j < bases.length; j++) { // Remove any packages already imported through Require-Bundle
-				BundleDescription desc = bases[j].getBundleDescription();
-				if (desc == null || importedBundles.contains(desc.getSymbolicName()))
+			for (int i = 0; i < pkgNames.length; i++) {
+				String pkgName = pkgNames[i];
+				if (set.contains(pkgName))
 					continue;
-				ExportPackageDescription[] expPkgs = desc.getExportPackages();
-				for (int i = 0; i < expPkgs.length; i++) {
-					String pkgName = expPkgs[i].getName();
-					if (pkgName.regionMatches(true, 0, value, 0, length) && !set.contains(pkgName)) {
+				ExportPackageDescription[] expPkgs = snapshot.getExports(pkgName);
+				for (int j = 0; j < expPkgs.length; j++) { // Remove any packages only exported by bundles already imported through Require-Bundle
+					if (!importedBundles.contains(expPkgs[j].getExporter().getSymbolicName())) {
 						completions.add(new TypeCompletionProposal(pkgName, getImage(F_TYPE_PKG), pkgName, offset - length, length));
 						set.add(pkgName);
+						break;
 					}
 				}
 			}
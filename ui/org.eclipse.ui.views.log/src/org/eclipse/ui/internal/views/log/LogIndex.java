@@ -0,0 +1,315 @@
+/*******************************************************************************
+ * Copyright (c) 2013 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.internal.views.log;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Offsets of the sessions and top-level entries of a log file.
+ * <p>
+ * The index is built by scanning the bytes of the file once, without decoding them, for
+ * lines starting with <code>!SESSION</code> or <code>!ENTRY</code>. When the file grows
+ * only the appended bytes are scanned. The text of the sessions and entries is read from
+ * the file on demand by {@link LogReader}.
+ * </p>
+ * <p>
+ * The first bytes of the file are kept to recognize it. A log that was deleted or rolled over
+ * and has since grown past the scanned length starts with another session, so it is scanned
+ * again from the start rather than taken for an append.
+ * </p>
+ * <p>
+ * The index holds an offset and the index of its session for every entry, 12 bytes per entry,
+ * whatever the length of the entries. The entries themselves are not held.
+ * </p>
+ */
+public class LogIndex {
+
+	private static final byte[] SESSION = LogSession.SESSION.getBytes();
+	private static final byte[] ENTRY = "!ENTRY".getBytes(); //$NON-NLS-1$
+
+	/**
+	 * Size of the buffer the file is scanned with
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Number of bytes at the start of the file compared to recognize it, enough for the
+	 * header of the first session and its time stamp
+	 */
+	private static final int HEAD_SIZE = 256;
+
+	private File fFile;
+
+	/**
+	 * Number of bytes of the file scanned so far, and the first bytes of the last line
+	 * if it was not complete when it was scanned
+	 */
+	private long fLength;
+	private long fLineStart;
+	private byte[] fLine = new byte[SESSION.length];
+	private int fLineLength;
+	/**
+	 * The first bytes of the file scanned so far
+	 */
+	private byte[] fHead = new byte[HEAD_SIZE];
+	private int fHeadLength;
+
+	private int fSessionCount;
+	private long[] fSessionOffsets = new long[8];
+	/**
+	 * Index of the first entry following every session
+	 */
+	private int[] fSessionEntries = new int[8];
+
+	private int fEntryCount;
+	private long[] fEntryOffsets = new long[256];
+	/**
+	 * Index of the session of every entry, <code>-1</code> for entries preceding the first session
+	 */
+	private int[] fEntrySessions = new int[256];
+
+	/**
+	 * Creates an empty index of the given file, {@link #update()} scans the file
+	 *
+	 * @param file the log file
+	 */
+	public LogIndex(File file) {
+		fFile = file;
+	}
+
+	public File getFile() {
+		return fFile;
+	}
+
+	/**
+	 * Scans the bytes appended to the file since it was last scanned. If the file is shorter
+	 * than it was or does not start with the same bytes, it is scanned again from the start.
+	 *
+	 * @throws IOException if the file cannot be read
+	 */
+	public synchronized void update() throws IOException {
+		long length = fFile.length();
+		if (length < fLength)
+			clear();
+		FileInputStream stream = new FileInputStream(fFile);
+		try {
+			FileChannel channel = stream.getChannel();
+			if (fHeadLength > 0 && !hasSameHead(channel))
+				clear();
+			if (length == fLength)
+				return;
+			channel.position(fLength);
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			byte[] bytes = buffer.array();
+			long position = fLength;
+			int read;
+			while ((read = channel.read(buffer)) > 0) {
+				scan(bytes, read, position);
+				position += read;
+				buffer.clear();
+			}
+			fLength = position;
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Returns whether the file still starts with the bytes scanned first
+	 */
+	private boolean hasSameHead(FileChannel channel) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(fHeadLength);
+		channel.position(0);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0)
+				return false;
+		}
+		byte[] head = buffer.array();
+		for (int i = 0; i < fHeadLength; i++) {
+			if (head[i] != fHead[i])
+				return false;
+		}
+		return true;
+	}
+
+	private void clear() {
+		fLength = 0;
+		fLineStart = 0;
+		fLineLength = 0;
+		fHeadLength = 0;
+		fSessionCount = 0;
+		fEntryCount = 0;
+	}
+
+	private void scan(byte[] bytes, int length, long position) {
+		if (position < HEAD_SIZE) {
+			int count = (int) Math.min(length, HEAD_SIZE - position);
+			System.arraycopy(bytes, 0, fHead, (int) position, count);
+			fHeadLength = (int) position + count;
+		}
+		for (int i = 0; i < length; i++) {
+			byte b = bytes[i];
+			if (b == '\n' || b == '\r') {
+				fLineLength = 0;
+				fLineStart = position + i + 1;
+			} else if (fLineLength < fLine.length) {
+				// lines are trimmed by the reader, skip the leading white space
+				if (fLineLength == 0 && (b == ' ' || b == '\t'))
+					continue;
+				fLine[fLineLength++] = b;
+				if (fLineLength == ENTRY.length && startsWith(ENTRY))
+					addEntry(fLineStart);
+				else if (fLineLength == SESSION.length && startsWith(SESSION))
+					addSession(fLineStart);
+			}
+		}
+	}
+
+	private boolean startsWith(byte[] prefix) {
+		for (int i = 0; i < prefix.length; i++) {
+			if (fLine[i] != prefix[i])
+				return false;
+		}
+		return true;
+	}
+
+	private void addSession(long offset) {
+		if (fSessionCount == fSessionOffsets.length) {
+			fSessionOffsets = grow(fSessionOffsets);
+			fSessionEntries = grow(fSessionEntries);
+		}
+		fSessionOffsets[fSessionCount] = offset;
+		fSessionEntries[fSessionCount++] = fEntryCount;
+	}
+
+	private void addEntry(long offset) {
+		if (fEntryCount == fEntryOffsets.length) {
+			fEntryOffsets = grow(fEntryOffsets);
+			fEntrySessions = grow(fEntrySessions);
+		}
+		fEntryOffsets[fEntryCount] = offset;
+		fEntrySessions[fEntryCount++] = fSessionCount - 1;
+	}
+
+	public synchronized int getSessionCount() {
+		return fSessionCount;
+	}
+
+	public synchronized int getEntryCount() {
+		return fEntryCount;
+	}
+
+	/**
+	 * @param entry index of an entry
+	 * @return the index of the session of the entry, or <code>-1</code> if it precedes the first session
+	 */
+	public synchronized int getSession(int entry) {
+		return fEntrySessions[entry];
+	}
+
+	/**
+	 * @param session index of a session
+	 * @return the index of the first entry of the session, or the entry count if the session has no entry
+	 */
+	public synchronized int getFirstEntry(int session) {
+		return fSessionEntries[session];
+	}
+
+	/**
+	 * @param session index of a session
+	 * @return the offset of the header of the session
+	 */
+	public synchronized long getSessionOffset(int session) {
+		return fSessionOffsets[session];
+	}
+
+	/**
+	 * @param session index of a session
+	 * @return the offset following the header of the session
+	 */
+	public synchronized long getSessionEnd(int session) {
+		int entry = fSessionEntries[session];
+		if (session + 1 < fSessionCount && fSessionEntries[session + 1] == entry)
+			return fSessionOffsets[session + 1];
+		return entry < fEntryCount ? fEntryOffsets[entry] : fLength;
+	}
+
+	/**
+	 * @param entry index of an entry
+	 * @return the offset of the entry
+	 */
+	public synchronized long getEntryOffset(int entry) {
+		return fEntryOffsets[entry];
+	}
+
+	/**
+	 * @param entry index of an entry
+	 * @return the offset following the entry and its sub-entries
+	 */
+	public synchronized long getEntryEnd(int entry) {
+		int session = fEntrySessions[entry];
+		if (session + 1 < fSessionCount && fSessionEntries[session + 1] == entry + 1)
+			return fSessionOffsets[session + 1];
+		return entry + 1 < fEntryCount ? fEntryOffsets[entry + 1] : fLength;
+	}
+
+	/**
+	 * Opens a reader on the given range of the file
+	 *
+	 * @param start the offset of the range
+	 * @param end the offset following the range
+	 * @return a reader of the UTF-8 text of the range
+	 * @throws IOException if the file cannot be read
+	 */
+	public BufferedReader openReader(long start, long end) throws IOException {
+		final RandomAccessFile file = new RandomAccessFile(fFile, "r"); //$NON-NLS-1$
+		file.seek(start);
+		final long length = end - start;
+		InputStream stream = new InputStream() {
+			private long fRemaining = length;
+
+			public int read() throws IOException {
+				if (fRemaining <= 0)
+					return -1;
+				fRemaining--;
+				return file.read();
+			}
+
+			public int read(byte[] b, int off, int len) throws IOException {
+				if (fRemaining <= 0)
+					return -1;
+				int count = file.read(b, off, (int) Math.min(len, fRemaining));
+				if (count > 0)
+					fRemaining -= count;
+				return count;
+			}
+
+			public void close() throws IOException {
+				file.close();
+			}
+		};
+		return new BufferedReader(new InputStreamReader(stream, "UTF-8")); //$NON-NLS-1$
+	}
+
+	private static long[] grow(long[] array) {
+		long[] result = new long[array.length * 2];
+		System.arraycopy(array, 0, result, 0, array.length);
+		return result;
+	}
+
+	private static int[] grow(int[] array) {
+		int[] result = new int[array.length * 2];
+		System.arraycopy(array, 0, result, 0, array.length);
+		return result;
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -19,7 +19,7 @@ import java.util.*;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.ui.IMemento;
 
-class LogReader {
+public class LogReader {
 	private static final int SESSION_STATE = 10;
 	public static final long MAX_FILE_LENGTH = 1024 * 1024;
 	private static final int ENTRY_STATE = 20;
@@ -29,26 +29,148 @@ class LogReader {
 	private static final int TEXT_STATE = 60;
 	private static final int UNKNOWN_STATE = 70;
 
-	public static LogSession parseLogFile(File file, List entries, IMemento memento) {
-		if (!file.exists())
+	/**
+	 * Number of entries read from the log file at once
+	 */
+	private static final int PAGE_SIZE = 256;
+
+	/**
+	 * Reads the entries of the log file that are shown in the view, starting with the most recent ones.
+	 * Only the entries of the most recent session are read unless all sessions are shown, and reading stops
+	 * once the entry limit is reached, so that only the entries shown are held in memory, whatever the size
+	 * of the file. Without an entry limit, reading stops once the entries read span {@link #MAX_FILE_LENGTH}
+	 * bytes of the file, the older entries are read by paging.
+	 * <p>
+	 * The range describes the page of entries being read, as indexes of top-level entries in the log index.
+	 * The end of the page is read from <code>range[1]</code>, <code>-1</code> for the end of the log. On
+	 * return, <code>range[0]</code> and <code>range[1]</code> hold the first and the end of the entries
+	 * read and <code>range[2]</code> holds the first entry that could be read with the current settings.
+	 * </p>
+	 * 
+	 * @param index the index of the log file
+	 * @param range the range of entries, an array of length 3
+	 * @param entries the list to add the entries to, in the order of the log
+	 * @param memento the view settings
+	 * @return the most recent session of the log, or <code>null</code> if the log has none
+	 */
+	public static LogSession parseLogFile(LogIndex index, int[] range, List entries, IMemento memento) {
+		int end = range[1];
+		range[0] = range[1] = range[2] = 0;
+		if (!index.getFile().exists())
 			return null;
 
 		if (memento.getString(LogView.P_USE_LIMIT).equals("true") //$NON-NLS-1$
 				&& memento.getInteger(LogView.P_LOG_LIMIT).intValue() == 0)
 			return null;
 
+		Map sessions = new HashMap();
+		LogSession currentSession = null;
+		try {
+			index.update();
+			int count = index.getEntryCount();
+			if (end < 0 || end > count)
+				end = count;
+			int first = 0;
+			int sessionCount = index.getSessionCount();
+			if (sessionCount > 0) {
+				currentSession = getSession(index, sessionCount - 1, sessions);
+				// if not showing all sessions, only read the entries of the most recent session
+				if (!memento.getString(LogView.P_SHOW_ALL_SESSIONS).equals("true")) //$NON-NLS-1$
+					first = Math.min(index.getFirstEntry(sessionCount - 1), end);
+			} else if (count > 0) {
+				// create fake session if there was no any
+				currentSession = getSession(index, -1, sessions);
+			}
+
+			int limit = Integer.MAX_VALUE;
+			boolean useLimit = memento.getString(LogView.P_USE_LIMIT).equals("true"); //$NON-NLS-1$
+			if (useLimit)
+				limit = memento.getInteger(LogView.P_LOG_LIMIT).intValue();
+
+			// read pages of entries backwards until enough entries are logged
+			List logged = new ArrayList();
+			int start = end;
+			while (start > first && logged.size() < limit) {
+				int pageStart = Math.max(first, start - PAGE_SIZE);
+				LogEntry[] page = parseEntries(index, pageStart, start, sessions);
+				for (start = start - 1; start >= pageStart; start--) {
+					LogEntry entry = page[start - pageStart];
+					if (entry != null && isLogged(entry, memento)) {
+						logged.add(entry);
+						if (logged.size() == limit)
+							break;
+					}
+				}
+				if (start < pageStart)
+					start = pageStart;
+				// without an entry limit, read as much of the log as the view used to read from its tail
+				if (!useLimit && start < end && index.getEntryEnd(end - 1) - index.getEntryOffset(start) >= MAX_FILE_LENGTH)
+					break;
+			}
+			Collections.reverse(logged);
+			entries.addAll(logged);
+			range[0] = start;
+			range[1] = end;
+			range[2] = first;
+		} catch (IOException e) { // do nothing
+		}
+		return currentSession;
+	}
+
+	/**
+	 * Returns the session with the given index, reading its header the first time it is requested
+	 */
+	private static LogSession getSession(LogIndex index, int i, Map sessions) throws IOException {
+		Integer key = new Integer(i);
+		LogSession session = (LogSession) sessions.get(key);
+		if (session == null) {
+			session = new LogSession();
+			if (i >= 0)
+				parse(index.openReader(index.getSessionOffset(i), index.getSessionEnd(i)), session, null);
+			sessions.put(key, session);
+		}
+		return session;
+	}
+
+	/**
+	 * Reads the top-level entries between the given indexes along with their sub-entries
+	 * 
+	 * @return the entries read, one for each index, <code>null</code> for the entries that could not be read
+	 */
+	private static LogEntry[] parseEntries(LogIndex index, int start, int end, Map sessions) throws IOException {
+		LogEntry[] result = new LogEntry[end - start];
+		int i = start;
+		while (i < end) {
+			// read the consecutive entries of one session at once
+			int session = index.getSession(i);
+			int last = i;
+			while (last + 1 < end && index.getSession(last + 1) == session)
+				last++;
+			List entries = new ArrayList(last - i + 1);
+			parse(index.openReader(index.getEntryOffset(i), index.getEntryEnd(last)), getSession(index, session, sessions), entries);
+			for (int j = 0; j < entries.size() && i + j <= last; j++)
+				result[i + j - start] = (LogEntry) entries.get(j);
+			i = last + 1;
+		}
+		return result;
+	}
+
+	/**
+	 * Parses the header of a session or the entries of a session.
+	 * 
+	 * @param reader the reader of the header of the session or of its entries, it is closed when done
+	 * @param session the session the text belongs to
+	 * @param entries the list to add the top-level entries to, <code>null</code> when parsing a session header.
+	 * 			An entry that cannot be parsed is added as <code>null</code>.
+	 */
+	private static void parse(BufferedReader reader, LogSession session, List entries) throws IOException {
 		ArrayList parents = new ArrayList();
 		LogEntry current = null;
-		LogSession session = null;
 		int writerState = UNKNOWN_STATE;
 		StringWriter swriter = null;
 		PrintWriter writer = null;
 		int state = UNKNOWN_STATE;
-		LogSession currentSession = null;
-		BufferedReader reader = null;
 		try {
-
-			reader = new BufferedReader(new InputStreamReader(new TailInputStream(file, MAX_FILE_LENGTH), "UTF-8")); //$NON-NLS-1$
 			for (;;) {
 				String line0 = reader.readLine();
 				if (line0 == null)
@@ -90,28 +212,27 @@ class LogReader {
 					writer = new PrintWriter(swriter, true);
 					writerState = STACK_STATE;
 				} else if (state == SESSION_STATE) {
-					session = new LogSession();
+					// the index only hands out the header of a session on its own
+					if (entries != null)
+						break;
 					session.processLogLine(line);
 					swriter = new StringWriter();
 					writer = new PrintWriter(swriter, true);
 					writerState = SESSION_STATE;
-					currentSession = updateCurrentSession(currentSession, session);
-					// if current session is most recent and not showing all sessions
-					if (currentSession.equals(session) && !memento.getString(LogView.P_SHOW_ALL_SESSIONS).equals("true")) //$NON-NLS-1$
-						entries.clear();
 				} else if (state == ENTRY_STATE) {
-					if (currentSession == null) { // create fake session if there was no any
-						currentSession = new LogSession();
-					}
+					if (entries == null)
+						break;
 					try {
 						LogEntry entry = new LogEntry();
-						entry.setSession(currentSession);
+						entry.setSession(session);
 						entry.processEntry(line);
 						setNewParent(parents, entry, 0);
 						current = entry;
-						addEntry(current, entries, memento);
+						entries.add(entry);
 					} catch (ParseException pe) {
 						//do nothing, just toss the entry
+						current = null;
+						entries.add(null);
 					}
 				} else if (state == SUBENTRY_STATE) {
 					if (parents.size() > 0) {
@@ -138,17 +259,9 @@ class LogReader {
 					writerState = MESSAGE_STATE;
 				}
 			}
-
-			if (swriter != null && current != null && writerState == STACK_STATE) {
-				writerState = UNKNOWN_STATE;
-				current.setStack(swriter.toString());
-			}
-		} catch (FileNotFoundException e) { // do nothing
-		} catch (IOException e) { // do nothing
 		} finally {
 			try {
-				if (reader != null)
-					reader.close();
+				reader.close();
 			} catch (IOException e1) { // do nothing
 			}
 			if (writer != null) {
@@ -156,8 +269,6 @@ class LogReader {
 				writer.close();
 			}
 		}
-
-		return currentSession;
 	}
 
 	/**
@@ -178,47 +289,6 @@ class LogReader {
 		}
 	}
 
-	/**
-	 * Updates the {@link currentSession} to be the one that is not null or has most recent date.
-	 * @param session
-	 */
-	private static LogSession updateCurrentSession(LogSession currentSession, LogSession session) {
-		if (currentSession == null) {
-			return session;
-		}
-		Date currentDate = currentSession.getDate();
-		Date sessionDate = session.getDate();
-		if (currentDate == null && sessionDate != null)
-			return session;
-		else if (currentDate != null && sessionDate == null)
-			return session;
-		else if (currentDate != null && sessionDate != null && sessionDate.after(currentDate))
-			return session;
-
-		return currentSession;
-	}
-
-	/**
-	 * Adds entry to the list if it's not filtered. Removes entries exceeding the count limit.
-	 * 
-	 * @param entry
-	 * @param entries
-	 * @param memento
-	 */
-	private static void addEntry(LogEntry entry, List entries, IMemento memento) {
-
-		if (isLogged(entry, memento)) {
-			entries.add(entry);
-
-			if (memento.getString(LogView.P_USE_LIMIT).equals("true")) {//$NON-NLS-1$
-				int limit = memento.getInteger(LogView.P_LOG_LIMIT).intValue();
-				if (entries.size() > limit) {
-					entries.remove(0);
-				}
-			}
-		}
-	}
-
 	/**
 	 * Returns whether given entry is logged (true) or filtered (false).
 	 * 
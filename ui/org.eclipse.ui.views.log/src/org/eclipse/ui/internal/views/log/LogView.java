@@ -96,6 +96,21 @@ public class LogView extends ViewPart implements ILogListener {
 	private File fInputFile;
 	private String fDirectory;
 
+	/**
+	 * Index of the sessions and entries of the input file
+	 */
+	private LogIndex fIndex;
+	/**
+	 * End of the page of entries requested, as an index of the entries of the log, <code>-1</code>
+	 * to show the most recent entries
+	 */
+	private int fPageEnd = -1;
+	/**
+	 * First entry, end and first entry that can be shown of the page of entries read, see
+	 * {@link LogReader#parseLogFile(LogIndex, int[], List, IMemento)}
+	 */
+	private int[] fPage = new int[3];
+
 	private Comparator fComparator;
 
 	// hover text
@@ -121,6 +136,8 @@ public class LogView extends ViewPart implements ILogListener {
 	private Action fOpenLogAction;
 	private Action fExportLogAction;
 	private Action fExportLogEntryAction;
+	private Action fOlderEntriesAction;
+	private Action fNewerEntriesAction;
 
 	/**
 	 * Action called when user selects "Group by -> ..." from menu.
@@ -258,6 +275,13 @@ public class LogView extends ViewPart implements ILogListener {
 		mgr.add(createFilterAction());
 		mgr.add(new Separator());
 
+		fOlderEntriesAction = createOlderEntriesAction();
+		mgr.add(fOlderEntriesAction);
+		fNewerEntriesAction = createNewerEntriesAction();
+		mgr.add(fNewerEntriesAction);
+		updatePageActions();
+		mgr.add(new Separator());
+
 		fActivateViewAction = createActivateViewAction();
 		mgr.add(fActivateViewAction);
 		if (fFilteredTree.getFilterControl() != null)
@@ -418,6 +442,39 @@ public class LogView extends ViewPart implements ILogListener {
 		return action;
 	}
 
+	private Action createOlderEntriesAction() {
+		Action action = new Action(Messages.LogView_olderEntries) {
+			public void run() {
+				fPageEnd = fPage[0];
+				reloadLog();
+			}
+		};
+		return action;
+	}
+
+	private Action createNewerEntriesAction() {
+		Action action = new Action(Messages.LogView_newerEntries) {
+			public void run() {
+				// show as many entries following the page as it holds, or the most recent ones
+				int end = fPage[1] + (fPage[1] - fPage[0]);
+				fPageEnd = end < fIndex.getEntryCount() ? end : -1;
+				reloadLog();
+			}
+		};
+		return action;
+	}
+
+	/**
+	 * Enables the actions paging through the log when older or newer entries than the ones
+	 * shown can be read
+	 */
+	private void updatePageActions() {
+		if (fOlderEntriesAction == null)
+			return;
+		fOlderEntriesAction.setEnabled(fPage[0] > fPage[2]);
+		fNewerEntriesAction.setEnabled(fPageEnd != -1);
+	}
+
 	private Action createPropertiesAction() {
 		Action action = new EventDetailsDialogAction(fTree, fFilteredTree.getViewer(), fMemento);
 		action.setImageDescriptor(SharedImages.getImageDescriptor(SharedImages.DESC_PROPERTIES));
@@ -431,6 +488,7 @@ public class LogView extends ViewPart implements ILogListener {
 		Action action = new Action(Messages.LogView_readLog_restore) {
 			public void run() {
 				fInputFile = Platform.getLogFileLocation().toFile();
+				fPageEnd = -1;
 				reloadLog();
 			}
 		};
@@ -664,6 +722,7 @@ public class LogView extends ViewPart implements ILogListener {
 	 */
 	protected void setLogFile(File path) {
 		fInputFile = path;
+		fPageEnd = -1;
 		fDirectory = fInputFile.getParent();
 		IRunnableWithProgress op = new IRunnableWithProgress() {
 			public void run(IProgressMonitor monitor) {
@@ -753,6 +812,7 @@ public class LogView extends ViewPart implements ILogListener {
 		if (!MessageDialog.openConfirm(fTree.getShell(), title, message))
 			return;
 		if (fInputFile.delete() || elements.size() > 0) {
+			fPageEnd = -1;
 			handleClear();
 		}
 	}
@@ -808,8 +868,12 @@ public class LogView extends ViewPart implements ILogListener {
 		elements.clear();
 		groups.clear();
 
+		if (fIndex == null || !fIndex.getFile().equals(fInputFile))
+			fIndex = new LogIndex(fInputFile);
 		List result = new ArrayList();
-		LogSession lastLogSession = LogReader.parseLogFile(fInputFile, result, fMemento);
+		int[] page = new int[] {0, fPageEnd, 0};
+		LogSession lastLogSession = LogReader.parseLogFile(fIndex, page, result, fMemento);
+		fPage = page;
 		if ((lastLogSession != null) && isEclipseStartTime(lastLogSession.getDate())) {
 			currentSession = lastLogSession;
 		} else {
@@ -822,6 +886,7 @@ public class LogView extends ViewPart implements ILogListener {
 		getSite().getShell().getDisplay().asyncExec(new Runnable() {
 			public void run() {
 				setContentDescription(getTitleSummary());
+				updatePageActions();
 			}
 		});
 
@@ -986,6 +1051,10 @@ public class LogView extends ViewPart implements ILogListener {
 		if (!isPlatformLogOpen())
 			return;
 
+		// new entries are read from the log when paging back to the most recent entries
+		if (fPageEnd != -1)
+			return;
+
 		if (batchEntries) {
 			// create LogEntry immediately to don't loose IStatus creation date.
 			LogEntry entry = createLogEntry(status);
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2008 IBM Corporation and others.
+ * Copyright (c) 2007, 2013 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -50,6 +50,8 @@ public class Messages extends NLS {
 	public static String LogView_operation_importing;
 	public static String LogView_operation_reloading;
 	public static String LogView_activate;
+	public static String LogView_olderEntries;
+	public static String LogView_newerEntries;
 	public static String LogView_AddingBatchedEvents;
 	public static String LogView_view_currentLog;
 	public static String LogView_view_currentLog_tooltip;